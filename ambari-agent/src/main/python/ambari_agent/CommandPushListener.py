@@ -0,0 +1,99 @@
+#!/usr/bin/env python
+'''
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+'''
+
+import logging
+import threading
+import time
+import urllib2
+import ambari_simplejson as json
+
+import security
+from AmbariConfig import AmbariConfig
+
+logger = logging.getLogger(__name__)
+
+class CommandPushListener(threading.Thread):
+  """
+  Waits on the server for commands queued for this host and triggers a
+  heartbeat as soon as there are some, so that commands do not wait for the
+  next heartbeat interval. The commands are still delivered in the heartbeat
+  response. Enabled by the server at registration.
+  """
+  ENABLED_KEY = 'agent.command.push.enabled'
+  IDLE_HEARTBEAT_INTERVAL_KEY = 'agent.command.push.idle.heartbeat.interval'
+
+  # time to wait before asking again after an error or while not registered
+  RETRY_INTERVAL_SEC = 10
+  # time to let the heartbeat pick up commands before asking again
+  TRIGGER_INTERVAL_SEC = 1
+
+  def __init__(self, config, server_hostname, controller):
+    threading.Thread.__init__(self)
+    self.daemon = True
+    self.config = config
+    self.server_hostname = server_hostname
+    self.controller = controller
+    self.commands_url = 'https://' + server_hostname + ':' + config.get('server', 'secured_url_port') + \
+                        '/agent/v1/commands/' + controller.hostname
+    self.cached_connection = None
+    self.connected = False
+
+  def is_enabled(self):
+    return self.config.has_option(AmbariConfig.AMBARI_PROPERTIES_CATEGORY, self.ENABLED_KEY) and \
+           self.config.get(AmbariConfig.AMBARI_PROPERTIES_CATEGORY, self.ENABLED_KEY).lower() == 'true'
+
+  def get_idle_heartbeat_interval(self):
+    """
+    :return: the interval in seconds between heartbeats when there is nothing
+    to do, or None if the server is not being waited on for commands
+    """
+    if not self.connected or not self.is_enabled() or \
+        not self.config.has_option(AmbariConfig.AMBARI_PROPERTIES_CATEGORY, self.IDLE_HEARTBEAT_INTERVAL_KEY):
+      return None
+    return int(self.config.get(AmbariConfig.AMBARI_PROPERTIES_CATEGORY, self.IDLE_HEARTBEAT_INTERVAL_KEY))
+
+  def run(self):
+    while True:
+      if not self.controller.isRegistered or not self.is_enabled():
+        self.connected = False
+        time.sleep(self.RETRY_INTERVAL_SEC)
+        continue
+
+      try:
+        if self.has_pending_commands():
+          logger.debug("Commands are queued on the server, triggering heartbeat")
+          self.controller.trigger_heartbeat()
+          time.sleep(self.TRIGGER_INTERVAL_SEC)
+      except Exception, ex:
+        logger.debug("Unable to wait for commands on {0}: {1}".format(self.commands_url, str(ex)))
+        self.cached_connection = None
+        self.connected = False
+        time.sleep(self.RETRY_INTERVAL_SEC)
+
+  def has_pending_commands(self):
+    """
+    Blocks until commands are queued for this host or the server times out
+    the request.
+    """
+    if self.cached_connection is None:
+      self.cached_connection = security.CachedHTTPSConnection(self.config, self.server_hostname)
+    req = urllib2.Request(self.commands_url, None, {'Accept-encoding': 'gzip'})
+    response = json.loads(self.cached_connection.request(req))
+    self.connected = True
+    return response.get('hasPendingCommands', False)
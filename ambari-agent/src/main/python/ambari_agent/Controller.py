@@ -18,6 +18,7 @@ See the License for the specific language governing permissions and
 limitations under the License.
 '''
 
+import copy
 import logging
 import ambari_simplejson as json
 import sys
@@ -45,6 +46,7 @@ from ambari_agent.NetUtil import NetUtil
 from ambari_agent.LiveStatus import LiveStatus
 from ambari_agent.AlertSchedulerHandler import AlertSchedulerHandler
 from ambari_agent.ClusterConfiguration import  ClusterConfiguration
+from ambari_agent.CommandPushListener import CommandPushListener
 from ambari_agent.RecoveryManager import  RecoveryManager
 from ambari_agent.HeartbeatHandlers import HeartbeatStopHandlers, bind_signal_handlers
 from ambari_agent.ExitHelper import ExitHelper
@@ -77,6 +79,7 @@ class Controller(threading.Thread):
     self.registerUrl = server_secured_url + '/agent/v1/register/' + self.hostname
     self.heartbeatUrl = server_secured_url + '/agent/v1/heartbeat/' + self.hostname
     self.componentsUrl = server_secured_url + '/agent/v1/components/'
+    self.configurationsUrl = server_secured_url + '/agent/v1/configurations/'
     self.netutil = NetUtil(self.config, heartbeat_stop_callback)
     self.responseId = -1
     self.repeatRegistration = False
@@ -85,6 +88,9 @@ class Controller(threading.Thread):
     self.range = range
     self.hasMappedComponents = True
     self.statusCommandsExecutor = None
+    # configurations of execution commands by hash, most recently used last
+    self.configuration_snapshots = {}
+    self.configuration_snapshot_hashes = []
     # Event is used for synchronizing heartbeat iterations (to make possible
     # manual wait() interruption between heartbeats )
     self.heartbeat_stop_callback = heartbeat_stop_callback
@@ -129,6 +135,8 @@ class Controller(threading.Thread):
 
     self.alert_scheduler_handler.start()
 
+    self.command_push_listener = CommandPushListener(config, server_hostname, self)
+
 
   def read_agent_version(self, config):
     data_dir = config.get('agent', 'prefix')
@@ -248,6 +256,49 @@ class Controller(threading.Thread):
       self.actionQueue.put_status(commands)
     pass
 
+  # Number of configuration snapshots kept in memory
+  MAX_CONFIGURATION_SNAPSHOTS = 10
+
+  def resolveConfigurationSnapshots(self, commands):
+    """
+    Fills in the configurations of the execution commands which reference them
+    by hash. Snapshots which were not received before are fetched from the
+    server; IOError is raised if that fails.
+    """
+    for command in commands:
+      snapshot_hash = command.get('configurationsHash')
+      if not snapshot_hash:
+        continue
+
+      if command.get('configurations') is not None:
+        # commands carrying their configurations fill the cache as well
+        self.cacheConfigurationSnapshot(snapshot_hash, command)
+        continue
+
+      snapshot = self.configuration_snapshots.get(snapshot_hash)
+      if snapshot is None:
+        logger.info("Fetching configurations with hash %s", snapshot_hash)
+        snapshot = self.sendRequest(self.configurationsUrl + snapshot_hash, None)
+      self.cacheConfigurationSnapshot(snapshot_hash, snapshot)
+
+      # commands may change their configurations, give each one a copy
+      command['configurations'] = copy.deepcopy(snapshot['configurations'])
+      if snapshot.get('configuration_attributes') is not None:
+        command['configuration_attributes'] = copy.deepcopy(snapshot['configuration_attributes'])
+
+  def cacheConfigurationSnapshot(self, snapshot_hash, snapshot):
+    if snapshot_hash in self.configuration_snapshots:
+      self.configuration_snapshot_hashes.remove(snapshot_hash)
+    else:
+      self.configuration_snapshots[snapshot_hash] = {
+        'configurations': copy.deepcopy(snapshot['configurations']),
+        'configuration_attributes': copy.deepcopy(snapshot.get('configuration_attributes'))
+      }
+    self.configuration_snapshot_hashes.append(snapshot_hash)
+
+    if len(self.configuration_snapshot_hashes) > self.MAX_CONFIGURATION_SNAPSHOTS:
+      del self.configuration_snapshots[self.configuration_snapshot_hashes.pop(0)]
+
   # For testing purposes
   DEBUG_HEARTBEAT_RETRIES = 0
   DEBUG_SUCCESSFULL_HEARTBEATS = 0
@@ -276,6 +327,9 @@ class Controller(threading.Thread):
     getrecoverycommands_timestamp = 0.0
     getrecoverycommands_interval = self.netutil.HEARTBEAT_IDLE_INTERVAL_DEFAULT_MAX_SEC
 
+    # the server only knows the state sent since registration
+    self.heartbeat.reset_state()
+
     while not self.DEBUG_STOP_HEARTBEATING:
       heartbeat_interval = self.netutil.HEARTBEAT_IDLE_INTERVAL_DEFAULT_MAX_SEC
 
@@ -328,6 +382,14 @@ class Controller(threading.Thread):
           has_pending_tasks = bool(response['hasPendingTasks'])
           self.recovery_manager.set_paused(has_pending_tasks)
 
+        # commands are pushed by waking up the heartbeat, nothing else needs a
+        # high heartbeat rate while no tasks are pending or running
+        idle_heartbeat_interval = self.command_push_listener.get_idle_heartbeat_interval()
+        if idle_heartbeat_interval and not response.get('hasPendingTasks', False) \
+            and not self.actionQueue.tasks_in_progress_or_pending():
+          heartbeat_interval = max(heartbeat_interval, idle_heartbeat_interval)
+          logger.debug("Waiting for commands, heartbeat interval is %s seconds", heartbeat_interval)
+
         if 'registrationCommand' in response.keys():
           # check if the registration command is None. If none skip
           if response['registrationCommand'] is not None:
@@ -336,6 +398,11 @@ class Controller(threading.Thread):
             self.repeatRegistration = True
             return
 
+        if 'executionCommands' in response.keys():
+          # on failure the heartbeat is repeated and the server sends this
+          # response again
+          self.resolveConfigurationSnapshots(response['executionCommands'])
+
         used_ram = get_used_ram()/1000
         # dealing with a possible memory leaks
         if self.max_ram_soft and used_ram >= self.max_ram_soft and not self.actionQueue.tasks_in_progress_or_pending():
@@ -350,6 +417,7 @@ class Controller(threading.Thread):
           self.restartAgent()
         else:
           self.responseId = serverId
+          self.heartbeat.acknowledge()
           if send_state:
             last_state_timestamp = time.time()
 
@@ -455,6 +523,7 @@ class Controller(threading.Thread):
       self.actionQueue = ActionQueue(self.config, controller=self)
       self.actionQueue.start()
       self.spawnStatusCommandsExecutorProcess()
+      self.command_push_listener.start()
       self.register = Register(self.config)
       self.heartbeat = Heartbeat(self.actionQueue, self.config, self.alert_scheduler_handler.collector())
   
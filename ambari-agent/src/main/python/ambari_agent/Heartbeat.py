@@ -19,6 +19,7 @@ limitations under the License.
 '''
 
 import ambari_simplejson as json
+import copy
 import logging
 import os
 import time
@@ -34,15 +35,71 @@ logger = logging.getLogger(__name__)
 firstContact = True
 class Heartbeat:
 
+  FULL_STATE_SYNC_INTERVAL_DEFAULT_SEC = 600
+
   def __init__(self, actionQueue, config=None, alert_collector=None):
     self.actionQueue = actionQueue
     self.config = config
     self.reports = []
     self.collector = alert_collector
+    self.full_state_sync_interval = int(config.get('heartbeat', 'full_state_sync_interval_seconds',
+                                                   self.FULL_STATE_SYNC_INTERVAL_DEFAULT_SEC)) \
+      if config is not None else self.FULL_STATE_SYNC_INTERVAL_DEFAULT_SEC
+    self.reset_state()
+
+  def reset_state(self):
+    """
+    Forgets the component statuses and host state known to the server, the
+    next heartbeats carry all of them. Called after registration.
+    """
+    # state the server accepted, component statuses by component and
+    # (agentEnv, mounts) of the host
+    self.acknowledged_component_status = {}
+    self.acknowledged_host_state = None
+    # state sent in the last built heartbeat, accepted with its response
+    self.sent_component_status = {}
+    self.sent_host_state = None
+    self.last_full_sync_timestamp = time.time()
+
+  def acknowledge(self):
+    """
+    Called once the server responded to the last built heartbeat, the state it
+    carried is what the following heartbeats are compared to.
+    """
+    self.acknowledged_component_status.update(self.sent_component_status)
+    if self.sent_host_state is not None:
+      self.acknowledged_host_state = self.sent_host_state
+    self.sent_component_status = {}
+    self.sent_host_state = None
+
+  def changed_component_status(self, component_status, reports):
+    """
+    Drops the statuses which are the same as the ones the server last accepted
+    for their components. Statuses of components which ran commands are always
+    sent since the command result may have changed the state on the server.
+    """
+    for report in reports:
+      self.acknowledged_component_status.pop(
+        (report.get('clusterName'), report.get('serviceName'), report.get('role')), None)
+
+    changed = []
+    for status in component_status:
+      key = (status.get('clusterName'), status.get('serviceName'), status.get('componentName'))
+      if self.acknowledged_component_status.get(key) != status:
+        changed.append(status)
+        self.sent_component_status[key] = status
+    return changed
 
   def build(self, id='-1', add_state=False, componentsMapped=False):
     global clusterId, clusterDefinitionRevision, firstContact
     timestamp = int(time.time()*1000)
+
+    # periodically send everything in case the server state drifted
+    if time.time() - self.last_full_sync_timestamp > self.full_state_sync_interval:
+      logger.info("Sending full component and host state with the next heartbeats")
+      self.acknowledged_component_status = {}
+      self.acknowledged_host_state = None
+      self.last_full_sync_timestamp = time.time()
     queueResult = self.actionQueue.result()
     recovery_timestamp = self.actionQueue.controller.recovery_manager.recovery_timestamp
 
@@ -65,7 +122,8 @@ class Heartbeat:
 
     if len(queueResult) != 0:
       heartbeat['reports'] = queueResult['reports']
-      heartbeat['componentStatus'] = queueResult['componentStatus']
+      heartbeat['componentStatus'] = self.changed_component_status(queueResult['componentStatus'],
+                                                                   queueResult['reports'])
       if len(heartbeat['reports']) > 0:
         # There may be IN_PROGRESS tasks
         commandsInProgress = True
@@ -92,10 +150,18 @@ class Heartbeat:
       # for now, just do the same work as registration
       # this must be the last step before returning heartbeat
       hostInfo.register(nodeInfo, componentsMapped, commandsInProgress)
-      heartbeat['agentEnv'] = nodeInfo
       mounts = Hardware.osdisks(self.config)
-      heartbeat['mounts'] = mounts
 
+      # the server keeps the last agentEnv and mounts when they are left out
+      host_state = (copy.deepcopy(nodeInfo), mounts)
+      if 'hostHealth' in host_state[0]:
+        host_state[0]['hostHealth'].pop('agentTimeStampAtReporting', None)
+      if host_state != self.acknowledged_host_state:
+        heartbeat['agentEnv'] = nodeInfo
+        heartbeat['mounts'] = mounts
+        self.sent_host_state = host_state
+      else:
+        logger.info("Host info/state did not change, not adding it to heartbeat message.")
 
       logger.debug("agentEnv: %s", str(nodeInfo))
       logger.debug("mounts: %s", str(mounts))
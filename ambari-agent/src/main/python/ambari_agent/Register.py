@@ -52,6 +52,7 @@ class Register:
                  'hardwareProfile'   : self.hardware.get(),
                  'agentEnv'          : agentEnv,
                  'agentVersion'      : version,
-                 'prefix'            : self.config.get('agent', 'prefix')
+                 'prefix'            : self.config.get('agent', 'prefix'),
+                 'configurationSnapshotsSupported' : True
                }
     return register
@@ -0,0 +1,72 @@
+#!/usr/bin/env python
+# -*- coding: utf-8 -*-
+
+'''
+Licensed to the Apache Software Foundation (ASF) under one
+or more contributor license agreements.  See the NOTICE file
+distributed with this work for additional information
+regarding copyright ownership.  The ASF licenses this file
+to you under the Apache License, Version 2.0 (the
+"License"); you may not use this file except in compliance
+with the License.  You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+'''
+
+import unittest
+from mock.mock import patch, MagicMock
+from ambari_agent.AmbariConfig import AmbariConfig
+from ambari_agent import CommandPushListener
+
+
+class TestCommandPushListener(unittest.TestCase):
+
+  def setUp(self):
+    self.config = AmbariConfig()
+    self.config.set('server', 'secured_url_port', '8441')
+    self.controller = MagicMock()
+    self.controller.hostname = 'c6401.ambari.apache.org'
+    self.listener = CommandPushListener.CommandPushListener(self.config, 'c6400.ambari.apache.org', self.controller)
+
+  def test_commands_url(self):
+    self.assertEquals('https://c6400.ambari.apache.org:8441/agent/v1/commands/c6401.ambari.apache.org',
+                      self.listener.commands_url)
+
+  def test_get_idle_heartbeat_interval(self):
+    # not enabled by the server
+    self.listener.connected = True
+    self.assertFalse(self.listener.is_enabled())
+    self.assertEquals(None, self.listener.get_idle_heartbeat_interval())
+
+    self.config.update_configuration_from_registration({'agentConfig': {
+      CommandPushListener.CommandPushListener.ENABLED_KEY: 'true',
+      CommandPushListener.CommandPushListener.IDLE_HEARTBEAT_INTERVAL_KEY: '30'}})
+    self.assertTrue(self.listener.is_enabled())
+    self.assertEquals(30, self.listener.get_idle_heartbeat_interval())
+
+    # not waiting on the server
+    self.listener.connected = False
+    self.assertEquals(None, self.listener.get_idle_heartbeat_interval())
+
+  @patch.object(CommandPushListener, "security")
+  def test_has_pending_commands(self, security_mock):
+    CachedHTTPSConnection_mock = security_mock.CachedHTTPSConnection
+    connection = CachedHTTPSConnection_mock.return_value
+    connection.request.return_value = '{"hasPendingCommands":true}'
+    self.assertTrue(self.listener.has_pending_commands())
+    self.assertTrue(self.listener.connected)
+
+    connection.request.return_value = '{"hasPendingCommands":false}'
+    self.assertFalse(self.listener.has_pending_commands())
+    self.assertEquals(1, CachedHTTPSConnection_mock.call_count)
+    self.assertEquals(self.listener.commands_url, connection.request.call_args[0][0].get_full_url())
+
+
+if __name__ == "__main__":
+  unittest.main()
@@ -35,6 +35,7 @@ from only_for_platform import not_for_platform, os_distro_value, PLATFORM_WINDOW
 from ambari_agent import Controller, ActionQueue, Register
 from ambari_agent import hostname
 from ambari_agent.Controller import AGENT_AUTO_RESTART_EXIT_CODE
+from ambari_agent.CommandPushListener import CommandPushListener
 from ambari_commons import OSCheck
 from ambari_agent.Hardware import Hardware
 from ambari_agent.ExitHelper import ExitHelper
@@ -45,6 +46,7 @@ import ambari_commons
 @not_for_platform(PLATFORM_WINDOWS)
 @patch.object(OSCheck, "os_distribution", new = MagicMock(return_value = os_distro_value))
 @patch.object(Controller.Controller, "spawnStatusCommandsExecutorProcess", new = MagicMock())
+@patch.object(CommandPushListener, "start", new = MagicMock())
 class TestController(unittest.TestCase):
 
   logger = logging.getLogger()
@@ -515,6 +517,7 @@ class TestController(unittest.TestCase):
 
     # executionCommands
     self.controller.responseId = 1
+    self.controller.resolveConfigurationSnapshots = MagicMock(name="resolveConfigurationSnapshots")
     addToQueue = MagicMock(name="addToQueue")
     self.controller.addToQueue = addToQueue
     response["executionCommands"] = "executionCommands"
@@ -624,6 +627,39 @@ class TestController(unittest.TestCase):
     self.assertEquals(LiveStatus_mock.CLIENT_COMPONENTS, client_components_expected)
     self.assertEquals(LiveStatus_mock.COMPONENTS, components_expected)
 
+  def test_resolveConfigurationSnapshots(self):
+    self.controller.configurationsUrl = "foo_url/"
+    sendRequest = Mock()
+    self.controller.sendRequest = sendRequest
+    sendRequest.return_value = {"hash": "abc",
+                                "configurations": {"core-site": {"a": "1"}},
+                                "configuration_attributes": {"core-site": {"final": {"a": "true"}}}}
+
+    commands = [{"commandId": "1-1", "configurationsHash": "abc"},
+                {"commandId": "1-2", "configurationsHash": "abc"},
+                {"commandId": "1-3", "configurations": {"hdfs-site": {"b": "2"}}}]
+    self.controller.resolveConfigurationSnapshots(commands)
+
+    # fetched once, each command has its own copy
+    sendRequest.assert_called_once_with('foo_url/abc', None)
+    self.assertEquals({"core-site": {"a": "1"}}, commands[0]["configurations"])
+    self.assertEquals({"core-site": {"final": {"a": "true"}}}, commands[1]["configuration_attributes"])
+    self.assertFalse(commands[0]["configurations"] is commands[1]["configurations"])
+    self.assertEquals({"hdfs-site": {"b": "2"}}, commands[2]["configurations"])
+
+    # commands carrying their configurations fill the cache
+    commands = [{"commandId": "2-1", "configurationsHash": "def", "configurations": {"hdfs-site": {"b": "2"}}},
+                {"commandId": "2-2", "configurationsHash": "def"}]
+    self.controller.resolveConfigurationSnapshots(commands)
+    self.assertEquals(1, sendRequest.call_count)
+    self.assertEquals({"hdfs-site": {"b": "2"}}, commands[1]["configurations"])
+
+    # the least recently used snapshots are dropped
+    for i in range(Controller.Controller.MAX_CONFIGURATION_SNAPSHOTS):
+      self.controller.cacheConfigurationSnapshot(str(i), {"configurations": {}})
+    self.assertEquals(Controller.Controller.MAX_CONFIGURATION_SNAPSHOTS, len(self.controller.configuration_snapshots))
+    self.assertFalse("abc" in self.controller.configuration_snapshots)
+
   @patch("socket.gethostbyname")
   @patch("ambari_simplejson.dumps")
   @patch("time.sleep")
@@ -704,6 +740,7 @@ class TestController(unittest.TestCase):
     self.controller.recovery_manager.process_status_commands = process_status_commands
     set_paused = MagicMock(name = "set_paused")
     self.controller.recovery_manager.set_paused = set_paused
+    self.controller.resolveConfigurationSnapshots = MagicMock(name="resolveConfigurationSnapshots")
 
     self.controller.responseId = 0
     response = {"responseId":1,
@@ -248,5 +248,83 @@ class TestHeartbeat(TestCase):
     self.assertFalse(args[2])
 
 
+  @patch.object(ActionQueue, "result")
+  def test_build_component_status_delta(self, result_mock):
+    config = AmbariConfig.AmbariConfig()
+    config.set('agent', 'prefix', 'tmp')
+    config.set('agent', 'cache_dir', "/var/lib/ambari-agent/cache")
+    dummy_controller = MagicMock()
+    actionQueue = ActionQueue(config, dummy_controller)
+    heartbeat = Heartbeat(actionQueue)
+
+    datanode = {'status': 'STARTED', 'clusterName': 'cc', 'serviceName': 'HDFS', 'componentName': 'DATANODE'}
+    namenode = {'status': 'STARTED', 'clusterName': 'cc', 'serviceName': 'HDFS', 'componentName': 'NAMENODE'}
+    result_mock.return_value = {'reports': [], 'componentStatus': [datanode, namenode]}
+
+    self.assertEquals([datanode, namenode], heartbeat.build(10)['componentStatus'])
+    # not acknowledged by the server yet
+    self.assertEquals([datanode, namenode], heartbeat.build(10)['componentStatus'])
+
+    heartbeat.acknowledge()
+    self.assertEquals([], heartbeat.build(11)['componentStatus'])
+
+    # changed status
+    stopped_namenode = dict(namenode, status='INSTALLED')
+    result_mock.return_value = {'reports': [], 'componentStatus': [datanode, stopped_namenode]}
+    self.assertEquals([stopped_namenode], heartbeat.build(12)['componentStatus'])
+    heartbeat.acknowledge()
+
+    # command ran for the component
+    result_mock.return_value = {'reports': [{'status': 'FAILED', 'clusterName': 'cc', 'serviceName': 'HDFS',
+                                             'role': 'DATANODE', 'taskId': 3}],
+                                'componentStatus': [datanode, stopped_namenode]}
+    self.assertEquals([datanode], heartbeat.build(13)['componentStatus'])
+    heartbeat.acknowledge()
+
+    # everything is sent again after registration
+    heartbeat.reset_state()
+    result_mock.return_value = {'reports': [], 'componentStatus': [datanode, stopped_namenode]}
+    self.assertEquals([datanode, stopped_namenode], heartbeat.build(1)['componentStatus'])
+
+  @patch.object(Hardware, "osdisks")
+  @patch.object(HostInfoLinux, 'register')
+  def test_build_host_state_delta(self, register_mock, osdisks_mock):
+    config = AmbariConfig.AmbariConfig()
+    config.set('agent', 'prefix', 'tmp')
+    config.set('agent', 'cache_dir', "/var/lib/ambari-agent/cache")
+    dummy_controller = MagicMock()
+    actionQueue = ActionQueue(config, dummy_controller)
+    heartbeat = Heartbeat(actionQueue, config)
+
+    agent_env = {'hostHealth': {'liveServices': []}}
+    def register(node_info, components_mapped, commands_in_progress):
+      node_info.update(agent_env)
+      node_info['hostHealth'] = dict(agent_env['hostHealth'], agentTimeStampAtReporting=len(register_mock.call_args_list))
+    register_mock.side_effect = register
+    osdisks_mock.return_value = [{'mountpoint': '/'}]
+
+    hb = heartbeat.build(10, add_state=True)
+    self.assertTrue('agentEnv' in hb)
+    self.assertEquals([{'mountpoint': '/'}], hb['mounts'])
+    heartbeat.acknowledge()
+
+    # only the reporting time changed
+    hb = heartbeat.build(11, add_state=True)
+    self.assertFalse('agentEnv' in hb)
+    self.assertFalse('mounts' in hb)
+    heartbeat.acknowledge()
+
+    osdisks_mock.return_value = [{'mountpoint': '/'}, {'mountpoint': '/grid/0'}]
+    hb = heartbeat.build(12, add_state=True)
+    self.assertTrue('agentEnv' in hb)
+    self.assertEquals(2, len(hb['mounts']))
+    heartbeat.acknowledge()
+
+    # periodic full sync
+    heartbeat.last_full_sync_timestamp = 0
+    hb = heartbeat.build(13, add_state=True)
+    self.assertTrue('agentEnv' in hb)
+
+
 if __name__ == "__main__":
   unittest.main(verbosity=2)
@@ -62,6 +62,7 @@ class TestRegistration(TestCase):
     self.assertEquals(not data['agentEnv']['umask']== "", True, "agents umask should not be empty")
     self.assertEquals(data['currentPingPort'] == 33777, True, "current ping port should be 33777")
     self.assertEquals(data['prefix'], config.get('agent', 'prefix'), 'The prefix path does not match')
-    self.assertEquals(len(data), 9)
+    self.assertTrue(data['configurationSnapshotsSupported'])
+    self.assertEquals(len(data), 10)
 
 
@@ -128,14 +128,14 @@ public class MetricsManager {
       
       LOG.debug("Adding metrics=" + metric.metricsName);
       if (metric.isPointInTime) {
-        timelineMetric.getMetricValues().put(currMSLong, new Double(currCount));
+        timelineMetric.addMetricValue(currMSLong, new Double(currCount));
       } else {
         Double value = timelineMetric.getMetricValues().get(currMSLong);
         if (value == null) {
           value = new Double(0);
         }
         value += (currCount - metric.prevPublishValue);
-        timelineMetric.getMetricValues().put(currMSLong, value);
+        timelineMetric.addMetricValue(currMSLong, value);
         metric.prevPublishValue = currCount;
       }
     }
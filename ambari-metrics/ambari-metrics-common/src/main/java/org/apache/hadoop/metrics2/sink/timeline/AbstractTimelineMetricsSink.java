@@ -52,6 +52,7 @@ import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -77,6 +78,11 @@ public abstract class AbstractTimelineMetricsSink {
   public static final String SSL_KEYSTORE_TYPE_PROPERTY = "truststore.type";
   public static final String SSL_KEYSTORE_PASSWORD_PROPERTY = "truststore.password";
   public static final String COLLECTOR_LIVE_NODES_PATH = "/ws/v1/timeline/metrics/livenodes";
+  // Returned by the collector when its ingest queue is full
+  public static final int HTTP_TOO_MANY_REQUESTS = 429;
+  public static final int DEFAULT_RETRY_AFTER_SECONDS = 10;
+  // Posts kept for retry while the collector pushes back
+  public static final int MAX_DEFERRED_POSTS = 10;
 
   protected static final AtomicInteger failedCollectorConnectionsCounter = new AtomicInteger(0);
   public static int NUMBER_OF_SKIPPED_COLLECTOR_EXCEPTIONS = 100;
@@ -109,6 +115,11 @@ public abstract class AbstractTimelineMetricsSink {
 
   private final Random rand = new Random();
 
+  // Posts rejected by a busy collector, oldest first
+  private final LinkedList<String> deferredMetricsJson = new LinkedList<>();
+  // No posts before this time, as asked by the collector with Retry-After
+  private volatile long retryAfterTime = 0;
+
   private static final int COLLECTOR_HOST_CACHE_MAX_EXPIRATION_MINUTES = 75;
   private static final int COLLECTOR_HOST_CACHE_MIN_EXPIRATION_MINUTES = 60;
 
@@ -134,7 +145,61 @@ public abstract class AbstractTimelineMetricsSink {
     isInitializedForHA = true;
   }
 
+  /**
+   * Post metrics to the collector. While the collector pushes back with
+   * HTTP 429 the metrics are kept and posted again once the Retry-After
+   * delay is over, ahead of newer metrics. Back pressure does not count as
+   * a failed connection, so a busy collector is not failed over.
+   */
   protected boolean emitMetricsJson(String connectUrl, String jsonData) {
+    if (!emitDeferredMetricsJson(connectUrl)) {
+      deferMetricsJson(jsonData);
+      return false;
+    }
+    return postMetricsJson(connectUrl, jsonData);
+  }
+
+  /**
+   * @return false if the collector still pushes back
+   */
+  private boolean emitDeferredMetricsJson(String connectUrl) {
+    int pending;
+    synchronized (deferredMetricsJson) {
+      pending = deferredMetricsJson.size();
+    }
+    // Posts rejected again are deferred behind the others
+    for (int i = 0; i < pending && !isBackingOff(); i++) {
+      String jsonData;
+      synchronized (deferredMetricsJson) {
+        jsonData = deferredMetricsJson.pollFirst();
+      }
+      if (jsonData == null) {
+        break;
+      }
+      postMetricsJson(connectUrl, jsonData);
+    }
+    return !isBackingOff();
+  }
+
+  private boolean isBackingOff() {
+    return System.currentTimeMillis() < retryAfterTime;
+  }
+
+  private void deferMetricsJson(String jsonData) {
+    if (jsonData == null) {
+      return;
+    }
+    synchronized (deferredMetricsJson) {
+      deferredMetricsJson.addLast(jsonData);
+      if (deferredMetricsJson.size() > MAX_DEFERRED_POSTS) {
+        deferredMetricsJson.removeFirst();
+        LOG.info("Collector is busy, dropping the oldest of " + MAX_DEFERRED_POSTS +
+          " deferred metrics posts.");
+      }
+    }
+  }
+
+  private boolean postMetricsJson(String connectUrl, String jsonData) {
     int timeout = getTimeoutSeconds() * 1000;
     HttpURLConnection connection = null;
     try {
@@ -159,6 +224,22 @@ public abstract class AbstractTimelineMetricsSink {
 
       int statusCode = connection.getResponseCode();
 
+      if (statusCode == HTTP_TOO_MANY_REQUESTS) {
+        int retryAfterSeconds = getRetryAfterSeconds(connection);
+        LOG.info("Collector " + connectUrl + " is busy, retrying metrics post in " +
+          retryAfterSeconds + " seconds.");
+        retryAfterTime = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(retryAfterSeconds);
+        deferMetricsJson(jsonData);
+        // The collector is reachable, this is not a failed connection
+        failedCollectorConnectionsCounter.set(0);
+        try {
+          cleanupInputStream(connection.getErrorStream());
+        } catch (IOException e) {
+          //NOP
+        }
+        return false;
+      }
+
       if (statusCode != 200) {
         LOG.info("Unable to POST metrics to collector, " + connectUrl + ", " +
             "statusCode = " + statusCode);
@@ -200,6 +281,18 @@ public abstract class AbstractTimelineMetricsSink {
     }
   }
 
+  private int getRetryAfterSeconds(HttpURLConnection connection) {
+    String retryAfter = connection.getHeaderField("Retry-After");
+    if (retryAfter != null) {
+      try {
+        return Math.max(0, Integer.parseInt(retryAfter.trim()));
+      } catch (NumberFormatException e) {
+        // HTTP date form is not sent by the collector
+      }
+    }
+    return DEFAULT_RETRY_AFTER_SECONDS;
+  }
+
   protected boolean emitMetrics(TimelineMetrics metrics) {
     String collectorHost;
     // Get cached target
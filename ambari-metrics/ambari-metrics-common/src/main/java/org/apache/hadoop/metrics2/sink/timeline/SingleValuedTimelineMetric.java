@@ -101,7 +101,7 @@ public class SingleValuedTimelineMetric {
     metric.setInstanceId(this.instanceId);
     metric.setStartTime(this.startTime);
     metric.setTimestamp(this.timestamp);
-    metric.getMetricValues().put(timestamp, value);
+    metric.addMetricValue(timestamp, value);
     return metric;
   }
 }
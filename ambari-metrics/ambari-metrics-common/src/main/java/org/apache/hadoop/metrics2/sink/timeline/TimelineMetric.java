@@ -28,6 +28,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.map.annotate.JsonDeserialize;
 
 @XmlRootElement(name = "metric")
@@ -44,7 +45,10 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
   private long startTime;
   private String type;
   private String units;
-  private TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+  // Array backed values, the TreeMap of the JSON "metrics" element is only
+  // built on request. Guarded by this, the same instance is read by several
+  // threads on the collector.
+  private TimelineMetricSeries metricSeries = new TimelineMetricSeries();
   private Map<String, String> metadata = new HashMap<>();
 
   // default
@@ -62,7 +66,9 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     setInstanceId(metric.getInstanceId());
     setHostName(metric.getHostName());
     setStartTime(metric.getStartTime());
-    setMetricValues(new TreeMap<Long, Double>(metric.getMetricValues()));
+    synchronized (metric) {
+      setMetricSeries(new TimelineMetricSeries(metric.metricSeries));
+    }
   }
 
   @XmlElement(name = "metricname")
@@ -137,17 +143,44 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     this.units = units;
   }
 
+  /**
+   * Copy of the metric values. Changes to the returned map are not reflected
+   * in the metric, use {@link #addMetricValue(long, Double)},
+   * {@link #addMetricValues(Map)} or {@link #getMetricSeries()} instead.
+   */
   @XmlElement(name = "metrics")
-  public TreeMap<Long, Double> getMetricValues() {
-    return metricValues;
+  public synchronized TreeMap<Long, Double> getMetricValues() {
+    return metricSeries.toTreeMap();
+  }
+
+  public synchronized void setMetricValues(TreeMap<Long, Double> metricValues) {
+    this.metricSeries = TimelineMetricSeries.fromMap(metricValues);
+  }
+
+  public synchronized void addMetricValue(long timestamp, Double value) {
+    metricSeries.append(timestamp, value != null ? value : Double.NaN);
+  }
+
+  public synchronized void addMetricValues(Map<Long, Double> metricValues) {
+    metricSeries.putAll(metricValues);
+  }
+
+  /**
+   * Array backed metric values. Null values of the map are kept as NaN and
+   * come back as null from {@link #getMetricValues()}.
+   */
+  @JsonIgnore
+  public synchronized TimelineMetricSeries getMetricSeries() {
+    return metricSeries;
   }
 
-  public void setMetricValues(TreeMap<Long, Double> metricValues) {
-    this.metricValues = metricValues;
+  @JsonIgnore
+  public synchronized void setMetricSeries(TimelineMetricSeries metricSeries) {
+    this.metricSeries = metricSeries != null ? metricSeries : new TimelineMetricSeries();
   }
 
-  public void addMetricValues(Map<Long, Double> metricValues) {
-    this.metricValues.putAll(metricValues);
+  public synchronized void addMetricValues(TimelineMetricSeries metricSeries) {
+    this.metricSeries.merge(metricSeries);
   }
 
   @XmlElement(name = "metadata")
@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Timeseries backed by sorted parallel long[] / double[] arrays. Avoids the
+ * boxed key, boxed value and tree node that a TreeMap keeps per sample.
+ * Null values are stored as {@link Double#NaN} and turned back into null
+ * by {@link #toTreeMap()}.
+ *
+ * Range views returned by {@link #tailSeries(long)} and
+ * {@link #subSeries(long, long)} share the backing arrays with the original
+ * series; both are copied on the next modification.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class TimelineMetricSeries {
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private long[] timestamps;
+  private double[] values;
+  private int offset;
+  private int size;
+  private boolean shared;
+
+  public TimelineMetricSeries() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TimelineMetricSeries(int initialCapacity) {
+    timestamps = new long[Math.max(initialCapacity, 1)];
+    values = new double[timestamps.length];
+  }
+
+  // copy constructor
+  public TimelineMetricSeries(TimelineMetricSeries series) {
+    timestamps = Arrays.copyOfRange(series.timestamps, series.offset,
+      series.offset + Math.max(series.size, 1));
+    values = Arrays.copyOfRange(series.values, series.offset,
+      series.offset + Math.max(series.size, 1));
+    size = series.size;
+  }
+
+  private TimelineMetricSeries(long[] timestamps, double[] values,
+                               int offset, int size) {
+    this.timestamps = timestamps;
+    this.values = values;
+    this.offset = offset;
+    this.size = size;
+    this.shared = true;
+  }
+
+  public static TimelineMetricSeries fromMap(Map<Long, Double> metricValues) {
+    if (metricValues == null) {
+      return new TimelineMetricSeries();
+    }
+    TimelineMetricSeries series = new TimelineMetricSeries(metricValues.size());
+    if (metricValues instanceof TreeMap) {
+      for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+        series.append(entry.getKey(), unbox(entry.getValue()));
+      }
+    } else {
+      series.putAll(metricValues);
+    }
+    return series;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[offset + index];
+  }
+
+  public double getValue(int index) {
+    checkIndex(index);
+    return values[offset + index];
+  }
+
+  public long firstTimestamp() {
+    return getTimestamp(0);
+  }
+
+  public long lastTimestamp() {
+    return getTimestamp(size - 1);
+  }
+
+  /**
+   * Add a point. Points with increasing timestamps are appended in constant
+   * time, anything else is inserted in order, replacing the value of an
+   * existing timestamp.
+   */
+  public void append(long timestamp, double value) {
+    if (size == 0 || timestamp > timestamps[offset + size - 1]) {
+      ensureWritable(size + 1);
+      timestamps[size] = timestamp;
+      values[size] = value;
+      size++;
+    } else {
+      put(timestamp, value);
+    }
+  }
+
+  private void put(long timestamp, double value) {
+    int index = Arrays.binarySearch(timestamps, offset, offset + size, timestamp);
+    if (index >= 0) {
+      int replaceAt = index - offset;
+      ensureWritable(size);
+      values[replaceAt] = value;
+      return;
+    }
+    int insertAt = -index - 1 - offset;
+    ensureWritable(size + 1);
+    System.arraycopy(timestamps, insertAt, timestamps, insertAt + 1, size - insertAt);
+    System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+    timestamps[insertAt] = timestamp;
+    values[insertAt] = value;
+    size++;
+  }
+
+  public void putAll(Map<Long, Double> metricValues) {
+    if (metricValues == null) {
+      return;
+    }
+    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+      append(entry.getKey(), unbox(entry.getValue()));
+    }
+  }
+
+  /**
+   * Merge another series into this one. Values of the other series win for
+   * timestamps present in both, same as {@link Map#putAll(Map)}.
+   */
+  public void merge(TimelineMetricSeries other) {
+    if (other == null || other.isEmpty()) {
+      return;
+    }
+    if (size == 0 || other.firstTimestamp() > lastTimestamp()) {
+      ensureWritable(size + other.size);
+      System.arraycopy(other.timestamps, other.offset, timestamps, size, other.size);
+      System.arraycopy(other.values, other.offset, values, size, other.size);
+      size += other.size;
+      return;
+    }
+
+    long[] mergedTimestamps = new long[size + other.size];
+    double[] mergedValues = new double[mergedTimestamps.length];
+    int i = 0, j = 0, k = 0;
+    while (i < size && j < other.size) {
+      long ts = timestamps[offset + i];
+      long otherTs = other.timestamps[other.offset + j];
+      if (ts < otherTs) {
+        mergedTimestamps[k] = ts;
+        mergedValues[k++] = values[offset + i++];
+      } else {
+        if (ts == otherTs) {
+          i++;
+        }
+        mergedTimestamps[k] = otherTs;
+        mergedValues[k++] = other.values[other.offset + j++];
+      }
+    }
+    while (i < size) {
+      mergedTimestamps[k] = timestamps[offset + i];
+      mergedValues[k++] = values[offset + i++];
+    }
+    while (j < other.size) {
+      mergedTimestamps[k] = other.timestamps[other.offset + j];
+      mergedValues[k++] = other.values[other.offset + j++];
+    }
+    timestamps = mergedTimestamps;
+    values = mergedValues;
+    offset = 0;
+    size = k;
+    shared = false;
+  }
+
+  /**
+   * @return view of the points with timestamp >= fromTimestamp
+   */
+  public TimelineMetricSeries tailSeries(long fromTimestamp) {
+    return subSeries(fromTimestamp, Long.MAX_VALUE);
+  }
+
+  /**
+   * @return view of the points with fromTimestamp <= timestamp < toTimestamp
+   */
+  public TimelineMetricSeries subSeries(long fromTimestamp, long toTimestamp) {
+    int from = lowerBound(fromTimestamp);
+    int to = toTimestamp == Long.MAX_VALUE ? size : lowerBound(toTimestamp);
+    shared = true;
+    return new TimelineMetricSeries(timestamps, values, offset + from,
+      Math.max(to - from, 0));
+  }
+
+  public TreeMap<Long, Double> toTreeMap() {
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    for (int i = offset; i < offset + size; i++) {
+      metricValues.put(timestamps[i], Double.isNaN(values[i]) ? null : values[i]);
+    }
+    return metricValues;
+  }
+
+  private int lowerBound(long timestamp) {
+    int index = Arrays.binarySearch(timestamps, offset, offset + size, timestamp);
+    return (index >= 0 ? index : -index - 1) - offset;
+  }
+
+  /**
+   * Make sure the arrays are owned by this series, start at index 0 and can
+   * hold the required number of points.
+   */
+  private void ensureWritable(int required) {
+    if (!shared && offset == 0 && required <= timestamps.length) {
+      return;
+    }
+    int capacity = Math.max(required, size + (size >> 1) + 1);
+    long[] newTimestamps = new long[capacity];
+    double[] newValues = new double[capacity];
+    System.arraycopy(timestamps, offset, newTimestamps, 0, size);
+    System.arraycopy(values, offset, newValues, 0, size);
+    timestamps = newTimestamps;
+    values = newValues;
+    offset = 0;
+    shared = false;
+  }
+
+  private static double unbox(Double value) {
+    return value != null ? value : Double.NaN;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
@@ -22,6 +22,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 
 import java.util.ArrayList;
@@ -29,7 +30,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 
 @InterfaceAudience.Public
@@ -75,26 +75,25 @@ public class TimelineMetricsCache {
     }
 
     public synchronized void putMetric(TimelineMetric metric) {
-      TreeMap<Long, Double> metricValues = this.timelineMetric.getMetricValues();
-      if (metricValues.size() > maxRecsPerName) {
+      TimelineMetricSeries metricSeries = this.timelineMetric.getMetricSeries();
+      if (metricSeries.size() > maxRecsPerName) {
         // remove values for eldest maxEvictionTimeInMillis
         long newEldestTimestamp = oldestTimestamp + maxEvictionTimeInMillis;
-        TreeMap<Long, Double> metricsSubSet =
-          new TreeMap<>(metricValues.tailMap(newEldestTimestamp));
+        TimelineMetricSeries metricsSubSet = metricSeries.tailSeries(newEldestTimestamp);
         if (metricsSubSet.isEmpty()) {
           oldestTimestamp = metric.getStartTime();
           this.timelineMetric.setStartTime(metric.getStartTime());
         } else {
-          Long newStartTime = metricsSubSet.firstKey();
+          long newStartTime = metricsSubSet.firstTimestamp();
           oldestTimestamp = newStartTime;
           this.timelineMetric.setStartTime(newStartTime);
         }
-        this.timelineMetric.setMetricValues(metricsSubSet);
+        this.timelineMetric.setMetricSeries(metricsSubSet);
         LOG.warn("Metrics cache overflow. Values for metric " +
           metric.getMetricName() + " older than " + newEldestTimestamp +
           " were removed to clean up the cache.");
       }
-      this.timelineMetric.addMetricValues(metric.getMetricValues());
+      this.timelineMetric.addMetricValues(metric.getMetricSeries());
       updateTimeDiff(metric.getStartTime());
     }
 
@@ -196,17 +195,17 @@ public class TimelineMetricsCache {
 
   private void transformMetricValuesToDerivative(TimelineMetric timelineMetric) {
     String metricName = timelineMetric.getMetricName();
-    double firstValue = timelineMetric.getMetricValues().size() > 0
-        ? timelineMetric.getMetricValues().entrySet().iterator().next().getValue() : 0;
+    TimelineMetricSeries metricSeries = timelineMetric.getMetricSeries();
+    double firstValue = metricSeries.size() > 0 ? metricSeries.getValue(0) : 0;
     Double value = counterMetricLastValue.get(metricName);
     double previousValue = value != null ? value : firstValue;
-    Map<Long, Double> metricValues = timelineMetric.getMetricValues();
-    TreeMap<Long, Double>   newMetricValues = new TreeMap<Long, Double>();
-    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
-      newMetricValues.put(entry.getKey(), entry.getValue() - previousValue);
-      previousValue = entry.getValue();
+    TimelineMetricSeries newMetricSeries = new TimelineMetricSeries(metricSeries.size());
+    for (int i = 0; i < metricSeries.size(); i++) {
+      double currentValue = metricSeries.getValue(i);
+      newMetricSeries.append(metricSeries.getTimestamp(i), currentValue - previousValue);
+      previousValue = currentValue;
     }
-    timelineMetric.setMetricValues(newMetricValues);
+    timelineMetric.setMetricSeries(newMetricSeries);
     counterMetricLastValue.put(metricName, previousValue);
   }
 
@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractTimelineMetricsSinkTest {
+  private static final String COLLECTOR_URL = "http://collector:6188/ws/v1/timeline/metrics";
+
+  private TestTimelineMetricsSink sink;
+
+  @Before
+  public void setUp() {
+    sink = new TestTimelineMetricsSink();
+    AbstractTimelineMetricsSink.failedCollectorConnectionsCounter.set(0);
+  }
+
+  @Test
+  public void testBusyCollectorDefersPosts() throws Exception {
+    sink.respondWith(429, "1");
+    assertFalse(sink.emitMetricsJson(COLLECTOR_URL, "a"));
+    // Back pressure is not a connection failure
+    assertEquals(0, AbstractTimelineMetricsSink.failedCollectorConnectionsCounter.get());
+
+    // Not posted before the Retry-After delay
+    assertFalse(sink.emitMetricsJson(COLLECTOR_URL, "b"));
+    assertEquals(1, sink.connections.size());
+
+    Thread.sleep(1100);
+    sink.respondWith(200, null);
+    sink.respondWith(200, null);
+    sink.respondWith(200, null);
+    assertTrue(sink.emitMetricsJson(COLLECTOR_URL, "c"));
+    assertEquals(Arrays.asList("a", "a", "b", "c"), sink.getPostedBodies());
+  }
+
+  @Test
+  public void testRejectedAgainAfterRetry() throws Exception {
+    sink.respondWith(429, "1");
+    assertFalse(sink.emitMetricsJson(COLLECTOR_URL, "a"));
+
+    Thread.sleep(1100);
+    sink.respondWith(429, "1");
+    assertFalse(sink.emitMetricsJson(COLLECTOR_URL, "b"));
+    // The new post waits behind the rejected one
+    assertEquals(Arrays.asList("a", "a"), sink.getPostedBodies());
+    assertEquals(0, AbstractTimelineMetricsSink.failedCollectorConnectionsCounter.get());
+
+    Thread.sleep(1100);
+    sink.respondWith(200, null);
+    sink.respondWith(200, null);
+    sink.respondWith(200, null);
+    assertTrue(sink.emitMetricsJson(COLLECTOR_URL, "c"));
+    assertEquals(Arrays.asList("a", "a", "a", "b", "c"), sink.getPostedBodies());
+  }
+
+  private static class TestConnection extends HttpURLConnection {
+    private final int statusCode;
+    private final String retryAfter;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    TestConnection(int statusCode, String retryAfter) throws IOException {
+      super(new URL(COLLECTOR_URL));
+      this.statusCode = statusCode;
+      this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public int getResponseCode() {
+      return statusCode;
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+      return "Retry-After".equals(name) ? retryAfter : null;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return body;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      if (statusCode >= 400) {
+        throw new IOException("Server returned HTTP response code: " + statusCode);
+      }
+      return new ByteArrayInputStream(new byte[0]);
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+      return statusCode >= 400 ? new ByteArrayInputStream(new byte[0]) : null;
+    }
+
+    @Override
+    public void connect() {
+    }
+
+    @Override
+    public void disconnect() {
+    }
+
+    @Override
+    public boolean usingProxy() {
+      return false;
+    }
+  }
+
+  private static class TestTimelineMetricsSink extends AbstractTimelineMetricsSink {
+    private final LinkedList<TestConnection> responses = new LinkedList<TestConnection>();
+    private final List<TestConnection> connections = new ArrayList<TestConnection>();
+
+    void respondWith(int statusCode, String retryAfter) throws IOException {
+      responses.add(new TestConnection(statusCode, retryAfter));
+    }
+
+    List<String> getPostedBodies() throws IOException {
+      List<String> bodies = new ArrayList<String>();
+      for (TestConnection connection : connections) {
+        bodies.add(connection.body.toString("UTF-8"));
+      }
+      return bodies;
+    }
+
+    @Override
+    protected HttpURLConnection getConnection(String spec) {
+      TestConnection connection = responses.removeFirst();
+      connections.add(connection);
+      return connection;
+    }
+
+    @Override
+    protected String getCollectorUri(String host) {
+      return COLLECTOR_URL;
+    }
+
+    @Override
+    protected String getCollectorProtocol() {
+      return "http";
+    }
+
+    @Override
+    protected String getCollectorPort() {
+      return "6188";
+    }
+
+    @Override
+    protected int getTimeoutSeconds() {
+      return 10;
+    }
+
+    @Override
+    protected String getZookeeperQuorum() {
+      return "localhost:2181";
+    }
+
+    @Override
+    protected Collection<String> getConfiguredCollectorHosts() {
+      return Arrays.asList("localhost");
+    }
+
+    @Override
+    protected String getHostname() {
+      return "h1";
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricSeriesTest {
+
+  @Test
+  public void testAppendOutOfOrder() throws Exception {
+    TimelineMetricSeries series = new TimelineMetricSeries(2);
+    series.append(10L, 1.0);
+    series.append(30L, 3.0);
+    series.append(20L, 2.0);
+    series.append(30L, 4.0);
+
+    assertEquals(3, series.size());
+    assertEquals(10L, series.firstTimestamp());
+    assertEquals(30L, series.lastTimestamp());
+    assertEquals(2.0, series.getValue(1), 0.0);
+    assertEquals(4.0, series.getValue(2), 0.0);
+  }
+
+  @Test
+  public void testRangeViewIsIsolated() throws Exception {
+    TimelineMetricSeries series = new TimelineMetricSeries();
+    for (long i = 1; i <= 5; i++) {
+      series.append(i, (double) i);
+    }
+    TimelineMetricSeries tail = series.tailSeries(3L);
+    TimelineMetricSeries sub = series.subSeries(2L, 4L);
+    assertEquals(3, tail.size());
+    assertEquals(2, sub.size());
+
+    tail.append(6L, 6.0);
+    series.append(3L, 30.0);
+
+    assertEquals(3.0, tail.getValue(0), 0.0);
+    assertEquals(4, tail.size());
+    assertEquals(3.0, sub.getValue(1), 0.0);
+    assertEquals(30.0, series.getValue(2), 0.0);
+    assertEquals(5, series.size());
+  }
+
+  @Test
+  public void testMergeMatchesPutAll() throws Exception {
+    TreeMap<Long, Double> first = new TreeMap<Long, Double>();
+    first.put(1L, 1.0);
+    first.put(3L, 3.0);
+    first.put(5L, 5.0);
+    TreeMap<Long, Double> second = new TreeMap<Long, Double>();
+    second.put(2L, 20.0);
+    second.put(3L, 30.0);
+    second.put(7L, 70.0);
+
+    TimelineMetricSeries series = TimelineMetricSeries.fromMap(first);
+    series.merge(TimelineMetricSeries.fromMap(second));
+    first.putAll(second);
+
+    assertEquals(first, series.toTreeMap());
+  }
+
+  @Test
+  public void testTimelineMetricKeepsSeries() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("m1");
+    metric.addMetricValue(1L, 1.0);
+    TimelineMetricSeries series = metric.getMetricSeries();
+    series.append(2L, 2.0);
+    metric.addMetricValues(TimelineMetricSeries.fromMap(
+      new TreeMap<Long, Double>() {{ put(3L, 3.0); }}));
+
+    TimelineMetric copy = new TimelineMetric(metric);
+    assertEquals(3, metric.getMetricValues().size());
+    assertTrue(metric.getMetricValues().containsKey(2L));
+    assertEquals(metric.getMetricValues(), copy.getMetricValues());
+
+    // Reading the map neither replaces the series nor writes through
+    metric.getMetricValues().put(4L, 4.0);
+    assertSame(series, metric.getMetricSeries());
+    assertEquals(3, series.size());
+  }
+
+  @Test
+  public void testNullValuesSurviveConversion() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1L, 1.0);
+    values.put(2L, null);
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("m1");
+    metric.setMetricValues(values);
+
+    TimelineMetricSeries series = metric.getMetricSeries();
+    assertTrue(Double.isNaN(series.getValue(1)));
+
+    TreeMap<Long, Double> roundTrip = metric.getMetricValues();
+    assertEquals(2, roundTrip.size());
+    assertTrue(roundTrip.containsKey(2L));
+    assertNull(roundTrip.get(2L));
+  }
+
+  @Test
+  public void testConcurrentViewsOfSharedMetric() throws Exception {
+    final TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("m1");
+    for (long i = 0; i < 100; i++) {
+      metric.addMetricValue(i, (double) i);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+      for (int t = 0; t < 4; t++) {
+        final boolean useSeries = t % 2 == 0;
+        futures.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            for (int i = 0; i < 1000; i++) {
+              int size = useSeries ? metric.getMetricSeries().size() :
+                metric.getMetricValues().size();
+              if (size != 100) {
+                return false;
+              }
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
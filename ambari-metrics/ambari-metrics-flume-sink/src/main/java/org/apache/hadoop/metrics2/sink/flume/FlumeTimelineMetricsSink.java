@@ -227,7 +227,7 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
       timelineMetric.setInstanceId(component);
       timelineMetric.setAppId("FLUME_HANDLER");
       timelineMetric.setStartTime(currentTimeMillis);
-      timelineMetric.getMetricValues().put(currentTimeMillis, Double.parseDouble(attributeValue));
+      timelineMetric.addMetricValue(currentTimeMillis, Double.parseDouble(attributeValue));
       return timelineMetric;
     }
   }
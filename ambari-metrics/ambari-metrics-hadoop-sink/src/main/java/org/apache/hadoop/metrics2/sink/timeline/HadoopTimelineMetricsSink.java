@@ -315,7 +315,7 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
         timelineMetric.setAppId(serviceName);
         timelineMetric.setStartTime(startTime);
         timelineMetric.setType(metric.type() != null ? metric.type().name() : null);
-        timelineMetric.getMetricValues().put(startTime, value.doubleValue());
+        timelineMetric.addMetricValue(startTime, value.doubleValue());
         if (metadata != null) {
           timelineMetric.setMetadata(metadata);
         }
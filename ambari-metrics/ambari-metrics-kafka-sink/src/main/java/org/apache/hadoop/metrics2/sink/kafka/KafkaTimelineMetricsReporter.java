@@ -312,7 +312,7 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
       timelineMetric.setAppId(component);
       timelineMetric.setStartTime(currentTimeMillis);
       timelineMetric.setType(ClassUtils.getShortCanonicalName(attributeValue, "Number"));
-      timelineMetric.getMetricValues().put(currentTimeMillis, attributeValue.doubleValue());
+      timelineMetric.addMetricValue(currentTimeMillis, attributeValue.doubleValue());
       return timelineMetric;
     }
 
@@ -35,6 +35,7 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregator;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregatorFactory;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricClusterIngestAccumulator;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.MetricCollectorHAController;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataKey;
@@ -62,6 +63,17 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_SECOND_DISABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.OUT_OFF_BAND_DATA_TIME_ALLOWANCE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_INGEST_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_BUCKET;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_MAX_SERIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_SHARDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_HOT_TIER_WINDOW;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_QUERY_CACHE_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_QUERY_CACHE_MAX_POINTS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_WHITELIST_FILE;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.USE_GROUPBY_AGGREGATOR_QUERIES;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.DEFAULT_TOPN_HOSTS_LIMIT;
@@ -78,6 +90,24 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
   private TimelineMetricMetadataManager metricMetadataManager;
   private Integer defaultTopNHostsLimit;
   private MetricCollectorHAController haController;
+  private TimelineMetricsHotTier hotTier;
+  private TimelineMetricClusterIngestAccumulator clusterIngestAccumulator;
+  private TimelineMetricsQueryCache queryCache;
+  private long outOfBandTimeAllowance;
+  // Rejected writes are never persisted, so only accepted ones are served
+  // from memory or aggregated from it
+  private final PhoenixHBaseAccessor.IngestListener ingestListener =
+    new PhoenixHBaseAccessor.IngestListener() {
+      @Override
+      public void onMetricsAccepted(TimelineMetrics metrics) {
+        if (hotTier != null) {
+          hotTier.putMetrics(metrics);
+        }
+        if (clusterIngestAccumulator != null) {
+          clusterIngestAccumulator.putMetrics(metrics);
+        }
+      }
+    };
 
   /**
    * Construct the service.
@@ -105,6 +135,36 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       metricMetadataManager.initializeMetadata();
       // Initialize policies before TTL update
       hBaseAccessor.initPoliciesAndTTL();
+      outOfBandTimeAllowance = metricsConf.getLong(OUT_OFF_BAND_DATA_TIME_ALLOWANCE,
+        PhoenixHBaseAccessor.DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE);
+      if (metricsConf.getBoolean(TIMELINE_METRICS_HOT_TIER_ENABLED, false)) {
+        if (configuration.isDistributedOperationModeEnabled()) {
+          // Each collector only receives the metrics of part of the hosts
+          LOG.info("Hot tier is not supported in distributed mode.");
+        } else {
+          hotTier = new TimelineMetricsHotTier(
+            TimeUnit.MINUTES.toMillis(metricsConf.getInt(TIMELINE_METRICS_HOT_TIER_WINDOW, 120)),
+            TimeUnit.SECONDS.toMillis(metricsConf.getInt(TIMELINE_METRICS_HOT_TIER_BUCKET, 60)),
+            metricsConf.getInt(TIMELINE_METRICS_HOT_TIER_SHARDS, 16),
+            metricsConf.getInt(TIMELINE_METRICS_HOT_TIER_MAX_SERIES, 100000),
+            outOfBandTimeAllowance);
+        }
+      }
+      if (metricsConf.getBoolean(TIMELINE_METRICS_QUERY_CACHE_ENABLED, false)) {
+        queryCache = new TimelineMetricsQueryCache(
+          metricsConf.getLong(TIMELINE_METRICS_QUERY_CACHE_MAX_POINTS, 2000000),
+          TimelineMetricStoreMetrics.getInstance());
+      }
+      if (metricsConf.getBoolean(TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_INGEST_ENABLED, false)
+          && !metricsConf.getBoolean(CLUSTER_AGGREGATOR_SECOND_DISABLED, false)) {
+        if (configuration.isDistributedOperationModeEnabled()) {
+          LOG.info("Ingest time cluster aggregation is not supported in distributed mode.");
+        } else {
+          clusterIngestAccumulator = new TimelineMetricClusterIngestAccumulator(
+            TimeUnit.SECONDS.toMillis(metricsConf.getInt(CLUSTER_AGGREGATOR_TIMESLICE_INTERVAL, 30)),
+            outOfBandTimeAllowance);
+        }
+      }
       // Start HA service
       if (configuration.isDistributedOperationModeEnabled()) {
         // Start the controller
@@ -131,7 +191,8 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       // Start the cluster aggregator second
       TimelineMetricAggregator secondClusterAggregator =
         TimelineMetricAggregatorFactory.createTimelineClusterAggregatorSecond(
-          hBaseAccessor, metricsConf, metricMetadataManager, haController);
+          hBaseAccessor, metricsConf, metricMetadataManager, haController,
+          clusterIngestAccumulator);
       scheduleAggregatorThread(secondClusterAggregator);
 
       // Start the minute cluster aggregator
@@ -188,6 +249,9 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
 
   @Override
   protected void serviceStop() throws Exception {
+    if (hBaseAccessor != null) {
+      hBaseAccessor.shutdown();
+    }
     super.serviceStop();
   }
 
@@ -249,11 +313,15 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     Condition condition = conditionBuilder.build();
 
     TimelineMetrics metrics;
+    boolean clusterQuery = hostnames == null || hostnames.isEmpty();
 
-    if (hostnames == null || hostnames.isEmpty()) {
-      metrics = hBaseAccessor.getAggregateMetricRecords(condition, metricFunctions);
+    if (!clusterQuery && canUseHotTier(condition, metricFunctions)) {
+      metrics = getMetricRecordsWithHotTier(conditionBuilder, condition, metricFunctions);
+    } else if (canUseQueryCache(condition)) {
+      metrics = getMetricRecordsWithQueryCache(conditionBuilder, condition,
+        metricNames, metricFunctions, clusterQuery);
     } else {
-      metrics = hBaseAccessor.getMetricRecords(condition, metricFunctions);
+      metrics = readMetricRecords(condition, metricFunctions, clusterQuery);
     }
 
     metrics = postProcessMetrics(metrics);
@@ -265,15 +333,138 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     return seriesAggregateMetrics(seriesAggrFunctionInstance, metrics);
   }
 
+  private TimelineMetrics readMetricRecords(Condition condition,
+      Multimap<String, List<Function>> metricFunctions, boolean clusterQuery)
+      throws SQLException, IOException {
+    if (clusterQuery) {
+      return hBaseAccessor.getAggregateMetricRecords(condition, metricFunctions);
+    }
+    return hBaseAccessor.getMetricRecords(condition, metricFunctions);
+  }
+
+  /**
+   * Time range reads without top N or limit can be split into chunks.
+   */
+  private boolean canUseQueryCache(Condition condition) {
+    return queryCache != null && !condition.isPointInTime()
+      && !(condition instanceof TopNCondition) && condition.getLimit() == null;
+  }
+
+  /**
+   * Serve the query from cached chunks where possible. The precision is
+   * fixed from the full range, so that partial reads use the same table.
+   */
+  private TimelineMetrics getMetricRecordsWithQueryCache(final ConditionBuilder conditionBuilder,
+      Condition condition, List<String> metricNames,
+      final Multimap<String, List<Function>> metricFunctions, final boolean clusterQuery)
+      throws SQLException, IOException {
+    final Precision precision = condition.getPrecision() != null ? condition.getPrecision() :
+      Precision.getPrecision(condition.getStartTime(), condition.getEndTime());
+    String queryKey = TimelineMetricsQueryCache.getQueryKey(metricNames,
+      condition.getHostnames(), condition.getAppId(), condition.getInstanceId(),
+      precision, condition.isGrouped());
+
+    return queryCache.getMetrics(queryKey, precision, condition.getStartTime(),
+      condition.getEndTime(), new TimelineMetricsQueryCache.Loader() {
+        @Override
+        public TimelineMetrics load(long startTime, long endTime) throws SQLException, IOException {
+          Condition rangeCondition = conditionBuilder
+            .startTime(startTime)
+            .endTime(endTime)
+            .precision(precision)
+            .build();
+          return readMetricRecords(rangeCondition, metricFunctions, clusterQuery);
+        }
+      });
+  }
+
+  /**
+   * The hot tier answers plain precision reads of named series, anything
+   * else (wildcards, top N, limits, aggregate functions) goes to Phoenix.
+   */
+  private boolean canUseHotTier(Condition condition,
+                                Multimap<String, List<Function>> metricFunctions) {
+    if (hotTier == null || condition.isPointInTime() || !condition.isGrouped()
+        || condition instanceof TopNCondition || condition.getLimit() != null) {
+      return false;
+    }
+    Precision precision = condition.getPrecision() != null ? condition.getPrecision() :
+      Precision.getPrecision(condition.getStartTime(), condition.getEndTime());
+    if (precision != Precision.SECONDS
+        || condition.getEndTime() <= hotTier.getCoverageStartTime()) {
+      return false;
+    }
+    for (String metricName : metricFunctions.keySet()) {
+      if (metricName.contains("%")) {
+        return false;
+      }
+    }
+    for (String hostname : condition.getHostnames()) {
+      if (hostname.contains("%")) {
+        return false;
+      }
+    }
+    for (List<Function> functions : metricFunctions.values()) {
+      if (functions.size() > 1) {
+        throw new IllegalArgumentException("Multiple aggregate functions not supported.");
+      }
+      for (Function function : functions) {
+        if (function.getReadFunction() != Function.ReadFunction.VALUE) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Read the part of the range held by the hot tier from memory and only
+   * the older part from Phoenix, merging both per series.
+   */
+  private TimelineMetrics getMetricRecordsWithHotTier(ConditionBuilder conditionBuilder,
+      Condition condition, Multimap<String, List<Function>> metricFunctions)
+      throws SQLException, IOException {
+    long coverageStart = hotTier.getCoverageStartTime();
+    TimelineMetrics metrics;
+    if (condition.getStartTime() >= coverageStart) {
+      metrics = new TimelineMetrics();
+    } else {
+      // Records committed up to the out of band allowance after
+      // coverageStart can still hold points from before it
+      Condition olderCondition = conditionBuilder
+        .endTime(Math.min(condition.getEndTime(), coverageStart + outOfBandTimeAllowance))
+        .precision(Precision.SECONDS)
+        .build();
+      metrics = hBaseAccessor.getMetricRecords(olderCondition, metricFunctions);
+    }
+
+    List<TimelineMetric> recentMetrics = hotTier.getMetrics(metricFunctions.keySet(),
+      condition.getHostnames(), condition.getAppId(), condition.getInstanceId(),
+      Math.max(condition.getStartTime(), coverageStart), condition.getEndTime());
+    for (TimelineMetric recent : recentMetrics) {
+      for (List<Function> functions : metricFunctions.get(recent.getMetricName())) {
+        TimelineMetric metric = new TimelineMetric(recent);
+        for (Function f : functions) {
+          if (f.getSuffix() != null) {
+            metric.setMetricName(recent.getMetricName() + f.getSuffix());
+          }
+        }
+        metrics.addOrMergeTimelineMetric(metric);
+      }
+    }
+    return metrics;
+  }
+
   private TimelineMetrics postProcessMetrics(TimelineMetrics metrics) {
     List<TimelineMetric> metricsList = metrics.getMetrics();
 
     for (TimelineMetric metric : metricsList){
       String name = metric.getMetricName();
-      if (name.contains("._rate")){
-        updateValuesAsRate(metric.getMetricValues(), false);
-      } else if (name.contains("._diff")) {
-        updateValuesAsRate(metric.getMetricValues(), true);
+      boolean isRate = name.contains("._rate");
+      if (isRate || name.contains("._diff")) {
+        TreeMap<Long, Double> metricValues = metric.getMetricValues();
+        updateValuesAsRate(metricValues, !isRate);
+        metric.setMetricValues(metricValues);
       }
     }
 
@@ -347,7 +538,8 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     // Error indicated by the Sql exception
     TimelinePutResponse response = new TimelinePutResponse();
 
-    hBaseAccessor.insertMetricRecordsWithMetadata(metricMetadataManager, metrics, false);
+    hBaseAccessor.insertMetricRecordsWithMetadata(metricMetadataManager, metrics, false,
+      ingestListener);
 
     return response;
   }
@@ -23,7 +23,7 @@ import org.apache.commons.logging.LogFactory;
 public class MetricsCacheCommitterThread implements Runnable {
 
     private static final Log LOG = LogFactory.getLog(MetricsCacheCommitterThread.class);
-    private static PhoenixHBaseAccessor phoenixHBaseAccessor;
+    private final PhoenixHBaseAccessor phoenixHBaseAccessor;
 
     public MetricsCacheCommitterThread(PhoenixHBaseAccessor phoenixHBaseAccessor) {
         this.phoenixHBaseAccessor = phoenixHBaseAccessor;
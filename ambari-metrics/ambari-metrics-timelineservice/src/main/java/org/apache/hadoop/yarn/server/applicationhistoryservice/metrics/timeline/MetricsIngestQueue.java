@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Staging queue between metric POSTs and the committer workers. Capacity is
+ * bounded by the estimated heap size of the queued metrics rather than by
+ * the number of requests, since a single request can carry anything from
+ * one to thousands of series.
+ */
+public class MetricsIngestQueue {
+  // Rough per object overheads, used only for capacity accounting
+  private static final int METRICS_OVERHEAD_BYTES = 64;
+  private static final int METRIC_OVERHEAD_BYTES = 256;
+  // Queued series are kept array backed, see TimelineMetricSeries
+  private static final int BYTES_PER_POINT = 16;
+
+  private final long capacityBytes;
+  private final ArrayDeque<Entry> queue = new ArrayDeque<Entry>();
+  private long queuedBytes = 0;
+
+  private static class Entry {
+    private final TimelineMetrics metrics;
+    private final long sizeBytes;
+    private final long enqueueTime;
+
+    Entry(TimelineMetrics metrics, long sizeBytes, long enqueueTime) {
+      this.metrics = metrics;
+      this.sizeBytes = sizeBytes;
+      this.enqueueTime = enqueueTime;
+    }
+  }
+
+  public MetricsIngestQueue(long capacityBytes) {
+    this.capacityBytes = capacityBytes;
+  }
+
+  /**
+   * Queue metrics unless that would exceed the byte capacity. An empty
+   * queue always accepts, so that a single oversized request still goes
+   * through.
+   *
+   * @return false if the queue is full
+   */
+  public synchronized boolean offer(TimelineMetrics metrics) {
+    long sizeBytes = reserve(metrics);
+    if (sizeBytes < 0) {
+      return false;
+    }
+    add(metrics, sizeBytes);
+    return true;
+  }
+
+  /**
+   * Reserve room for metrics which are queued later with {@link #add}, so
+   * that the caller can act on accepted metrics before committer threads
+   * see them. Same capacity rules as {@link #offer}.
+   *
+   * @return bytes reserved, -1 if the queue is full
+   */
+  public synchronized long reserve(TimelineMetrics metrics) {
+    long sizeBytes = estimateSize(metrics);
+    if (queuedBytes > 0 && queuedBytes + sizeBytes > capacityBytes) {
+      return -1;
+    }
+    queuedBytes += sizeBytes;
+    return sizeBytes;
+  }
+
+  /**
+   * Queue metrics for which reservedBytes were reserved.
+   */
+  public synchronized void add(TimelineMetrics metrics, long reservedBytes) {
+    queue.add(new Entry(metrics, reservedBytes, System.currentTimeMillis()));
+  }
+
+  /**
+   * Remove queued metrics up to maxBytes, always at least one entry if the
+   * queue is not empty.
+   */
+  public synchronized List<TimelineMetrics> drain(long maxBytes) {
+    List<TimelineMetrics> drained = new ArrayList<TimelineMetrics>();
+    long drainedBytes = 0;
+    while (!queue.isEmpty()) {
+      Entry entry = queue.peek();
+      if (!drained.isEmpty() && drainedBytes + entry.sizeBytes > maxBytes) {
+        break;
+      }
+      queue.poll();
+      queuedBytes -= entry.sizeBytes;
+      drainedBytes += entry.sizeBytes;
+      drained.add(entry.metrics);
+    }
+    return drained;
+  }
+
+  public synchronized boolean isEmpty() {
+    return queue.isEmpty();
+  }
+
+  public synchronized int size() {
+    return queue.size();
+  }
+
+  public synchronized long getQueuedBytes() {
+    return queuedBytes;
+  }
+
+  public long getCapacityBytes() {
+    return capacityBytes;
+  }
+
+  /**
+   * @return time the oldest queued request has been waiting, 0 if empty
+   */
+  public synchronized long getOldestEntryAgeMillis() {
+    Entry oldest = queue.peek();
+    return oldest == null ? 0 : System.currentTimeMillis() - oldest.enqueueTime;
+  }
+
+  static long estimateSize(TimelineMetrics metrics) {
+    long size = METRICS_OVERHEAD_BYTES;
+    List<TimelineMetric> metricList = metrics.getMetrics();
+    if (metricList != null) {
+      for (TimelineMetric metric : metricList) {
+        size += METRIC_OVERHEAD_BYTES;
+        if (metric.getMetricName() != null) {
+          size += 2 * metric.getMetricName().length();
+        }
+        size += (long) BYTES_PER_POINT * metric.getMetricSeries().size();
+      }
+    }
+    return size;
+  }
+}
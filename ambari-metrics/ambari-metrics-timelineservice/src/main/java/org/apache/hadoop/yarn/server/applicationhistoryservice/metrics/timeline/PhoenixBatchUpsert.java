@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Pipelines rows of a prepared UPSERT through addBatch / executeBatch and
+ * commits the mutation state every commitSize rows, so that Phoenix is not
+ * called once per row. A failed batch or commit is thrown to the caller,
+ * rows of that batch are not written.
+ */
+class PhoenixBatchUpsert {
+
+  private final Connection conn;
+  private final PreparedStatement stmt;
+  private final String tableName;
+  private final int batchSize;
+  private final int commitSize;
+  private final TimelineMetricStoreMetrics storeMetrics;
+  private int pendingRows = 0;
+  private int uncommittedRows = 0;
+  private int rowCount = 0;
+
+  PhoenixBatchUpsert(Connection conn, PreparedStatement stmt, String tableName,
+                     int batchSize, int commitSize,
+                     TimelineMetricStoreMetrics storeMetrics) {
+    this.conn = conn;
+    this.stmt = stmt;
+    this.tableName = tableName;
+    this.batchSize = Math.max(batchSize, 1);
+    this.commitSize = Math.max(commitSize, this.batchSize);
+    this.storeMetrics = storeMetrics;
+  }
+
+  /**
+   * Queue the parameters currently set on the statement.
+   */
+  void addRow() throws SQLException {
+    stmt.addBatch();
+    pendingRows++;
+    uncommittedRows++;
+    rowCount++;
+    if (pendingRows >= batchSize) {
+      executeBatch();
+    }
+    if (uncommittedRows >= commitSize) {
+      commit();
+    }
+  }
+
+  /**
+   * Write and commit all queued rows.
+   */
+  void finish() throws SQLException {
+    commit();
+  }
+
+  int getRowCount() {
+    return rowCount;
+  }
+
+  private void commit() throws SQLException {
+    executeBatch();
+    // commit() blocked if HBase unavailable
+    conn.commit();
+    uncommittedRows = 0;
+  }
+
+  private void executeBatch() throws SQLException {
+    if (pendingRows == 0) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    try {
+      stmt.executeBatch();
+    } finally {
+      if (storeMetrics != null) {
+        storeMetrics.addBatchWrite(tableName, pendingRows,
+          System.currentTimeMillis() - start);
+      }
+      pendingRows = 0;
+    }
+  }
+}
@@ -35,6 +35,7 @@ import org.apache.hadoop.metrics2.sink.timeline.Precision;
 import org.apache.hadoop.metrics2.sink.timeline.SingleValuedTimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricMetadata;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.yarn.api.records.ContainerId;
@@ -46,16 +47,20 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricReadHelper;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataKey;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding.GorillaSeriesCodec;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding.TimelineMetricSeriesCodec;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultPhoenixDataSource;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixConnectionProvider;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.SplitByMetricNamesCondition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.spill.MetricsSpillLog;
 import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
 import org.apache.phoenix.exception.PhoenixIOException;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -63,6 +68,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -74,11 +80,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATE_TABLE_SPLIT_POINTS;
@@ -102,10 +111,26 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_SPLIT_POINTS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CONTAINER_METRICS_TTL;
-import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_CAPACITY_BYTES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMITTER_THREADS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_MAX_BYTES;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_INTERVAL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.DEFAULT_CHECKPOINT_LOCATION;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_AGGREGATOR_CHECKPOINT_DIR;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_SPILL_DIR;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_SPILL_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_SPILL_MAX_AGE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_SPILL_MAX_BYTES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_SPILL_REPLAY_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_SPILL_SEGMENT_SIZE;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRIC_AGGREGATOR_SINK_CLASS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_PRECISION_BINARY_ENCODING_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_SERIES_CODEC_CLASS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_PRECISION_WRITER_THREADS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_WRITE_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_WRITE_COMMIT_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.ALTER_METRICS_TABLE_ADD_BLOB_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CONTAINER_METRICS_TABLE_NAME;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_CONTAINER_METRICS_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_HOSTED_APPS_METADATA_TABLE_SQL;
@@ -143,6 +168,11 @@ public class PhoenixHBaseAccessor {
   private static final Log LOG = LogFactory.getLog(PhoenixHBaseAccessor.class);
 
   static final int PHOENIX_MAX_MUTATION_STATE_SIZE = 50000;
+  static final int DEFAULT_WRITE_BATCH_SIZE = 1000;
+  static final long DEFAULT_CACHE_CAPACITY_BYTES = 64 * 1024 * 1024;
+  static final long DEFAULT_CACHE_COMMIT_MAX_BYTES = 8 * 1024 * 1024;
+  static final long DEFAULT_SPILL_SEGMENT_SIZE = 16 * 1024 * 1024;
+  static final long DEFAULT_SPILL_MAX_BYTES = 1024 * 1024 * 1024;
   // Default stale data allowance set to 3 minutes, 2 minutes more than time
   // it was collected. Also 2 minutes is the default aggregation interval at
   // cluster and host levels.
@@ -155,7 +185,6 @@ public class PhoenixHBaseAccessor {
   private static final int POINTS_PER_MINUTE = 6;
   public static int RESULTSET_LIMIT = (int)TimeUnit.HOURS.toMinutes(2) * METRICS_PER_MINUTE * POINTS_PER_MINUTE ;
 
-  private static final TimelineMetricReadHelper TIMELINE_METRIC_READ_HELPER = new TimelineMetricReadHelper();
   private static ObjectMapper mapper = new ObjectMapper();
   private static TypeReference<TreeMap<Long, Double>> metricValuesTypeRef = new TypeReference<TreeMap<Long, Double>>() {};
 
@@ -164,16 +193,26 @@ public class PhoenixHBaseAccessor {
   private final RetryCounterFactory retryCounterFactory;
   private final PhoenixConnectionProvider dataSource;
   private final long outOfBandTimeAllowance;
-  private final int cacheSize;
   private final boolean cacheEnabled;
-  private final BlockingQueue<TimelineMetrics> insertCache;
+  private final MetricsIngestQueue ingestQueue;
+  private final long cacheCommitMaxBytes;
+  private final int cacheCommitterThreads;
   private ScheduledExecutorService scheduledExecutorService;
-  private MetricsCacheCommitterThread metricsCommiterThread;
+  private MetricsSpillLog spillLog;
+  private ScheduledExecutorService spillReplayExecutor;
   private TimelineMetricsAggregatorSink aggregatorSink;
   private final int cacheCommitInterval;
   private final boolean skipBlockCacheForAggregatorsEnabled;
   private final String timelineMetricsTablesDurability;
   private final String timelineMetricsPrecisionTableDurability;
+  private final boolean binaryEncodingEnabled;
+  private final TimelineMetricSeriesCodec seriesCodec;
+  private final TimelineMetricReadHelper metricReadHelper;
+  private final int writeBatchSize;
+  private final int writeCommitSize;
+  private final int precisionWriterCount;
+  private ExecutorService precisionWriterPool;
+  private final TimelineMetricStoreMetrics storeMetrics;
 
   static final String HSTORE_COMPACTION_CLASS_KEY =
     "hbase.hstore.defaultengine.compactionpolicy.class";
@@ -209,12 +248,41 @@ public class PhoenixHBaseAccessor {
     this.outOfBandTimeAllowance = metricsConf.getLong(OUT_OFF_BAND_DATA_TIME_ALLOWANCE,
       DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE);
     this.cacheEnabled = Boolean.valueOf(metricsConf.get(TIMELINE_METRICS_CACHE_ENABLED, "true"));
-    this.cacheSize = Integer.valueOf(metricsConf.get(TIMELINE_METRICS_CACHE_SIZE, "150"));
     this.cacheCommitInterval = Integer.valueOf(metricsConf.get(TIMELINE_METRICS_CACHE_COMMIT_INTERVAL, "3"));
-    this.insertCache = new ArrayBlockingQueue<TimelineMetrics>(cacheSize);
+    this.ingestQueue = new MetricsIngestQueue(
+      metricsConf.getLong(TIMELINE_METRICS_CACHE_CAPACITY_BYTES, DEFAULT_CACHE_CAPACITY_BYTES));
+    this.cacheCommitMaxBytes = metricsConf.getLong(TIMELINE_METRICS_CACHE_COMMIT_MAX_BYTES,
+      DEFAULT_CACHE_COMMIT_MAX_BYTES);
+    this.cacheCommitterThreads = Math.max(metricsConf.getInt(TIMELINE_METRICS_CACHE_COMMITTER_THREADS, 2), 1);
     this.skipBlockCacheForAggregatorsEnabled = metricsConf.getBoolean(AGGREGATORS_SKIP_BLOCK_CACHE, false);
     this.timelineMetricsTablesDurability = metricsConf.get(TIMELINE_METRICS_AGGREGATE_TABLES_DURABILITY, "");
     this.timelineMetricsPrecisionTableDurability = metricsConf.get(TIMELINE_METRICS_PRECISION_TABLE_DURABILITY, "");
+    this.binaryEncodingEnabled = metricsConf.getBoolean(TIMELINE_METRICS_PRECISION_BINARY_ENCODING_ENABLED, true);
+    Class<? extends TimelineMetricSeriesCodec> seriesCodecClass =
+      metricsConf.getClass(TIMELINE_METRICS_SERIES_CODEC_CLASS,
+        GorillaSeriesCodec.class, TimelineMetricSeriesCodec.class);
+    this.seriesCodec = ReflectionUtils.newInstance(seriesCodecClass, metricsConf);
+    this.metricReadHelper = new TimelineMetricReadHelper(false, seriesCodec);
+    this.writeBatchSize = metricsConf.getInt(TIMELINE_METRICS_WRITE_BATCH_SIZE, DEFAULT_WRITE_BATCH_SIZE);
+    this.writeCommitSize = metricsConf.getInt(TIMELINE_METRICS_WRITE_COMMIT_SIZE, PHOENIX_MAX_MUTATION_STATE_SIZE - 1);
+    this.precisionWriterCount = metricsConf.getInt(TIMELINE_METRICS_PRECISION_WRITER_THREADS, 1);
+    if (precisionWriterCount > 1) {
+      precisionWriterPool = Executors.newFixedThreadPool(precisionWriterCount, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "PrecisionWriter-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    this.storeMetrics = TimelineMetricStoreMetrics.getInstance();
+    storeMetrics.setIngestQueue(ingestQueue);
+    if (metricsConf.getBoolean(TIMELINE_METRICS_SPILL_ENABLED, true)) {
+      initSpillLog(metricsConf);
+    }
 
     tableTTL.put(METRICS_RECORD_TABLE_NAME, metricsConf.get(PRECISION_TABLE_TTL, String.valueOf(1 * 86400)));  // 1 day
     tableTTL.put(CONTAINER_METRICS_TABLE_NAME, metricsConf.get(CONTAINER_METRICS_TTL, String.valueOf(30 * 86400)));  // 30 days
@@ -227,10 +295,15 @@ public class PhoenixHBaseAccessor {
     tableTTL.put(METRICS_CLUSTER_AGGREGATE_DAILY_TABLE_NAME, metricsConf.get(CLUSTER_DAILY_TABLE_TTL, String.valueOf(730 * 86400))); //2 years
 
     if (cacheEnabled) {
-      LOG.debug("Initialising and starting metrics cache committer thread...");
-      metricsCommiterThread = new MetricsCacheCommitterThread(this);
-      scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
-      scheduledExecutorService.scheduleWithFixedDelay(metricsCommiterThread, 0, cacheCommitInterval, TimeUnit.SECONDS);
+      LOG.debug("Initialising and starting " + cacheCommitterThreads + " metrics cache committer threads...");
+      scheduledExecutorService = Executors.newScheduledThreadPool(cacheCommitterThreads);
+      long commitIntervalMillis = TimeUnit.SECONDS.toMillis(cacheCommitInterval);
+      for (int i = 0; i < cacheCommitterThreads; i++) {
+        // Stagger the committers over the commit interval
+        long initialDelay = commitIntervalMillis + i * commitIntervalMillis / cacheCommitterThreads;
+        scheduledExecutorService.scheduleWithFixedDelay(new MetricsCacheCommitterThread(this),
+          initialDelay, commitIntervalMillis, TimeUnit.MILLISECONDS);
+      }
     }
 
     Class<? extends TimelineMetricsAggregatorSink> metricSinkClass =
@@ -243,18 +316,95 @@ public class PhoenixHBaseAccessor {
     }
   }
 
+  /**
+   * Stop the background threads of the accessor.
+   */
+  public void shutdown() {
+    if (spillReplayExecutor != null) {
+      spillReplayExecutor.shutdown();
+    }
+    if (precisionWriterPool != null) {
+      precisionWriterPool.shutdown();
+    }
+  }
+
+  /**
+   * Precision records that fail to commit, whether on a batch or on the
+   * commit itself, are appended to a local spill log and written back by a
+   * background task once HBase is reachable. A segment is only deleted after
+   * all of its records were upserted and committed.
+   */
+  private void initSpillLog(Configuration metricsConf) {
+    String checkpointDir = metricsConf.get(TIMELINE_METRICS_AGGREGATOR_CHECKPOINT_DIR,
+      DEFAULT_CHECKPOINT_LOCATION);
+    File spillDir = new File(metricsConf.get(TIMELINE_METRICS_SPILL_DIR,
+      new File(checkpointDir, "metrics-spill").getPath()));
+    try {
+      spillLog = new MetricsSpillLog(spillDir,
+        metricsConf.getLong(TIMELINE_METRICS_SPILL_SEGMENT_SIZE, DEFAULT_SPILL_SEGMENT_SIZE),
+        metricsConf.getLong(TIMELINE_METRICS_SPILL_MAX_BYTES, DEFAULT_SPILL_MAX_BYTES),
+        TimeUnit.SECONDS.toMillis(metricsConf.getLong(TIMELINE_METRICS_SPILL_MAX_AGE, 86400)),
+        seriesCodec);
+    } catch (IOException e) {
+      LOG.error("Unable to initialize metrics spill log, metrics failing " +
+        "to commit will be dropped.", e);
+      return;
+    }
+    storeMetrics.setSpillLog(spillLog);
+
+    int replayInterval = metricsConf.getInt(TIMELINE_METRICS_SPILL_REPLAY_INTERVAL, 30);
+    spillReplayExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "MetricsSpillReplay");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    spillReplayExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        replaySpilledMetrics();
+      }
+    }, replayInterval, replayInterval, TimeUnit.SECONDS);
+  }
+
+  void replaySpilledMetrics() {
+    spillLog.truncateExpired();
+    if (spillLog.isEmpty()) {
+      return;
+    }
+    spillLog.replay(new MetricsSpillLog.Replayer() {
+      @Override
+      public void replay(List<TimelineMetric> metrics, long commitTime)
+          throws SQLException, IOException {
+        // Original commit time, so that SERVER_TIME and the out of band
+        // check reflect when the metrics were received
+        upsertMetricRecords(metrics, commitTime);
+      }
+    });
+  }
+
   public boolean isInsertCacheEmpty() {
-    return insertCache.isEmpty();
+    return ingestQueue.isEmpty();
   }
 
+  /**
+   * Commit queued metrics in chunks of at most
+   * timeline.metrics.cache.commit.max.bytes until the queue is empty.
+   * Called concurrently by all committer threads.
+   */
   public void commitMetricsFromCache() {
     LOG.debug("Clearing metrics cache");
-    List<TimelineMetrics> metricsArray = new ArrayList<TimelineMetrics>(insertCache.size());
-    while (!insertCache.isEmpty()) {
-      metricsArray.add(insertCache.poll());
-    }
-    if (metricsArray.size() > 0) {
+    while (true) {
+      long queuedAge = ingestQueue.getOldestEntryAgeMillis();
+      List<TimelineMetrics> metricsArray = ingestQueue.drain(cacheCommitMaxBytes);
+      if (metricsArray.isEmpty()) {
+        return;
+      }
+      long start = System.currentTimeMillis();
       commitMetrics(metricsArray);
+      storeMetrics.addIngestCommitLag(queuedAge + System.currentTimeMillis() - start);
     }
   }
 
@@ -264,62 +414,140 @@ public class PhoenixHBaseAccessor {
 
   public void commitMetrics(Collection<TimelineMetrics> timelineMetricsCollection) {
     LOG.debug("Committing metrics to store");
+    final long currentTime = System.currentTimeMillis();
+
+    if (precisionWriterPool == null) {
+      List<TimelineMetric> metrics = new ArrayList<TimelineMetric>();
+      for (TimelineMetrics timelineMetrics : timelineMetricsCollection) {
+        metrics.addAll(timelineMetrics.getMetrics());
+      }
+      commitMetricRecords(metrics, currentTime);
+      return;
+    }
+
+    // Partition by metric name, rows of one metric share a region, so a slow
+    // region server only holds back the writer of its partition
+    List<List<TimelineMetric>> partitions = new ArrayList<List<TimelineMetric>>(precisionWriterCount);
+    for (int i = 0; i < precisionWriterCount; i++) {
+      partitions.add(new ArrayList<TimelineMetric>());
+    }
+    for (TimelineMetrics timelineMetrics : timelineMetricsCollection) {
+      for (TimelineMetric metric : timelineMetrics.getMetrics()) {
+        int partition = (metric.getMetricName().hashCode() & Integer.MAX_VALUE) % precisionWriterCount;
+        partitions.get(partition).add(metric);
+      }
+    }
+
+    List<Future<?>> futures = new ArrayList<Future<?>>(precisionWriterCount);
+    for (final List<TimelineMetric> partition : partitions) {
+      if (partition.isEmpty()) {
+        continue;
+      }
+      futures.add(precisionWriterPool.submit(new Runnable() {
+        @Override
+        public void run() {
+          commitMetricRecords(partition, currentTime);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        LOG.warn("Interrupted while waiting for metric writers.");
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        LOG.error("Failed on committing metrics to store.", e.getCause());
+      }
+    }
+  }
+
+  private void commitMetricRecords(Collection<TimelineMetric> metrics, long currentTime) {
+    try {
+      upsertMetricRecords(metrics, currentTime);
+    } catch (Exception exception) {
+      LOG.error("Failed on committing " + metrics.size() + " metric records to store.", exception);
+      spillMetricRecords(metrics, currentTime);
+    }
+  }
+
+  private void spillMetricRecords(Collection<TimelineMetric> metrics, long currentTime) {
+    if (spillLog == null) {
+      return;
+    }
+    try {
+      spillLog.append(metrics, currentTime);
+      storeMetrics.addSpilledRecords(metrics.size());
+    } catch (IOException e) {
+      LOG.error("Unable to spill " + metrics.size() + " metric records, dropping them.", e);
+    }
+  }
+
+  /**
+   * Codec of the binary precision series, as configured by
+   * timeline.metrics.precision.series.codec.class.
+   */
+  public TimelineMetricSeriesCodec getSeriesCodec() {
+    return seriesCodec;
+  }
+
+  private void upsertMetricRecords(Collection<TimelineMetric> metrics, long currentTime)
+      throws SQLException, IOException {
     Connection conn = null;
     PreparedStatement metricRecordStmt = null;
-    long currentTime = System.currentTimeMillis();
 
     try {
       conn = getConnection();
       metricRecordStmt = conn.prepareStatement(String.format(
               UPSERT_METRICS_SQL, METRICS_RECORD_TABLE_NAME));
-      for (TimelineMetrics timelineMetrics : timelineMetricsCollection) {
-        for (TimelineMetric metric : timelineMetrics.getMetrics()) {
-          if (Math.abs(currentTime - metric.getStartTime()) > outOfBandTimeAllowance) {
-            // If timeseries start time is way in the past : discard
-            LOG.debug("Discarding out of band timeseries, currentTime = "
-                    + currentTime + ", startTime = " + metric.getStartTime()
-                    + ", hostname = " + metric.getHostName());
-            continue;
-          }
+      PhoenixBatchUpsert upsert = newBatchUpsert(conn, metricRecordStmt, METRICS_RECORD_TABLE_NAME);
+      for (TimelineMetric metric : metrics) {
+        if (Math.abs(currentTime - metric.getStartTime()) > outOfBandTimeAllowance) {
+          // If timeseries start time is way in the past : discard
+          LOG.debug("Discarding out of band timeseries, currentTime = "
+                  + currentTime + ", startTime = " + metric.getStartTime()
+                  + ", hostname = " + metric.getHostName());
+          continue;
+        }
 
-          metricRecordStmt.clearParameters();
+        metricRecordStmt.clearParameters();
 
-          if (LOG.isTraceEnabled()) {
-            LOG.trace("host: " + metric.getHostName() + ", " +
-                    "metricName = " + metric.getMetricName() + ", " +
-                    "values: " + metric.getMetricValues());
-          }
-          double[] aggregates = AggregatorUtils.calculateAggregates(
-                  metric.getMetricValues());
-
-          metricRecordStmt.setString(1, metric.getMetricName());
-          metricRecordStmt.setString(2, metric.getHostName());
-          metricRecordStmt.setString(3, metric.getAppId());
-          metricRecordStmt.setString(4, metric.getInstanceId());
-          metricRecordStmt.setLong(5, currentTime);
-          metricRecordStmt.setLong(6, metric.getStartTime());
-          metricRecordStmt.setString(7, metric.getUnits());
-          metricRecordStmt.setDouble(8, aggregates[0]);
-          metricRecordStmt.setDouble(9, aggregates[1]);
-          metricRecordStmt.setDouble(10, aggregates[2]);
-          metricRecordStmt.setLong(11, (long) aggregates[3]);
-          String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
+        // Other threads read the same metric, stay on the series view
+        // instead of switching it back to the map
+        TimelineMetricSeries metricSeries = metric.getMetricSeries();
+        if (LOG.isTraceEnabled()) {
+          LOG.trace("host: " + metric.getHostName() + ", " +
+                  "metricName = " + metric.getMetricName() + ", " +
+                  "values: " + metricSeries.toTreeMap());
+        }
+        double[] aggregates = AggregatorUtils.calculateAggregates(metricSeries);
+
+        metricRecordStmt.setString(1, metric.getMetricName());
+        metricRecordStmt.setString(2, metric.getHostName());
+        metricRecordStmt.setString(3, metric.getAppId());
+        metricRecordStmt.setString(4, metric.getInstanceId());
+        metricRecordStmt.setLong(5, currentTime);
+        metricRecordStmt.setLong(6, metric.getStartTime());
+        metricRecordStmt.setString(7, metric.getUnits());
+        metricRecordStmt.setDouble(8, aggregates[0]);
+        metricRecordStmt.setDouble(9, aggregates[1]);
+        metricRecordStmt.setDouble(10, aggregates[2]);
+        metricRecordStmt.setLong(11, (long) aggregates[3]);
+        if (binaryEncodingEnabled) {
+          metricRecordStmt.setNull(12, Types.VARCHAR);
+          metricRecordStmt.setBytes(13, seriesCodec.encode(metricSeries));
+        } else {
+          String json = TimelineUtils.dumpTimelineRecordtoJSON(metricSeries.toTreeMap());
           metricRecordStmt.setString(12, json);
-
-          try {
-            metricRecordStmt.executeUpdate();
-          } catch (SQLException sql) {
-            LOG.error("Failed on insert records to store.", sql);
-          }
+          metricRecordStmt.setNull(13, Types.VARBINARY);
         }
+
+        upsert.addRow();
       }
 
-      // commit() blocked if HBase unavailable
-      conn.commit();
-    } catch (Exception exception){
-      exception.printStackTrace();
-    }
-    finally {
+      upsert.finish();
+    } finally {
       if (metricRecordStmt != null) {
         try {
           metricRecordStmt.close();
@@ -337,21 +565,35 @@ public class PhoenixHBaseAccessor {
     }
   }
 
-  private static TimelineMetric getLastTimelineMetricFromResultSet(ResultSet rs)
+  private PhoenixBatchUpsert newBatchUpsert(Connection conn, PreparedStatement stmt,
+                                            String tableName) {
+    return new PhoenixBatchUpsert(conn, stmt, tableName, writeBatchSize,
+      writeCommitSize, storeMetrics);
+  }
+
+  private TimelineMetric getLastTimelineMetricFromResultSet(ResultSet rs)
       throws SQLException, IOException {
-    TimelineMetric metric = TIMELINE_METRIC_READ_HELPER.getTimelineMetricCommonsFromResultSet(rs);
-    metric.setMetricValues(readLastMetricValueFromJSON(rs.getString("METRICS")));
+    TimelineMetric metric = metricReadHelper.getTimelineMetricCommonsFromResultSet(rs);
+    metric.setMetricSeries(readLastMetricValue(readMetricSeriesFromResultSet(rs, seriesCodec)));
     return metric;
   }
 
-  private static TreeMap<Long, Double> readLastMetricValueFromJSON(String json)
-      throws IOException {
-    TreeMap<Long, Double> values = readMetricFromJSON(json);
-    Long lastTimeStamp = values.lastKey();
+  private static TimelineMetricSeries readLastMetricValue(TimelineMetricSeries values) {
+    return values.tailSeries(values.lastTimestamp());
+  }
 
-    TreeMap<Long, Double> valueMap = new TreeMap<Long, Double>();
-    valueMap.put(lastTimeStamp, values.get(lastTimeStamp));
-    return valueMap;
+  /**
+   * Read the values of a precision record, preferring the binary
+   * METRICS_BLOB column and falling back to the JSON METRICS column for
+   * rows written before binary encoding was enabled.
+   */
+  public static TimelineMetricSeries readMetricSeriesFromResultSet(ResultSet rs,
+      TimelineMetricSeriesCodec seriesCodec) throws SQLException, IOException {
+    byte[] blob = rs.getBytes("METRICS_BLOB");
+    if (blob != null) {
+      return seriesCodec.decode(blob);
+    }
+    return TimelineMetricSeries.fromMap(readMetricFromJSON(rs.getString("METRICS")));
   }
 
   @SuppressWarnings("unchecked")
@@ -431,6 +673,8 @@ public class PhoenixHBaseAccessor {
         precisionSql += getSplitPointsStr(splitPoints);
       }
       stmt.executeUpdate(precisionSql);
+      // Upgrade path for tables created with JSON-only series
+      stmt.executeUpdate(ALTER_METRICS_TABLE_ADD_BLOB_SQL);
 
       String hostMinuteAggregrateSql = String.format(CREATE_METRICS_AGGREGATE_TABLE_SQL,
         METRICS_AGGREGATE_MINUTE_TABLE_NAME, encoding,
@@ -662,6 +906,7 @@ public class PhoenixHBaseAccessor {
     try {
       metricRecordStmt = conn.prepareStatement(
           String.format(UPSERT_CONTAINER_METRICS_SQL, CONTAINER_METRICS_TABLE_NAME));
+      PhoenixBatchUpsert upsert = newBatchUpsert(conn, metricRecordStmt, CONTAINER_METRICS_TABLE_NAME);
       for (ContainerMetric metric : metrics) {
         metricRecordStmt.clearParameters();
         metricRecordStmt.setString(1, ContainerId.fromString(metric.getContainerId())
@@ -693,14 +938,10 @@ public class PhoenixHBaseAccessor {
             - (double) metric.getPmemUsedMax() / 1024) * (metric.getFinishTime()
             - metric.getStartTime()));
 
-        try {
-          metricRecordStmt.executeUpdate();
-        } catch (SQLException sql) {
-          LOG.error("Failed on insert records to store.", sql);
-        }
+        upsert.addRow();
       }
 
-      conn.commit();
+      upsert.finish();
     } finally {
       if (metricRecordStmt != null) {
         try {
@@ -719,8 +960,25 @@ public class PhoenixHBaseAccessor {
     }
   }
 
+  /**
+   * Callback for metrics accepted by {@link #insertMetricRecordsWithMetadata}.
+   */
+  public interface IngestListener {
+    /**
+     * Called once the metrics are accepted for commit, before they are
+     * handed to the committer threads. Not called for rejected writes.
+     */
+    void onMetricsAccepted(TimelineMetrics metrics);
+  }
+
   public void insertMetricRecordsWithMetadata(TimelineMetricMetadataManager metadataManager,
                                               TimelineMetrics metrics, boolean skipCache) throws SQLException, IOException {
+    insertMetricRecordsWithMetadata(metadataManager, metrics, skipCache, null);
+  }
+
+  public void insertMetricRecordsWithMetadata(TimelineMetricMetadataManager metadataManager,
+                                              TimelineMetrics metrics, boolean skipCache,
+                                              IngestListener ingestListener) throws SQLException, IOException {
     List<TimelineMetric> timelineMetrics = metrics.getMetrics();
     if (timelineMetrics == null || timelineMetrics.isEmpty()) {
       LOG.debug("Empty metrics insert request.");
@@ -748,17 +1006,26 @@ public class PhoenixHBaseAccessor {
 
     if  (!skipCache && cacheEnabled) {
       LOG.debug("Adding metrics to cache");
-      if (insertCache.size() >= cacheSize) {
-        commitMetricsFromCache();
+      long reservedBytes = ingestQueue.reserve(metrics);
+      if (reservedBytes < 0) {
+        storeMetrics.addIngestRejected();
+        throw new MetricsIngestQueueFullException("Metrics cache is full, "
+          + ingestQueue.getQueuedBytes() + " bytes waiting to be committed.",
+          cacheCommitInterval);
       }
       try {
-        insertCache.put(metrics); // blocked while the queue is full
-      } catch (InterruptedException e) {
-        e.printStackTrace();
+        if (ingestListener != null) {
+          ingestListener.onMetricsAccepted(metrics);
+        }
+      } finally {
+        ingestQueue.add(metrics, reservedBytes);
       }
     } else {
       LOG.debug("Skipping metrics cache");
       commitMetrics(metrics);
+      if (ingestListener != null) {
+        ingestListener.onMetricsAccepted(metrics);
+      }
     }
   }
 
@@ -887,7 +1154,7 @@ public class PhoenixHBaseAccessor {
             getTimelineMetricsFromResultSet(metrics, f, condition, rs);
           } else {
             SingleValuedTimelineMetric metric =
-              TIMELINE_METRIC_READ_HELPER.getAggregatedTimelineMetricFromResultSet(rs, f);
+              metricReadHelper.getAggregatedTimelineMetricFromResultSet(rs, f);
 
             if (condition.isGrouped()) {
               metrics.addOrMergeTimelineMetric(metric);
@@ -906,7 +1173,7 @@ public class PhoenixHBaseAccessor {
 
   private void getTimelineMetricsFromResultSet(TimelineMetrics metrics, Function f, Condition condition, ResultSet rs) throws SQLException, IOException {
     if (condition.getPrecision().equals(Precision.SECONDS)) {
-      TimelineMetric metric = TIMELINE_METRIC_READ_HELPER.getTimelineMetricFromResultSet(rs);
+      TimelineMetric metric = metricReadHelper.getTimelineMetricFromResultSet(rs);
       if (f != null && f.getSuffix() != null) { //Case : Requesting "._rate" for precision data
         metric.setMetricName(metric.getMetricName() + f.getSuffix());
       }
@@ -918,7 +1185,7 @@ public class PhoenixHBaseAccessor {
 
     } else {
       SingleValuedTimelineMetric metric =
-        TIMELINE_METRIC_READ_HELPER.getAggregatedTimelineMetricFromResultSet(rs, f);
+        metricReadHelper.getAggregatedTimelineMetricFromResultSet(rs, f);
       if (condition.isGrouped()) {
         metrics.addOrMergeTimelineMetric(metric);
       } else {
@@ -1167,11 +1434,11 @@ public class PhoenixHBaseAccessor {
     PreparedStatement stmt = null;
 
     long start = System.currentTimeMillis();
-    int rowCount = 0;
 
     try {
       stmt = conn.prepareStatement(
         String.format(UPSERT_AGGREGATE_RECORD_SQL, phoenixTableName));
+      PhoenixBatchUpsert upsert = newBatchUpsert(conn, stmt, phoenixTableName);
 
       for (Map.Entry<TimelineMetric, MetricHostAggregate> metricAggregate :
         hostAggregateMap.entrySet()) {
@@ -1179,7 +1446,6 @@ public class PhoenixHBaseAccessor {
         TimelineMetric metric = metricAggregate.getKey();
         MetricHostAggregate hostAggregate = metricAggregate.getValue();
 
-        rowCount++;
         stmt.clearParameters();
         stmt.setString(1, metric.getMetricName());
         stmt.setString(2, metric.getHostName());
@@ -1192,20 +1458,10 @@ public class PhoenixHBaseAccessor {
         stmt.setDouble(9, hostAggregate.getMin());
         stmt.setDouble(10, hostAggregate.getNumberOfSamples());
 
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          LOG.error(sql);
-        }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
-
+        upsert.addRow();
       }
 
-      conn.commit();
+      upsert.finish();
 
     } finally {
       if (stmt != null) {
@@ -1261,7 +1517,7 @@ public class PhoenixHBaseAccessor {
     PreparedStatement stmt = null;
     try {
       stmt = conn.prepareStatement(sqlStr);
-      int rowCount = 0;
+      PhoenixBatchUpsert upsert = newBatchUpsert(conn, stmt, METRICS_CLUSTER_AGGREGATE_TABLE_NAME);
 
       for (Map.Entry<TimelineClusterMetric, MetricClusterAggregate>
         aggregateEntry : records.entrySet()) {
@@ -1273,7 +1529,6 @@ public class PhoenixHBaseAccessor {
             "aggregate = " + aggregate);
         }
 
-        rowCount++;
         stmt.clearParameters();
         stmt.setString(1, clusterMetric.getMetricName());
         stmt.setString(2, clusterMetric.getAppId());
@@ -1285,20 +1540,10 @@ public class PhoenixHBaseAccessor {
         stmt.setDouble(8, aggregate.getMax());
         stmt.setDouble(9, aggregate.getMin());
 
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          // we have no way to verify it works!!!
-          LOG.error(sql);
-        }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
+        upsert.addRow();
       }
 
-      conn.commit();
+      upsert.finish();
 
     } finally {
       if (stmt != null) {
@@ -1351,7 +1596,7 @@ public class PhoenixHBaseAccessor {
     PreparedStatement stmt = null;
     try {
       stmt = conn.prepareStatement(String.format(UPSERT_CLUSTER_AGGREGATE_TIME_SQL, tableName));
-      int rowCount = 0;
+      PhoenixBatchUpsert upsert = newBatchUpsert(conn, stmt, tableName);
 
       for (Map.Entry<TimelineClusterMetric, MetricHostAggregate> aggregateEntry : records.entrySet()) {
         TimelineClusterMetric clusterMetric = aggregateEntry.getKey();
@@ -1362,7 +1607,6 @@ public class PhoenixHBaseAccessor {
             "aggregate = " + aggregate);
         }
 
-        rowCount++;
         stmt.clearParameters();
         stmt.setString(1, clusterMetric.getMetricName());
         stmt.setString(2, clusterMetric.getAppId());
@@ -1374,20 +1618,10 @@ public class PhoenixHBaseAccessor {
         stmt.setDouble(8, aggregate.getMax());
         stmt.setDouble(9, aggregate.getMin());
 
-        try {
-          stmt.executeUpdate();
-        } catch (SQLException sql) {
-          // we have no way to verify it works!!!
-          LOG.error(sql);
-        }
-
-        if (rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
-          conn.commit();
-          rowCount = 0;
-        }
+        upsert.addRow();
       }
 
-      conn.commit();
+      upsert.finish();
 
     } finally {
       if (stmt != null) {
@@ -48,8 +48,14 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_METRIC_AGGREGATOR_SINK_CLASS =
     "timeline.metrics.service.aggregator.sink.class";
 
-  public static final String TIMELINE_METRICS_CACHE_SIZE =
-    "timeline.metrics.cache.size";
+  public static final String TIMELINE_METRICS_CACHE_CAPACITY_BYTES =
+    "timeline.metrics.cache.capacity.bytes";
+
+  public static final String TIMELINE_METRICS_CACHE_COMMIT_MAX_BYTES =
+    "timeline.metrics.cache.commit.max.bytes";
+
+  public static final String TIMELINE_METRICS_CACHE_COMMITTER_THREADS =
+    "timeline.metrics.cache.committer.threads";
 
   public static final String TIMELINE_METRICS_CACHE_COMMIT_INTERVAL =
     "timeline.metrics.cache.commit.interval";
@@ -237,6 +243,24 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_METRICS_CLUSTER_AGGREGATOR_INTERPOLATION_ENABLED =
     "timeline.metrics.cluster.aggregator.interpolation.enabled";
 
+  public static final String TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_FLUSH_SIZE =
+    "timeline.metrics.cluster.aggregator.second.flush.size";
+
+  public static final String TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_INGEST_ENABLED =
+    "timeline.metrics.cluster.aggregator.second.ingest.enabled";
+
+  public static final String TIMELINE_METRICS_QUERY_CACHE_ENABLED =
+    "timeline.metrics.service.query.cache.enabled";
+
+  public static final String TIMELINE_METRICS_QUERY_CACHE_MAX_POINTS =
+    "timeline.metrics.service.query.cache.max.points";
+
+  public static final String TIMELINE_METRICS_AGGREGATOR_PARTITIONS_ENABLED =
+    "timeline.metrics.aggregator.partitions.enabled";
+
+  public static final String TIMELINE_METRICS_AGGREGATOR_PARTITION_THREADS =
+    "timeline.metrics.aggregator.partition.threads";
+
   public static final String TIMELINE_METRICS_PRECISION_TABLE_DURABILITY =
     "timeline.metrics.precision.table.durability";
 
@@ -258,6 +282,54 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_METRIC_AGGREGATION_SQL_FILTERS =
     "timeline.metrics.cluster.aggregation.sql.filters";
 
+  public static final String TIMELINE_METRICS_PRECISION_BINARY_ENCODING_ENABLED =
+    "timeline.metrics.precision.binary.encoding.enabled";
+
+  public static final String TIMELINE_METRICS_SERIES_CODEC_CLASS =
+    "timeline.metrics.precision.series.codec.class";
+
+  public static final String TIMELINE_METRICS_WRITE_BATCH_SIZE =
+    "timeline.metrics.service.write.batch.size";
+
+  public static final String TIMELINE_METRICS_WRITE_COMMIT_SIZE =
+    "timeline.metrics.service.write.commit.size";
+
+  public static final String TIMELINE_METRICS_PRECISION_WRITER_THREADS =
+    "timeline.metrics.service.precision.writer.threads";
+
+  public static final String TIMELINE_METRICS_SPILL_ENABLED =
+    "timeline.metrics.service.spill.enabled";
+
+  public static final String TIMELINE_METRICS_SPILL_DIR =
+    "timeline.metrics.service.spill.dir";
+
+  public static final String TIMELINE_METRICS_SPILL_SEGMENT_SIZE =
+    "timeline.metrics.service.spill.segment.size.bytes";
+
+  public static final String TIMELINE_METRICS_SPILL_MAX_BYTES =
+    "timeline.metrics.service.spill.max.bytes";
+
+  public static final String TIMELINE_METRICS_SPILL_MAX_AGE =
+    "timeline.metrics.service.spill.max.age.seconds";
+
+  public static final String TIMELINE_METRICS_SPILL_REPLAY_INTERVAL =
+    "timeline.metrics.service.spill.replay.interval";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_ENABLED =
+    "timeline.metrics.service.hot.tier.enabled";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_WINDOW =
+    "timeline.metrics.service.hot.tier.window.minutes";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_BUCKET =
+    "timeline.metrics.service.hot.tier.bucket.seconds";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_SHARDS =
+    "timeline.metrics.service.hot.tier.shards";
+
+  public static final String TIMELINE_METRICS_HOT_TIER_MAX_SERIES =
+    "timeline.metrics.service.hot.tier.max.series";
+
   public static final String HOST_APP_ID = "HOST";
 
   public static final String DEFAULT_INSTANCE_PORT = "12001";
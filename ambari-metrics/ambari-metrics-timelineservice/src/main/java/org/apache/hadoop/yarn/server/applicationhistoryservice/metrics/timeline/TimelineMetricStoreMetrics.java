@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableQuantiles;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.spill.MetricsSpillLog;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Self monitoring metrics of the metric store, published through the
+ * collector's own metrics system. A single instance is registered per JVM.
+ */
+public class TimelineMetricStoreMetrics implements MetricsSource {
+
+  static final String SOURCE_NAME = "TimelineMetricStore";
+  // Rollover interval of the latency percentiles
+  private static final int QUANTILES_INTERVAL_SECONDS = 60;
+
+  private static TimelineMetricStoreMetrics instance;
+
+  private final MetricsRegistry registry = new MetricsRegistry(SOURCE_NAME);
+  private final ConcurrentMap<String, MutableQuantiles> batchLatencies =
+    new ConcurrentHashMap<String, MutableQuantiles>();
+  private final ConcurrentMap<String, MutableCounterLong> rowsWritten =
+    new ConcurrentHashMap<String, MutableCounterLong>();
+  private final ConcurrentMap<String, MutableQuantiles> partitionDurations =
+    new ConcurrentHashMap<String, MutableQuantiles>();
+  // Time since the data of an aggregator partition is complete
+  private final ConcurrentMap<String, Long> partitionLags =
+    new ConcurrentHashMap<String, Long>();
+  private final MutableCounterLong ingestRejected = registry.newCounter(
+    "IngestRejected", "Metric posts rejected because the ingest queue was full", 0L);
+  private final MutableQuantiles ingestCommitLag = registry.newQuantiles(
+    "IngestCommitLag", "Time from queueing posted metrics to their commit",
+    "ops", "lagMillis", QUANTILES_INTERVAL_SECONDS);
+  private final MutableCounterLong spilledRecords = registry.newCounter(
+    "SpilledRecords", "Precision records spilled to local disk after a failed write", 0L);
+  private final MutableCounterLong queryCacheHits = registry.newCounter(
+    "QueryCacheHits", "Query result chunks served from the query cache", 0L);
+  private volatile MetricsIngestQueue ingestQueue;
+  private volatile MetricsSpillLog spillLog;
+
+  TimelineMetricStoreMetrics() {
+  }
+
+  public static synchronized TimelineMetricStoreMetrics getInstance() {
+    if (instance == null) {
+      instance = DefaultMetricsSystem.instance().register(SOURCE_NAME,
+        "Timeline metric store writes", new TimelineMetricStoreMetrics());
+    }
+    return instance;
+  }
+
+  /**
+   * Record the latency of one executeBatch call against a table.
+   */
+  public void addBatchWrite(String tableName, int rows, long latencyMillis) {
+    getBatchLatency(tableName).add(latencyMillis);
+    getRowsWritten(tableName).incr(rows);
+  }
+
+  public void setIngestQueue(MetricsIngestQueue ingestQueue) {
+    this.ingestQueue = ingestQueue;
+  }
+
+  public void addIngestRejected() {
+    ingestRejected.incr();
+  }
+
+  public void addIngestCommitLag(long lagMillis) {
+    ingestCommitLag.add(lagMillis);
+  }
+
+  public void setSpillLog(MetricsSpillLog spillLog) {
+    this.spillLog = spillLog;
+  }
+
+  public void addSpilledRecords(int records) {
+    spilledRecords.incr(records);
+  }
+
+  /**
+   * Record the duration of one aggregation interval of a partition.
+   */
+  public void addAggregatorPartitionRun(String aggregatorName, String partition,
+                                        long durationMillis) {
+    String name = aggregatorName + "." + partition;
+    MutableQuantiles quantiles = partitionDurations.get(name);
+    if (quantiles == null) {
+      synchronized (registry) {
+        quantiles = partitionDurations.get(name);
+        if (quantiles == null) {
+          quantiles = registry.newQuantiles(name + "Duration",
+            "Aggregation duration of partition " + partition + " of " + aggregatorName,
+            "ops", "durationMillis", QUANTILES_INTERVAL_SECONDS);
+          partitionDurations.put(name, quantiles);
+        }
+      }
+    }
+    quantiles.add(durationMillis);
+  }
+
+  public void setAggregatorPartitionLag(String aggregatorName, String partition,
+                                        long lagMillis) {
+    partitionLags.put(aggregatorName + "." + partition, lagMillis);
+  }
+
+  public void addQueryCacheHits(int chunks) {
+    queryCacheHits.incr(chunks);
+  }
+
+  private MutableQuantiles getBatchLatency(String tableName) {
+    MutableQuantiles quantiles = batchLatencies.get(tableName);
+    if (quantiles == null) {
+      synchronized (registry) {
+        quantiles = batchLatencies.get(tableName);
+        if (quantiles == null) {
+          quantiles = registry.newQuantiles(tableName + "BatchLatency",
+            "Batch write latency to " + tableName, "ops", "latencyMillis",
+            QUANTILES_INTERVAL_SECONDS);
+          batchLatencies.put(tableName, quantiles);
+        }
+      }
+    }
+    return quantiles;
+  }
+
+  private MutableCounterLong getRowsWritten(String tableName) {
+    MutableCounterLong counter = rowsWritten.get(tableName);
+    if (counter == null) {
+      synchronized (registry) {
+        counter = rowsWritten.get(tableName);
+        if (counter == null) {
+          counter = registry.newCounter(tableName + "RowsWritten",
+            "Rows written to " + tableName, 0L);
+          rowsWritten.put(tableName, counter);
+        }
+      }
+    }
+    return counter;
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    MetricsRecordBuilder recordBuilder = collector.addRecord(registry.info());
+    MetricsIngestQueue queue = ingestQueue;
+    if (queue != null) {
+      recordBuilder
+        .addGauge(Interns.info("IngestQueueSize", "Queued metric posts"),
+          queue.size())
+        .addGauge(Interns.info("IngestQueueBytes", "Estimated size of queued metrics"),
+          queue.getQueuedBytes())
+        .addGauge(Interns.info("IngestQueueOldestAge", "Age in ms of the oldest queued post"),
+          queue.getOldestEntryAgeMillis());
+    }
+    MetricsSpillLog log = spillLog;
+    if (log != null) {
+      recordBuilder
+        .addGauge(Interns.info("SpillSegments", "Spill segments waiting for replay"),
+          log.getSegmentCount())
+        .addGauge(Interns.info("SpillBytes", "Bytes written to spill segments"),
+          log.getSpilledBytes())
+        .addGauge(Interns.info("SpillDroppedSegments", "Spill segments dropped by quota or age"),
+          log.getDroppedSegmentCount());
+    }
+    for (Map.Entry<String, Long> lag : partitionLags.entrySet()) {
+      recordBuilder.addGauge(Interns.info(lag.getKey() + "Lag",
+        "Time since the last aggregated interval of " + lag.getKey()), lag.getValue());
+    }
+    registry.snapshot(recordBuilder, all);
+  }
+}
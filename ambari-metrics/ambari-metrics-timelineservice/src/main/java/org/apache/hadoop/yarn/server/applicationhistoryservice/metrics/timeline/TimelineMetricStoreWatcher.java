@@ -94,7 +94,7 @@ public class TimelineMetricStoreWatcher implements Runnable {
     fakeMetric.setAppId(FAKE_APP_ID);
     fakeMetric.setStartTime(startTime);
     fakeMetric.setTimestamp(startTime);
-    fakeMetric.getMetricValues().put(startTime, 0.0);
+    fakeMetric.addMetricValue(startTime, 0.0);
 
     final TimelineMetrics metrics = new TimelineMetrics();
     metrics.setMetrics(Collections.singletonList(fakeMetric));
@@ -0,0 +1,330 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.AggregatorUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory copy of the most recent precision data, filled on ingest, so
+ * that queries over the last few minutes or hours do not have to scan
+ * METRIC_RECORD. Series are spread over independently locked shards, each
+ * series keeps its points in a ring of fixed width time buckets covering
+ * the configured window, the oldest bucket is overwritten as time moves on.
+ */
+public class TimelineMetricsHotTier {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsHotTier.class);
+
+  private final long windowMillis;
+  private final long bucketMillis;
+  private final int bucketCount;
+  private final int maxSeries;
+  private final long outOfBandTimeAllowance;
+  private final Shard[] shards;
+  private final long createdTime;
+  private final AtomicInteger seriesCount = new AtomicInteger();
+  // Points received up to this time may be missing because the series
+  // limit was reached
+  private volatile long lastRejectedTime = 0;
+
+  public TimelineMetricsHotTier(long windowMillis, long bucketMillis,
+                                int shardCount, int maxSeries,
+                                long outOfBandTimeAllowance) {
+    this.windowMillis = windowMillis;
+    this.bucketMillis = bucketMillis;
+    // One extra bucket, so a slot is reused only once its data is out of
+    // the window
+    this.bucketCount = (int) ((windowMillis + bucketMillis - 1) / bucketMillis) + 1;
+    this.maxSeries = maxSeries;
+    this.outOfBandTimeAllowance = outOfBandTimeAllowance;
+    this.shards = new Shard[Integer.highestOneBit(Math.max(shardCount, 1))];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new Shard();
+    }
+    this.createdTime = System.currentTimeMillis();
+  }
+
+  private static final class SeriesKey {
+    private final String metricName;
+    private final String hostName;
+
+    SeriesKey(String metricName, String hostName) {
+      this.metricName = metricName;
+      this.hostName = hostName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof SeriesKey)) return false;
+      SeriesKey that = (SeriesKey) o;
+      return metricName.equals(that.metricName) &&
+        (hostName != null ? hostName.equals(that.hostName) : that.hostName == null);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * metricName.hashCode() + (hostName != null ? hostName.hashCode() : 0);
+    }
+  }
+
+  private final class RecentSeries {
+    private final String appId;
+    private final String instanceId;
+    private String units;
+    private final long[] bucketStarts = new long[bucketCount];
+    private final TimelineMetricSeries[] buckets = new TimelineMetricSeries[bucketCount];
+    private long lastBucketStart = Long.MIN_VALUE;
+
+    RecentSeries(String appId, String instanceId) {
+      this.appId = appId;
+      this.instanceId = instanceId;
+      Arrays.fill(bucketStarts, Long.MIN_VALUE);
+    }
+
+    boolean matches(String appId, String instanceId) {
+      return (appId == null || appId.equals(this.appId)) &&
+        (instanceId == null || instanceId.equals(this.instanceId));
+    }
+
+    void add(long timestamp, double value) {
+      long bucketStart = timestamp - timestamp % bucketMillis;
+      int slot = (int) ((bucketStart / bucketMillis) % bucketCount);
+      if (bucketStarts[slot] != bucketStart) {
+        if (bucketStarts[slot] > bucketStart) {
+          // Slot already taken by newer data
+          return;
+        }
+        bucketStarts[slot] = bucketStart;
+        buckets[slot] = new TimelineMetricSeries();
+      }
+      buckets[slot].append(timestamp, value);
+      lastBucketStart = Math.max(lastBucketStart, bucketStart);
+    }
+
+    TimelineMetricSeries read(long fromTime, long toTime) {
+      Integer[] slots = new Integer[bucketCount];
+      int n = 0;
+      for (int i = 0; i < bucketCount; i++) {
+        if (buckets[i] != null && bucketStarts[i] + bucketMillis > fromTime
+            && bucketStarts[i] < toTime) {
+          slots[n++] = i;
+        }
+      }
+      Arrays.sort(slots, 0, n, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          return Long.compare(bucketStarts[a], bucketStarts[b]);
+        }
+      });
+
+      TimelineMetricSeries result = new TimelineMetricSeries();
+      for (int i = 0; i < n; i++) {
+        TimelineMetricSeries bucket = buckets[slots[i]];
+        for (int j = 0; j < bucket.size(); j++) {
+          long timestamp = bucket.getTimestamp(j);
+          if (timestamp >= fromTime && timestamp < toTime) {
+            result.append(timestamp, bucket.getValue(j));
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+  private static final class Shard {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<SeriesKey, List<RecentSeries>> series =
+      new HashMap<SeriesKey, List<RecentSeries>>();
+    private long lastSweepTime = System.currentTimeMillis();
+  }
+
+  private Shard getShard(SeriesKey key) {
+    return shards[key.hashCode() & (shards.length - 1)];
+  }
+
+  /**
+   * @return time from which every point received by this collector is
+   * held in memory, queries for ranges starting at or after it can be
+   * answered without the store
+   */
+  public long getCoverageStartTime() {
+    long now = System.currentTimeMillis();
+    return Math.max(Math.max(createdTime, now - windowMillis), lastRejectedTime + 1);
+  }
+
+  /**
+   * Add posted metrics, skipping those the precision writer would not
+   * store either: non whitelisted metrics and out of band series.
+   */
+  public void putMetrics(TimelineMetrics metrics) {
+    long now = System.currentTimeMillis();
+    long cutoff = now - windowMillis;
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      if (metric.getMetricName() == null ||
+          Math.abs(now - metric.getStartTime()) > outOfBandTimeAllowance) {
+        continue;
+      }
+      if (CollectionUtils.isNotEmpty(AggregatorUtils.whitelistedMetrics) &&
+          !AggregatorUtils.whitelistedMetrics.contains(metric.getMetricName())) {
+        continue;
+      }
+      SeriesKey key = new SeriesKey(metric.getMetricName(), metric.getHostName());
+      Shard shard = getShard(key);
+      TimelineMetricSeries points = metric.getMetricSeries();
+
+      shard.lock.writeLock().lock();
+      try {
+        if (now - shard.lastSweepTime > bucketMillis) {
+          sweep(shard, cutoff);
+          shard.lastSweepTime = now;
+        }
+        RecentSeries recent = getOrCreate(shard, key, metric.getAppId(),
+          metric.getInstanceId(), now);
+        if (recent == null) {
+          continue;
+        }
+        recent.units = metric.getUnits();
+        for (int i = 0; i < points.size(); i++) {
+          long timestamp = points.getTimestamp(i);
+          if (timestamp >= cutoff && !Double.isNaN(points.getValue(i))) {
+            recent.add(timestamp, points.getValue(i));
+          }
+        }
+      } finally {
+        shard.lock.writeLock().unlock();
+      }
+    }
+  }
+
+  private RecentSeries getOrCreate(Shard shard, SeriesKey key, String appId,
+                                   String instanceId, long now) {
+    List<RecentSeries> seriesList = shard.series.get(key);
+    if (seriesList != null) {
+      for (RecentSeries recent : seriesList) {
+        if (equal(appId, recent.appId) && equal(instanceId, recent.instanceId)) {
+          return recent;
+        }
+      }
+    }
+    if (seriesCount.get() >= maxSeries) {
+      if (lastRejectedTime < now - windowMillis) {
+        LOG.warn("Hot tier is tracking " + maxSeries + " series, not " +
+          "serving queries from memory until older series expire.");
+      }
+      lastRejectedTime = now;
+      return null;
+    }
+    if (seriesList == null) {
+      seriesList = new ArrayList<RecentSeries>(1);
+      shard.series.put(key, seriesList);
+    }
+    RecentSeries recent = new RecentSeries(appId, instanceId);
+    seriesList.add(recent);
+    seriesCount.incrementAndGet();
+    return recent;
+  }
+
+  private void sweep(Shard shard, long cutoff) {
+    for (Iterator<List<RecentSeries>> it = shard.series.values().iterator(); it.hasNext();) {
+      List<RecentSeries> seriesList = it.next();
+      for (Iterator<RecentSeries> seriesIt = seriesList.iterator(); seriesIt.hasNext();) {
+        if (seriesIt.next().lastBucketStart + bucketMillis <= cutoff) {
+          seriesIt.remove();
+          seriesCount.decrementAndGet();
+        }
+      }
+      if (seriesList.isEmpty()) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Points with startTime <= timestamp < endTime of the given metrics and
+   * hosts, one metric per series. appId and instanceId match any value if
+   * null.
+   */
+  public List<TimelineMetric> getMetrics(Collection<String> metricNames,
+                                         Collection<String> hostnames,
+                                         String appId, String instanceId,
+                                         long startTime, long endTime) {
+    List<TimelineMetric> result = new ArrayList<TimelineMetric>();
+    for (String metricName : metricNames) {
+      for (String hostname : hostnames) {
+        SeriesKey key = new SeriesKey(metricName, hostname);
+        Shard shard = getShard(key);
+        shard.lock.readLock().lock();
+        try {
+          List<RecentSeries> seriesList = shard.series.get(key);
+          if (seriesList == null) {
+            continue;
+          }
+          for (RecentSeries recent : seriesList) {
+            if (!recent.matches(appId, instanceId)) {
+              continue;
+            }
+            TimelineMetricSeries points = recent.read(startTime, endTime);
+            if (points.isEmpty()) {
+              continue;
+            }
+            TimelineMetric metric = new TimelineMetric();
+            metric.setMetricName(metricName);
+            metric.setHostName(hostname);
+            metric.setAppId(recent.appId);
+            metric.setInstanceId(recent.instanceId);
+            // Same as a METRIC_RECORD read, see TimelineMetricReadHelper
+            metric.setType(recent.units);
+            metric.setStartTime(points.firstTimestamp());
+            metric.setTimestamp(points.firstTimestamp());
+            metric.setMetricSeries(points);
+            result.add(metric);
+          }
+        } finally {
+          shard.lock.readLock().unlock();
+        }
+      }
+    }
+    return result;
+  }
+
+  public int getSeriesCount() {
+    return seriesCount.get();
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+}
@@ -0,0 +1,337 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of query results, so that dashboards refreshing the same panels do
+ * not re-read the whole time range every time. Results are kept in time
+ * aligned chunks per normalized query, a chunk is only stored once the data
+ * for its time range is complete. A query is answered from the cached
+ * chunks at the start of its range and only the remaining tail is read from
+ * the store.
+ *
+ * Chunk length, the delay before a chunk is complete and how long it is
+ * kept depend on the precision, i.e. the table it is read from.
+ */
+public class TimelineMetricsQueryCache {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsQueryCache.class);
+
+  private static final Map<Precision, ChunkPolicy> POLICIES =
+    new EnumMap<Precision, ChunkPolicy>(Precision.class);
+
+  static {
+    // Precision rows hold up to a sink flush interval of points after
+    // SERVER_TIME, aggregate rows hold a single point
+    POLICIES.put(Precision.SECONDS, new ChunkPolicy(TimeUnit.MINUTES.toMillis(10),
+      TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(15), TimeUnit.MINUTES.toMillis(2)));
+    POLICIES.put(Precision.MINUTES, new ChunkPolicy(TimeUnit.HOURS.toMillis(1),
+      TimeUnit.MINUTES.toMillis(15), TimeUnit.HOURS.toMillis(1), 0));
+    POLICIES.put(Precision.HOURS, new ChunkPolicy(TimeUnit.DAYS.toMillis(1),
+      TimeUnit.HOURS.toMillis(2), TimeUnit.HOURS.toMillis(6), 0));
+    POLICIES.put(Precision.DAYS, new ChunkPolicy(TimeUnit.DAYS.toMillis(30),
+      TimeUnit.DAYS.toMillis(2), TimeUnit.DAYS.toMillis(1), 0));
+  }
+
+  /**
+   * Reads a time range of the cached query from the store.
+   */
+  public interface Loader {
+    TimelineMetrics load(long startTime, long endTime) throws SQLException, IOException;
+  }
+
+  private final long maxPoints;
+  // Access ordered for least recently used eviction, guarded by itself
+  private final LinkedHashMap<ChunkKey, Chunk> chunks =
+    new LinkedHashMap<ChunkKey, Chunk>(1024, 0.75f, true);
+  private long cachedPoints;
+  private final TimelineMetricStoreMetrics storeMetrics;
+
+  public TimelineMetricsQueryCache(long maxPoints, TimelineMetricStoreMetrics storeMetrics) {
+    this.maxPoints = maxPoints;
+    this.storeMetrics = storeMetrics;
+  }
+
+  /**
+   * Normalized query key, independent of the order of names and hosts.
+   */
+  public static String getQueryKey(Collection<String> metricNames, Collection<String> hostnames,
+                                   String appId, String instanceId, Precision precision,
+                                   boolean grouped) {
+    StringBuilder sb = new StringBuilder();
+    appendSorted(sb, metricNames);
+    appendSorted(sb, hostnames);
+    sb.append(appId).append('\u0000');
+    sb.append(instanceId).append('\u0000');
+    sb.append(precision).append('\u0000');
+    sb.append(grouped);
+    return sb.toString();
+  }
+
+  private static void appendSorted(StringBuilder sb, Collection<String> values) {
+    if (values != null) {
+      List<String> sorted = new ArrayList<String>(values);
+      Collections.sort(sorted);
+      for (String value : sorted) {
+        sb.append(value).append('\u0001');
+      }
+    }
+    sb.append('\u0000');
+  }
+
+  /**
+   * Return the metrics of [startTime, endTime), using cached chunks from
+   * startTime on for as long as they are available and the loader for the
+   * rest. Chunks of the loaded range that are complete get cached.
+   */
+  public TimelineMetrics getMetrics(String queryKey, Precision precision,
+                                    long startTime, long endTime, Loader loader)
+      throws SQLException, IOException {
+    ChunkPolicy policy = POLICIES.get(precision);
+    long now = System.currentTimeMillis();
+    long completeBefore = Math.min(now, endTime) - policy.settleMillis;
+
+    Map<String, TimelineMetric> merged = new LinkedHashMap<String, TimelineMetric>();
+    long chunkStart = startTime - startTime % policy.chunkMillis;
+    int hits = 0;
+    while (chunkStart + policy.chunkMillis <= completeBefore && chunkStart < endTime) {
+      Chunk chunk = getChunk(new ChunkKey(queryKey, chunkStart), now);
+      if (chunk == null) {
+        break;
+      }
+      for (TimelineMetric metric : chunk.metrics) {
+        merge(merged, metric, Math.max(startTime, chunkStart), Long.MAX_VALUE);
+      }
+      hits++;
+      chunkStart += policy.chunkMillis;
+    }
+
+    if (chunkStart < endTime) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Served " + hits + " cached chunks, loading from " + chunkStart);
+      }
+      // Cache the loaded chunks only if rows from before the first one were
+      // read as well, their points can reach into it
+      boolean cacheChunks = chunkStart + policy.chunkMillis <= completeBefore;
+      long loadStart = cacheChunks ? chunkStart - policy.lookbackMillis :
+        Math.max(chunkStart, startTime);
+      TimelineMetrics loaded = loader.load(loadStart, endTime);
+      if (cacheChunks) {
+        putChunks(queryKey, loaded, chunkStart, completeBefore, policy, now);
+      }
+      for (TimelineMetric metric : loaded.getMetrics()) {
+        merge(merged, metric, Math.max(startTime, chunkStart), Long.MAX_VALUE);
+      }
+    }
+
+    if (storeMetrics != null) {
+      storeMetrics.addQueryCacheHits(hits);
+    }
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(new ArrayList<TimelineMetric>(merged.values()));
+    return metrics;
+  }
+
+  private Chunk getChunk(ChunkKey key, long now) {
+    synchronized (chunks) {
+      Chunk chunk = chunks.get(key);
+      if (chunk != null && chunk.expiryTime <= now) {
+        chunks.remove(key);
+        cachedPoints -= chunk.points;
+        return null;
+      }
+      return chunk;
+    }
+  }
+
+  private void putChunks(String queryKey, TimelineMetrics loaded, long firstChunkStart,
+                         long completeBefore, ChunkPolicy policy, long now) {
+    for (long chunkStart = firstChunkStart; chunkStart + policy.chunkMillis <= completeBefore;
+         chunkStart += policy.chunkMillis) {
+      List<TimelineMetric> chunkMetrics = new ArrayList<TimelineMetric>();
+      long points = 1;
+      for (TimelineMetric metric : loaded.getMetrics()) {
+        TimelineMetric chunkMetric = copy(metric, chunkStart, chunkStart + policy.chunkMillis);
+        if (chunkMetric != null) {
+          chunkMetrics.add(chunkMetric);
+          points += chunkMetric.getMetricSeries().size();
+        }
+      }
+      Chunk chunk = new Chunk(chunkMetrics, points, now + policy.ttlMillis);
+      synchronized (chunks) {
+        Chunk previous = chunks.put(new ChunkKey(queryKey, chunkStart), chunk);
+        if (previous != null) {
+          cachedPoints -= previous.points;
+        }
+        cachedPoints += points;
+        evict();
+      }
+    }
+  }
+
+  private void evict() {
+    Iterator<Chunk> iterator = chunks.values().iterator();
+    while (cachedPoints > maxPoints && iterator.hasNext()) {
+      cachedPoints -= iterator.next().points;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Add the points of metric in [fromTime, toTime) to the result, as a copy
+   * since results are post processed in place.
+   */
+  private static void merge(Map<String, TimelineMetric> merged, TimelineMetric metric,
+                            long fromTime, long toTime) {
+    TimelineMetric part = copy(metric, fromTime, toTime);
+    if (part == null) {
+      return;
+    }
+    String key = metric.getMetricName() + '\u0000' + metric.getHostName() + '\u0000' +
+      metric.getAppId() + '\u0000' + metric.getInstanceId();
+    TimelineMetric existing = merged.get(key);
+    if (existing == null) {
+      merged.put(key, part);
+    } else {
+      existing.addMetricValues(part.getMetricSeries());
+      if (existing.getStartTime() > part.getStartTime()) {
+        existing.setStartTime(part.getStartTime());
+        existing.setTimestamp(part.getTimestamp());
+      }
+    }
+  }
+
+  private static TimelineMetric copy(TimelineMetric metric, long fromTime, long toTime) {
+    TimelineMetricSeries series = metric.getMetricSeries();
+    int from = lowerBound(series, fromTime);
+    int to = toTime == Long.MAX_VALUE ? series.size() : lowerBound(series, toTime);
+    if (from >= to) {
+      return null;
+    }
+    TimelineMetricSeries part = new TimelineMetricSeries(to - from);
+    for (int i = from; i < to; i++) {
+      part.append(series.getTimestamp(i), series.getValue(i));
+    }
+    TimelineMetric copy = new TimelineMetric();
+    copy.setMetricName(metric.getMetricName());
+    copy.setHostName(metric.getHostName());
+    copy.setAppId(metric.getAppId());
+    copy.setInstanceId(metric.getInstanceId());
+    copy.setType(metric.getType());
+    copy.setUnits(metric.getUnits());
+    copy.setStartTime(part.firstTimestamp());
+    copy.setTimestamp(part.firstTimestamp());
+    copy.setMetricSeries(part);
+    return copy;
+  }
+
+  private static int lowerBound(TimelineMetricSeries series, long timestamp) {
+    int low = 0;
+    int high = series.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (series.getTimestamp(mid) < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  long getCachedPoints() {
+    synchronized (chunks) {
+      return cachedPoints;
+    }
+  }
+
+  int getChunkCount() {
+    synchronized (chunks) {
+      return chunks.size();
+    }
+  }
+
+  private static final class ChunkPolicy {
+    private final long chunkMillis;
+    // Time after the end of a chunk until its data is complete
+    private final long settleMillis;
+    private final long ttlMillis;
+    // How far before SERVER_TIME a row's points can start
+    private final long lookbackMillis;
+
+    ChunkPolicy(long chunkMillis, long settleMillis, long ttlMillis, long lookbackMillis) {
+      this.chunkMillis = chunkMillis;
+      this.settleMillis = settleMillis;
+      this.ttlMillis = ttlMillis;
+      this.lookbackMillis = lookbackMillis;
+    }
+  }
+
+  private static final class ChunkKey {
+    private final String queryKey;
+    private final long chunkStart;
+
+    ChunkKey(String queryKey, long chunkStart) {
+      this.queryKey = queryKey;
+      this.chunkStart = chunkStart;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof ChunkKey)) return false;
+      ChunkKey that = (ChunkKey) o;
+      return chunkStart == that.chunkStart && queryKey.equals(that.queryKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * queryKey.hashCode() + (int) (chunkStart ^ (chunkStart >>> 32));
+    }
+  }
+
+  private static final class Chunk {
+    private final List<TimelineMetric> metrics;
+    private final long points;
+    private final long expiryTime;
+
+    Chunk(List<TimelineMetric> metrics, long points, long expiryTime) {
+      this.metrics = metrics;
+      this.points = points;
+      this.expiryTime = expiryTime;
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricStoreMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.MetricCollectorHAController;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATE_TABLE_SPLIT_POINTS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_SPLIT_POINTS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_AGGREGATOR_PARTITIONS_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_AGGREGATOR_PARTITION_THREADS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.ACTUAL_AGGREGATOR_NAMES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_RECORD_TABLE_NAME;
+
+/**
+ * Base class for aggregators that can restrict their statement to a metric
+ * name range. When timeline.metrics.aggregator.partitions.enabled is set, the
+ * aggregation is split by the split points of the input table and the
+ * partitions run on a pool of timeline.metrics.aggregator.partition.threads
+ * workers, each from its own checkpoint.
+ */
+public abstract class AbstractPartitionedTimelineAggregator extends AbstractTimelineAggregator {
+  // Metric name ranges aggregated independently, empty if not partitioned
+  protected List<MetricNamePartition> partitions = Collections.emptyList();
+  private ExecutorService partitionExecutor;
+
+  public AbstractPartitionedTimelineAggregator(AGGREGATOR_NAME aggregatorName,
+                                               PhoenixHBaseAccessor hBaseAccessor,
+                                               Configuration metricsConf,
+                                               String checkpointLocation,
+                                               Long sleepIntervalMillis,
+                                               Integer checkpointCutOffMultiplier,
+                                               String aggregatorDisableParam,
+                                               String tableName,
+                                               String outputTableName,
+                                               Long nativeTimeRangeDelay,
+                                               MetricCollectorHAController haController) {
+    super(aggregatorName, hBaseAccessor, metricsConf, checkpointLocation,
+      sleepIntervalMillis, checkpointCutOffMultiplier, aggregatorDisableParam,
+      tableName, outputTableName, nativeTimeRangeDelay, haController);
+
+    initPartitions();
+  }
+
+  private void initPartitions() {
+    if (!metricsConf.getBoolean(TIMELINE_METRICS_AGGREGATOR_PARTITIONS_ENABLED, false)) {
+      return;
+    }
+    String splitPoints = METRICS_RECORD_TABLE_NAME.equals(tableName) ?
+      metricsConf.get(PRECISION_TABLE_SPLIT_POINTS) : metricsConf.get(AGGREGATE_TABLE_SPLIT_POINTS);
+    List<MetricNamePartition> namePartitions = MetricNamePartition.fromSplitPoints(splitPoints);
+    if (namePartitions.size() < 2) {
+      LOG.info("No split points for " + tableName + ", aggregating without partitions.");
+      return;
+    }
+    int threads = Math.min(namePartitions.size(),
+      metricsConf.getInt(TIMELINE_METRICS_AGGREGATOR_PARTITION_THREADS, 4));
+    final String threadPrefix = ACTUAL_AGGREGATOR_NAMES.get(getName()) + "Partition-";
+    partitionExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, threadPrefix + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    partitions = namePartitions;
+    LOG.info("Aggregating " + tableName + " in " + partitions.size() +
+      " partitions with " + threads + " threads.");
+  }
+
+  protected long readPartitionCheckPoint(MetricNamePartition partition) {
+    if (taskRunner != null) {
+      return taskRunner.getCheckpointManager().readCheckpoint(getName(), partition.getId());
+    }
+    try {
+      File checkpoint = new File(getCheckpointLocation() + "." + partition.getId());
+      if (checkpoint.exists()) {
+        String contents = FileUtils.readFileToString(checkpoint);
+        if (contents != null && !contents.isEmpty()) {
+          return Long.parseLong(contents);
+        }
+      }
+    } catch (IOException io) {
+      LOG.debug("", io);
+    }
+    return -1;
+  }
+
+  protected void savePartitionCheckPoint(MetricNamePartition partition, long checkpointTime)
+      throws IOException {
+    if (taskRunner != null) {
+      boolean success = taskRunner.getCheckpointManager().writeCheckpoint(getName(),
+        partition.getId(), checkpointTime);
+      if (!success) {
+        LOG.error("Error saving checkpoint with AggregationTaskRunner, " +
+          "aggregator = " + getName() + ", partition = " + partition.getId() +
+          ", value = " + checkpointTime);
+      }
+    } else {
+      FileUtils.writeStringToFile(new File(getCheckpointLocation() + "." + partition.getId()),
+        String.valueOf(checkpointTime));
+    }
+  }
+
+  @Override
+  public boolean doWork(long startTime, long endTime) {
+    if (partitions.isEmpty()) {
+      return super.doWork(startTime, endTime);
+    }
+    return doPartitionedWork(startTime, endTime);
+  }
+
+  /**
+   * Hand the interval to every partition that is not still busy with an
+   * earlier one and wait for them until the next cycle is due. Partitions
+   * keep their own checkpoints and catch up on the following cycles, so a
+   * slow partition does not hold back the others.
+   *
+   * @return false only if every partition failed
+   */
+  private boolean doPartitionedWork(long startTime, long endTime) {
+    LOG.info("Start partitioned aggregation cycle @ " + new Date() + ", " +
+      "startTime = " + new Date(startTime) + ", endTime = " + new Date(endTime));
+
+    List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+    for (final MetricNamePartition partition : partitions) {
+      if (!partition.tryStart()) {
+        LOG.info("Partition " + partition + " is still running, skipping it this cycle.");
+        continue;
+      }
+      futures.add(partitionExecutor.submit(new PartitionTask(partition, startTime, endTime)));
+    }
+
+    runDownsamplers(startTime, endTime);
+
+    long deadline = System.currentTimeMillis() + getSleepIntervalMillis();
+    int failed = 0;
+    for (Future<Boolean> future : futures) {
+      try {
+        long remaining = Math.max(0, deadline - System.currentTimeMillis());
+        if (!future.get(remaining, MILLISECONDS)) {
+          failed++;
+        }
+      } catch (TimeoutException e) {
+        // Keeps running, next cycle skips the partition until it is done
+      } catch (ExecutionException e) {
+        LOG.error("Exception during partition aggregation.", e.getCause());
+        failed++;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+
+    LOG.info("End partitioned aggregation cycle @ " + new Date() + ", " +
+      failed + " of " + futures.size() + " partitions failed.");
+    return futures.isEmpty() || failed < futures.size();
+  }
+
+  private void runDownsamplers(long startTime, long endTime) {
+    if (CollectionUtils.isEmpty(configuredDownSamplers)) {
+      return;
+    }
+    Connection conn = null;
+    try {
+      conn = hBaseAccessor.getConnection();
+      downsample(conn, startTime, endTime);
+    } catch (SQLException e) {
+      LOG.error("Exception during downsampling metrics.", e);
+    } finally {
+      if (conn != null) {
+        try {
+          conn.close();
+        } catch (SQLException sql) {
+          // Ignore
+        }
+      }
+    }
+  }
+
+  /**
+   * Aggregate one partition from its own checkpoint up to endTime, one
+   * interval at a time.
+   */
+  private class PartitionTask implements Callable<Boolean> {
+    private final MetricNamePartition partition;
+    private final long startTime;
+    private final long endTime;
+
+    PartitionTask(MetricNamePartition partition, long startTime, long endTime) {
+      this.partition = partition;
+      this.startTime = startTime;
+      this.endTime = endTime;
+    }
+
+    @Override
+    public Boolean call() throws Exception {
+      TimelineMetricStoreMetrics storeMetrics = TimelineMetricStoreMetrics.getInstance();
+      String aggregator = ACTUAL_AGGREGATOR_NAMES.get(getName());
+      long interval = getSleepIntervalMillis();
+      try {
+        long checkpoint = readPartitionCheckPoint(partition);
+        if (checkpoint == -1 || endTime - checkpoint > getCheckpointCutOffIntervalMillis()) {
+          checkpoint = startTime;
+        } else {
+          checkpoint = getRoundedCheckPointTimeMillis(checkpoint, interval);
+        }
+
+        boolean success = true;
+        while (success && checkpoint < endTime) {
+          long start = System.currentTimeMillis();
+          LOG.info("Aggregating partition " + partition + " from " + new Date(checkpoint));
+          // Partitioned runs downsample once per cycle
+          success = doWork(checkpoint, checkpoint + interval,
+            prepareMetricQueryCondition(checkpoint, checkpoint + interval, partition), false);
+          storeMetrics.addAggregatorPartitionRun(aggregator, partition.getId(),
+            System.currentTimeMillis() - start);
+          if (success) {
+            checkpoint += interval;
+            try {
+              savePartitionCheckPoint(partition, checkpoint);
+            } catch (IOException io) {
+              LOG.warn("Error saving checkpoint of partition " + partition, io);
+            }
+          }
+        }
+        storeMetrics.setAggregatorPartitionLag(aggregator, partition.getId(),
+          System.currentTimeMillis() - checkpoint);
+        return success;
+      } finally {
+        partition.finish();
+      }
+    }
+  }
+
+  @Override
+  protected Condition prepareMetricQueryCondition(long startTime, long endTime) {
+    return prepareMetricQueryCondition(startTime, endTime, null);
+  }
+
+  /**
+   * Condition restricted to the metric name range of the partition, or over
+   * all metric names if the partition is null.
+   */
+  protected abstract Condition prepareMetricQueryCondition(long startTime, long endTime,
+                                                           MetricNamePartition partition);
+}
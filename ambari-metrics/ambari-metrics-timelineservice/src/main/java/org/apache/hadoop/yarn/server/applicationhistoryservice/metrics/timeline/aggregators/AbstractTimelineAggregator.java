@@ -251,12 +251,19 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
    * @param endTime Sample end time
    */
   public boolean doWork(long startTime, long endTime) {
+    return doWork(startTime, endTime, prepareMetricQueryCondition(startTime, endTime), true);
+  }
+
+  /**
+   * Run the aggregation statement of the interval, followed by the
+   * configured downsamplers if asked to.
+   */
+  protected boolean doWork(long startTime, long endTime, Condition condition,
+                           boolean downsample) {
     LOG.info("Start aggregation cycle @ " + new Date() + ", " +
       "startTime = " + new Date(startTime) + ", endTime = " + new Date(endTime));
 
     boolean success = true;
-    Condition condition = prepareMetricQueryCondition(startTime, endTime);
-
     Connection conn = null;
     PreparedStatement stmt = null;
     ResultSet rs = null;
@@ -272,7 +279,9 @@ public abstract class AbstractTimelineAggregator implements TimelineMetricAggreg
         conn.commit();
         LOG.info(rows + " row(s) updated in aggregation.");
 
-        downsample(conn, startTime, endTime);
+        if (downsample) {
+          downsample(conn, startTime, endTime);
+        }
       } else {
         rs = stmt.executeQuery();
       }
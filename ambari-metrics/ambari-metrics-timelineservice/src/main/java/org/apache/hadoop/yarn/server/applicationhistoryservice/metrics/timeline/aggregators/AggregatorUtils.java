@@ -29,6 +29,7 @@ import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 
 /**
  *
@@ -69,6 +70,37 @@ public class AggregatorUtils {
     return values;
   }
 
+  public static double[] calculateAggregates(TimelineMetricSeries metricSeries) {
+    double[] values = new double[4];
+    double max = Double.MIN_VALUE;
+    double min = Double.MAX_VALUE;
+    double sum = 0.0;
+    int metricCount = 0;
+
+    if (metricSeries != null && !metricSeries.isEmpty()) {
+      for (int i = 0; i < metricSeries.size(); i++) {
+        double value = metricSeries.getValue(i);
+        // Null values are kept as NaN in the series
+        if (!Double.isNaN(value)) {
+          if (value > max) {
+            max = value;
+          }
+          if (value < min) {
+            min = value;
+          }
+          sum += value;
+        }
+      }
+      metricCount = metricSeries.size();
+    }
+    values[0] = sum;
+    values[1] = max != Double.MIN_VALUE ? max : 0.0;
+    values[2] = min != Double.MAX_VALUE ? min : 0.0;
+    values[3] = metricCount;
+
+    return values;
+  }
+
   public static void populateMetricWhitelistFromFile(String whitelistFile) {
 
     FileInputStream fstream = null;
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Range of metric names, lower bound inclusive and upper bound exclusive,
+ * aggregated independently from the rest of the table. Ranges follow the
+ * table split points so that a partition maps to a region.
+ */
+public class MetricNamePartition {
+  private final String lowerBound;
+  private final String upperBound;
+  private final String id;
+  private final AtomicBoolean running = new AtomicBoolean(false);
+
+  MetricNamePartition(String lowerBound, String upperBound) {
+    this.lowerBound = lowerBound;
+    this.upperBound = upperBound;
+    this.id = lowerBound == null ? "first" : lowerBound.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  /**
+   * Create partitions covering all metric names from comma separated
+   * split points, no partitions if there are no split points.
+   */
+  public static List<MetricNamePartition> fromSplitPoints(String splitPoints) {
+    if (StringUtils.isEmpty(splitPoints) || StringUtils.isEmpty(splitPoints.trim())) {
+      return Collections.emptyList();
+    }
+    TreeSet<String> points = new TreeSet<String>();
+    for (String point : splitPoints.split(",")) {
+      if (!StringUtils.isEmpty(point.trim())) {
+        points.add(point.trim());
+      }
+    }
+    List<MetricNamePartition> partitions = new ArrayList<MetricNamePartition>();
+    String lowerBound = null;
+    for (String point : points) {
+      partitions.add(new MetricNamePartition(lowerBound, point));
+      lowerBound = point;
+    }
+    partitions.add(new MetricNamePartition(lowerBound, null));
+    return partitions;
+  }
+
+  /**
+   * Condition on METRIC_NAME to be placed right after WHERE, ends with
+   * AND like {@link AbstractTimelineAggregator#getDownsampledMetricSkipClause()}.
+   */
+  public String getWhereClause() {
+    StringBuilder sb = new StringBuilder();
+    if (lowerBound != null) {
+      sb.append(" METRIC_NAME >= '").append(escape(lowerBound)).append("' AND ");
+    }
+    if (upperBound != null) {
+      sb.append(" METRIC_NAME < '").append(escape(upperBound)).append("' AND ");
+    }
+    return sb.toString();
+  }
+
+  private static String escape(String value) {
+    return value.replace("'", "''");
+  }
+
+  /**
+   * Name usable in checkpoint paths and metric names.
+   */
+  public String getId() {
+    return id;
+  }
+
+  boolean tryStart() {
+    return running.compareAndSet(false, true);
+  }
+
+  void finish() {
+    running.set(false);
+  }
+
+  @Override
+  public String toString() {
+    return "[" + (lowerBound != null ? lowerBound : "") + ", " +
+      (upperBound != null ? upperBound : "") + ")";
+  }
+}
@@ -248,6 +248,19 @@ public class TimelineMetricAggregatorFactory {
     PhoenixHBaseAccessor hBaseAccessor, Configuration metricsConf,
     TimelineMetricMetadataManager metadataManager,
     MetricCollectorHAController haController) {
+    return createTimelineClusterAggregatorSecond(hBaseAccessor, metricsConf,
+      metadataManager, haController, null);
+  }
+
+  /**
+   * Second aggregation for cluster, taking time slices from the ingest
+   * accumulator when one is given.
+   */
+  public static TimelineMetricAggregator createTimelineClusterAggregatorSecond(
+    PhoenixHBaseAccessor hBaseAccessor, Configuration metricsConf,
+    TimelineMetricMetadataManager metadataManager,
+    MetricCollectorHAController haController,
+    TimelineMetricClusterIngestAccumulator ingestAccumulator) {
 
     String checkpointDir = metricsConf.get(
       TIMELINE_METRICS_AGGREGATOR_CHECKPOINT_DIR, DEFAULT_CHECKPOINT_LOCATION);
@@ -281,7 +294,8 @@ public class TimelineMetricAggregatorFactory {
       outputTableName,
       120000l,
       timeSliceIntervalMillis,
-      haController
+      haController,
+      ingestAccumulator
     );
   }
 
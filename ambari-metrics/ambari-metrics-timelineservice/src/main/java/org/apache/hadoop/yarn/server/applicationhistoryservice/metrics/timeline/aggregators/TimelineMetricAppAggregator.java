@@ -171,6 +171,16 @@ public class TimelineMetricAppAggregator {
     }
   }
 
+  /**
+   * Return aggregated data collected so far and start over, so that a cycle
+   * can save its aggregates in several batches.
+   */
+  public Map<TimelineClusterMetric, MetricClusterAggregate> drainAggregateClusterMetrics() {
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregates = aggregateClusterMetrics;
+    aggregateClusterMetrics = new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    return aggregates;
+  }
+
   /**
    * Return current copy of aggregated data.
    */
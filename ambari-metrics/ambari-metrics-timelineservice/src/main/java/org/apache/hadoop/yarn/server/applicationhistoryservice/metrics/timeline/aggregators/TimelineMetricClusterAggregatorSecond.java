@@ -24,6 +24,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.metrics2.sink.timeline.PostProcessingUtil;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricMetadata;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.MetricCollectorHAController;
@@ -44,10 +45,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_APP_ID;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.SERVER_SIDE_TIMESIFT_ADJUSTMENT;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CLUSTER_AGGREGATOR_INTERPOLATION_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_FLUSH_SIZE;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.GET_METRIC_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_RECORD_TABLE_NAME;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRIC_AGGREGATION_SQL_FILTERS;
@@ -58,14 +61,24 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
  */
 public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggregator {
   public Long timeSliceIntervalMillis;
-  private TimelineMetricReadHelper timelineMetricReadHelper = new TimelineMetricReadHelper(true);
+  private final TimelineMetricReadHelper timelineMetricReadHelper;
   // Aggregator to perform app-level aggregates for host metrics
   private final TimelineMetricAppAggregator appAggregator;
   // 1 minute client side buffering adjustment
   private final Long serverTimeShiftAdjustment;
   private final boolean interpolationEnabled;
+  // Number of finished aggregates buffered before they are saved
+  private final int flushSize;
   private TimelineMetricMetadataManager metadataManagerInstance;
   private String skipAggrPatternStrings;
+  // Metrics time sliced at ingest, null when slices are read from the store
+  private final TimelineMetricClusterIngestAccumulator ingestAccumulator;
+  private final List<Pattern> skipAggrPatterns = new ArrayList<Pattern>();
+  // Late data range taken from the accumulator, re-read on the next run
+  private long lateDataStartTime = -1;
+  private long lateDataEndTime = -1;
+  // Upper bound on SERVER_TIME while re-reading late data
+  private long lateDataServerEndTime = -1;
 
   public TimelineMetricClusterAggregatorSecond(AGGREGATOR_NAME aggregatorName,
                                                TimelineMetricMetadataManager metadataManager,
@@ -80,16 +93,118 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
                                                Long nativeTimeRangeDelay,
                                                Long timeSliceInterval,
                                                MetricCollectorHAController haController) {
+    this(aggregatorName, metadataManager, hBaseAccessor, metricsConf, checkpointLocation,
+      sleepIntervalMillis, checkpointCutOffMultiplier, aggregatorDisabledParam, tableName,
+      outputTableName, nativeTimeRangeDelay, timeSliceInterval, haController, null);
+  }
+
+  public TimelineMetricClusterAggregatorSecond(AGGREGATOR_NAME aggregatorName,
+                                               TimelineMetricMetadataManager metadataManager,
+                                               PhoenixHBaseAccessor hBaseAccessor,
+                                               Configuration metricsConf,
+                                               String checkpointLocation,
+                                               Long sleepIntervalMillis,
+                                               Integer checkpointCutOffMultiplier,
+                                               String aggregatorDisabledParam,
+                                               String tableName,
+                                               String outputTableName,
+                                               Long nativeTimeRangeDelay,
+                                               Long timeSliceInterval,
+                                               MetricCollectorHAController haController,
+                                               TimelineMetricClusterIngestAccumulator ingestAccumulator) {
     super(aggregatorName, hBaseAccessor, metricsConf, checkpointLocation,
       sleepIntervalMillis, checkpointCutOffMultiplier, aggregatorDisabledParam,
       tableName, outputTableName, nativeTimeRangeDelay, haController);
 
     this.metadataManagerInstance = metadataManager;
+    this.timelineMetricReadHelper = hBaseAccessor != null ?
+      new TimelineMetricReadHelper(true, hBaseAccessor.getSeriesCodec()) :
+      new TimelineMetricReadHelper(true);
     appAggregator = new TimelineMetricAppAggregator(metadataManager, metricsConf);
     this.timeSliceIntervalMillis = timeSliceInterval;
     this.serverTimeShiftAdjustment = Long.parseLong(metricsConf.get(SERVER_SIDE_TIMESIFT_ADJUSTMENT, "90000"));
     this.interpolationEnabled = Boolean.parseBoolean(metricsConf.get(TIMELINE_METRICS_CLUSTER_AGGREGATOR_INTERPOLATION_ENABLED, "true"));
     this.skipAggrPatternStrings = metricsConf.get(TIMELINE_METRIC_AGGREGATION_SQL_FILTERS);
+    this.flushSize = metricsConf.getInt(TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_FLUSH_SIZE, 10000);
+    this.ingestAccumulator = ingestAccumulator;
+    if (!StringUtils.isEmpty(skipAggrPatternStrings)) {
+      for (String likePattern : skipAggrPatternStrings.split(",")) {
+        skipAggrPatterns.add(toPattern(likePattern.trim()));
+      }
+    }
+  }
+
+  /**
+   * With an ingest accumulator the slices of this run are taken from memory
+   * and the precision table is only read for runs the accumulator did not
+   * fully observe, and for slices that received points after being saved.
+   */
+  @Override
+  public boolean doWork(long startTime, long endTime) {
+    if (ingestAccumulator == null) {
+      return super.doWork(startTime, endTime);
+    }
+    long sliceStartTime = startTime - serverTimeShiftAdjustment;
+    long sliceEndTime = endTime - serverTimeShiftAdjustment;
+
+    if (sliceStartTime < ingestAccumulator.getDrainedUpTo() ||
+        sliceStartTime % timeSliceIntervalMillis != 0 ||
+        timeSliceIntervalMillis != ingestAccumulator.getSliceIntervalMillis()) {
+      LOG.info("Ingested metrics do not cover " + new Date(sliceStartTime) +
+        ", reading from the store.");
+      ingestAccumulator.drainSlices(sliceEndTime);
+      return super.doWork(startTime, endTime);
+    }
+
+    boolean success = aggregateLateData();
+
+    LOG.info("Start aggregation cycle from ingested metrics @ " + new Date() + ", " +
+      "startTime = " + new Date(startTime) + ", endTime = " + new Date(endTime));
+    List<TimelineMetric> metrics = ingestAccumulator.drainSlices(sliceEndTime);
+    List<Long[]> timeSlices = getTimeSlices(sliceStartTime, sliceEndTime);
+    appAggregator.init();
+    try {
+      int savedAggregates = aggregateIngestedMetrics(metrics, timeSlices);
+      LOG.info("Saved " + savedAggregates + " metric aggregates.");
+    } catch (SQLException e) {
+      // Run is retried from the store since its slices are drained
+      LOG.error("Exception during aggregating metrics.", e);
+      success = false;
+    } finally {
+      appAggregator.cleanup();
+    }
+    LOG.info("End aggregation cycle @ " + new Date());
+    return success;
+  }
+
+  /**
+   * Re-read slices that got late points. The range is taken one run before
+   * it is read so that the late points have been committed by then.
+   */
+  private boolean aggregateLateData() {
+    long startTime = lateDataStartTime;
+    long endTime = lateDataEndTime;
+    lateDataStartTime = ingestAccumulator.takeLateDataStartTime();
+    lateDataEndTime = ingestAccumulator.getDrainedUpTo();
+    if (startTime == -1) {
+      return true;
+    }
+
+    LOG.info("Re-reading late metrics, startTime = " + new Date(startTime) +
+      ", endTime = " + new Date(endTime));
+    lateDataServerEndTime = System.currentTimeMillis();
+    boolean success;
+    try {
+      success = super.doWork(startTime + serverTimeShiftAdjustment,
+        endTime + serverTimeShiftAdjustment);
+    } finally {
+      lateDataServerEndTime = -1;
+    }
+    if (!success) {
+      // Retry along with the next late range
+      lateDataStartTime = lateDataStartTime == -1 ? startTime : Math.min(startTime, lateDataStartTime);
+    }
+    return success;
   }
 
   @Override
@@ -101,11 +216,9 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     List<Long[]> timeSlices = getTimeSlices(startTime - serverTimeShiftAdjustment, endTime - serverTimeShiftAdjustment);
     // Initialize app aggregates for host metrics
     appAggregator.init();
-    Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
-      aggregateMetricsFromResultSet(rs, timeSlices);
+    int savedAggregates = aggregateMetricsFromResultSet(rs, timeSlices);
 
-    LOG.info("Saving " + aggregateClusterMetrics.size() + " metric aggregates.");
-    hBaseAccessor.saveClusterAggregateRecords(aggregateClusterMetrics);
+    LOG.info("Saved " + savedAggregates + " metric aggregates.");
     appAggregator.cleanup();
   }
 
@@ -121,8 +234,10 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
       metricNamesNotCondition = true;
     }
 
+    // Late points are stored well after the end of their slice
+    long serverEndTime = lateDataServerEndTime != -1 ? lateDataServerEndTime : endTime;
     Condition condition = new DefaultCondition(metricNames, null, null, null, startTime - serverTimeShiftAdjustment,
-      endTime, null, null, true);
+      serverEndTime, null, null, true);
     condition.setMetricNamesNotCondition(metricNamesNotCondition);
     condition.setNoLimit();
     condition.setFetchSize(resultsetFetchSize);
@@ -149,11 +264,25 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     return timeSlices;
   }
 
-  private Map<TimelineClusterMetric, MetricClusterAggregate> aggregateMetricsFromResultSet(ResultSet rs, List<Long[]> timeSlices)
+  /**
+   * Single pass over the result set, which is ordered by metric name, host
+   * and time. Aggregates of a metric are final once the next metric name
+   * shows up, they are then moved to a pending batch which is saved every
+   * flushSize aggregates. Heap use is bounded by one metric across all
+   * hosts plus one batch, rather than by every metric in the cluster.
+   *
+   * @return number of aggregates saved
+   */
+  private int aggregateMetricsFromResultSet(ResultSet rs, List<Long[]> timeSlices)
     throws SQLException, IOException {
+    // Aggregates of the metric name being read
     Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
       new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    // Finished aggregates waiting to be saved
+    Map<TimelineClusterMetric, MetricClusterAggregate> pendingAggregates =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
     int numLiveHosts = 0;
+    int savedAggregates = 0;
 
     TimelineMetric metric = null;
     if (rs.next()) {
@@ -166,11 +295,19 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
         // avoids issues across rows that belong to same hosts but get
         // counted as coming from different ones.
         if (metric.equalsExceptTime(nextMetric)) {
-          metric.addMetricValues(nextMetric.getMetricValues());
+          metric.addMetricValues(nextMetric.getMetricSeries());
         } else {
           // Process the current metric
           int numHosts = processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
           numLiveHosts = Math.max(numHosts, numLiveHosts);
+          if (!metric.getMetricName().equals(nextMetric.getMetricName())) {
+            pendingAggregates.putAll(aggregateClusterMetrics);
+            aggregateClusterMetrics.clear();
+            if (pendingAggregates.size() >= flushSize) {
+              savedAggregates += saveAggregates(pendingAggregates);
+              pendingAggregates = new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+            }
+          }
           metric = nextMetric;
         }
       }
@@ -181,14 +318,99 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
       numLiveHosts = Math.max(numHosts, numLiveHosts);
     }
 
-    // Add app level aggregates to save
-    aggregateClusterMetrics.putAll(appAggregator.getAggregateClusterMetrics());
+    pendingAggregates.putAll(aggregateClusterMetrics);
 
     // Add liveHosts metric.
     long timestamp = timeSlices.get(timeSlices.size() - 1)[1];
-    processLiveHostsMetric(aggregateClusterMetrics, numLiveHosts, timestamp);
+    processLiveHostsMetric(pendingAggregates, numLiveHosts, timestamp);
+
+    savedAggregates += saveAggregates(pendingAggregates);
+    return savedAggregates;
+  }
+
+  /**
+   * Same as {@link #aggregateMetricsFromResultSet} for host series drained
+   * from the ingest accumulator, which hold one point per slice and are
+   * ordered by metric name.
+   *
+   * @return number of aggregates saved
+   */
+  private int aggregateIngestedMetrics(List<TimelineMetric> metrics, List<Long[]> timeSlices)
+    throws SQLException {
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    Map<TimelineClusterMetric, MetricClusterAggregate> pendingAggregates =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    int numLiveHosts = 0;
+    int savedAggregates = 0;
+
+    String metricName = null;
+    for (TimelineMetric metric : metrics) {
+      if (isSkippedForAggregation(metric.getMetricName())) {
+        continue;
+      }
+      if (metricName != null && !metricName.equals(metric.getMetricName())) {
+        pendingAggregates.putAll(aggregateClusterMetrics);
+        aggregateClusterMetrics.clear();
+        if (pendingAggregates.size() >= flushSize) {
+          savedAggregates += saveAggregates(pendingAggregates);
+          pendingAggregates = new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+        }
+      }
+      metricName = metric.getMetricName();
+      int numHosts = processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
+      numLiveHosts = Math.max(numHosts, numLiveHosts);
+    }
+    pendingAggregates.putAll(aggregateClusterMetrics);
+
+    long timestamp = timeSlices.get(timeSlices.size() - 1)[1];
+    processLiveHostsMetric(pendingAggregates, numLiveHosts, timestamp);
+
+    savedAggregates += saveAggregates(pendingAggregates);
+    return savedAggregates;
+  }
 
-    return aggregateClusterMetrics;
+  /**
+   * In-memory counterpart of the METRIC_NAME NOT LIKE filter of the query.
+   */
+  private boolean isSkippedForAggregation(String metricName) {
+    for (Pattern pattern : skipAggrPatterns) {
+      if (pattern.matcher(metricName).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Pattern toPattern(String likePattern) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (char c : likePattern.toCharArray()) {
+      if (c == '%' || c == '_') {
+        if (literal.length() > 0) {
+          regex.append(Pattern.quote(literal.toString()));
+          literal.setLength(0);
+        }
+        regex.append(c == '%' ? ".*" : ".");
+      } else {
+        literal.append(c);
+      }
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  /**
+   * Save finished aggregates along with the app level aggregates, which
+   * at this point only hold metric names that are fully read.
+   */
+  private int saveAggregates(Map<TimelineClusterMetric, MetricClusterAggregate> aggregates)
+    throws SQLException {
+    aggregates.putAll(appAggregator.drainAggregateClusterMetrics());
+    hBaseAccessor.saveClusterAggregateRecords(aggregates);
+    return aggregates.size();
   }
 
   /**
@@ -241,7 +463,8 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
   protected Map<TimelineClusterMetric, Double> sliceFromTimelineMetric(
     TimelineMetric timelineMetric, List<Long[]> timeSlices) {
 
-    if (timelineMetric.getMetricValues().isEmpty()) {
+    TimelineMetricSeries metricSeries = timelineMetric.getMetricSeries();
+    if (metricSeries.isEmpty()) {
       return null;
     }
 
@@ -261,13 +484,14 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     double sum = 0.0;
 
     Map<Long,Double> timeSliceValueMap = new HashMap<>();
-    for (Map.Entry<Long, Double> metric : timelineMetric.getMetricValues().entrySet()) {
+    for (int i = 0; i < metricSeries.size(); i++) {
+      double value = metricSeries.getValue(i);
       // TODO: investigate null values - pre filter
-      if (metric.getValue() == null) {
+      if (Double.isNaN(value)) {
         continue;
       }
 
-      Long timestamp = getSliceTimeForMetric(timeSlices, Long.parseLong(metric.getKey().toString()));
+      Long timestamp = getSliceTimeForMetric(timeSlices, metricSeries.getTimestamp(i));
       if (timestamp != -1) {
         // Metric is within desired time range
         TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
@@ -278,16 +502,15 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
           timelineMetric.getType());
 
         if (prevTimestamp < 0 || timestamp.equals(prevTimestamp)) {
-          Double newValue = metric.getValue();
-          if (newValue > 0.0) {
-            sum += newValue;
+          if (value > 0.0) {
+            sum += value;
             count++;
           }
         } else {
           double metricValue = (count > 0) ? (sum / count) : 0.0;
             timelineClusterMetricMap.put(prevMetric, metricValue);
           timeSliceValueMap.put(prevMetric.getTimestamp(), metricValue);
-          sum = metric.getValue();
+          sum = value;
           count = sum > 0.0 ? 1 : 0;
         }
 
@@ -324,7 +547,8 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
           requiredTimestamps.add(timeSlice[1]);
         }
       }
-      Map<Long, Double> interpolatedValuesMap = PostProcessingUtil.interpolate(timelineMetric.getMetricValues(), requiredTimestamps);
+      Map<Long, Double> interpolatedValuesMap = PostProcessingUtil.interpolate(
+        timelineMetric.getMetricSeries().toTreeMap(), requiredTimestamps);
 
       if (interpolatedValuesMap != null) {
         for (Map.Entry<Long, Double> entry : interpolatedValuesMap.entrySet()) {
@@ -348,14 +572,14 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
       //For other metrics, ok to do only interpolation
 
       Double defaultNextSeenValue = null;
-      if (MapUtils.isEmpty(timeSliceValueMap) && MapUtils.isNotEmpty(timelineMetric.getMetricValues())) {
+      TimelineMetricSeries metricSeries = timelineMetric.getMetricSeries();
+      if (MapUtils.isEmpty(timeSliceValueMap) && !metricSeries.isEmpty()) {
         //If no value was found within the start_time based slices, but the metric has value in the server_time range,
         // use that.
 
         LOG.debug("No value found within range for metric : " + timelineMetric.getMetricName());
-        Map.Entry<Long,Double> firstEntry  = timelineMetric.getMetricValues().firstEntry();
-        defaultNextSeenValue = firstEntry.getValue();
-        LOG.debug("Found a data point outside timeslice range: " + new Date(firstEntry.getKey()) + ": " + defaultNextSeenValue);
+        defaultNextSeenValue = metricSeries.getValue(0);
+        LOG.debug("Found a data point outside timeslice range: " + new Date(metricSeries.firstTimestamp()) + ": " + defaultNextSeenValue);
       }
 
       for (int sliceNum = 0; sliceNum < timeSlices.size(); sliceNum++) {
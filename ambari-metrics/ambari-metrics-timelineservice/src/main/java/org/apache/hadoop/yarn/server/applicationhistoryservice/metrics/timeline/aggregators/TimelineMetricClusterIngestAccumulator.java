@@ -0,0 +1,298 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time slices host metrics as they are received, so that the cluster second
+ * aggregator does not have to read them back from the precision table.
+ *
+ * Every host series keeps the sum and count of its positive values per
+ * slice, slices are keyed by their end time like in
+ * {@link TimelineMetricClusterAggregatorSecond}. The aggregator drains
+ * finished slices as one point per slice, which then go through the regular
+ * slicing, interpolation and app aggregation code.
+ *
+ * Points for a slice that was already drained are not accumulated, their
+ * earliest slice is remembered instead so that the aggregator can re-read
+ * that range from the store.
+ */
+public class TimelineMetricClusterIngestAccumulator {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricClusterIngestAccumulator.class);
+
+  private final long sliceIntervalMillis;
+  private final long outOfBandTimeAllowance;
+  // Slices ending at or before this time were not fully observed
+  private final long coverageStartTime;
+  private final ConcurrentMap<SeriesKey, SliceSeries> series =
+    new ConcurrentHashMap<SeriesKey, SliceSeries>();
+  // End time of the last drained slice
+  private volatile long drainedUpTo;
+  // Start time of the earliest slice that received points after it was drained
+  private final AtomicLong lateDataStartTime = new AtomicLong(Long.MAX_VALUE);
+
+  public TimelineMetricClusterIngestAccumulator(long sliceIntervalMillis,
+                                                long outOfBandTimeAllowance) {
+    this.sliceIntervalMillis = sliceIntervalMillis;
+    this.outOfBandTimeAllowance = outOfBandTimeAllowance;
+    this.coverageStartTime = getSliceEndTime(System.currentTimeMillis());
+    this.drainedUpTo = coverageStartTime;
+  }
+
+  /**
+   * Accumulate received metrics. Must be called before the metrics are
+   * handed to the store.
+   */
+  public void putMetrics(TimelineMetrics metrics) {
+    long now = System.currentTimeMillis();
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      if (metric.getMetricName() == null ||
+          Math.abs(now - metric.getStartTime()) > outOfBandTimeAllowance) {
+        continue;
+      }
+      if (CollectionUtils.isNotEmpty(AggregatorUtils.whitelistedMetrics) &&
+          !AggregatorUtils.whitelistedMetrics.contains(metric.getMetricName())) {
+        continue;
+      }
+      TimelineMetricSeries points = metric.getMetricSeries();
+      if (points.isEmpty()) {
+        continue;
+      }
+
+      SeriesKey key = new SeriesKey(metric);
+      boolean added = false;
+      while (!added) {
+        SliceSeries slices = series.get(key);
+        if (slices == null) {
+          slices = new SliceSeries();
+          SliceSeries existing = series.putIfAbsent(key, slices);
+          if (existing != null) {
+            slices = existing;
+          }
+        }
+        synchronized (slices) {
+          // Series is dropped by a concurrent drain, start a new one
+          if (!slices.retired) {
+            slices.units = metric.getUnits();
+            addPoints(slices, points);
+            added = true;
+          }
+        }
+      }
+    }
+  }
+
+  private void addPoints(SliceSeries slices, TimelineMetricSeries points) {
+    long drained = drainedUpTo;
+    for (int i = 0; i < points.size(); i++) {
+      double value = points.getValue(i);
+      if (Double.isNaN(value)) {
+        continue;
+      }
+      long sliceEndTime = getSliceEndTime(points.getTimestamp(i));
+      if (sliceEndTime <= coverageStartTime) {
+        continue;
+      }
+      if (sliceEndTime <= drained) {
+        recordLateData(sliceEndTime - sliceIntervalMillis);
+        continue;
+      }
+      double[] sumAndCount = slices.slices.get(sliceEndTime);
+      if (sumAndCount == null) {
+        sumAndCount = new double[2];
+        slices.slices.put(sliceEndTime, sumAndCount);
+      }
+      // Same rule as the slicing of stored metrics, zeroes are not counted
+      if (value > 0.0) {
+        sumAndCount[0] += value;
+        sumAndCount[1]++;
+      }
+    }
+  }
+
+  private void recordLateData(long sliceStartTime) {
+    long current = lateDataStartTime.get();
+    while (sliceStartTime < current &&
+        !lateDataStartTime.compareAndSet(current, sliceStartTime)) {
+      current = lateDataStartTime.get();
+    }
+  }
+
+  /**
+   * Remove all slices ending at or before sliceEndTime. Later points for
+   * these slices are treated as late data.
+   *
+   * @return one metric per host series with the slice average as value at
+   * the slice end time, ordered by metric name
+   */
+  public List<TimelineMetric> drainSlices(long sliceEndTime) {
+    if (sliceEndTime > drainedUpTo) {
+      drainedUpTo = sliceEndTime;
+    }
+    List<TimelineMetric> drainedMetrics = new ArrayList<TimelineMetric>();
+
+    for (Iterator<Map.Entry<SeriesKey, SliceSeries>> iterator =
+        series.entrySet().iterator(); iterator.hasNext();) {
+      Map.Entry<SeriesKey, SliceSeries> entry = iterator.next();
+      SliceSeries slices = entry.getValue();
+      synchronized (slices) {
+        NavigableMap<Long, double[]> finished = slices.slices.headMap(sliceEndTime, true);
+        if (!finished.isEmpty()) {
+          drainedMetrics.add(toTimelineMetric(entry.getKey(), slices.units, finished));
+          finished.clear();
+        }
+        if (slices.slices.isEmpty()) {
+          slices.retired = true;
+          iterator.remove();
+        }
+      }
+    }
+
+    Collections.sort(drainedMetrics, new Comparator<TimelineMetric>() {
+      @Override
+      public int compare(TimelineMetric o1, TimelineMetric o2) {
+        return o1.getMetricName().compareTo(o2.getMetricName());
+      }
+    });
+    LOG.debug("Drained " + drainedMetrics.size() + " host series up to " + sliceEndTime);
+    return drainedMetrics;
+  }
+
+  private TimelineMetric toTimelineMetric(SeriesKey key, String units,
+                                          NavigableMap<Long, double[]> finished) {
+    TimelineMetricSeries averages = new TimelineMetricSeries(finished.size());
+    for (Map.Entry<Long, double[]> slice : finished.entrySet()) {
+      double[] sumAndCount = slice.getValue();
+      averages.append(slice.getKey(), sumAndCount[1] > 0 ? sumAndCount[0] / sumAndCount[1] : 0.0);
+    }
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(key.metricName);
+    metric.setAppId(key.appId);
+    metric.setInstanceId(key.instanceId);
+    metric.setHostName(key.hostName);
+    metric.setType(key.type);
+    metric.setUnits(units);
+    metric.setStartTime(averages.firstTimestamp());
+    metric.setTimestamp(averages.firstTimestamp());
+    metric.setMetricSeries(averages);
+    return metric;
+  }
+
+  /**
+   * Return start time of the earliest slice that received late points since
+   * the last call, -1 if there were none.
+   */
+  public long takeLateDataStartTime() {
+    long startTime = lateDataStartTime.getAndSet(Long.MAX_VALUE);
+    return startTime == Long.MAX_VALUE ? -1 : startTime;
+  }
+
+  /**
+   * Slices ending after this time were observed from their start.
+   */
+  public long getCoverageStartTime() {
+    return coverageStartTime;
+  }
+
+  public long getDrainedUpTo() {
+    return drainedUpTo;
+  }
+
+  public long getSliceIntervalMillis() {
+    return sliceIntervalMillis;
+  }
+
+  int getSeriesCount() {
+    return series.size();
+  }
+
+  /**
+   * Slices are (start, end], a point on a boundary belongs to the slice
+   * ending there.
+   */
+  private long getSliceEndTime(long timestamp) {
+    long remainder = timestamp % sliceIntervalMillis;
+    return remainder == 0 ? timestamp : timestamp - remainder + sliceIntervalMillis;
+  }
+
+  private static class SliceSeries {
+    final TreeMap<Long, double[]> slices = new TreeMap<Long, double[]>();
+    String units;
+    boolean retired;
+  }
+
+  private static class SeriesKey {
+    final String metricName;
+    final String appId;
+    final String instanceId;
+    final String hostName;
+    final String type;
+    final int hash;
+
+    SeriesKey(TimelineMetric metric) {
+      this.metricName = metric.getMetricName();
+      this.appId = metric.getAppId();
+      this.instanceId = metric.getInstanceId();
+      this.hostName = metric.getHostName();
+      this.type = metric.getType();
+      int result = metricName.hashCode();
+      result = 31 * result + (appId != null ? appId.hashCode() : 0);
+      result = 31 * result + (instanceId != null ? instanceId.hashCode() : 0);
+      result = 31 * result + (hostName != null ? hostName.hashCode() : 0);
+      result = 31 * result + (type != null ? type.hashCode() : 0);
+      this.hash = result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof SeriesKey)) return false;
+      SeriesKey that = (SeriesKey) o;
+      return metricName.equals(that.metricName) && equal(appId, that.appId)
+        && equal(instanceId, that.instanceId) && equal(hostName, that.hostName)
+        && equal(type, that.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    private static boolean equal(String a, String b) {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+}
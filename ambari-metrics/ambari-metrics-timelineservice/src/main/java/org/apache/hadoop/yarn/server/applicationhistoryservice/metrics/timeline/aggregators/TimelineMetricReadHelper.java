@@ -21,29 +21,37 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline
 import org.apache.hadoop.metrics2.sink.timeline.SingleValuedTimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding.GorillaSeriesCodec;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding.TimelineMetricSeriesCodec;
 
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
-import java.util.TreeMap;
 
 public class TimelineMetricReadHelper {
 
   private boolean ignoreInstance = false;
+  private final TimelineMetricSeriesCodec seriesCodec;
 
-  public TimelineMetricReadHelper() {}
+  public TimelineMetricReadHelper() {
+    this(false);
+  }
 
   public TimelineMetricReadHelper(boolean ignoreInstance) {
+    this(ignoreInstance, new GorillaSeriesCodec());
+  }
+
+  public TimelineMetricReadHelper(boolean ignoreInstance,
+                                  TimelineMetricSeriesCodec seriesCodec) {
     this.ignoreInstance = ignoreInstance;
+    this.seriesCodec = seriesCodec;
   }
 
   public TimelineMetric getTimelineMetricFromResultSet(ResultSet rs)
       throws SQLException, IOException {
     TimelineMetric metric = getTimelineMetricCommonsFromResultSet(rs);
-    TreeMap<Long, Double> sortedByTimeMetrics =
-      PhoenixHBaseAccessor.readMetricFromJSON(rs.getString("METRICS"));
-    metric.setMetricValues(sortedByTimeMetrics);
+    metric.setMetricSeries(PhoenixHBaseAccessor.readMetricSeriesFromResultSet(rs, seriesCodec));
     return metric;
   }
 
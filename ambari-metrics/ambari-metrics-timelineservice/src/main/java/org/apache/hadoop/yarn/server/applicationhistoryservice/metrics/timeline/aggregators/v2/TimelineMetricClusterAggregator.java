@@ -19,7 +19,8 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
-import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.AbstractTimelineAggregator;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.AbstractPartitionedTimelineAggregator;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.MetricNamePartition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.MetricCollectorHAController;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
@@ -33,7 +34,7 @@ import java.util.Date;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.GET_AGGREGATED_APP_METRIC_GROUPBY_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_TABLE_NAME;
 
-public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator {
+public class TimelineMetricClusterAggregator extends AbstractPartitionedTimelineAggregator {
   private final String aggregateColumnName;
 
   public TimelineMetricClusterAggregator(AGGREGATOR_NAME aggregatorName,
@@ -60,7 +61,8 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
   }
 
   @Override
-  protected Condition prepareMetricQueryCondition(long startTime, long endTime) {
+  protected Condition prepareMetricQueryCondition(long startTime, long endTime,
+                                                  MetricNamePartition partition) {
     EmptyCondition condition = new EmptyCondition();
     condition.setDoUpdate(true);
 
@@ -75,7 +77,8 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
 
     condition.setStatement(String.format(GET_AGGREGATED_APP_METRIC_GROUPBY_SQL,
       getQueryHint(startTime), outputTableName, endTime, aggregateColumnName, tableName,
-      getDownsampledMetricSkipClause(), startTime, endTime));
+      getDownsampledMetricSkipClause() + (partition != null ? partition.getWhereClause() : ""),
+      startTime, endTime));
 
     if (LOG.isDebugEnabled()) {
       LOG.debug("Condition: " + condition.toString());
@@ -69,6 +69,30 @@ public class CheckpointManager {
     return propertyStore.update(path, new CheckpointDataUpdater(path, value), AccessOption.PERSISTENT);
   }
 
+  /**
+   * Read checkpoint of one partition of an aggregator from zookeeper
+   *
+   * @return timestamp
+   */
+  public long readCheckpoint(AGGREGATOR_NAME aggregatorName, String partition) {
+    String path = getCheckpointZKPath(aggregatorName, partition);
+    LOG.debug("Reading checkpoint at " + path);
+    ZNRecord znRecord = propertyStore.get(path, new Stat(), AccessOption.PERSISTENT);
+    return znRecord != null ? znRecord.getLongField(ZNODE_FIELD, -1) : -1;
+  }
+
+  /**
+   * Write checkpoint of one partition of an aggregator in zookeeper
+   *
+   * @param value timestamp
+   * @return sucsess
+   */
+  public boolean writeCheckpoint(AGGREGATOR_NAME aggregatorName, String partition, long value) {
+    String path = getCheckpointZKPath(aggregatorName, partition);
+    LOG.debug(String.format("Saving checkpoint at %s with value %s", path, value));
+    return propertyStore.update(path, new CheckpointDataUpdater(path, value), AccessOption.PERSISTENT);
+  }
+
   static class CheckpointDataUpdater implements DataUpdater<ZNRecord> {
     final String path;
     final Long value;
@@ -95,4 +119,8 @@ public class CheckpointManager {
     sb.append(ACTUAL_AGGREGATOR_NAMES.get(aggregatorName));
     return sb.toString();
   }
+
+  String getCheckpointZKPath(AGGREGATOR_NAME aggregatorName, String partition) {
+    return getCheckpointZKPath(aggregatorName) + "/" + partition;
+  }
 }
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding;
+
+import java.io.EOFException;
+
+/**
+ * Reads bits written by {@link BitWriter}.
+ */
+class BitReader {
+  private final byte[] buffer;
+  private final int limit;
+  private int bitPosition;
+
+  BitReader(byte[] buffer, int offsetBytes) {
+    this.buffer = buffer;
+    this.limit = buffer.length << 3;
+    this.bitPosition = offsetBytes << 3;
+  }
+
+  boolean readBit() throws EOFException {
+    if (bitPosition >= limit) {
+      throw new EOFException("Unexpected end of encoded series.");
+    }
+    boolean bit = (buffer[bitPosition >>> 3] & (0x80 >>> (bitPosition & 7))) != 0;
+    bitPosition++;
+    return bit;
+  }
+
+  long readBits(int numBits) throws EOFException {
+    if (bitPosition + numBits > limit) {
+      throw new EOFException("Unexpected end of encoded series.");
+    }
+    long value = 0;
+    for (int i = 0; i < numBits; i++) {
+      value = (value << 1)
+        | ((buffer[bitPosition >>> 3] >>> (7 - (bitPosition & 7))) & 1);
+      bitPosition++;
+    }
+    return value;
+  }
+}
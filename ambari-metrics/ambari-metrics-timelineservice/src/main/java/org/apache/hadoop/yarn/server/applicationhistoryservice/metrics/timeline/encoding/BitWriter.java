@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding;
+
+import java.util.Arrays;
+
+/**
+ * Append-only bit buffer, most significant bit first.
+ */
+class BitWriter {
+  private byte[] buffer;
+  private int bitPosition = 0;
+
+  BitWriter(int initialCapacity) {
+    buffer = new byte[Math.max(initialCapacity, 8)];
+  }
+
+  void writeBit(boolean bit) {
+    ensureCapacity(1);
+    if (bit) {
+      buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+    }
+    bitPosition++;
+  }
+
+  /**
+   * Write the lowest {@code numBits} bits of value.
+   */
+  void writeBits(long value, int numBits) {
+    ensureCapacity(numBits);
+    for (int i = numBits - 1; i >= 0; i--) {
+      if (((value >>> i) & 1L) != 0) {
+        buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+      }
+      bitPosition++;
+    }
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, (bitPosition + 7) >>> 3);
+  }
+
+  private void ensureCapacity(int numBits) {
+    int requiredBytes = (bitPosition + numBits + 7) >>> 3;
+    if (requiredBytes > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(requiredBytes, buffer.length * 2));
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+
+import java.io.IOException;
+
+/**
+ * Timeseries codec in the style of Facebook Gorilla: timestamps are stored
+ * as delta-of-deltas and values are XOR-ed with the previous value, so that
+ * regularly sampled and slowly changing series take a few bits per point.
+ *
+ * Layout: version (8 bits), number of points (32 bits), first timestamp
+ * (64 bits), first value (64 bits), followed by the encoded points.
+ */
+public class GorillaSeriesCodec implements TimelineMetricSeriesCodec {
+
+  static final byte VERSION = 1;
+  private static final int HEADER_BITS = 8 + 32;
+
+  @Override
+  public byte[] encode(TimelineMetricSeries metricSeries) throws IOException {
+    int count = metricSeries == null ? 0 : metricSeries.size();
+    // Worst case is ~ 2 bytes per point for regular series
+    BitWriter writer = new BitWriter(16 + count * 4);
+    writer.writeBits(VERSION, 8);
+    writer.writeBits(count, 32);
+    if (count == 0) {
+      return writer.toByteArray();
+    }
+
+    long prevTimestamp = 0;
+    long prevDelta = 0;
+    long prevValueBits = 0;
+    int prevLeading = -1;
+    int prevTrailing = 0;
+
+    for (int i = 0; i < count; i++) {
+      long timestamp = metricSeries.getTimestamp(i);
+      long valueBits = Double.doubleToRawLongBits(metricSeries.getValue(i));
+
+      if (i == 0) {
+        writer.writeBits(timestamp, 64);
+        writer.writeBits(valueBits, 64);
+      } else {
+        long delta = timestamp - prevTimestamp;
+        writeDeltaOfDelta(writer, delta - prevDelta);
+        prevDelta = delta;
+
+        long xor = valueBits ^ prevValueBits;
+        if (xor == 0) {
+          writer.writeBit(false);
+        } else {
+          writer.writeBit(true);
+          int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+          int trailing = Long.numberOfTrailingZeros(xor);
+          if (prevLeading != -1 && leading >= prevLeading && trailing >= prevTrailing) {
+            // Meaningful bits fit in the previous window
+            writer.writeBit(false);
+            writer.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+          } else {
+            int significant = 64 - leading - trailing;
+            writer.writeBit(true);
+            writer.writeBits(leading, 5);
+            writer.writeBits(significant - 1, 6);
+            writer.writeBits(xor >>> trailing, significant);
+            prevLeading = leading;
+            prevTrailing = trailing;
+          }
+        }
+      }
+      prevTimestamp = timestamp;
+      prevValueBits = valueBits;
+    }
+
+    return writer.toByteArray();
+  }
+
+  @Override
+  public TimelineMetricSeries decode(byte[] data) throws IOException {
+    if (data == null || data.length * 8 < HEADER_BITS) {
+      throw new IOException("Encoded series is too short.");
+    }
+    BitReader reader = new BitReader(data, 0);
+    int version = (int) reader.readBits(8);
+    if (version != VERSION) {
+      throw new IOException("Unsupported series encoding version: " + version);
+    }
+    int count = (int) reader.readBits(32);
+    // Every point after the first takes at least two bits
+    if (count < 0 || count > data.length * 4) {
+      throw new IOException("Invalid number of points in encoded series: " + count);
+    }
+    TimelineMetricSeries metricSeries = new TimelineMetricSeries(count);
+    if (count == 0) {
+      return metricSeries;
+    }
+
+    long timestamp = reader.readBits(64);
+    long valueBits = reader.readBits(64);
+    metricSeries.append(timestamp, Double.longBitsToDouble(valueBits));
+
+    long delta = 0;
+    int leading = 0;
+    int trailing = 0;
+    for (int i = 1; i < count; i++) {
+      delta += readDeltaOfDelta(reader);
+      timestamp += delta;
+
+      if (reader.readBit()) {
+        if (reader.readBit()) {
+          leading = (int) reader.readBits(5);
+          int significant = (int) reader.readBits(6) + 1;
+          trailing = 64 - leading - significant;
+        }
+        long xor = reader.readBits(64 - leading - trailing) << trailing;
+        valueBits ^= xor;
+      }
+      metricSeries.append(timestamp, Double.longBitsToDouble(valueBits));
+    }
+
+    return metricSeries;
+  }
+
+  private static void writeDeltaOfDelta(BitWriter writer, long dod) {
+    if (dod == 0) {
+      writer.writeBit(false);
+    } else if (dod >= -64 && dod <= 63) {
+      writer.writeBits(0x2, 2);
+      writer.writeBits(dod, 7);
+    } else if (dod >= -256 && dod <= 255) {
+      writer.writeBits(0x6, 3);
+      writer.writeBits(dod, 9);
+    } else if (dod >= -2048 && dod <= 2047) {
+      writer.writeBits(0xE, 4);
+      writer.writeBits(dod, 12);
+    } else {
+      writer.writeBits(0xF, 4);
+      writer.writeBits(dod, 64);
+    }
+  }
+
+  private static long readDeltaOfDelta(BitReader reader) throws IOException {
+    if (!reader.readBit()) {
+      return 0;
+    }
+    if (!reader.readBit()) {
+      return signExtend(reader.readBits(7), 7);
+    }
+    if (!reader.readBit()) {
+      return signExtend(reader.readBits(9), 9);
+    }
+    if (!reader.readBit()) {
+      return signExtend(reader.readBits(12), 12);
+    }
+    return reader.readBits(64);
+  }
+
+  private static long signExtend(long value, int numBits) {
+    int shift = 64 - numBits;
+    return (value << shift) >> shift;
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+
+import java.io.IOException;
+
+/**
+ * Serializes the values of a single timeseries into the binary METRICS_BLOB
+ * column of the precision table and back. Implementations must be stateless
+ * and thread safe, the instance of an accessor is shared by all of its
+ * writers and readers.
+ */
+public interface TimelineMetricSeriesCodec {
+
+  /**
+   * Encode a timeseries sorted by timestamp.
+   *
+   * @param metricSeries timestamp sorted values
+   * @return encoded bytes, never null
+   */
+  byte[] encode(TimelineMetricSeries metricSeries) throws IOException;
+
+  /**
+   * Decode bytes produced by {@link #encode(TimelineMetricSeries)}.
+   *
+   * @param data encoded bytes
+   * @return timestamp sorted values
+   * @throws IOException if data was not produced by this codec
+   */
+  TimelineMetricSeries decode(byte[] data) throws IOException;
+}
@@ -51,7 +51,8 @@ public class PhoenixTransactSQL {
     "METRIC_COUNT UNSIGNED_INT, " +
     "METRIC_MAX DOUBLE, " +
     "METRIC_MIN DOUBLE, " +
-    "METRICS VARCHAR CONSTRAINT pk " +
+    "METRICS VARCHAR, " +
+    "METRICS_BLOB VARBINARY CONSTRAINT pk " +
     "PRIMARY KEY (METRIC_NAME, HOSTNAME, SERVER_TIME, APP_ID, " +
     "INSTANCE_ID)) DATA_BLOCK_ENCODING='%s', IMMUTABLE_ROWS=true, " +
     "TTL=%s, COMPRESSION='%s'";
@@ -152,6 +153,14 @@ public class PhoenixTransactSQL {
    */
   public static final String ALTER_SQL = "ALTER TABLE %s SET TTL=%s";
 
+  /**
+   * Add binary series column to precision tables created before it existed.
+   * The JSON METRICS column is kept so that old rows stay readable until
+   * they age out.
+   */
+  public static final String ALTER_METRICS_TABLE_ADD_BLOB_SQL =
+    "ALTER TABLE METRIC_RECORD ADD IF NOT EXISTS METRICS_BLOB VARBINARY";
+
   /**
    * Insert into metric records table.
    */
@@ -162,8 +171,9 @@ public class PhoenixTransactSQL {
     "METRIC_MAX, " +
     "METRIC_MIN, " +
     "METRIC_COUNT, " +
-    "METRICS) VALUES " +
-    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    "METRICS, " +
+    "METRICS_BLOB) VALUES " +
+    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
   public static final String UPSERT_CONTAINER_METRICS_SQL = "UPSERT INTO %s " +
       "(APP_ID,"
@@ -235,7 +245,8 @@ public class PhoenixTransactSQL {
     "METRIC_MAX, " +
     "METRIC_MIN, " +
     "METRIC_COUNT, " +
-    "METRICS " +
+    "METRICS, " +
+    "METRICS_BLOB " +
     "FROM %s";
 
   /**
@@ -250,7 +261,8 @@ public class PhoenixTransactSQL {
     "E.SERVER_TIME AS SERVER_TIME, E.START_TIME AS START_TIME, " +
     "E.UNITS AS UNITS, E.METRIC_SUM AS METRIC_SUM, " +
     "E.METRIC_MAX AS METRIC_MAX, E.METRIC_MIN AS METRIC_MIN, " +
-    "E.METRIC_COUNT AS METRIC_COUNT, E.METRICS AS METRICS " +
+    "E.METRIC_COUNT AS METRIC_COUNT, E.METRICS AS METRICS, " +
+    "E.METRICS_BLOB AS METRICS_BLOB " +
     "FROM %s AS E " +
     "INNER JOIN " +
     "(SELECT METRIC_NAME, HOSTNAME, MAX(SERVER_TIME) AS MAX_SERVER_TIME, " +
@@ -0,0 +1,430 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.spill;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding.TimelineMetricSeriesCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Local write-ahead log for precision metrics that could not be written to
+ * HBase. Batches are appended to a sequence of fixed size, memory-mapped
+ * segment files and replayed oldest first once the store is reachable
+ * again. The bytes written to the segments and the age of spilled data are
+ * bounded, the oldest segments are dropped first. The active segment keeps
+ * taking appends until it is full, it is only sealed for replay once every
+ * older segment was replayed.
+ *
+ * Segment layout: a sequence of records, each an int length, an int CRC32
+ * of the payload and the payload. A zero length marks the end of the
+ * written data, so a torn record at the tail of a crashed segment is
+ * detected by its checksum and ignored.
+ */
+public class MetricsSpillLog {
+  private static final Log LOG = LogFactory.getLog(MetricsSpillLog.class);
+
+  static final String SEGMENT_PREFIX = "spill-";
+  static final String SEGMENT_SUFFIX = ".log";
+  private static final int RECORD_HEADER_BYTES = 8;
+  private static final byte RECORD_VERSION = 1;
+
+  private final File dir;
+  private final long segmentSizeBytes;
+  private final long maxBytes;
+  private final long maxAgeMillis;
+  private final TimelineMetricSeriesCodec codec;
+
+  // Sealed segments, oldest first. The active segment is not included.
+  private final LinkedList<Segment> segments = new LinkedList<Segment>();
+  private Segment activeSegment;
+  private long nextSequence = 0;
+  private long droppedSegments = 0;
+  // Bytes written to all segments, counted against maxBytes
+  private long spilledBytes = 0;
+
+  /**
+   * Callback used to write spilled metrics back to the store. Throwing
+   * stops the replay, the failed segment is kept and retried later.
+   */
+  public interface Replayer {
+    void replay(List<TimelineMetric> metrics, long commitTime) throws Exception;
+  }
+
+  private static class Segment {
+    private final File file;
+    // Records written, segments are preallocated well beyond that
+    private long writtenBytes;
+    private long lastWriteTime;
+    private MappedByteBuffer buffer;
+
+    Segment(File file, long writtenBytes, long lastWriteTime) {
+      this.file = file;
+      this.writtenBytes = writtenBytes;
+      this.lastWriteTime = lastWriteTime;
+    }
+  }
+
+  public MetricsSpillLog(File dir, long segmentSizeBytes, long maxBytes,
+                         long maxAgeMillis, TimelineMetricSeriesCodec codec)
+      throws IOException {
+    this.dir = dir;
+    this.segmentSizeBytes = segmentSizeBytes;
+    this.maxBytes = maxBytes;
+    this.maxAgeMillis = maxAgeMillis;
+    this.codec = codec;
+
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create metrics spill directory " + dir);
+    }
+    recover();
+  }
+
+  /**
+   * Pick up segments left behind by a previous run, they are replayed
+   * before anything spilled by this one.
+   */
+  private void recover() {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    List<File> segmentFiles = new ArrayList<File>();
+    for (File file : files) {
+      if (parseSequence(file) >= 0) {
+        segmentFiles.add(file);
+      }
+    }
+    File[] sorted = segmentFiles.toArray(new File[segmentFiles.size()]);
+    Arrays.sort(sorted);
+    for (File file : sorted) {
+      long writtenBytes = 0;
+      try {
+        for (byte[] payload : readRecords(file)) {
+          writtenBytes += RECORD_HEADER_BYTES + payload.length;
+        }
+      } catch (IOException e) {
+        LOG.warn("Unable to read metrics spill segment " + file.getName(), e);
+        writtenBytes = file.length();
+      }
+      segments.add(new Segment(file, writtenBytes, file.lastModified()));
+      spilledBytes += writtenBytes;
+      nextSequence = Math.max(nextSequence, parseSequence(file) + 1);
+    }
+    if (!segments.isEmpty()) {
+      LOG.info("Found " + segments.size() + " metrics spill segments to replay in " + dir);
+    }
+  }
+
+  private static long parseSequence(File file) {
+    String name = file.getName();
+    if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+        name.length() - SEGMENT_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Append a batch of metrics that failed to commit at commitTime.
+   */
+  public synchronized void append(Collection<TimelineMetric> metrics, long commitTime)
+      throws IOException {
+    if (metrics.isEmpty()) {
+      return;
+    }
+    byte[] payload = serialize(metrics, commitTime);
+    int recordSize = RECORD_HEADER_BYTES + payload.length;
+
+    // Keep room for the end of segment marker
+    if (activeSegment == null || activeSegment.buffer.remaining() < recordSize + 4) {
+      seal();
+      openSegment(Math.max(segmentSizeBytes, recordSize + 4));
+    }
+    enforceQuota(recordSize);
+
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    MappedByteBuffer buffer = activeSegment.buffer;
+    buffer.putInt(payload.length);
+    buffer.putInt((int) crc.getValue());
+    buffer.put(payload);
+    activeSegment.writtenBytes += recordSize;
+    activeSegment.lastWriteTime = System.currentTimeMillis();
+    spilledBytes += recordSize;
+  }
+
+  private void openSegment(long sizeBytes) throws IOException {
+    File file = new File(dir, String.format("%s%020d%s", SEGMENT_PREFIX,
+      nextSequence++, SEGMENT_SUFFIX));
+
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      Segment segment = new Segment(file, 0, System.currentTimeMillis());
+      segment.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+      activeSegment = segment;
+    } finally {
+      // The mapping stays valid after the channel is closed
+      raf.close();
+    }
+  }
+
+  /**
+   * Drop the oldest sealed segments until a record of recordSize bytes fits
+   * in the quota.
+   */
+  private void enforceQuota(long recordSize) {
+    while (!segments.isEmpty() && spilledBytes + recordSize > maxBytes) {
+      Segment oldest = segments.removeFirst();
+      LOG.warn("Metrics spill quota of " + maxBytes + " bytes exceeded, " +
+        "dropping " + oldest.file.getName());
+      delete(oldest);
+      droppedSegments++;
+    }
+  }
+
+  /**
+   * Flush and close the active segment so that it can be replayed.
+   */
+  private void seal() {
+    if (activeSegment == null) {
+      return;
+    }
+    activeSegment.buffer.force();
+    activeSegment.buffer = null;
+    activeSegment.file.setLastModified(activeSegment.lastWriteTime);
+    segments.add(activeSegment);
+    activeSegment = null;
+  }
+
+  /**
+   * Drop segments with no writes for longer than the configured max age,
+   * their data is past any useful retention.
+   */
+  public synchronized void truncateExpired() {
+    long cutoff = System.currentTimeMillis() - maxAgeMillis;
+    if (activeSegment != null && activeSegment.lastWriteTime < cutoff) {
+      seal();
+    }
+    while (!segments.isEmpty() && segments.getFirst().lastWriteTime < cutoff) {
+      Segment expired = segments.removeFirst();
+      LOG.info("Dropping expired metrics spill segment " + expired.file.getName());
+      delete(expired);
+      droppedSegments++;
+    }
+  }
+
+  /**
+   * Replay spilled metrics oldest first. Every fully replayed segment is
+   * deleted, the first failure stops the replay. The active segment is only
+   * sealed and replayed once all sealed segments went through, so failed
+   * replays while the store is down do not leave a trail of mostly empty
+   * segments behind.
+   *
+   * @return number of segments replayed
+   */
+  public int replay(Replayer replayer) {
+    List<Segment> pending;
+    synchronized (this) {
+      pending = new ArrayList<Segment>(segments);
+    }
+    int replayed = replaySegments(pending, replayer);
+
+    if (replayed == pending.size()) {
+      synchronized (this) {
+        seal();
+        pending = new ArrayList<Segment>(segments);
+      }
+      replayed += replaySegments(pending, replayer);
+    }
+    if (replayed > 0) {
+      LOG.info("Replayed " + replayed + " metrics spill segments.");
+    }
+    return replayed;
+  }
+
+  /**
+   * @return number of segments replayed before the first failure
+   */
+  private int replaySegments(List<Segment> pending, Replayer replayer) {
+    int replayed = 0;
+    for (Segment segment : pending) {
+      try {
+        for (byte[] payload : readRecords(segment.file)) {
+          DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+          long commitTime = readCommitTime(in);
+          replayer.replay(readMetrics(in), commitTime);
+        }
+      } catch (Exception e) {
+        LOG.warn("Replay of metrics spill segment " + segment.file.getName()
+          + " failed, will retry. " + e.getMessage());
+        break;
+      }
+      synchronized (this) {
+        // May already be gone if the quota was enforced meanwhile
+        if (segments.remove(segment)) {
+          delete(segment);
+        }
+      }
+      replayed++;
+    }
+    return replayed;
+  }
+
+  public synchronized boolean isEmpty() {
+    return segments.isEmpty() && activeSegment == null;
+  }
+
+  public synchronized int getSegmentCount() {
+    return segments.size() + (activeSegment == null ? 0 : 1);
+  }
+
+  public synchronized long getDroppedSegmentCount() {
+    return droppedSegments;
+  }
+
+  public synchronized long getSpilledBytes() {
+    return spilledBytes;
+  }
+
+  private void delete(Segment segment) {
+    spilledBytes -= segment.writtenBytes;
+    if (!segment.file.delete() && segment.file.exists()) {
+      LOG.warn("Unable to delete metrics spill segment " + segment.file);
+    }
+  }
+
+  static List<byte[]> readRecords(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    MappedByteBuffer buffer;
+    try {
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+    } finally {
+      raf.close();
+    }
+
+    List<byte[]> records = new ArrayList<byte[]>();
+    while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+      int length = buffer.getInt();
+      int checksum = buffer.getInt();
+      if (length <= 0 || length > buffer.remaining()) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      buffer.get(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      if ((int) crc.getValue() != checksum) {
+        LOG.warn("Ignoring corrupt tail of metrics spill segment " + file.getName());
+        break;
+      }
+      records.add(payload);
+    }
+    return records;
+  }
+
+  private byte[] serialize(Collection<TimelineMetric> metrics, long commitTime) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(RECORD_VERSION);
+    out.writeLong(commitTime);
+    out.writeInt(metrics.size());
+    for (TimelineMetric metric : metrics) {
+      writeString(out, metric.getMetricName());
+      writeString(out, metric.getAppId());
+      writeString(out, metric.getInstanceId());
+      writeString(out, metric.getHostName());
+      writeString(out, metric.getType());
+      writeString(out, metric.getUnits());
+      out.writeLong(metric.getStartTime());
+      out.writeLong(metric.getTimestamp());
+      byte[] series = codec.encode(metric.getMetricSeries());
+      out.writeInt(series.length);
+      out.write(series);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static long readCommitTime(DataInputStream in) throws IOException {
+    byte version = in.readByte();
+    if (version != RECORD_VERSION) {
+      throw new IOException("Unsupported metrics spill record version " + version);
+    }
+    return in.readLong();
+  }
+
+  private List<TimelineMetric> readMetrics(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    if (count < 0) {
+      throw new IOException("Invalid metrics spill record");
+    }
+    if (count == 0) {
+      return Collections.emptyList();
+    }
+    List<TimelineMetric> metrics = new ArrayList<TimelineMetric>(count);
+    for (int i = 0; i < count; i++) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName(readString(in));
+      metric.setAppId(readString(in));
+      metric.setInstanceId(readString(in));
+      metric.setHostName(readString(in));
+      metric.setType(readString(in));
+      metric.setUnits(readString(in));
+      metric.setStartTime(in.readLong());
+      metric.setTimestamp(in.readLong());
+      byte[] series = new byte[in.readInt()];
+      in.readFully(series);
+      metric.setMetricSeries(codec.decode(series));
+      metrics.add(metric);
+    }
+    return metrics;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
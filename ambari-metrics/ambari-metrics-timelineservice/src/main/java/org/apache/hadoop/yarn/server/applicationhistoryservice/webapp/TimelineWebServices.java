@@ -36,6 +36,7 @@ import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
 import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricsIngestQueueFullException;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricStore;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.EntityIdentifier;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.GenericObjectMapper;
@@ -82,6 +83,8 @@ import static org.apache.hadoop.yarn.util.StringHelper.CSV_JOINER;
 public class TimelineWebServices {
 
   private static final Log LOG = LogFactory.getLog(TimelineWebServices.class);
+  // Not available in javax.ws.rs.core.Response.Status for JAX-RS 1.x
+  private static final int TOO_MANY_REQUESTS = 429;
 
   private TimelineStore store;
   private TimelineMetricStore timelineMetricStore;
@@ -279,6 +282,11 @@ public class TimelineWebServices {
 
       return timelineMetricStore.putMetrics(metrics);
 
+    } catch (MetricsIngestQueueFullException e) {
+      LOG.warn("Rejecting metrics, " + e.getMessage());
+      // Back off the sender rather than failing, the write can be retried.
+      throw new WebApplicationException(Response.status(TOO_MANY_REQUESTS)
+        .header("Retry-After", e.getRetryAfterSeconds()).build());
     } catch (Exception e) {
       LOG.error("Error saving metrics.", e);
       throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsIngestQueueTest {
+
+  private static TimelineMetrics createMetrics(String name, int points) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(name);
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    for (int i = 0; i < points; i++) {
+      values.put(1000L * i, (double) i);
+    }
+    metric.setMetricValues(values);
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(Collections.singletonList(metric));
+    return metrics;
+  }
+
+  @Test
+  public void testOfferRejectsOverCapacity() {
+    TimelineMetrics metrics = createMetrics("cpu_user", 10);
+    long size = MetricsIngestQueue.estimateSize(metrics);
+    MetricsIngestQueue queue = new MetricsIngestQueue(2 * size);
+
+    assertTrue(queue.offer(metrics));
+    assertTrue(queue.offer(metrics));
+    assertFalse(queue.offer(metrics));
+    assertEquals(2, queue.size());
+    assertEquals(2 * size, queue.getQueuedBytes());
+  }
+
+  @Test
+  public void testReserveHoldsCapacityUntilAdded() {
+    TimelineMetrics metrics = createMetrics("cpu_user", 10);
+    long size = MetricsIngestQueue.estimateSize(metrics);
+    MetricsIngestQueue queue = new MetricsIngestQueue(size);
+
+    assertEquals(size, queue.reserve(metrics));
+    assertTrue(queue.isEmpty());
+    // Reserved bytes count against the capacity
+    assertEquals(-1, queue.reserve(metrics));
+    assertFalse(queue.offer(metrics));
+
+    queue.add(metrics, size);
+    assertEquals(1, queue.size());
+    assertEquals(size, queue.getQueuedBytes());
+    assertSame(metrics, queue.drain(size).get(0));
+    assertEquals(0, queue.getQueuedBytes());
+  }
+
+  @Test
+  public void testEmptyQueueAcceptsOversizedRequest() {
+    MetricsIngestQueue queue = new MetricsIngestQueue(1);
+    assertTrue(queue.offer(createMetrics("cpu_user", 100)));
+    assertFalse(queue.offer(createMetrics("cpu_user", 1)));
+  }
+
+  @Test
+  public void testDrainRespectsMaxBytes() {
+    TimelineMetrics first = createMetrics("cpu_user", 10);
+    TimelineMetrics second = createMetrics("cpu_nice", 10);
+    TimelineMetrics third = createMetrics("cpu_idle", 10);
+    MetricsIngestQueue queue = new MetricsIngestQueue(Long.MAX_VALUE);
+    queue.offer(first);
+    queue.offer(second);
+    queue.offer(third);
+
+    long size = MetricsIngestQueue.estimateSize(first);
+    List<TimelineMetrics> drained = queue.drain(2 * size);
+    assertEquals(2, drained.size());
+    assertSame(first, drained.get(0));
+    assertSame(second, drained.get(1));
+
+    // At least one entry is returned even if it exceeds maxBytes
+    drained = queue.drain(1);
+    assertEquals(1, drained.size());
+    assertSame(third, drained.get(0));
+    assertTrue(queue.isEmpty());
+    assertEquals(0, queue.getQueuedBytes());
+    assertEquals(0, queue.getOldestEntryAgeMillis());
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PhoenixBatchUpsertTest {
+
+  @Test
+  public void testBatchAndCommitBoundaries() throws Exception {
+    Connection conn = createStrictMock(Connection.class);
+    PreparedStatement stmt = createStrictMock(PreparedStatement.class);
+
+    // batch size 2, commit size 4, 5 rows
+    stmt.addBatch();
+    stmt.addBatch();
+    expect(stmt.executeBatch()).andReturn(new int[] { 1, 1 });
+    stmt.addBatch();
+    stmt.addBatch();
+    expect(stmt.executeBatch()).andReturn(new int[] { 1, 1 });
+    conn.commit();
+    stmt.addBatch();
+    expect(stmt.executeBatch()).andReturn(new int[] { 1 });
+    conn.commit();
+    expectLastCall();
+    replay(conn, stmt);
+
+    PhoenixBatchUpsert upsert = new PhoenixBatchUpsert(conn, stmt, "TEST", 2, 4, null);
+    for (int i = 0; i < 5; i++) {
+      upsert.addRow();
+    }
+    upsert.finish();
+
+    assertEquals(5, upsert.getRowCount());
+    verify(conn, stmt);
+  }
+
+  @Test
+  public void testFinishWithoutPendingRows() throws Exception {
+    Connection conn = createStrictMock(Connection.class);
+    PreparedStatement stmt = createStrictMock(PreparedStatement.class);
+
+    stmt.addBatch();
+    expect(stmt.executeBatch()).andReturn(new int[] { 1 });
+    conn.commit();
+    // Nothing left to write, only the commit
+    conn.commit();
+    replay(conn, stmt);
+
+    PhoenixBatchUpsert upsert = new PhoenixBatchUpsert(conn, stmt, "TEST", 1, 1, null);
+    upsert.addRow();
+    upsert.finish();
+
+    verify(conn, stmt);
+  }
+
+  @Test
+  public void testFailedBatchIsThrown() throws Exception {
+    Connection conn = createStrictMock(Connection.class);
+    PreparedStatement stmt = createStrictMock(PreparedStatement.class);
+
+    stmt.addBatch();
+    stmt.addBatch();
+    expect(stmt.executeBatch()).andThrow(new SQLException("region unavailable"));
+    replay(conn, stmt);
+
+    PhoenixBatchUpsert upsert = new PhoenixBatchUpsert(conn, stmt, "TEST", 2, 4, null);
+    upsert.addRow();
+    try {
+      upsert.addRow();
+      fail("Failed batch should be thrown to the caller");
+    } catch (SQLException expected) {
+      // No commit after a failed batch
+    }
+
+    verify(conn, stmt);
+  }
+}
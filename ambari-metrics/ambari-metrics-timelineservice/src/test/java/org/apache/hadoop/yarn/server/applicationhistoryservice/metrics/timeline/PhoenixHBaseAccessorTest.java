@@ -29,24 +29,30 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.MetricHostAggregate;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineClusterMetric;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding.GorillaSeriesCodec;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixConnectionProvider;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
 import org.apache.phoenix.exception.PhoenixIOException;
 import org.easymock.EasyMock;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.powermock.api.easymock.PowerMock;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -54,6 +60,8 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 @RunWith(PowerMockRunner.class)
@@ -61,6 +69,9 @@ import static org.junit.Assert.fail;
 public class PhoenixHBaseAccessorTest {
   private static final String ZOOKEEPER_QUORUM = "hbase.zookeeper.quorum";
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   @Test
   public void testGetMetricRecords() throws SQLException, IOException {
 
@@ -214,11 +225,11 @@ public class PhoenixHBaseAccessorTest {
   }
 
   @Test
-  public void testMetricsCacheCommittingWhenFull() throws IOException, SQLException {
+  public void testMetricsCacheRejectsWhenFull() throws IOException, SQLException {
     Configuration hbaseConf = new Configuration();
     hbaseConf.setStrings(ZOOKEEPER_QUORUM, "quorum");
     Configuration metricsConf = new Configuration();
-    metricsConf.setStrings(TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_SIZE, "1");
+    metricsConf.setStrings(TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_CAPACITY_BYTES, "1");
     metricsConf.setStrings(TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_INTERVAL, "100");
     final Connection connection = EasyMock.createNiceMock(Connection.class);
 
@@ -241,9 +252,30 @@ public class PhoenixHBaseAccessorTest {
 
     EasyMock.replay(timelineMetrics, connection);
 
-    accessor.insertMetricRecords(timelineMetrics);
-    accessor.insertMetricRecords(timelineMetrics);
-    accessor.insertMetricRecords(timelineMetrics);
+    final List<TimelineMetrics> accepted = new ArrayList<>();
+    PhoenixHBaseAccessor.IngestListener listener = new PhoenixHBaseAccessor.IngestListener() {
+      @Override
+      public void onMetricsAccepted(TimelineMetrics metrics) {
+        accepted.add(metrics);
+      }
+    };
+
+    // An empty queue always accepts a write
+    accessor.insertMetricRecordsWithMetadata(null, timelineMetrics, false, listener);
+    assertEquals(1, accepted.size());
+    try {
+      accessor.insertMetricRecordsWithMetadata(null, timelineMetrics, false, listener);
+      fail("Expected write to be rejected while the cache is full");
+    } catch (MetricsIngestQueueFullException e) {
+      assertEquals(100, e.getRetryAfterSeconds());
+    }
+    // Rejected writes are not passed on
+    assertEquals(1, accepted.size());
+
+    accessor.commitMetricsFromCache();
+    assertTrue(accessor.isInsertCacheEmpty());
+    accessor.insertMetricRecordsWithMetadata(null, timelineMetrics, false, listener);
+    assertEquals(2, accepted.size());
 
     EasyMock.verify(timelineMetrics, connection);
   }
@@ -260,7 +292,7 @@ public class PhoenixHBaseAccessorTest {
     Map<TimelineMetric, MetricHostAggregate> hostAggregateMap = new HashMap<>();
 
     metricsConf.setStrings(
-        TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_SIZE, "1");
+        TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_CAPACITY_BYTES, "1");
     metricsConf.setStrings(
         TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_INTERVAL,
         "100");
@@ -318,4 +350,87 @@ public class PhoenixHBaseAccessorTest {
     assertEquals(1, memorySink.getHostAggregateRecords().size());
   }
 
+  @Test
+  public void testFailedBatchIsSpilledAndReplayed() throws Exception {
+    File spillDir = folder.newFolder("spill");
+    Configuration hbaseConf = new Configuration();
+    hbaseConf.setStrings(ZOOKEEPER_QUORUM, "quorum");
+    Configuration metricsConf = new Configuration();
+    metricsConf.set(TimelineMetricConfiguration.TIMELINE_METRICS_SPILL_DIR, spillDir.getPath());
+    metricsConf.set(TimelineMetricConfiguration.TIMELINE_METRICS_SPILL_REPLAY_INTERVAL, "3600");
+    metricsConf.set(TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_ENABLED, "false");
+
+    final Connection connection = EasyMock.createNiceMock(Connection.class);
+    final PreparedStatement statement = EasyMock.createNiceMock(PreparedStatement.class);
+    EasyMock.expect(connection.prepareStatement(EasyMock.anyString()))
+        .andReturn(statement).anyTimes();
+    // The commit and the first replay fail on the batch, the next replay succeeds
+    EasyMock.expect(statement.executeBatch())
+        .andThrow(new SQLException("region unavailable")).times(2);
+    EasyMock.expect(statement.executeBatch()).andReturn(new int[] { 1 }).once();
+    EasyMock.replay(connection, statement);
+
+    PhoenixConnectionProvider connectionProvider = new PhoenixConnectionProvider() {
+      @Override
+      public HBaseAdmin getHBaseAdmin() throws IOException {
+        return null;
+      }
+
+      @Override
+      public Connection getConnection() throws SQLException {
+        return connection;
+      }
+    };
+
+    long now = System.currentTimeMillis();
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("metric1");
+    metric.setAppId("HOST");
+    metric.setHostName("h1");
+    metric.setStartTime(now);
+    metric.getMetricSeries().append(now, 1.0);
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(Arrays.asList(metric));
+
+    PhoenixHBaseAccessor accessor =
+        new PhoenixHBaseAccessor(hbaseConf, metricsConf, connectionProvider);
+    try {
+      accessor.commitMetrics(metrics);
+      assertEquals(1, spillDir.list().length);
+
+      // Rows of the segment did not commit, it has to stay
+      accessor.replaySpilledMetrics();
+      assertEquals(1, spillDir.list().length);
+
+      accessor.replaySpilledMetrics();
+      assertEquals(0, spillDir.list().length);
+    } finally {
+      accessor.shutdown();
+    }
+    EasyMock.verify(statement);
+  }
+
+  public static class TestSeriesCodec extends GorillaSeriesCodec {
+  }
+
+  @Test
+  public void testSeriesCodecPerAccessor() throws Exception {
+    Configuration hbaseConf = new Configuration();
+    hbaseConf.setStrings(ZOOKEEPER_QUORUM, "quorum");
+    Configuration customConf = new Configuration();
+    customConf.setClass(TimelineMetricConfiguration.TIMELINE_METRICS_SERIES_CODEC_CLASS,
+        TestSeriesCodec.class, GorillaSeriesCodec.class);
+    customConf.set(TimelineMetricConfiguration.TIMELINE_METRICS_SPILL_ENABLED, "false");
+    customConf.set(TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_ENABLED, "false");
+    Configuration defaultConf = new Configuration();
+    defaultConf.set(TimelineMetricConfiguration.TIMELINE_METRICS_SPILL_ENABLED, "false");
+    defaultConf.set(TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_ENABLED, "false");
+
+    PhoenixHBaseAccessor custom = new PhoenixHBaseAccessor(hbaseConf, customConf);
+    PhoenixHBaseAccessor defaults = new PhoenixHBaseAccessor(hbaseConf, defaultConf);
+
+    // A later accessor does not replace the codec of an earlier one
+    assertSame(TestSeriesCodec.class, custom.getSeriesCodec().getClass());
+    assertSame(GorillaSeriesCodec.class, defaults.getSeriesCodec().getClass());
+  }
 }
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricsHotTierTest {
+
+  private static final long MINUTE = 60000;
+
+  private static TimelineMetric createMetric(String name, String host, String appId,
+                                             long startTime, int points) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(name);
+    metric.setHostName(host);
+    metric.setAppId(appId);
+    metric.setStartTime(startTime);
+    for (int i = 0; i < points; i++) {
+      metric.getMetricSeries().append(startTime + i * 10000, i);
+    }
+    return metric;
+  }
+
+  private static TimelineMetrics wrap(TimelineMetric... metrics) {
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    timelineMetrics.setMetrics(Arrays.asList(metrics));
+    return timelineMetrics;
+  }
+
+  @Test
+  public void testReadBackRecentPoints() {
+    TimelineMetricsHotTier hotTier = new TimelineMetricsHotTier(10 * MINUTE, MINUTE, 4, 100, 5 * MINUTE);
+    long now = System.currentTimeMillis();
+    long start = now - 2 * MINUTE;
+    hotTier.putMetrics(wrap(
+      createMetric("cpu_user", "h1", "HOST", start, 12),
+      createMetric("cpu_user", "h2", "HOST", start, 12),
+      createMetric("mem_free", "h1", "HOST", start, 12)));
+
+    List<TimelineMetric> metrics = hotTier.getMetrics(Collections.singletonList("cpu_user"),
+      Arrays.asList("h1", "h2"), "HOST", null, start, now);
+    assertEquals(2, metrics.size());
+    TimelineMetricSeries series = metrics.get(0).getMetricSeries();
+    assertEquals(12, series.size());
+    assertEquals(start, series.firstTimestamp());
+    assertEquals(11.0, series.getValue(11), 0.0);
+
+    // End time is exclusive, as for SERVER_TIME in Phoenix queries
+    metrics = hotTier.getMetrics(Collections.singletonList("cpu_user"),
+      Collections.singletonList("h1"), null, null, start + 30000, start + 60000);
+    assertEquals(3, metrics.get(0).getMetricSeries().size());
+
+    metrics = hotTier.getMetrics(Collections.singletonList("cpu_user"),
+      Collections.singletonList("h1"), "namenode", null, start, now);
+    assertTrue(metrics.isEmpty());
+  }
+
+  @Test
+  public void testMergesLaterPostsOfSameSeries() {
+    TimelineMetricsHotTier hotTier = new TimelineMetricsHotTier(10 * MINUTE, MINUTE, 4, 100, 5 * MINUTE);
+    long start = System.currentTimeMillis() - 3 * MINUTE;
+    hotTier.putMetrics(wrap(createMetric("cpu_user", "h1", "HOST", start, 6)));
+    hotTier.putMetrics(wrap(createMetric("cpu_user", "h1", "HOST", start + MINUTE, 6)));
+
+    List<TimelineMetric> metrics = hotTier.getMetrics(Collections.singletonList("cpu_user"),
+      Collections.singletonList("h1"), "HOST", null, start, Long.MAX_VALUE);
+    assertEquals(1, metrics.size());
+    assertEquals(12, metrics.get(0).getMetricSeries().size());
+    assertEquals(1, hotTier.getSeriesCount());
+  }
+
+  @Test
+  public void testSeriesLimitMovesCoverage() {
+    TimelineMetricsHotTier hotTier = new TimelineMetricsHotTier(10 * MINUTE, MINUTE, 1, 1, 5 * MINUTE);
+    long now = System.currentTimeMillis();
+    hotTier.putMetrics(wrap(createMetric("cpu_user", "h1", "HOST", now - MINUTE, 6)));
+    long coverage = hotTier.getCoverageStartTime();
+
+    hotTier.putMetrics(wrap(createMetric("cpu_user", "h2", "HOST", now - MINUTE, 6)));
+    assertEquals(1, hotTier.getSeriesCount());
+    assertTrue(hotTier.getCoverageStartTime() > coverage);
+  }
+
+  @Test
+  public void testOutOfBandSeriesSkipped() {
+    TimelineMetricsHotTier hotTier = new TimelineMetricsHotTier(60 * MINUTE, MINUTE, 4, 100, 5 * MINUTE);
+    long start = System.currentTimeMillis() - 20 * MINUTE;
+    hotTier.putMetrics(wrap(createMetric("cpu_user", "h1", "HOST", start, 6)));
+    assertEquals(0, hotTier.getSeriesCount());
+  }
+}
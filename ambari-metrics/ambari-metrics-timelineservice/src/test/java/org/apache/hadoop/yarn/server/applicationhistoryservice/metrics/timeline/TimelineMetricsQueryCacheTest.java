@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricsQueryCacheTest {
+  private static final long MINUTE = 60000l;
+  private static final long CHUNK = 10 * MINUTE;
+
+  private long startTime;
+  private long endTime;
+  private RecordingLoader loader;
+
+  @Before
+  public void setUp() {
+    long now = System.currentTimeMillis();
+    startTime = now - now % CHUNK - 18 * CHUNK;
+    endTime = startTime + 6 * CHUNK;
+    loader = new RecordingLoader();
+  }
+
+  @Test
+  public void testCompleteChunksServedFromCache() throws Exception {
+    TimelineMetricsQueryCache cache = new TimelineMetricsQueryCache(100000, null);
+    String key = TimelineMetricsQueryCache.getQueryKey(Arrays.asList("cpu_user"),
+      Arrays.asList("h1"), "HOST", null, Precision.SECONDS, true);
+
+    TimelineMetrics first = cache.getMetrics(key, Precision.SECONDS, startTime, endTime, loader);
+    assertEquals(1, loader.loads.size());
+    assertEquals(startTime - 2 * MINUTE, (long) loader.loads.get(0)[0]);
+    assertEquals(60, first.getMetrics().get(0).getMetricSeries().size());
+    // The last chunk ends less than the settle delay before endTime
+    assertEquals(5, cache.getChunkCount());
+
+    TimelineMetrics second = cache.getMetrics(key, Precision.SECONDS, startTime, endTime, loader);
+    assertEquals(2, loader.loads.size());
+    assertEquals(endTime - CHUNK, (long) loader.loads.get(1)[0]);
+    assertEquals(first.getMetrics().get(0).getMetricSeries().size(),
+      second.getMetrics().get(0).getMetricSeries().size());
+    assertEquals(startTime, second.getMetrics().get(0).getStartTime());
+  }
+
+  @Test
+  public void testUnalignedStartIsTrimmed() throws Exception {
+    TimelineMetricsQueryCache cache = new TimelineMetricsQueryCache(100000, null);
+    String key = TimelineMetricsQueryCache.getQueryKey(Arrays.asList("cpu_user"),
+      Arrays.asList("h1"), "HOST", null, Precision.SECONDS, true);
+
+    cache.getMetrics(key, Precision.SECONDS, startTime, endTime, loader);
+    TimelineMetrics metrics = cache.getMetrics(key, Precision.SECONDS,
+      startTime + 5 * MINUTE, endTime, loader);
+    assertEquals(startTime + 5 * MINUTE, metrics.getMetrics().get(0).getStartTime());
+    assertEquals(55, metrics.getMetrics().get(0).getMetricSeries().size());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedChunks() throws Exception {
+    TimelineMetricsQueryCache cache = new TimelineMetricsQueryCache(25, null);
+    String key = TimelineMetricsQueryCache.getQueryKey(Arrays.asList("cpu_user"),
+      Arrays.asList("h1"), "HOST", null, Precision.SECONDS, true);
+
+    cache.getMetrics(key, Precision.SECONDS, startTime, endTime, loader);
+    assertEquals(2, cache.getChunkCount());
+    assertTrue(cache.getCachedPoints() <= 25);
+  }
+
+  @Test
+  public void testQueryKeyIgnoresOrder() {
+    assertEquals(
+      TimelineMetricsQueryCache.getQueryKey(Arrays.asList("a", "b"), Arrays.asList("h2", "h1"),
+        "HOST", null, Precision.MINUTES, true),
+      TimelineMetricsQueryCache.getQueryKey(Arrays.asList("b", "a"), Arrays.asList("h1", "h2"),
+        "HOST", null, Precision.MINUTES, true));
+    assertTrue(!TimelineMetricsQueryCache.getQueryKey(Arrays.asList("a"), null,
+        "HOST", null, Precision.MINUTES, true).equals(
+      TimelineMetricsQueryCache.getQueryKey(Arrays.asList("a"), null,
+        "HOST", null, Precision.SECONDS, true)));
+  }
+
+  /**
+   * Returns one point per minute of the requested range.
+   */
+  private static class RecordingLoader implements TimelineMetricsQueryCache.Loader {
+    private final List<Long[]> loads = new ArrayList<Long[]>();
+
+    @Override
+    public TimelineMetrics load(long startTime, long endTime) {
+      loads.add(new Long[] { startTime, endTime });
+      TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+      for (long time = startTime; time < endTime; time += MINUTE) {
+        values.put(time, (double) time);
+      }
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("cpu_user");
+      metric.setHostName("h1");
+      metric.setAppId("HOST");
+      metric.setStartTime(startTime);
+      metric.setMetricValues(values);
+      TimelineMetrics metrics = new TimelineMetrics();
+      metrics.getMetrics().add(metric);
+      return metrics;
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.EmptyCondition;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATE_TABLE_SPLIT_POINTS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_CHECKPOINT_DELAY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_AGGREGATOR_PARTITIONS_ENABLED;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_AGGREGATE_HOURLY_TABLE_NAME;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_AGGREGATE_MINUTE_TABLE_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractPartitionedTimelineAggregatorTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final long sleepIntervalMillis = 5 * 60 * 1000l;
+  private AbstractPartitionedTimelineAggregator agg;
+  // Partition ids of the statements run, with the interval start appended
+  private List<String> runs;
+  private Set<String> failingPartitions;
+  private long startTime;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration metricsConf = new Configuration();
+    metricsConf.setInt(AGGREGATOR_CHECKPOINT_DELAY, 0);
+    metricsConf.setBoolean(TIMELINE_METRICS_AGGREGATOR_PARTITIONS_ENABLED, true);
+    metricsConf.set(AGGREGATE_TABLE_SPLIT_POINTS, "cpu_user,mem_free");
+
+    runs = Collections.synchronizedList(new ArrayList<String>());
+    failingPartitions = Collections.synchronizedSet(new HashSet<String>());
+    startTime = AbstractTimelineAggregator.getRoundedCheckPointTimeMillis(
+      System.currentTimeMillis(), sleepIntervalMillis) - sleepIntervalMillis;
+
+    agg = new AbstractPartitionedTimelineAggregator(
+      AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_HOURLY, null, metricsConf,
+      folder.newFile("checkpoint").getAbsolutePath(), sleepIntervalMillis, 2,
+      "disabled", METRICS_AGGREGATE_MINUTE_TABLE_NAME, METRICS_AGGREGATE_HOURLY_TABLE_NAME,
+      0l, null) {
+
+      @Override
+      protected Condition prepareMetricQueryCondition(long startTime, long endTime,
+                                                      MetricNamePartition partition) {
+        EmptyCondition condition = new EmptyCondition();
+        condition.setStatement(partition != null ? partition.getId() : "all");
+        return condition;
+      }
+
+      @Override
+      protected boolean doWork(long startTime, long endTime, Condition condition,
+                               boolean downsample) {
+        runs.add(condition.getStatement() + "@" + startTime);
+        return !failingPartitions.contains(condition.getStatement());
+      }
+
+      @Override
+      protected void aggregate(ResultSet rs, long startTime, long endTime)
+          throws IOException, SQLException {
+      }
+    };
+  }
+
+  @Test
+  public void testEachPartitionSavesItsCheckpoint() throws Exception {
+    assertEquals(3, agg.partitions.size());
+
+    assertTrue(agg.doWork(startTime, startTime + sleepIntervalMillis));
+
+    assertEquals(3, runs.size());
+    for (MetricNamePartition partition : agg.partitions) {
+      assertTrue(runs.contains(partition.getId() + "@" + startTime));
+      assertEquals(startTime + sleepIntervalMillis, agg.readPartitionCheckPoint(partition));
+    }
+  }
+
+  @Test
+  public void testPartitionCatchesUpFromItsCheckpoint() throws Exception {
+    MetricNamePartition behind = agg.partitions.get(1);
+    agg.savePartitionCheckPoint(behind, startTime - sleepIntervalMillis);
+
+    assertTrue(agg.doWork(startTime, startTime + sleepIntervalMillis));
+
+    assertEquals(4, runs.size());
+    assertTrue(runs.contains(behind.getId() + "@" + (startTime - sleepIntervalMillis)));
+    assertTrue(runs.contains(behind.getId() + "@" + startTime));
+    for (MetricNamePartition partition : agg.partitions) {
+      assertEquals(startTime + sleepIntervalMillis, agg.readPartitionCheckPoint(partition));
+    }
+  }
+
+  @Test
+  public void testFailedPartitionKeepsItsCheckpoint() throws Exception {
+    long interval = sleepIntervalMillis;
+    assertTrue(agg.doWork(startTime, startTime + interval));
+
+    MetricNamePartition failing = agg.partitions.get(0);
+    failingPartitions.add(failing.getId());
+    assertTrue(agg.doWork(startTime + interval, startTime + 2 * interval));
+    assertEquals(startTime + interval, agg.readPartitionCheckPoint(failing));
+    assertEquals(startTime + 2 * interval, agg.readPartitionCheckPoint(agg.partitions.get(1)));
+    assertEquals(startTime + 2 * interval, agg.readPartitionCheckPoint(agg.partitions.get(2)));
+
+    // Failed interval is retried on the next cycle
+    failingPartitions.clear();
+    runs.clear();
+    assertTrue(agg.doWork(startTime + 2 * interval, startTime + 3 * interval));
+    assertEquals(4, runs.size());
+    assertTrue(runs.contains(failing.getId() + "@" + (startTime + interval)));
+    assertEquals(startTime + 3 * interval, agg.readPartitionCheckPoint(failing));
+
+    for (MetricNamePartition partition : agg.partitions) {
+      failingPartitions.add(partition.getId());
+    }
+    assertFalse(agg.doWork(startTime + 3 * interval, startTime + 4 * interval));
+  }
+}
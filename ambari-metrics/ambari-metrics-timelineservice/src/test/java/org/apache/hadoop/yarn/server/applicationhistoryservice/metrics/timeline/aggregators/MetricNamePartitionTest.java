@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricNamePartitionTest {
+
+  @Test
+  public void testNoSplitPoints() {
+    assertTrue(MetricNamePartition.fromSplitPoints(null).isEmpty());
+    assertTrue(MetricNamePartition.fromSplitPoints(" ").isEmpty());
+  }
+
+  @Test
+  public void testPartitionsCoverAllNames() {
+    List<MetricNamePartition> partitions =
+      MetricNamePartition.fromSplitPoints("mem_free, cpu_user,,jvm.Gc");
+    assertEquals(4, partitions.size());
+
+    assertEquals(" METRIC_NAME < 'cpu_user' AND ", partitions.get(0).getWhereClause());
+    assertEquals(" METRIC_NAME >= 'cpu_user' AND  METRIC_NAME < 'jvm.Gc' AND ",
+      partitions.get(1).getWhereClause());
+    assertEquals(" METRIC_NAME >= 'mem_free' AND ", partitions.get(3).getWhereClause());
+
+    assertEquals("first", partitions.get(0).getId());
+    assertEquals("jvm.Gc", partitions.get(2).getId());
+  }
+
+  @Test
+  public void testBoundsAreEscaped() {
+    List<MetricNamePartition> partitions = MetricNamePartition.fromSplitPoints("a'b/c");
+    assertEquals(" METRIC_NAME < 'a''b/c' AND ", partitions.get(0).getWhereClause());
+    assertEquals("a_b_c", partitions.get(1).getId());
+  }
+
+  @Test
+  public void testSinglePartitionRuns() {
+    MetricNamePartition partition = MetricNamePartition.fromSplitPoints("b").get(0);
+    assertTrue(partition.tryStart());
+    assertTrue(!partition.tryStart());
+    partition.finish();
+    assertTrue(partition.tryStart());
+  }
+}
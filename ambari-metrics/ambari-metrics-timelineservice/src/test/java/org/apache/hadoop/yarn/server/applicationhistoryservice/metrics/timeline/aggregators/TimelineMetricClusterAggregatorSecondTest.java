@@ -20,16 +20,26 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline
 import junit.framework.Assert;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataKey;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Test;
 
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_APP_ID;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.SERVER_SIDE_TIMESIFT_ADJUSTMENT;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_FLUSH_SIZE;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND;
 
 public class TimelineMetricClusterAggregatorSecondTest {
@@ -313,4 +323,153 @@ public class TimelineMetricClusterAggregatorSecondTest {
 
   }
 
+  @Test
+  public void testAggregatesAreSavedOnceTheirMetricIsRead() throws Exception {
+    long aggregatorInterval = 120000l;
+    long sliceInterval = 30000l;
+    long startTime = AbstractTimelineAggregator.getRoundedCheckPointTimeMillis(
+      System.currentTimeMillis(), aggregatorInterval);
+
+    // 4 slices per metric name, saved every 2 metric names
+    Configuration configuration = new Configuration();
+    configuration.set(SERVER_SIDE_TIMESIFT_ADJUSTMENT, "0");
+    configuration.setInt(TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_FLUSH_SIZE, 8);
+
+    List<Map<TimelineClusterMetric, MetricClusterAggregate>> saved =
+      new ArrayList<Map<TimelineClusterMetric, MetricClusterAggregate>>();
+    TimelineMetricClusterAggregatorSecond secondAggregator = createStreamingAggregator(
+      configuration, aggregatorInterval, sliceInterval, saved);
+
+    secondAggregator.aggregate(createResultSet(startTime, "m1", "m2", "m3"),
+      startTime, startTime + aggregatorInterval);
+
+    Assert.assertEquals(2, saved.size());
+
+    // m3 was not fully read when the first batch was saved
+    Map<TimelineClusterMetric, MetricClusterAggregate> firstBatch = saved.get(0);
+    Assert.assertEquals(8, firstBatch.size());
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("m1", "m2")),
+      getMetricNames(firstBatch));
+    for (MetricClusterAggregate aggregate : firstBatch.values()) {
+      Assert.assertEquals(2, aggregate.getNumberOfHosts());
+    }
+
+    // Nothing is left once the result set is read
+    Map<TimelineClusterMetric, MetricClusterAggregate> lastBatch = saved.get(1);
+    Assert.assertEquals(5, lastBatch.size());
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("m3", "live_hosts")),
+      getMetricNames(lastBatch));
+    TimelineClusterMetric liveHosts = new TimelineClusterMetric("live_hosts", HOST_APP_ID, null,
+      startTime + aggregatorInterval, null);
+    Assert.assertEquals(2.0, lastBatch.get(liveHosts).getSum());
+  }
+
+  @Test
+  public void testAggregatesBelowFlushSizeAreSavedOnce() throws Exception {
+    long aggregatorInterval = 120000l;
+    long sliceInterval = 30000l;
+    long startTime = AbstractTimelineAggregator.getRoundedCheckPointTimeMillis(
+      System.currentTimeMillis(), aggregatorInterval);
+
+    Configuration configuration = new Configuration();
+    configuration.set(SERVER_SIDE_TIMESIFT_ADJUSTMENT, "0");
+
+    List<Map<TimelineClusterMetric, MetricClusterAggregate>> saved =
+      new ArrayList<Map<TimelineClusterMetric, MetricClusterAggregate>>();
+    TimelineMetricClusterAggregatorSecond secondAggregator = createStreamingAggregator(
+      configuration, aggregatorInterval, sliceInterval, saved);
+
+    secondAggregator.aggregate(createResultSet(startTime, "m1", "m2", "m3"),
+      startTime, startTime + aggregatorInterval);
+
+    Assert.assertEquals(1, saved.size());
+    Assert.assertEquals(13, saved.get(0).size());
+  }
+
+  /**
+   * Aggregator saving into a mock store which records a copy of every batch.
+   */
+  private TimelineMetricClusterAggregatorSecond createStreamingAggregator(
+      Configuration configuration, long aggregatorInterval, long sliceInterval,
+      final List<Map<TimelineClusterMetric, MetricClusterAggregate>> saved) throws Exception {
+    TimelineMetricMetadataManager metricMetadataManagerMock = EasyMock.createNiceMock(TimelineMetricMetadataManager.class);
+    EasyMock.expect(metricMetadataManagerMock.getHostedAppsCache())
+      .andReturn(new HashMap<String, Set<String>>()).anyTimes();
+
+    PhoenixHBaseAccessor hBaseAccessorMock = EasyMock.createNiceMock(PhoenixHBaseAccessor.class);
+    hBaseAccessorMock.saveClusterAggregateRecords(
+      EasyMock.<Map<TimelineClusterMetric, MetricClusterAggregate>>anyObject());
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public Object answer() throws Throwable {
+        saved.add(new HashMap<TimelineClusterMetric, MetricClusterAggregate>(
+          (Map<TimelineClusterMetric, MetricClusterAggregate>) EasyMock.getCurrentArguments()[0]));
+        return null;
+      }
+    }).anyTimes();
+    EasyMock.replay(metricMetadataManagerMock, hBaseAccessorMock);
+
+    return new TimelineMetricClusterAggregatorSecond(
+      METRIC_AGGREGATE_SECOND, metricMetadataManagerMock, hBaseAccessorMock, configuration, null,
+      aggregatorInterval, 2, "false", "", "", aggregatorInterval, sliceInterval, null);
+  }
+
+  /**
+   * Result set ordered by metric name and host, with two hosts reporting
+   * one point per slice for each metric name.
+   */
+  private ResultSet createResultSet(long startTime, String... metricNames) throws Exception {
+    long seconds = 1000;
+    final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+    for (String metricName : metricNames) {
+      for (String hostname : new String[] { "h1", "h2" }) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("METRIC_NAME", metricName);
+        row.put("HOSTNAME", hostname);
+        row.put("APP_ID", "a1");
+        row.put("UNITS", "GUAGE");
+        row.put("SERVER_TIME", startTime);
+        row.put("START_TIME", startTime);
+        row.put("METRICS", "{\"" + (startTime + 15*seconds) + "\":1.0," +
+          "\"" + (startTime + 45*seconds) + "\":2.0," +
+          "\"" + (startTime + 75*seconds) + "\":3.0," +
+          "\"" + (startTime + 105*seconds) + "\":4.0}");
+        rows.add(row);
+      }
+    }
+
+    final int[] position = { -1 };
+    ResultSet rs = EasyMock.createNiceMock(ResultSet.class);
+    EasyMock.expect(rs.next()).andAnswer(new IAnswer<Boolean>() {
+      @Override
+      public Boolean answer() throws Throwable {
+        return ++position[0] < rows.size();
+      }
+    }).anyTimes();
+    EasyMock.expect(rs.getString(EasyMock.anyString())).andAnswer(new IAnswer<String>() {
+      @Override
+      public String answer() throws Throwable {
+        return (String) rows.get(position[0]).get(EasyMock.getCurrentArguments()[0]);
+      }
+    }).anyTimes();
+    EasyMock.expect(rs.getLong(EasyMock.anyString())).andAnswer(new IAnswer<Long>() {
+      @Override
+      public Long answer() throws Throwable {
+        Long value = (Long) rows.get(position[0]).get(EasyMock.getCurrentArguments()[0]);
+        return value != null ? value : 0l;
+      }
+    }).anyTimes();
+    EasyMock.replay(rs);
+    return rs;
+  }
+
+  private Set<String> getMetricNames(Map<TimelineClusterMetric, MetricClusterAggregate> aggregates) {
+    Set<String> metricNames = new HashSet<String>();
+    for (TimelineClusterMetric clusterMetric : aggregates.keySet()) {
+      metricNames.add(clusterMetric.getMetricName());
+    }
+    return metricNames;
+  }
+
 }
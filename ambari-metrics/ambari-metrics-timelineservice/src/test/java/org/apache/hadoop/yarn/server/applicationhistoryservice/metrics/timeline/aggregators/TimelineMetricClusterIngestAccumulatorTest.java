@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimelineMetricClusterIngestAccumulatorTest {
+  private static final long SLICE_INTERVAL = 30000l;
+
+  private TimelineMetricClusterIngestAccumulator accumulator;
+  private long coverageStart;
+
+  @Before
+  public void setUp() {
+    accumulator = new TimelineMetricClusterIngestAccumulator(SLICE_INTERVAL, 300000l);
+    coverageStart = accumulator.getCoverageStartTime();
+  }
+
+  @Test
+  public void testDrainAveragesPositiveValuesPerSlice() {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    values.put(coverageStart + 1000, 1.0);
+    values.put(coverageStart + 10000, 0.0);
+    values.put(coverageStart + 30000, 5.0);
+    values.put(coverageStart + 40000, 7.0);
+    accumulator.putMetrics(createMetrics("disk_free", "h1", values));
+
+    List<TimelineMetric> drained = accumulator.drainSlices(coverageStart + SLICE_INTERVAL);
+    assertEquals(1, drained.size());
+    TimelineMetric metric = drained.get(0);
+    assertEquals("disk_free", metric.getMetricName());
+    assertEquals("h1", metric.getHostName());
+    assertEquals(1, metric.getMetricSeries().size());
+    assertEquals(coverageStart + SLICE_INTERVAL, metric.getMetricSeries().getTimestamp(0));
+    assertEquals(3.0, metric.getMetricSeries().getValue(0), 0.0);
+    assertEquals(1, accumulator.getSeriesCount());
+
+    drained = accumulator.drainSlices(coverageStart + 2 * SLICE_INTERVAL);
+    assertEquals(1, drained.size());
+    assertEquals(7.0, drained.get(0).getMetricSeries().getValue(0), 0.0);
+    assertEquals(0, accumulator.getSeriesCount());
+  }
+
+  @Test
+  public void testDrainOrdersByMetricName() {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    values.put(coverageStart + 1000, 1.0);
+    accumulator.putMetrics(createMetrics("mem_free", "h1", values));
+    accumulator.putMetrics(createMetrics("cpu_user", "h1", values));
+    accumulator.putMetrics(createMetrics("mem_free", "h2", values));
+
+    List<TimelineMetric> drained = accumulator.drainSlices(coverageStart + SLICE_INTERVAL);
+    assertEquals(3, drained.size());
+    assertEquals("cpu_user", drained.get(0).getMetricName());
+    assertEquals("mem_free", drained.get(1).getMetricName());
+    assertEquals("mem_free", drained.get(2).getMetricName());
+  }
+
+  @Test
+  public void testLateDataIsRecorded() {
+    accumulator.drainSlices(coverageStart + 2 * SLICE_INTERVAL);
+    assertEquals(-1, accumulator.takeLateDataStartTime());
+
+    TreeMap<Long, Double> values = new TreeMap<>();
+    values.put(coverageStart + 45000, 1.0);
+    values.put(coverageStart + 5000, 2.0);
+    values.put(coverageStart + 65000, 3.0);
+    accumulator.putMetrics(createMetrics("disk_free", "h1", values));
+
+    assertEquals(coverageStart, accumulator.takeLateDataStartTime());
+    assertEquals(-1, accumulator.takeLateDataStartTime());
+
+    List<TimelineMetric> drained = accumulator.drainSlices(coverageStart + 3 * SLICE_INTERVAL);
+    assertEquals(1, drained.size());
+    assertEquals(3.0, drained.get(0).getMetricSeries().getValue(0), 0.0);
+  }
+
+  @Test
+  public void testDataBeforeCoverageIsIgnored() {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    values.put(coverageStart - 5000, 1.0);
+    accumulator.putMetrics(createMetrics("disk_free", "h1", values));
+
+    assertEquals(0, accumulator.drainSlices(coverageStart + SLICE_INTERVAL).size());
+    assertEquals(-1, accumulator.takeLateDataStartTime());
+  }
+
+  private TimelineMetrics createMetrics(String metricName, String hostName,
+                                        TreeMap<Long, Double> values) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setAppId("HOST");
+    metric.setHostName(hostName);
+    metric.setStartTime(values.firstKey());
+    metric.setMetricValues(new TreeMap<>(values));
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(Collections.singletonList(metric));
+    return metrics;
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.TreeMap;
+
+public class GorillaSeriesCodecTest {
+
+  private final TimelineMetricSeriesCodec codec = new GorillaSeriesCodec();
+
+  @Test
+  public void testEmptySeries() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    Assert.assertEquals(values, roundTrip(values));
+  }
+
+  @Test
+  public void testRegularSeriesRoundTrip() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    long startTime = 1460000000000L;
+    for (int i = 0; i < 60; i++) {
+      values.put(startTime + i * 10000, i % 5 == 0 ? 42.0 : 42.0 + i * 0.5);
+    }
+
+    byte[] encoded = codec.encode(TimelineMetricSeries.fromMap(values));
+    Assert.assertEquals(values, codec.decode(encoded).toTreeMap());
+    // 60 points as JSON are well over 1 KB
+    Assert.assertTrue(encoded.length < 300);
+  }
+
+  @Test
+  public void testIrregularSeriesRoundTrip() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1000L, 0.0);
+    values.put(1001L, -1.5E300);
+    values.put(500000L, Double.MAX_VALUE);
+    values.put(500017L, Double.MIN_VALUE);
+    // Null values are stored as NaN and read back as null
+    values.put(9000000000L, null);
+    values.put(9000000001L, 7.0);
+
+    Assert.assertEquals(values, roundTrip(values));
+  }
+
+  @Test(expected = IOException.class)
+  public void testDecodeInvalidData() throws Exception {
+    codec.decode(new byte[] { 9, 0, 0, 0, 1 });
+  }
+
+  private TreeMap<Long, Double> roundTrip(TreeMap<Long, Double> values) throws IOException {
+    return codec.decode(codec.encode(TimelineMetricSeries.fromMap(values))).toTreeMap();
+  }
+}
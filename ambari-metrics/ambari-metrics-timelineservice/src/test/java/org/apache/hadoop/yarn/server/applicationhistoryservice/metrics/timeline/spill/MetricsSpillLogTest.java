@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.spill;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.encoding.GorillaSeriesCodec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsSpillLogTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static List<TimelineMetric> createMetrics(long startTime) {
+    List<TimelineMetric> metrics = new ArrayList<TimelineMetric>();
+    for (int i = 0; i < 3; i++) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("metric" + i);
+      metric.setAppId("HOST");
+      metric.setHostName(i == 1 ? null : "h1");
+      metric.setStartTime(startTime);
+      for (int p = 0; p < 10; p++) {
+        metric.getMetricSeries().append(startTime + p * 1000, p * 1.5);
+      }
+      metrics.add(metric);
+    }
+    return metrics;
+  }
+
+  private MetricsSpillLog createLog(File dir, long maxBytes) throws IOException {
+    return new MetricsSpillLog(dir, 4096, maxBytes, 3600000, new GorillaSeriesCodec());
+  }
+
+  private static class RecordingReplayer implements MetricsSpillLog.Replayer {
+    private final List<Long> commitTimes = new ArrayList<Long>();
+    private int failures;
+
+    @Override
+    public void replay(List<TimelineMetric> metrics, long commitTime) throws Exception {
+      if (failures > 0) {
+        failures--;
+        throw new SQLException("HBase unavailable");
+      }
+      assertEquals(3, metrics.size());
+      assertEquals("metric0", metrics.get(0).getMetricName());
+      assertNull(metrics.get(1).getHostName());
+      assertEquals(10, metrics.get(2).getMetricSeries().size());
+      assertEquals(4.5, metrics.get(2).getMetricSeries().getValue(3), 0.0);
+      commitTimes.add(commitTime);
+    }
+  }
+
+  @Test
+  public void testReplayInOrderAfterFailure() throws Exception {
+    File dir = folder.newFolder("spill");
+    MetricsSpillLog log = createLog(dir, Long.MAX_VALUE);
+    for (long i = 0; i < 50; i++) {
+      log.append(createMetrics(i), i);
+    }
+    assertTrue(log.getSegmentCount() > 1);
+
+    RecordingReplayer replayer = new RecordingReplayer();
+    replayer.failures = 1;
+    assertEquals(0, log.replay(replayer));
+    assertFalse(log.isEmpty());
+
+    // Segments survive a restart
+    MetricsSpillLog recovered = createLog(dir, Long.MAX_VALUE);
+    assertFalse(recovered.isEmpty());
+    recovered.replay(replayer);
+    assertTrue(recovered.isEmpty());
+    assertEquals(50, replayer.commitTimes.size());
+    for (int i = 0; i < 50; i++) {
+      assertEquals(i, replayer.commitTimes.get(i).longValue());
+    }
+    assertEquals(0, dir.list().length);
+  }
+
+  @Test
+  public void testQuotaDropsOldestSegments() throws Exception {
+    File dir = folder.newFolder("spill");
+    MetricsSpillLog log = createLog(dir, 3 * 4096);
+    for (long i = 0; i < 200; i++) {
+      log.append(createMetrics(i), i);
+    }
+    assertTrue(log.getSpilledBytes() <= 3 * 4096);
+    assertTrue(log.getSegmentCount() <= 4);
+    assertTrue(log.getDroppedSegmentCount() > 0);
+
+    RecordingReplayer replayer = new RecordingReplayer();
+    log.replay(replayer);
+    // Only the most recent batches are left
+    assertEquals(199, replayer.commitTimes.get(replayer.commitTimes.size() - 1).longValue());
+    assertTrue(replayer.commitTimes.get(0) > 0);
+  }
+
+  @Test
+  public void testFailedReplaysKeepActiveSegment() throws Exception {
+    File dir = folder.newFolder("spill");
+    MetricsSpillLog log = createLog(dir, 2 * 4096);
+    RecordingReplayer replayer = new RecordingReplayer();
+    replayer.failures = Integer.MAX_VALUE;
+    for (long i = 0; i < 10; i++) {
+      log.append(createMetrics(i), i);
+      assertEquals(0, log.replay(replayer));
+    }
+    // Failed replays do not open a new segment for every append
+    assertTrue(log.getSegmentCount() <= 2);
+    assertEquals(0, log.getDroppedSegmentCount());
+
+    // Only the bytes written count against the quota, also after a restart
+    long spilledBytes = log.getSpilledBytes();
+    assertTrue(spilledBytes < 2 * 4096);
+    MetricsSpillLog recovered = createLog(dir, 2 * 4096);
+    assertEquals(spilledBytes, recovered.getSpilledBytes());
+
+    replayer.failures = 0;
+    recovered.replay(replayer);
+    assertTrue(recovered.isEmpty());
+    assertEquals(0, recovered.getSpilledBytes());
+    assertEquals(10, replayer.commitTimes.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i, replayer.commitTimes.get(i).longValue());
+    }
+  }
+
+  @Test
+  public void testTruncateExpired() throws Exception {
+    File dir = folder.newFolder("spill");
+    MetricsSpillLog log = new MetricsSpillLog(dir, 4096, Long.MAX_VALUE, 0,
+      new GorillaSeriesCodec());
+    log.append(createMetrics(0), 0);
+    Thread.sleep(5);
+    log.truncateExpired();
+    assertTrue(log.isEmpty());
+    assertEquals(1, log.getDroppedSegmentCount());
+  }
+
+  @Test
+  public void testOversizedRecordGetsOwnSegment() throws Exception {
+    File dir = folder.newFolder("spill");
+    MetricsSpillLog log = createLog(dir, Long.MAX_VALUE);
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("large");
+    for (int p = 0; p < 10000; p++) {
+      metric.getMetricSeries().append(p, Math.random());
+    }
+    log.append(Collections.singletonList(metric), 1);
+
+    final int[] points = new int[1];
+    log.replay(new MetricsSpillLog.Replayer() {
+      @Override
+      public void replay(List<TimelineMetric> metrics, long commitTime) {
+        points[0] = metrics.get(0).getMetricSeries().size();
+      }
+    });
+    assertEquals(10000, points[0]);
+  }
+}
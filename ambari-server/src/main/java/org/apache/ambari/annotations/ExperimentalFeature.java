@@ -31,12 +31,6 @@ public enum ExperimentalFeature {
    */
   PARALLEL_PROCESSING,
 
-  /**
-   * The caching of current alert information in order to reduce overall load on
-   * the database by preventing frequent updates and JPA entity invalidation.
-   */
-  ALERT_CACHING,
-
   /**
    * Used for code that is targeted for patch upgrades
    */
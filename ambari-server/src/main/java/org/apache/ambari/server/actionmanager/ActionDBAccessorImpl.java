@@ -23,9 +23,11 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.annotations.Experimental;
@@ -354,6 +356,11 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
 
     addRequestToAuditlogCache(request);
 
+    // hosts and their log prefixes, looked up once per host instead of once
+    // per command
+    Map<Long, HostEntity> hostEntities = new HashMap<Long, HostEntity>();
+    Map<Long, String> hostPrefixes = new HashMap<Long, String>();
+
     for (Stage stage : request.getStages()) {
       StageEntity stageEntity = stage.constructNewPersistenceEntity();
       stageEntities.add(stageEntity);
@@ -375,30 +382,23 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         String output = "output-" + hostRoleCommandEntity.getTaskId() + ".txt";
         String error = "errors-" + hostRoleCommandEntity.getTaskId() + ".txt";
 
-        HostEntity hostEntity = null;
-        if (null != hostRoleCommandEntity.getHostId()) {
-          hostEntity = hostDAO.findById(hostRoleCommandEntity.getHostId());
+        Long hostId = hostRoleCommandEntity.getHostId();
+        if (null != hostId) {
+          HostEntity hostEntity = hostEntities.get(hostId);
           if (hostEntity == null) {
-            String msg = String.format("Host %s doesn't exist in database", hostRoleCommandEntity.getHostName());
-            LOG.error(msg);
-            throw new AmbariException(msg);
+            hostEntity = hostDAO.findById(hostId);
+            if (hostEntity == null) {
+              String msg = String.format("Host %s doesn't exist in database", hostRoleCommandEntity.getHostName());
+              LOG.error(msg);
+              throw new AmbariException(msg);
+            }
+
+            hostEntities.put(hostId, hostEntity);
+            hostPrefixes.put(hostId, getHostPrefix(hostEntity));
           }
 
           hostRoleCommandEntity.setHostEntity(hostEntity);
-
-          try {
-            // Get the in-memory host object and its prefix to construct the output and error log paths.
-            Host hostObject = clusters.getHost(hostEntity.getHostName());
-
-            if (!StringUtils.isBlank(hostObject.getPrefix())) {
-              prefix = hostObject.getPrefix();
-              if (!prefix.endsWith("/")) {
-                prefix = prefix + "/";
-              }
-            }
-          } catch (AmbariException e) {
-            LOG.warn("Exception in getting prefix for host and setting output and error log files.  Using no prefix");
-          }
+          prefix = hostPrefixes.get(hostId);
         }
 
         hostRoleCommand.setOutputLog(prefix + output);
@@ -412,12 +412,10 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         executionCommandEntity.setTaskId(hostRoleCommandEntity.getTaskId());
         hostRoleCommandEntity.setExecutionCommand(executionCommandEntity);
 
+        // the command and host entities are managed by this transaction, their
+        // changes are written at commit together with the other inserts of
+        // the request, so they are not merged one by one here
         executionCommandDAO.create(hostRoleCommandEntity.getExecutionCommand());
-        hostRoleCommandEntity = hostRoleCommandDAO.merge(hostRoleCommandEntity);
-
-        if (null != hostEntity) {
-          hostEntity = hostDAO.merge(hostEntity);
-        }
       }
 
       for (RoleSuccessCriteriaEntity roleSuccessCriteriaEntity : stageEntity.getRoleSuccessCriterias()) {
@@ -431,6 +429,31 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     requestDAO.merge(requestEntity);
   }
 
+  /**
+   * Gets the prefix of the output and error log paths of a host.
+   *
+   * @param hostEntity
+   *          the host (not {@code null}).
+   * @return the prefix ending with a {@code /} or an empty string.
+   */
+  private String getHostPrefix(HostEntity hostEntity) {
+    String prefix = "";
+    try {
+      // Get the in-memory host object and its prefix to construct the output and error log paths.
+      Host hostObject = clusters.getHost(hostEntity.getHostName());
+
+      if (!StringUtils.isBlank(hostObject.getPrefix())) {
+        prefix = hostObject.getPrefix();
+        if (!prefix.endsWith("/")) {
+          prefix = prefix + "/";
+        }
+      }
+    } catch (AmbariException e) {
+      LOG.warn("Exception in getting prefix for host and setting output and error log files.  Using no prefix");
+    }
+    return prefix;
+  }
+
   @Override
   @Transactional
   public void startRequest(long requestId) {
@@ -492,10 +515,39 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       taskReports.put(report.getTaskId(), report);
     }
 
+    if (taskReports.isEmpty()) {
+      return;
+    }
+
+    Set<Long> requestsToCheck = updateHostRoleStatesInSingleTransaction(taskReports);
+
+    // Invalidate the updated commands in one go, once the updates are
+    // committed so that they can not be cached again with their old state
+    hostRoleCommandCache.invalidateAll(taskReports.keySet());
+
+    for (Long requestId : requestsToCheck) {
+      endRequestIfCompleted(requestId);
+    }
+  }
+
+  /**
+   * Applies a batch of command reports in a single transaction. The tasks are
+   * loaded with one query and changed while they are managed, so EclipseLink
+   * sends all of their UPDATEs as one JDBC batch at commit instead of merging
+   * every task in a separate unit of work. Requests are checked for
+   * completion by the caller after the commit.
+   *
+   * @param taskReports
+   *          the reports by task id (not {@code null}).
+   * @return the ids of the requests whose last stage has completed tasks.
+   */
+  @Transactional
+  @TransactionalLock(lockArea = LockArea.HRC_STATUS_CACHE, lockType = LockType.WRITE)
+  protected Set<Long> updateHostRoleStatesInSingleTransaction(Map<Long, CommandReport> taskReports) {
     long now = System.currentTimeMillis();
 
-    List<Long> requestsToCheck = new ArrayList<Long>();
-    List<Long> abortedCommandUpdates = new ArrayList<Long>();
+    Set<Long> requestsToCheck = new LinkedHashSet<Long>();
+    Map<Long, Long> lastStageIds = new HashMap<Long, Long>();
 
     List<HostRoleCommandEntity> commandEntities = hostRoleCommandDAO.findByPKs(taskReports.keySet());
     for (HostRoleCommandEntity commandEntity : commandEntities) {
@@ -507,7 +559,6 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         case ABORTED:
           // We don't want to overwrite statuses for ABORTED tasks with
           // statuses that have been received from the agent after aborting task
-          abortedCommandUpdates.add(commandEntity.getTaskId());
           break;
         default:
           HostRoleStatus status = HostRoleStatus.valueOf(report.getStatus());
@@ -542,7 +593,13 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         if(statusChanged) {
           auditLog(commandEntity, requestId);
         }
-        if (requestDAO.getLastStageId(requestId).equals(stageId)) {
+
+        Long lastStageId = lastStageIds.get(requestId);
+        if (lastStageId == null) {
+          lastStageId = requestDAO.getLastStageId(requestId);
+          lastStageIds.put(requestId, lastStageId);
+        }
+        if (lastStageId.equals(stageId)) {
           requestsToCheck.add(requestId);
         }
       }
@@ -553,12 +610,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       hostRoleCommandDAO.mergeAll(commandEntities);
     }
 
-    // Invalidate cache because of updates to ABORTED commands
-    hostRoleCommandCache.invalidateAll(abortedCommandUpdates);
-
-    for (Long requestId : requestsToCheck) {
-      endRequestIfCompleted(requestId);
-    }
+    return requestsToCheck;
   }
 
   @Override
@@ -165,6 +165,7 @@ public class ActionManager {
     }
 
     db.updateHostRoleStates(reportsToProcess);
+    scheduler.commandReportsReceived(reportsToProcess);
   }
 
   /**
@@ -256,6 +257,7 @@ public class ActionManager {
 
   public void resubmitTasks(List<Long> taskIds) {
     db.resubmitTasks(taskIds);
+    scheduler.awake();
   }
 
 }
@@ -55,7 +55,6 @@ import org.apache.ambari.server.metadata.RoleCommandOrderProvider;
 import org.apache.ambari.server.metadata.RoleCommandPair;
 import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
-import org.apache.ambari.server.orm.entities.RequestEntity;
 import org.apache.ambari.server.serveraction.ServerActionExecutor;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
@@ -156,6 +155,18 @@ class ActionScheduler implements Runnable {
 
   private final Set<Long> requestsInProgress = new HashSet<Long>();
 
+  /**
+   * Whether the requests in progress are exclusive, keyed by request id, so
+   * that the request entity is not read on every wake up.
+   */
+  private final Map<Long, Boolean> exclusiveRequests = new HashMap<Long, Boolean>();
+
+  /**
+   * What the last full pass learned about the stages in progress; used to
+   * skip passes when incremental stage processing is enabled.
+   */
+  private final ActiveStageIndex stageIndex = new ActiveStageIndex();
+
   /**
    * Contains request ids that have been scheduled to be cancelled,
    * but are not cancelled yet
@@ -289,12 +300,24 @@ class ActionScheduler implements Runnable {
    * The method is guaranteed to return quickly.
    */
   public void awake() {
+    stageIndex.markChanged();
     synchronized (wakeupSyncObject) {
       activeAwakeRequest = true;
       wakeupSyncObject.notify();
     }
   }
 
+  /**
+   * Should be called after command reports from an agent are persisted, so
+   * that the scheduler processes the stages in progress on its next wake up
+   * if any of the commands finished.
+   *
+   * @param reports  the persisted reports
+   */
+  public void commandReportsReceived(Collection<CommandReport> reports) {
+    stageIndex.commandReportsReceived(reports);
+  }
+
   @Override
   public void run() {
     while (shouldRun) {
@@ -314,9 +337,11 @@ class ActionScheduler implements Runnable {
       } catch (Exception ex) {
         LOG.warn("Exception received", ex);
         requestsInProgress.clear();
+        stageIndex.markChanged();
       } catch (Throwable t) {
         LOG.warn("ERROR", t);
         requestsInProgress.clear();
+        stageIndex.markChanged();
       }
     }
   }
@@ -331,6 +356,17 @@ class ActionScheduler implements Runnable {
       // The first thing to do is to abort requests that are cancelled
       processCancelledRequestsList();
 
+      // nothing which could change the stages in progress happened since the
+      // last full pass, and none of their commands is about to time out
+      long now = System.currentTimeMillis();
+      if (configuration.isIncrementalStageProcessingEnabled()) {
+        if (!stageIndex.isFullPassNeeded(clusters, now)) {
+          LOG.debug("No changes to the stages in progress, skipping this wake up.");
+          return;
+        }
+        stageIndex.startFullPass(now);
+      }
+
       // !!! getting the stages in progress could be a very expensive call due
       // to the join being used; there's no need to make it if there are
       // no commands in progress
@@ -341,6 +377,7 @@ class ActionScheduler implements Runnable {
         }
 
         actionQueue.updateListOfHostsWithPendingTask(null);
+        exclusiveRequests.clear();
         return;
       }
 
@@ -358,9 +395,16 @@ class ActionScheduler implements Runnable {
         }
 
         actionQueue.updateListOfHostsWithPendingTask(null);
+        exclusiveRequests.clear();
         return;
       }
 
+      Set<Long> stageRequestIds = new HashSet<Long>();
+      for (Stage stage : stages) {
+        stageRequestIds.add(stage.getRequestId());
+      }
+      exclusiveRequests.keySet().retainAll(stageRequestIds);
+
       int i_stage = 0;
 
       HashSet<String> hostsWithTasks = getListOfHostsWithPendingTask(stages);
@@ -378,9 +422,7 @@ class ActionScheduler implements Runnable {
         long requestId = stage.getRequestId();
         LOG.debug("==> STAGE_i = " + i_stage + "(requestId=" + requestId + ",StageId=" + stage.getStageId() + ")");
 
-        RequestEntity request = db.getRequestEntity(requestId);
-
-        if (request.isExclusive()) {
+        if (isExclusiveRequest(requestId)) {
           if (runningRequestIds.size() > 0) {
             // As a result, we will wait until any previous stages are finished
             LOG.debug("Stage requires exclusive execution, but other requests are already executing. Stopping for now");
@@ -420,7 +462,7 @@ class ActionScheduler implements Runnable {
           // only fail the request if the role failed and the stage is not
           // skippable
           if (stats.isRoleFailed() && !stage.isSkippable()) {
-            LOG.warn("{} failed, request {} will be aborted", role, request.getRequestId());
+            LOG.warn("{} failed, request {} will be aborted", role, requestId);
 
             failed = true;
             break;
@@ -436,6 +478,7 @@ class ActionScheduler implements Runnable {
           LOG.error("Operation completely failed, aborting request id: {}", stage.getRequestId());
           cancelHostRoleCommands(stage.getOrderedHostRoleCommands(), FAILED_TASK_ABORT_REASONING);
           abortOperationsForStage(stage);
+          stageIndex.markChanged();
           return;
         }
 
@@ -445,7 +488,13 @@ class ActionScheduler implements Runnable {
         //Schedule what we have so far
 
         for (ExecutionCommand cmd : commandsToSchedule) {
-          ConfigHelper.processHiddenAttribute(cmd.getConfigurations(), cmd.getConfigurationAttributes(), cmd.getRole(), false);
+          // the configurations may be shared with other commands, filter a copy
+          Map<String, Map<String, String>> configurations = ConfigHelper.filterHiddenAttribute(
+              cmd.getConfigurations(), cmd.getConfigurationAttributes(), cmd.getRole(), false);
+          if (configurations != cmd.getConfigurations()) {
+            cmd.setConfigurations(configurations);
+            cmd.setConfigurationsHash(null);
+          }
           processHostRole(stage, cmd, commandsToStart, commandsToUpdate);
         }
 
@@ -495,6 +544,7 @@ class ActionScheduler implements Runnable {
 
           cancelHostRoleCommands(hostRoleCommands, FAILED_TASK_ABORT_REASONING);
           db.bulkAbortHostRole(stage, commandsToAbort);
+          stageIndex.markChanged();
         }
 
         LOG.debug("==> Adding {} tasks to queue...", commandsToUpdate.size());
@@ -765,19 +815,8 @@ class ActionScheduler implements Runnable {
           }
         }
 
-        //basic timeout for stage
-        long commandTimeout = actionTimeout;
-        if (taskTimeoutAdjustment) {
-          Map<String, String> commandParams = c.getCommandParams();
-          String timeoutKey = ExecutionCommand.KeyNames.COMMAND_TIMEOUT;
-          if (commandParams != null && commandParams.containsKey(timeoutKey)) {
-            String timeoutStr = commandParams.get(timeoutKey);
-            commandTimeout += Long.parseLong(timeoutStr) * 1000; // Converting to milliseconds
-          } else {
-            LOG.error("Execution command has no timeout parameter" +
-              c.toString());
-          }
-        }
+        long commandTimeout = getCommandTimeout(c);
+        int scheduledCount = commandsToSchedule.size();
 
         // Check that service host component is not deleted
         if (hostDeleted) {
@@ -793,12 +832,14 @@ class ActionScheduler implements Runnable {
           // Abort the command itself
           // We don't need to send CANCEL_COMMANDs in this case
           db.abortHostRole(host, s.getRequestId(), s.getStageId(), c.getRole(), message);
+          stageIndex.markChanged();
           if (c.getRoleCommand().equals(RoleCommand.ACTIONEXECUTE)) {
             processActionDeath(cluster.getClusterName(), c.getHostname(), roleStr);
           }
           status = HostRoleStatus.ABORTED;
         } else if (timeOutActionNeeded(status, s, hostObj, roleStr, now, commandTimeout)) {
           // Process command timeouts
+          stageIndex.markChanged();
           if (s.getAttemptCount(host, roleStr) >= maxAttempts) {
             LOG.warn("Host: {}, role: {}, actionId: {} expired and will be failed", host, roleStr,
               s.getActionId());
@@ -855,12 +896,63 @@ class ActionScheduler implements Runnable {
 
         updateRoleStats(status, roleStats.get(roleStr));
 
+        // remember when the command has to be checked again
+        if ((hostObj == null && !status.isCompletedState()) || status.isHoldingState()) {
+          stageIndex.setAlwaysProcess();
+        } else if (commandsToSchedule.size() > scheduledCount) {
+          stageIndex.addCommand(hostObj, now + commandTimeout);
+        } else if (status == HostRoleStatus.QUEUED || status == HostRoleStatus.IN_PROGRESS) {
+          stageIndex.addCommand(hostObj, s.getLastAttemptTime(host, roleStr) + commandTimeout);
+        }
       }
     }
     LOG.debug("Collected {} commands to schedule in this wakeup.", commandsToSchedule.size());
     return roleStats;
   }
 
+  /**
+   * Get the time a command may run before it times out: the basic action
+   * timeout, extended by the timeout of the command itself if task timeout
+   * adjustment is enabled.
+   *
+   * @param c  the command
+   *
+   * @return the timeout in milliseconds
+   */
+  private long getCommandTimeout(ExecutionCommand c) {
+    //basic timeout for stage
+    long commandTimeout = actionTimeout;
+    if (taskTimeoutAdjustment) {
+      Map<String, String> commandParams = c.getCommandParams();
+      String timeoutKey = ExecutionCommand.KeyNames.COMMAND_TIMEOUT;
+      if (commandParams != null && commandParams.containsKey(timeoutKey)) {
+        String timeoutStr = commandParams.get(timeoutKey);
+        commandTimeout += Long.parseLong(timeoutStr) * 1000; // Converting to milliseconds
+      } else {
+        LOG.error("Execution command has no timeout parameter" +
+          c.toString());
+      }
+    }
+    return commandTimeout;
+  }
+
+  /**
+   * Determine whether a request is exclusive, reading the request entity
+   * only the first time the request is seen in progress.
+   *
+   * @param requestId  the request id
+   *
+   * @return {@code true} if the request has to run exclusively
+   */
+  private boolean isExclusiveRequest(long requestId) {
+    Boolean exclusive = exclusiveRequests.get(requestId);
+    if (exclusive == null) {
+      exclusive = db.getRequestEntity(requestId).isExclusive();
+      exclusiveRequests.put(requestId, exclusive);
+    }
+    return exclusive;
+  }
+
   /**
    * Returns true if all command dependencies are already finished (not IN_PROGRESS states).
    * @param command
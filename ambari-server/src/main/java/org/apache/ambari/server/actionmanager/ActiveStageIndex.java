@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.agent.CommandReport;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.Host;
+import org.apache.ambari.server.state.HostState;
+
+/**
+ * What the {@link ActionScheduler} learned about the stages in progress on its
+ * last full pass over them: when the earliest queued or running command times
+ * out, and which hosts run commands.  Between full passes the index is told
+ * about everything else that can give the scheduler work: command reports
+ * with a final status, new or cancelled requests and resubmitted tasks.  When
+ * none of this happened, the scheduler can skip reading the stages again.
+ * <p/>
+ * The index is updated by the scheduler thread only; changes are flagged from
+ * any thread.
+ */
+class ActiveStageIndex {
+
+  /**
+   * Maximum time between two full passes, so that changes made outside of the
+   * paths which flag them, such as deleting a host component with commands
+   * in progress, are still picked up.
+   */
+  static final long MAX_SKIP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * {@code true} if something changed since the last full pass started.
+   */
+  private volatile boolean changed = true;
+
+  /**
+   * Start time of the last full pass.
+   */
+  private long lastFullPassTime;
+
+  /**
+   * Earliest time a tracked command may time out.
+   */
+  private long nextCommandTimeout = Long.MAX_VALUE;
+
+  /**
+   * {@code true} if the stages in progress contain commands whose progress
+   * is not flagged, server side actions and commands on hold.
+   */
+  private boolean alwaysProcess;
+
+  /**
+   * Registration time of the hosts with commands in progress, keyed by host name.
+   */
+  private final Map<String, Long> hostRegistrationTimes = new HashMap<String, Long>();
+
+  /**
+   * Flag that the stages in progress must be read on the next wake up.
+   */
+  void markChanged() {
+    changed = true;
+  }
+
+  /**
+   * Flag a change if any of the given command reports has a status the
+   * scheduler acts on. Reports of queued or running commands are ignored.
+   *
+   * @param reports  the reports persisted for a host
+   */
+  void commandReportsReceived(Collection<CommandReport> reports) {
+    for (CommandReport report : reports) {
+      if (!HostRoleStatus.IN_PROGRESS.name().equals(report.getStatus()) &&
+          !HostRoleStatus.QUEUED.name().equals(report.getStatus())) {
+        changed = true;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Determine whether the scheduler has to read the stages in progress.
+   *
+   * @param clusters  used to check the hosts running commands
+   * @param now       the current time
+   *
+   * @return {@code true} if a full pass is needed
+   */
+  boolean isFullPassNeeded(Clusters clusters, long now) {
+    if (changed || alwaysProcess || now >= nextCommandTimeout ||
+        now - lastFullPassTime >= MAX_SKIP_INTERVAL) {
+      return true;
+    }
+
+    // commands of lost or restarted agents are timed out right away
+    for (Map.Entry<String, Long> entry : hostRegistrationTimes.entrySet()) {
+      try {
+        Host host = clusters.getHost(entry.getKey());
+        if (host.getState() == HostState.HEARTBEAT_LOST ||
+            host.getLastRegistrationTime() != entry.getValue()) {
+          return true;
+        }
+      } catch (AmbariException e) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Start a full pass, forgetting what was learned on the previous one.
+   *
+   * @param now  the current time
+   */
+  void startFullPass(long now) {
+    changed = false;
+    lastFullPassTime = now;
+    nextCommandTimeout = Long.MAX_VALUE;
+    alwaysProcess = false;
+    hostRegistrationTimes.clear();
+  }
+
+  /**
+   * Track a command which is queued or running after this pass.
+   *
+   * @param host     the host of the command; {@code null} for server side commands
+   * @param timeout  the time at which the command times out
+   */
+  void addCommand(Host host, long timeout) {
+    nextCommandTimeout = Math.min(nextCommandTimeout, timeout);
+    if (host != null) {
+      hostRegistrationTimes.put(host.getHostName(), host.getLastRegistrationTime());
+    }
+  }
+
+  /**
+   * Always read the stages in progress until the next full pass finds no
+   * command whose progress is not flagged.
+   */
+  void setAlwaysProcess() {
+    alwaysProcess = true;
+  }
+}
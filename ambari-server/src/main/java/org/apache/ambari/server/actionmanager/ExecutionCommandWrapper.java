@@ -25,6 +25,8 @@ import java.util.TreeMap;
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.ClusterNotFoundException;
 import org.apache.ambari.server.agent.AgentCommand.AgentCommandType;
+import org.apache.ambari.server.agent.ConfigurationSnapshot;
+import org.apache.ambari.server.agent.ConfigurationSnapshotCache;
 import org.apache.ambari.server.agent.ExecutionCommand;
 import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.state.Cluster;
@@ -54,6 +56,9 @@ public class ExecutionCommandWrapper {
   @Inject
   ConfigHelper configHelper;
 
+  @Inject
+  ConfigurationSnapshotCache configurationSnapshots;
+
   @Inject
   private Gson gson;
 
@@ -140,6 +145,17 @@ public class ExecutionCommandWrapper {
       // configurations
       Map<String, Map<String, String>> configurationTags = executionCommand.getConfigurationTags();
       if (null != configurationTags && !configurationTags.isEmpty()) {
+        // the commands of a stage mostly have the same tags; expand them once
+        // and share the result
+        String expansionKey = configurationSnapshots.getExpansionKey(clusterId,
+            configurationTags, configurations, executionCommand.getConfigurationAttributes());
+
+        ConfigurationSnapshot snapshot = configurationSnapshots.getExpandedSnapshot(expansionKey);
+        if (null != snapshot) {
+          useSnapshot(snapshot);
+          return executionCommand;
+        }
+
         Map<String, Map<String, String>> configProperties = configHelper
             .getEffectiveConfigProperties(cluster, configurationTags);
 
@@ -178,6 +194,9 @@ public class ExecutionCommandWrapper {
                 executionCommand.getConfigurationAttributes().get(type));
             }
         }
+
+        useSnapshot(configurationSnapshots.putExpandedSnapshot(expansionKey, configurations,
+            executionCommand.getConfigurationAttributes()));
       }
     } catch (ClusterNotFoundException cnfe) {
       // it's possible that there are commands without clusters; in such cases,
@@ -194,6 +213,17 @@ public class ExecutionCommandWrapper {
     return executionCommand;
   }
 
+  /**
+   * Makes the command use the shared configurations of the given snapshot.
+   *
+   * @param snapshot  the snapshot
+   */
+  private void useSnapshot(ConfigurationSnapshot snapshot) {
+    executionCommand.setConfigurations(snapshot.getConfigurations());
+    executionCommand.setConfigurationAttributes(snapshot.getConfigurationAttributes());
+    executionCommand.setConfigurationsHash(snapshot.getHash());
+  }
+
   /**
    * Gets the type of command by deserializing the JSON and invoking
    * {@link ExecutionCommand#getCommandType()}.
@@ -44,6 +44,20 @@ public class ActionQueue {
 
   HashSet<String> hostsWithPendingTask = new HashSet<String>();
 
+  /**
+   * Listeners waiting for commands to be queued, at most one per host.
+   */
+  private final ConcurrentMap<String, CommandsListener> commandsListeners =
+      new ConcurrentHashMap<String, CommandsListener>();
+
+  /**
+   * Notified once when a command other than a status command is queued for a
+   * host.
+   */
+  public interface CommandsListener {
+    void onCommandsQueued(String hostname);
+  }
+
   public ActionQueue() {
     hostQueues = new ConcurrentHashMap<String, Queue<AgentCommand>>();
   }
@@ -72,6 +86,65 @@ public class ActionQueue {
     }
 
     q.add(cmd);
+
+    if (cmd.getCommandType() != AgentCommandType.STATUS_COMMAND) {
+      CommandsListener listener = commandsListeners.remove(hostname);
+      if (listener != null) {
+        listener.onCommandsQueued(hostname);
+      }
+    }
+  }
+
+  /**
+   * Registers a listener to be notified the next time a command other than a
+   * status command is queued for the host. A listener already registered for
+   * the host is replaced and notified right away.
+   *
+   * @param hostname
+   *          the host to wait for commands for (not {@code null}).
+   * @param listener
+   *          the listener to notify (not {@code null}).
+   */
+  public void setCommandsListener(String hostname, CommandsListener listener) {
+    CommandsListener previous = commandsListeners.put(hostname, listener);
+    if (previous != null && previous != listener) {
+      previous.onCommandsQueued(hostname);
+    }
+  }
+
+  /**
+   * Removes the listener of the host if it was not notified yet.
+   *
+   * @param hostname
+   *          the host the listener waits for commands for.
+   * @param listener
+   *          the listener to remove.
+   */
+  public void removeCommandsListener(String hostname, CommandsListener listener) {
+    commandsListeners.remove(hostname, listener);
+  }
+
+  /**
+   * Checks whether commands other than status commands are queued for the
+   * host.
+   *
+   * @param hostname
+   *          the host to check.
+   * @return {@code true} if the next heartbeat of the host would receive
+   *         commands to run.
+   */
+  public boolean hasPendingCommands(String hostname) {
+    Queue<AgentCommand> q = getQueue(hostname);
+    if (q == null) {
+      return false;
+    }
+
+    for (AgentCommand command : q) {
+      if (command.getCommandType() != AgentCommandType.STATUS_COMMAND) {
+        return true;
+      }
+    }
+    return false;
   }
 
   /**
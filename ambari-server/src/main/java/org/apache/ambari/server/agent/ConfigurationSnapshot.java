@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.util.Map;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * The configurations and configuration attributes of execution commands,
+ * addressed by a hash of their content. Commands with the same configurations
+ * share one snapshot, which agents fetch once and cache by its hash.
+ * <p/>
+ * The maps of a snapshot are shared and can not be modified.
+ */
+public class ConfigurationSnapshot {
+
+  @SerializedName("hash")
+  private final String hash;
+
+  @SerializedName("configurations")
+  private final Map<String, Map<String, String>> configurations;
+
+  @SerializedName("configuration_attributes")
+  private final Map<String, Map<String, Map<String, String>>> configurationAttributes;
+
+  ConfigurationSnapshot(String hash, Map<String, Map<String, String>> configurations,
+                        Map<String, Map<String, Map<String, String>>> configurationAttributes) {
+    this.hash = hash;
+    this.configurations = configurations;
+    this.configurationAttributes = configurationAttributes;
+  }
+
+  public String getHash() {
+    return hash;
+  }
+
+  public Map<String, Map<String, String>> getConfigurations() {
+    return configurations;
+  }
+
+  public Map<String, Map<String, Map<String, String>>> getConfigurationAttributes() {
+    return configurationAttributes;
+  }
+
+  @Override
+  public String toString() {
+    return "ConfigurationSnapshot{hash=" + hash + "}";
+  }
+}
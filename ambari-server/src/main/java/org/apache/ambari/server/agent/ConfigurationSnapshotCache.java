@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.inject.Singleton;
+
+/**
+ * Keeps the {@link ConfigurationSnapshot}s of the execution commands, so that
+ * commands with the same configurations share them instead of each holding a
+ * copy, and so that agents can fetch them by hash.
+ * <p/>
+ * Snapshots are also remembered by the configuration tags they are expanded
+ * from, so that the configurations of the commands of a stage are only built
+ * once.
+ */
+@Singleton
+public class ConfigurationSnapshotCache {
+
+  /**
+   * Snapshots by hash. Snapshots are kept for an hour after they were last
+   * used, which leaves the agents enough time to fetch them.
+   */
+  private final Cache<String, ConfigurationSnapshot> snapshots = CacheBuilder.newBuilder().
+      expireAfterAccess(1, TimeUnit.HOURS).
+      build();
+
+  /**
+   * Snapshots by the key of the configuration tags they were expanded from.
+   */
+  private final Cache<String, ConfigurationSnapshot> expandedSnapshots = CacheBuilder.newBuilder().
+      expireAfterAccess(1, TimeUnit.HOURS).
+      build();
+
+  private final Gson gson = new GsonBuilder().serializeNulls().create();
+
+  /**
+   * Gets a snapshot by hash.
+   *
+   * @param hash  the hash of the snapshot
+   *
+   * @return the snapshot or {@code null} if it is not known (anymore)
+   */
+  public ConfigurationSnapshot getSnapshot(String hash) {
+    return snapshots.getIfPresent(hash);
+  }
+
+  /**
+   * Gets the snapshot with the given configurations, creating it if needed.
+   * The given maps are copied, they are not modified.
+   *
+   * @param configurations           the configurations
+   * @param configurationAttributes  the configuration attributes, may be {@code null}
+   *
+   * @return the snapshot with the same content
+   */
+  public ConfigurationSnapshot intern(Map<String, Map<String, String>> configurations,
+                                      Map<String, Map<String, Map<String, String>>> configurationAttributes) {
+    Map<String, Map<String, String>> configurationsCopy = copyConfigurations(configurations);
+    Map<String, Map<String, Map<String, String>>> attributesCopy =
+        configurationAttributes == null ? null : copyAttributes(configurationAttributes);
+
+    String hash = DigestUtils.sha256Hex(gson.toJson(configurationsCopy) + gson.toJson(attributesCopy));
+    ConfigurationSnapshot snapshot = new ConfigurationSnapshot(hash, configurationsCopy, attributesCopy);
+    ConfigurationSnapshot existing = snapshots.asMap().putIfAbsent(hash, snapshot);
+    return existing != null ? existing : snapshot;
+  }
+
+  /**
+   * Makes the given command use the shared snapshot of its configurations.
+   * The configurations of the command are replaced by the equal maps of the
+   * snapshot, and the command references the snapshot by hash.
+   *
+   * @param command  the command
+   *
+   * @return the snapshot or {@code null} if the command has no configurations
+   */
+  public ConfigurationSnapshot share(ExecutionCommand command) {
+    if (command.getConfigurations() == null || command.getConfigurations().isEmpty()) {
+      return null;
+    }
+
+    ConfigurationSnapshot snapshot = null;
+    if (command.getConfigurationsHash() != null) {
+      snapshot = snapshots.getIfPresent(command.getConfigurationsHash());
+    }
+
+    if (snapshot == null || snapshot.getConfigurations() != command.getConfigurations()
+        || snapshot.getConfigurationAttributes() != command.getConfigurationAttributes()) {
+      snapshot = intern(command.getConfigurations(), command.getConfigurationAttributes());
+      command.setConfigurations(snapshot.getConfigurations());
+      command.setConfigurationAttributes(snapshot.getConfigurationAttributes());
+      command.setConfigurationsHash(snapshot.getHash());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Gets the key of the configurations expanded from configuration tags.
+   *
+   * @param clusterId                the cluster of the configuration tags
+   * @param configurationTags        the configuration tags
+   * @param configurations           the configurations set on the command itself
+   * @param configurationAttributes  the configuration attributes set on the command itself
+   *
+   * @return the key
+   */
+  public String getExpansionKey(long clusterId, Map<String, Map<String, String>> configurationTags,
+                                Map<String, Map<String, String>> configurations,
+                                Map<String, Map<String, Map<String, String>>> configurationAttributes) {
+    return DigestUtils.sha256Hex(clusterId + gson.toJson(configurationTags) +
+        gson.toJson(configurations) + gson.toJson(configurationAttributes));
+  }
+
+  /**
+   * Gets the snapshot of configurations expanded from configuration tags.
+   *
+   * @param expansionKey  the key returned by {@link #getExpansionKey}
+   *
+   * @return the snapshot or {@code null} if the configurations were not expanded yet
+   */
+  public ConfigurationSnapshot getExpandedSnapshot(String expansionKey) {
+    ConfigurationSnapshot snapshot = expandedSnapshots.getIfPresent(expansionKey);
+    if (snapshot != null) {
+      // keep it available for the agents
+      snapshots.asMap().putIfAbsent(snapshot.getHash(), snapshot);
+    }
+    return snapshot;
+  }
+
+  /**
+   * Remembers the configurations expanded from configuration tags.
+   *
+   * @param expansionKey             the key returned by {@link #getExpansionKey}
+   * @param configurations           the expanded configurations
+   * @param configurationAttributes  the expanded configuration attributes
+   *
+   * @return the snapshot of the configurations
+   */
+  public ConfigurationSnapshot putExpandedSnapshot(String expansionKey,
+                                                   Map<String, Map<String, String>> configurations,
+                                                   Map<String, Map<String, Map<String, String>>> configurationAttributes) {
+    ConfigurationSnapshot snapshot = intern(configurations, configurationAttributes);
+    expandedSnapshots.put(expansionKey, snapshot);
+    return snapshot;
+  }
+
+  private static Map<String, Map<String, String>> copyConfigurations(
+      Map<String, Map<String, String>> configurations) {
+    Map<String, Map<String, String>> copy = new TreeMap<String, Map<String, String>>();
+    for (Map.Entry<String, Map<String, String>> entry : configurations.entrySet()) {
+      copy.put(entry.getKey(), entry.getValue() == null ? null :
+          Collections.unmodifiableMap(new TreeMap<String, String>(entry.getValue())));
+    }
+    return Collections.unmodifiableMap(copy);
+  }
+
+  private static Map<String, Map<String, Map<String, String>>> copyAttributes(
+      Map<String, Map<String, Map<String, String>>> configurationAttributes) {
+    Map<String, Map<String, Map<String, String>>> copy = new TreeMap<String, Map<String, Map<String, String>>>();
+    for (Map.Entry<String, Map<String, Map<String, String>>> entry : configurationAttributes.entrySet()) {
+      copy.put(entry.getKey(), entry.getValue() == null ? null :
+          copyConfigurations(entry.getValue()));
+    }
+    return Collections.unmodifiableMap(copy);
+  }
+}
@@ -37,7 +37,7 @@ import com.google.gson.annotations.SerializedName;
  * Execution commands are scheduled by action manager, and these are
  * persisted in the database for recovery.
  */
-public class ExecutionCommand extends AgentCommand {
+public class ExecutionCommand extends AgentCommand implements Cloneable {
 
   private static Log LOG = LogFactory.getLog(ExecutionCommand.class);
 
@@ -85,6 +85,14 @@ public class ExecutionCommand extends AgentCommand {
   @SerializedName("configuration_attributes")
   private Map<String, Map<String, Map<String, String>>> configurationAttributes;
 
+  /**
+   * Hash of the {@link ConfigurationSnapshot} holding the configurations and
+   * configuration attributes of this command; {@code null} if they are not
+   * shared with other commands.
+   */
+  @SerializedName("configurationsHash")
+  private String configurationsHash;
+
   @SerializedName("configurationTags")
   private Map<String, Map<String, String>> configurationTags;
 
@@ -271,6 +279,33 @@ public class ExecutionCommand extends AgentCommand {
     this.configurationAttributes = configurationAttributes;
   }
 
+  public String getConfigurationsHash() {
+    return configurationsHash;
+  }
+
+  public void setConfigurationsHash(String configurationsHash) {
+    this.configurationsHash = configurationsHash;
+  }
+
+  /**
+   * Creates a copy of this command which references its configurations and
+   * configuration attributes by {@link #getConfigurationsHash()} instead of
+   * carrying them. All other fields are shared with this command.
+   *
+   * @return the copy
+   */
+  public ExecutionCommand copyWithConfigurationsReference() {
+    ExecutionCommand copy;
+    try {
+      copy = (ExecutionCommand) clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+    copy.configurations = null;
+    copy.configurationAttributes = null;
+    return copy;
+  }
+
   public Map<String, String> getCommandParams() {
     return commandParams;
   }
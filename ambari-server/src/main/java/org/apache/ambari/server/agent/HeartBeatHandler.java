@@ -23,6 +23,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -146,6 +147,9 @@ public class HeartBeatHandler {
   @Inject
   private RecoveryConfigHelper recoveryConfigHelper;
 
+  @Inject
+  private ConfigurationSnapshotCache configurationSnapshots;
+
   /**
    * KerberosIdentityDataFileReaderFactory used to create KerberosIdentityDataFileReader instances
    */
@@ -156,6 +160,12 @@ public class HeartBeatHandler {
 
   private Map<String, HeartBeatResponse> hostResponses = new ConcurrentHashMap<String, HeartBeatResponse>();
 
+  /**
+   * Hosts whose agents fetch the configurations of execution commands by hash.
+   */
+  private final Set<String> configurationSnapshotHosts =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
   @Inject
   public HeartBeatHandler(Clusters fsm, ActionQueue aq, ActionManager am,
                           Injector injector) {
@@ -343,7 +353,12 @@ public class HeartBeatHandler {
                 }
               }
             }
-            response.addExecutionCommand((ExecutionCommand) ac);
+            if (config.isAgentConfigurationSnapshotsEnabled() && configurationSnapshotHosts.contains(hostname)
+                && configurationSnapshots.share(ec) != null) {
+              // the agent fetches the configurations by hash unless it has them cached
+              ec = ec.copyWithConfigurationsReference();
+            }
+            response.addExecutionCommand(ec);
             break;
           }
           case STATUS_COMMAND: {
@@ -461,6 +476,12 @@ public class HeartBeatHandler {
     // Save the prefix of the log file paths
     hostObject.setPrefix(register.getPrefix());
 
+    if (register.isConfigurationSnapshotsSupported()) {
+      configurationSnapshotHosts.add(hostname);
+    } else {
+      configurationSnapshotHosts.remove(hostname);
+    }
+
     hostObject.handleEvent(new HostRegistrationRequestEvent(hostname,
         null != register.getPublicHostname() ? register.getPublicHostname() : hostname,
         new AgentVersion(register.getAgentVersion()), now, register.getHardwareProfile(),
@@ -537,6 +558,16 @@ public class HeartBeatHandler {
     }
   }
 
+  /**
+   * Gets the configurations referenced by execution commands sent to agents.
+   *
+   * @param hash  the hash of the configurations
+   * @return the configurations or {@code null} if they are not known
+   */
+  public ConfigurationSnapshot getConfigurationSnapshot(String hash) {
+    return configurationSnapshots.getSnapshot(hash);
+  }
+
   /**
    * Response contains information about HDP Stack in use
    * @param clusterName
@@ -612,6 +643,8 @@ public class HeartBeatHandler {
 
       command.addConfigs(configHelper, cluster);
       commands.add(command);
+
+      alertDefinitionHash.setSentHash(clusterName, hostname, hash);
     }
 
     return commands;
@@ -41,6 +41,7 @@ import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.agent.ExecutionCommand.KeyNames;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.events.ActionFinalReportReceivedEvent;
 import org.apache.ambari.server.events.AlertEvent;
@@ -50,6 +51,7 @@ import org.apache.ambari.server.events.publishers.AlertEventPublisher;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.events.publishers.VersionEventPublisher;
 import org.apache.ambari.server.metadata.ActionMetadata;
+import org.apache.ambari.server.metrics.system.impl.HeartbeatMetricsSource;
 import org.apache.ambari.server.orm.dao.KerberosPrincipalHostDAO;
 import org.apache.ambari.server.state.Alert;
 import org.apache.ambari.server.state.Cluster;
@@ -77,6 +79,9 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.util.concurrent.AbstractService;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
@@ -94,7 +99,11 @@ public class HeartbeatProcessor extends AbstractService{
 
   private ScheduledExecutorService executor;
 
-  private ConcurrentLinkedQueue<HeartBeat> heartBeatsQueue = new ConcurrentLinkedQueue<>();
+  /**
+   * One queue per processing thread, the heartbeats of a host always go to
+   * the same queue so they are processed in the order they were received.
+   */
+  private final List<ConcurrentLinkedQueue<QueuedHeartBeat>> heartBeatsQueues = new ArrayList<>();
 
   private volatile boolean shouldRun = true;
 
@@ -104,6 +113,14 @@ public class HeartbeatProcessor extends AbstractService{
 
   private int poolSize = 1;
 
+  private final Counter queueSize;
+  private final Timer queueWaitTimer;
+  private final Timer processingTimer;
+  private final Timer alertsTimer;
+  private final Timer statusReportsTimer;
+  private final Timer commandReportsTimer;
+  private final Timer hostStatusTimer;
+
   private Clusters clusterFsm;
   private HeartbeatMonitor heartbeatMonitor;
   private Injector injector;
@@ -136,6 +153,9 @@ public class HeartbeatProcessor extends AbstractService{
   @Inject
   Gson gson;
 
+  @Inject
+  Configuration configuration;
+
   @Inject
   public HeartbeatProcessor(Clusters clusterFsm, ActionManager am, HeartbeatMonitor heartbeatMonitor,
                             Injector injector) {
@@ -145,15 +165,30 @@ public class HeartbeatProcessor extends AbstractService{
     this.heartbeatMonitor = heartbeatMonitor;
     this.clusterFsm = clusterFsm;
     actionManager = am;
+    if (configuration != null) {
+      poolSize = Math.max(1, configuration.getAgentHeartbeatProcessingThreads());
+    }
+    for (int i = 0; i < poolSize; i++) {
+      heartBeatsQueues.add(new ConcurrentLinkedQueue<QueuedHeartBeat>());
+    }
     ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("ambari-heartbeat-processor-%d").build();
     executor = Executors.newScheduledThreadPool(poolSize, threadFactory);
+
+    MetricRegistry registry = HeartbeatMetricsSource.getRegistry();
+    queueSize = registry.counter("heartbeat.queue.size");
+    queueWaitTimer = registry.timer("heartbeat.queue.wait");
+    processingTimer = registry.timer("heartbeat.processing");
+    alertsTimer = registry.timer("heartbeat.processing.alerts");
+    statusReportsTimer = registry.timer("heartbeat.processing.status_reports");
+    commandReportsTimer = registry.timer("heartbeat.processing.command_reports");
+    hostStatusTimer = registry.timer("heartbeat.processing.host_status");
   }
 
   @Override
   protected void doStart() {
     LOG.info("**** Starting heartbeats processing threads ****");
-    for (int i=0; i< poolSize; i++) {
-      executor.scheduleAtFixedRate(new HeartbeatProcessingTask(), delay, period, TimeUnit.MILLISECONDS);
+    for (ConcurrentLinkedQueue<QueuedHeartBeat> queue : heartBeatsQueues) {
+      executor.scheduleAtFixedRate(new HeartbeatProcessingTask(queue), delay, period, TimeUnit.MILLISECONDS);
     }
   }
 
@@ -165,27 +200,46 @@ public class HeartbeatProcessor extends AbstractService{
   }
 
   public void addHeartbeat(HeartBeat heartBeat) {
-    heartBeatsQueue.add(heartBeat);
+    int index = (heartBeat.getHostname().hashCode() & Integer.MAX_VALUE) % heartBeatsQueues.size();
+    heartBeatsQueues.get(index).add(new QueuedHeartBeat(heartBeat, System.nanoTime()));
+    queueSize.inc();
   }
 
-  private HeartBeat pollHeartbeat() {
-    return heartBeatsQueue.poll();
+  /**
+   * Heartbeat waiting to be processed along with the time it was queued.
+   */
+  private static class QueuedHeartBeat {
+    private final HeartBeat heartBeat;
+    private final long queuedNanos;
+
+    private QueuedHeartBeat(HeartBeat heartBeat, long queuedNanos) {
+      this.heartBeat = heartBeat;
+      this.queuedNanos = queuedNanos;
+    }
   }
 
   /**
-   * Processing task to be scheduled for execution
+   * Processing task to be scheduled for execution, drains a single queue
    */
   private class HeartbeatProcessingTask implements Runnable {
 
+    private final ConcurrentLinkedQueue<QueuedHeartBeat> queue;
+
+    private HeartbeatProcessingTask(ConcurrentLinkedQueue<QueuedHeartBeat> queue) {
+      this.queue = queue;
+    }
+
     @Override
     public void run() {
       while (shouldRun) {
         try {
-          HeartBeat heartbeat = pollHeartbeat();
-          if (heartbeat == null) {
+          QueuedHeartBeat queued = queue.poll();
+          if (queued == null) {
             break;
           }
-          processHeartbeat(heartbeat);
+          queueSize.dec();
+          queueWaitTimer.update(System.nanoTime() - queued.queuedNanos, TimeUnit.NANOSECONDS);
+          processHeartbeat(queued.heartBeat);
         } catch (Exception e) {
           LOG.error("Exception received while processing heartbeat", e);
         } catch (Throwable throwable) {
@@ -205,14 +259,28 @@ public class HeartbeatProcessor extends AbstractService{
    */
   public void processHeartbeat(HeartBeat heartbeat) throws AmbariException {
     long now = System.currentTimeMillis();
-
-    processAlerts(heartbeat);
-
-    //process status reports before command reports to prevent status override immediately after task finish
-    processStatusReports(heartbeat);
-    processCommandReports(heartbeat, now);
-    //host status calculation are based on task and status reports, should be performed last
-    processHostStatus(heartbeat);
+    Timer.Context processingContext = processingTimer.time();
+    try {
+      Timer.Context context = alertsTimer.time();
+      processAlerts(heartbeat);
+      context.stop();
+
+      //process status reports before command reports to prevent status override immediately after task finish
+      context = statusReportsTimer.time();
+      processStatusReports(heartbeat);
+      context.stop();
+
+      context = commandReportsTimer.time();
+      processCommandReports(heartbeat, now);
+      context.stop();
+
+      //host status calculation are based on task and status reports, should be performed last
+      context = hostStatusTimer.time();
+      processHostStatus(heartbeat);
+      context.stop();
+    } finally {
+      processingContext.stop();
+    }
   }
 
 
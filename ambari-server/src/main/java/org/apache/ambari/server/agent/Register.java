@@ -35,6 +35,7 @@ public class Register {
   private AgentEnv agentEnv;
   private String agentVersion;
   private String prefix;
+  private boolean configurationSnapshotsSupported;
 
   @JsonProperty("responseId")
   public int getResponseId() {
@@ -98,6 +99,18 @@ public class Register {
     this.agentVersion = agentVersion;
   }
 
+  /**
+   * @return true if the agent fetches the configurations of execution
+   *         commands which reference them by hash
+   */
+  public boolean isConfigurationSnapshotsSupported() {
+    return configurationSnapshotsSupported;
+  }
+
+  public void setConfigurationSnapshotsSupported(boolean configurationSnapshotsSupported) {
+    this.configurationSnapshotsSupported = configurationSnapshotsSupported;
+  }
+
   public int getCurrentPingPort() {
     return currentPingPort;
   }
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent.rest;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.ambari.server.agent.ActionQueue;
+import org.apache.ambari.server.agent.ActionQueue.CommandsListener;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationSupport;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * The {@link AgentCommandsServlet} lets an agent wait for commands to be
+ * queued for its host instead of polling with heartbeats. A request to
+ * {@code /agent/v1/commands/<hostname>} is answered as soon as a command other
+ * than a status command is in the {@link ActionQueue} of the host, or with no
+ * commands once the configured timeout has passed. The agent heartbeats when
+ * told that commands are pending, the commands themselves are still delivered
+ * in the heartbeat response.
+ * <p/>
+ * Waiting requests are suspended with a Jetty {@link Continuation} so that
+ * they do not hold on to threads of the agent connector.
+ */
+@Singleton
+public class AgentCommandsServlet extends HttpServlet {
+
+  /**
+   * Request attribute holding the listener of a suspended request.
+   */
+  private static final String LISTENER_ATTRIBUTE = AgentCommandsServlet.class.getName() + ".listener";
+
+  @Inject
+  private ActionQueue m_actionQueue;
+
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    String hostname = StringUtils.strip(request.getPathInfo(), "/");
+    if (StringUtils.isEmpty(hostname)) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The host name is required");
+      return;
+    }
+
+    if (!m_configuration.isAgentCommandPushEnabled()) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    Continuation continuation = ContinuationSupport.getContinuation(request);
+    CommandsListener listener = (CommandsListener) request.getAttribute(LISTENER_ATTRIBUTE);
+    if (listener != null) {
+      // resumed or expired, the listener is already gone if it was notified
+      m_actionQueue.removeCommandsListener(hostname, listener);
+    } else if (!m_actionQueue.hasPendingCommands(hostname)) {
+      continuation.setTimeout(m_configuration.getAgentCommandPushTimeout());
+      continuation.suspend();
+      listener = new ContinuationCommandsListener(continuation);
+      request.setAttribute(LISTENER_ATTRIBUTE, listener);
+      m_actionQueue.setCommandsListener(hostname, listener);
+
+      // commands queued before the listener was registered
+      if (m_actionQueue.hasPendingCommands(hostname)) {
+        listener.onCommandsQueued(hostname);
+      }
+      return;
+    }
+
+    response.setContentType("application/json");
+    response.getWriter().write("{\"hasPendingCommands\":" + m_actionQueue.hasPendingCommands(hostname) + "}");
+  }
+
+  /**
+   * Resumes a suspended request when commands are queued.
+   */
+  private static final class ContinuationCommandsListener implements CommandsListener {
+    private final Continuation m_continuation;
+
+    private ContinuationCommandsListener(Continuation continuation) {
+      m_continuation = continuation;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCommandsQueued(String hostname) {
+      try {
+        m_continuation.resume();
+      } catch (IllegalStateException e) {
+        // already resumed or expired
+      }
+    }
+  }
+}
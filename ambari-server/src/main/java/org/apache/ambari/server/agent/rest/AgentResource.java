@@ -28,9 +28,11 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.agent.ComponentsResponse;
+import org.apache.ambari.server.agent.ConfigurationSnapshot;
 import org.apache.ambari.server.agent.HeartBeat;
 import org.apache.ambari.server.agent.HeartBeatHandler;
 import org.apache.ambari.server.agent.HeartBeatResponse;
@@ -174,4 +176,30 @@ public class AgentResource {
 
     return componentsResponse;
   }
+
+  /**
+   * Retrieves the configurations referenced by hash by the execution commands
+   * sent to the agent (Internal API to be used by Ambari agent).
+   *
+   * @response.representation.200.doc This API is invoked by Ambari agent running
+   *  on a cluster to get the configurations of the commands it received
+   * @response.representation.200.mediaType application/json
+   * @response.representation.404.doc The configurations are not known
+   * @param hash of the configurations
+   */
+  @Path("configurations/{hash}")
+  @GET
+  @Produces({MediaType.APPLICATION_JSON})
+  public ConfigurationSnapshot configurations(@PathParam("hash") String hash) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Received Configurations request for hash " + hash);
+    }
+
+    ConfigurationSnapshot snapshot = hh.getConfigurationSnapshot(hash);
+    if (snapshot == null) {
+      LOG.warn("Configurations with hash " + hash + " are not known");
+      throw new WebApplicationException(Response.Status.NOT_FOUND);
+    }
+    return snapshot;
+  }
 }
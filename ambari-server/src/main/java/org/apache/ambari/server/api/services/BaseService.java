@@ -27,6 +27,7 @@ import org.apache.ambari.server.api.services.parsers.RequestBodyParser;
 import org.apache.ambari.server.api.services.serializers.CsvSerializer;
 import org.apache.ambari.server.api.services.serializers.JsonSerializer;
 import org.apache.ambari.server.api.services.serializers.ResultSerializer;
+import org.apache.ambari.server.api.services.serializers.StreamingJsonSerializer;
 import org.apache.ambari.server.audit.request.RequestAuditLogger;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.utils.RetryHelper;
@@ -61,9 +62,15 @@ public abstract class BaseService {
   private ResourceInstanceFactory m_resourceFactory = new ResourceInstanceFactoryImpl();
 
   /**
-   * Result serializer.
+   * Result serializer, writes the result to the response stream.
    */
-  private ResultSerializer m_serializer = new JsonSerializer();
+  private ResultSerializer m_serializer = new StreamingJsonSerializer();
+
+  /**
+   * Result serializer used to build the entity for an explicitly requested
+   * media type, which needs the serialized result as a string.
+   */
+  private ResultSerializer m_bufferedSerializer = new JsonSerializer();
 
   protected static RequestAuditLogger requestAuditLogger;
 
@@ -185,7 +192,7 @@ public abstract class BaseService {
    */
   protected ResultSerializer getResultSerializer(final MediaType mediaType) {
 
-    final ResultSerializer serializer = getResultSerializer();
+    final ResultSerializer serializer = m_bufferedSerializer;
 
     if (mediaType.equals(MediaType.TEXT_PLAIN_TYPE)){
       return new ResultSerializer() {
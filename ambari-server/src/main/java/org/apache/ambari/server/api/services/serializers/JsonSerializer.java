@@ -57,16 +57,12 @@ public class JsonSerializer implements ResultSerializer {
   @Override
   public Object serialize(Result result) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-
       if (result.getStatus().isErrorState()) {
         return serializeError(result.getStatus());
       }
 
-      TreeNode<Resource> treeNode = result.getResultTree();
-      processNode(treeNode);
-      processResultMetadata(result.getResultMetadata());
-      m_generator.close();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      write(result, bytesOut);
       return bytesOut.toString("UTF-8");
     } catch (IOException e) {
       //todo: exception handling.  Create ResultStatus 500 and call serializeError
@@ -74,6 +70,24 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
+  /**
+   * Write the JSON representation of a non error result to the given stream.
+   * The stream is flushed but not closed.
+   *
+   * @param result  internal result
+   * @param out     stream to write to
+   *
+   * @throws IOException if the result can't be written
+   */
+  void write(Result result, OutputStream out) throws IOException {
+    m_generator = createJsonGenerator(out);
+
+    TreeNode<Resource> treeNode = result.getResultTree();
+    processNode(treeNode);
+    processResultMetadata(result.getResultMetadata());
+    m_generator.close();
+  }
+
   @Override
   public Object serializeError(ResultStatus error) {
     try {
@@ -95,11 +109,6 @@ public class JsonSerializer implements ResultSerializer {
   private ByteArrayOutputStream init() throws IOException {
     ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
     m_generator = createJsonGenerator(bytesOut);
-
-    DefaultPrettyPrinter p = new DefaultPrettyPrinter();
-    p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
-    m_generator.setPrettyPrinter(p);
-
     return bytesOut;
   }
 
@@ -243,9 +252,11 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private JsonGenerator createJsonGenerator(ByteArrayOutputStream baos) throws IOException {
-    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(baos,
+  private JsonGenerator createJsonGenerator(OutputStream out) throws IOException {
+    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(out,
         Charset.forName("UTF-8").newEncoder()));
+    // leave closing the stream to its owner, close() only flushes
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 
     DefaultPrettyPrinter p = new DefaultPrettyPrinter();
     p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
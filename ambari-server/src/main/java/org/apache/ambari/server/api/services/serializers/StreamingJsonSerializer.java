@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.api.services.serializers;
+
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.ResultStatus;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JSON serializer which writes the result to the response stream.
+ * Produces the same output as {@link JsonSerializer} but instead of building
+ * the whole document in memory, returns a {@link StreamingOutput} entity that
+ * renders the result tree when the container writes the response, so the
+ * first bytes reach the client while the rest of the tree is serialized.
+ */
+public class StreamingJsonSerializer implements ResultSerializer {
+
+  @Override
+  public Object serialize(final Result result) {
+    if (result.getStatus().isErrorState()) {
+      return serializeError(result.getStatus());
+    }
+
+    return new StreamingOutput() {
+      @Override
+      public void write(OutputStream out) throws IOException {
+        // a serializer per write since JsonSerializer keeps its generator in a field
+        new JsonSerializer().write(result, out);
+      }
+    };
+  }
+
+  @Override
+  public Object serializeError(ResultStatus error) {
+    // errors are small, no need to stream them
+    return new JsonSerializer().serializeError(error);
+  }
+}
@@ -41,6 +41,8 @@ import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.api.services.BaseService;
 import org.apache.ambari.server.api.services.LocalUriInfo;
 import org.apache.ambari.server.api.services.Request;
+import org.apache.ambari.server.api.services.serializers.JsonSerializer;
+import org.apache.ambari.server.api.services.serializers.ResultSerializer;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorException;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequest;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorResponse;
@@ -111,6 +113,13 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
 
   private final AmbariMetaInfo metaInfo;
 
+  /**
+   * Hosts and services information is read back from the response entity as a
+   * string, so the internal requests use the buffered serializer rather than
+   * the streaming default.
+   */
+  private final ResultSerializer serializer = new JsonSerializer();
+
   @SuppressWarnings("unchecked")
   public StackAdvisorCommand(File recommendationsDir, String recommendationsArtifactsLifetime, String stackAdvisorScript, int requestId,
       StackAdvisorRunner saRunner, AmbariMetaInfo metaInfo) {
@@ -433,6 +442,11 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
     return servicesJSON;
   }
 
+  @Override
+  protected ResultSerializer getResultSerializer() {
+    return serializer;
+  }
+
   private ResourceInstance createHostResource() {
     Map<Resource.Type, String> mapIds = new HashMap<Resource.Type, String>();
     return createResource(Resource.Type.Host, mapIds);
@@ -55,6 +55,7 @@ import org.apache.ambari.server.actionmanager.Stage;
 import org.apache.ambari.server.actionmanager.CommandExecutionType;
 import org.apache.ambari.server.controller.spi.PropertyProvider;
 import org.apache.ambari.server.events.listeners.alerts.AlertReceivedListener;
+import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.orm.JPATableGenerationStrategy;
 import org.apache.ambari.server.orm.PersistenceType;
 import org.apache.ambari.server.orm.dao.HostRoleCommandStatusSummaryDTO;
@@ -479,6 +480,45 @@ public class Configuration {
   public static final ConfigurationProperty<String> AGENT_API_GZIP_COMPRESSION_ENABLED = new ConfigurationProperty<>(
       "agent.api.gzip.compression.enabled", "true");
 
+  /**
+   * Determines whether execution commands sent to agents which support it
+   * reference their configurations by hash instead of carrying them.
+   */
+  @Markdown(description = "Determines whether execution commands sent to the Ambari Agents reference their configurations by hash instead of carrying them. The agents fetch each set of configurations once and cache it.")
+  public static final ConfigurationProperty<Boolean> AGENT_CONFIGURATION_SNAPSHOTS_ENABLED = new ConfigurationProperty<>(
+      "agent.configuration_snapshots.enabled", Boolean.TRUE);
+
+  /**
+   * The number of threads processing agent heartbeats. Heartbeats of a host
+   * are always processed by the same thread.
+   */
+  @Markdown(description = "The number of threads used to process the heartbeats received from the Ambari Agents. The heartbeats of each host are processed in order by the same thread.")
+  public static final ConfigurationProperty<Integer> AGENT_HEARTBEAT_PROCESSING_THREADS = new ConfigurationProperty<>(
+      "agent.heartbeat.processing.threads", 4);
+
+  /**
+   * Determines whether agents wait on the server for new commands so that
+   * they can heartbeat right away instead of at their next interval.
+   */
+  @Markdown(description = "Determines whether the Ambari Agents keep a request open with the Ambari Server which returns as soon as commands are queued for their host. The agents then heartbeat right away to pick up the commands. While waiting with no tasks in progress, agents heartbeat at `agent.command.push.idle.heartbeat.interval` instead of their usual interval.")
+  public static final ConfigurationProperty<Boolean> AGENT_COMMAND_PUSH_ENABLED = new ConfigurationProperty<>(
+      "agent.command.push.enabled", Boolean.FALSE);
+
+  /**
+   * The time, in seconds, a request waiting for commands is held open.
+   */
+  @Markdown(description = "The time, in seconds, that a request from an Ambari Agent waiting for new commands is held open by the Ambari Server before it is answered with no commands.<br/><br/> This property is related to `agent.command.push.enabled`.")
+  public static final ConfigurationProperty<Integer> AGENT_COMMAND_PUSH_TIMEOUT = new ConfigurationProperty<>(
+      "agent.command.push.timeout", 30);
+
+  /**
+   * The time, in seconds, between heartbeats of agents which wait for
+   * commands and have nothing to do.
+   */
+  @Markdown(description = "The time, in seconds, between heartbeats of Ambari Agents which are waiting on the Ambari Server for new commands and have no tasks in progress. This value must be well below the time after which the heartbeat of a host is considered lost.<br/><br/> This property is related to `agent.command.push.enabled`.")
+  public static final ConfigurationProperty<Integer> AGENT_COMMAND_PUSH_IDLE_HEARTBEAT_INTERVAL = new ConfigurationProperty<>(
+      "agent.command.push.idle.heartbeat.interval", 30);
+
   /**
    * Determines whether SSL is used to communicate between Ambari Server and Ambari Agents.
    */
@@ -1856,6 +1896,15 @@ public class Configuration {
   public static final ConfigurationProperty<Boolean> PARALLEL_STAGE_EXECUTION = new ConfigurationProperty<>(
       "server.stages.parallel", Boolean.TRUE);
 
+  /**
+   * This key defines whether the action scheduler keeps the stages in progress
+   * in memory and skips its database pass on wake ups where none of their
+   * commands completed, timed out or lost its host.
+   */
+  @Markdown(description = "Determines whether the action scheduler only re-reads the stages in progress from the database when one of their commands changes state, a command is due to time out, a host is lost or a new request arrives.")
+  public static final ConfigurationProperty<Boolean> INCREMENTAL_STAGE_PROCESSING = new ConfigurationProperty<>(
+      "server.stages.incremental_processing", Boolean.FALSE);
+
   /**
    * In case this is set to DEPENDENCY_ORDERED one stage is created for each request and command dependencies are
    * handled directly by ActionScheduler. In case of STAGE (which is the default) one or more stages are
@@ -2045,6 +2094,24 @@ public class Configuration {
   public static final ConfigurationProperty<Long> PROPERTY_PROVIDER_THREADPOOL_COMPLETION_TIMEOUT = new ConfigurationProperty<>(
       "server.property-provider.threadpool.completion.timeout", 5000L);
 
+  /**
+   * The number of threads that handle the events published to the
+   * {@link AmbariEventPublisher}.
+   */
+  @Markdown(description = "The number of threads that handle events published within Ambari Server, such as cluster and host changes. Each listener also keeps this many ordered queues of events.")
+  public static final ConfigurationProperty<Integer> EVENTS_THREADPOOL_SIZE = new ConfigurationProperty<>(
+      "server.events.threadpool.size", 4);
+
+  /**
+   * The number of events an ordered queue of a listener handles before it
+   * gives its thread to the other queues.
+   */
+  @Markdown(
+      relatedTo = "server.events.threadpool.size",
+      description = "The number of events handled in a row for one ordered queue of a listener before its thread is handed to the queues of other listeners.")
+  public static final ConfigurationProperty<Integer> EVENTS_STRIPE_MAX_EVENTS = new ConfigurationProperty<>(
+      "server.events.stripe.max.events", 100);
+
   /**
    * The time, in {@link TimeUnit#SECONDS}, that HTTP requests remain valid when
    * inactive.
@@ -2183,15 +2250,17 @@ public class Configuration {
   @ConfigurationMarkdown(
       group = ConfigurationGrouping.ALERTS,
       scaleValues = {
-          @ClusterScale(clusterSize = ClusterSizeType.HOSTS_10, value = "false" ),
-          @ClusterScale(clusterSize = ClusterSizeType.HOSTS_50, value = "false"),
-          @ClusterScale(clusterSize = ClusterSizeType.HOSTS_100, value = "false"),
+          @ClusterScale(clusterSize = ClusterSizeType.HOSTS_10, value = "true" ),
+          @ClusterScale(clusterSize = ClusterSizeType.HOSTS_50, value = "true"),
+          @ClusterScale(clusterSize = ClusterSizeType.HOSTS_100, value = "true"),
           @ClusterScale(clusterSize = ClusterSizeType.HOSTS_500, value = "true") },
       markdown = @Markdown(
           description = "Determines whether current alerts should be cached. "
-              + "Enabling this can increase performance on large cluster, but can also result in lost alert data if the cache is not flushed frequently."))
+              + "Alert state changes are always written to the database right away, while the timestamps and text of alerts that did not change state are flushed periodically. "
+              + "Alert summaries and aggregate alert counts are then counted in memory instead of being queried from the database. "
+              + "Timestamps and text that were not flushed are lost if the server stops, and are refreshed the next time the alert runs."))
   public static final ConfigurationProperty<Boolean> ALERTS_CACHE_ENABLED = new ConfigurationProperty<>(
-      "alerts.cache.enabled", Boolean.FALSE);
+      "alerts.cache.enabled", Boolean.TRUE);
 
   /**
    * The time after which cached alert information is flushed to the database.
@@ -2226,6 +2295,22 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> ALERTS_CACHE_SIZE = new ConfigurationProperty<>(
       "alerts.cache.size", 50000);
 
+  /**
+   * The time, in milliseconds, during which state changes of alerts with an
+   * aggregate are collected before the aggregate is evaluated.
+   */
+  @Markdown(description = "The time, in milliseconds, during which state changes of alerts with an aggregate alert are collected before the aggregate alert is evaluated. Each aggregate alert is evaluated at most once during this time. A value of `0` evaluates the aggregate alert on every state change.")
+  public static final ConfigurationProperty<Long> ALERTS_AGGREGATE_EVALUATION_INTERVAL = new ConfigurationProperty<>(
+      "alerts.aggregate.evaluation.interval", 1000L);
+
+  /**
+   * The time, in milliseconds, during which alerts received for the same
+   * cluster, definition and host are coalesced before being applied.
+   */
+  @Markdown(description = "The time, in milliseconds, during which alerts received for the same cluster, definition and host are coalesced. Only the latest alert of each state is applied and all alerts received during this time are written in a single transaction. A value of `0` applies every alert as it is received.")
+  public static final ConfigurationProperty<Long> ALERTS_RECEIVED_COALESCING_WINDOW = new ConfigurationProperty<>(
+      "alerts.received.coalescing.window", 1000L);
+
   /**
    * When using SSL, this will be used to set the {@code Strict-Transport-Security} response header.
    */
@@ -2613,6 +2698,8 @@ public class Configuration {
     agentConfigsMap.put(CHECK_REMOTE_MOUNTS.getKey(), getProperty(CHECK_REMOTE_MOUNTS));
     agentConfigsMap.put(CHECK_MOUNTS_TIMEOUT.getKey(), getProperty(CHECK_MOUNTS_TIMEOUT));
     agentConfigsMap.put(ENABLE_AUTO_AGENT_CACHE_UPDATE.getKey(), getProperty(ENABLE_AUTO_AGENT_CACHE_UPDATE));
+    agentConfigsMap.put(AGENT_COMMAND_PUSH_ENABLED.getKey(), getProperty(AGENT_COMMAND_PUSH_ENABLED));
+    agentConfigsMap.put(AGENT_COMMAND_PUSH_IDLE_HEARTBEAT_INTERVAL.getKey(), getProperty(AGENT_COMMAND_PUSH_IDLE_HEARTBEAT_INTERVAL));
 
     configsMap = new HashMap<String, String>();
     configsMap.putAll(agentConfigsMap);
@@ -3590,6 +3677,36 @@ public class Configuration {
     return Boolean.parseBoolean(getProperty(AGENT_API_GZIP_COMPRESSION_ENABLED));
   }
 
+  /**
+   * @return true if execution commands may reference their configurations by
+   *         hash when sent to the agents
+   */
+  public boolean isAgentConfigurationSnapshotsEnabled() {
+    return Boolean.parseBoolean(getProperty(AGENT_CONFIGURATION_SNAPSHOTS_ENABLED));
+  }
+
+  /**
+   * @return the number of threads processing agent heartbeats
+   */
+  public int getAgentHeartbeatProcessingThreads() {
+    return Integer.parseInt(getProperty(AGENT_HEARTBEAT_PROCESSING_THREADS));
+  }
+
+  /**
+   * @return true if agents may wait on the server for new commands
+   */
+  public boolean isAgentCommandPushEnabled() {
+    return Boolean.parseBoolean(getProperty(AGENT_COMMAND_PUSH_ENABLED));
+  }
+
+  /**
+   * @return the time, in milliseconds, a request waiting for commands is held
+   *         open
+   */
+  public long getAgentCommandPushTimeout() {
+    return TimeUnit.SECONDS.toMillis(Integer.parseInt(getProperty(AGENT_COMMAND_PUSH_TIMEOUT)));
+  }
+
   /**
    * Check to see if the API responses should be compressed via gzip or not
    * Content will only be compressed if content length is either unknown or
@@ -4279,6 +4396,14 @@ public class Configuration {
     return Boolean.parseBoolean(configsMap.get(PARALLEL_STAGE_EXECUTION.getKey()));
   }
 
+  /**
+   * @return {@code true} if the action scheduler should skip database passes
+   *         when none of the stages in progress changed
+   */
+  public boolean isIncrementalStageProcessingEnabled() {
+    return Boolean.parseBoolean(getProperty(INCREMENTAL_STAGE_PROCESSING));
+  }
+
   public String getCustomActionDefinitionPath() {
     return getProperty(CUSTOM_ACTION_DEFINITION);
   }
@@ -4395,6 +4520,27 @@ public class Configuration {
     return Integer.parseInt(getProperty(VIEW_REQUEST_THREADPOOL_TIMEOUT));
   }
 
+  /**
+   * Gets the number of threads that handle the events published to the
+   * {@link AmbariEventPublisher}.
+   *
+   * @return the event thread pool size, or {@code 4} if not set.
+   */
+  public int getEventsThreadPoolSize() {
+    return Integer.parseInt(getProperty(EVENTS_THREADPOOL_SIZE));
+  }
+
+  /**
+   * Gets the number of events an ordered queue of a listener handles before
+   * it gives its thread to the other queues.
+   *
+   * @return the maximum number of events handled in a row, or {@code 100} if
+   *         not set.
+   */
+  public int getEventsStripeMaxEvents() {
+    return Integer.parseInt(getProperty(EVENTS_STRIPE_MAX_EVENTS));
+  }
+
   /**
    * Get property-providers' thread pool core size.
    *
@@ -4918,11 +5064,10 @@ public class Configuration {
    * like timestamps and text will be kept in a cache and flushed out
    * periodically to the database.
    * <p/>
-   * The default value is {@code false}.
+   * The default value is {@code true}.
    *
    * @return {@code true} if the cache is enabled, {@code false} otherwise.
    */
-  @Experimental(feature = ExperimentalFeature.ALERT_CACHING)
   public boolean isAlertCacheEnabled() {
     return Boolean.parseBoolean(getProperty(ALERTS_CACHE_ENABLED));
   }
@@ -4934,7 +5079,6 @@ public class Configuration {
    * @return the cache flush interval, or
    *         {@value #ALERTS_CACHE_FLUSH_INTERVAL_DEFAULT} if not set.
    */
-  @Experimental(feature = ExperimentalFeature.ALERT_CACHING)
   public int getAlertCacheFlushInterval() {
     return Integer.parseInt(getProperty(ALERTS_CACHE_FLUSH_INTERVAL));
   }
@@ -4945,11 +5089,31 @@ public class Configuration {
    * @return the cache flush interval, or {@value #ALERTS_CACHE_SIZE_DEFAULT} if
    *         not set.
    */
-  @Experimental(feature = ExperimentalFeature.ALERT_CACHING)
   public int getAlertCacheSize() {
     return Integer.parseInt(getProperty(ALERTS_CACHE_SIZE));
   }
 
+  /**
+   * Gets the time during which received alerts are coalesced.
+   *
+   * @return the coalescing window in milliseconds, or {@code 0} if alerts are
+   *         applied as they are received.
+   */
+  public long getAlertCoalescingWindow() {
+    return Long.parseLong(getProperty(ALERTS_RECEIVED_COALESCING_WINDOW));
+  }
+
+  /**
+   * Gets the time during which state changes of alerts with an aggregate are
+   * collected before the aggregate is evaluated.
+   *
+   * @return the evaluation interval in milliseconds, or {@code 0} if
+   *         aggregates are evaluated on every state change.
+   */
+  public long getAlertAggregateEvaluationInterval() {
+    return Long.parseLong(getProperty(ALERTS_AGGREGATE_EVALUATION_INTERVAL));
+  }
+
   /**
    * Get the ambari display URL
    * @return
@@ -41,6 +41,7 @@ import org.apache.ambari.server.StaticallyInject;
 import org.apache.ambari.server.actionmanager.ActionManager;
 import org.apache.ambari.server.actionmanager.HostRoleCommandFactory;
 import org.apache.ambari.server.agent.HeartBeatHandler;
+import org.apache.ambari.server.agent.rest.AgentCommandsServlet;
 import org.apache.ambari.server.agent.rest.AgentResource;
 import org.apache.ambari.server.api.AmbariErrorHandler;
 import org.apache.ambari.server.api.AmbariPersistFilter;
@@ -519,6 +520,10 @@ public class AmbariServer {
       agentroot.addServlet(agent, "/agent/v1/*");
       agent.setInitOrder(3);
 
+      // agents waiting for commands, suspended outside of Jersey
+      agentroot.addServlet(new ServletHolder(injector.getInstance(AgentCommandsServlet.class)),
+          "/agent/v1/commands/*");
+
       AgentResource.statHeartBeatHandler();
       LOG.info("********** Started Heartbeat handler **********");
 
@@ -274,8 +274,14 @@ public class ClusterControllerImpl implements ClusterController {
       synchronized (schemas) {
         schema = schemas.get(type);
         if (schema == null) {
-          schema = new SchemaImpl(ensureResourceProvider(type));
+          ResourceProvider provider = ensureResourceProvider(type);
+          schema = new SchemaImpl(provider);
           schemas.put(type, schema);
+
+          // intern the known property ids of the type up front
+          if (provider instanceof BaseProvider) {
+            PropertyLayout.getLayout(type).register(((BaseProvider) provider).getPropertyIds());
+          }
         }
       }
     }
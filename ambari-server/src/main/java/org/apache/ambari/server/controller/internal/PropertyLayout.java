@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interned property ids of a resource type.  Each property id is split into
+ * its category and name once, the resulting slots are shared by all
+ * {@link ResourceImpl} instances of the type.
+ */
+class PropertyLayout {
+
+  /**
+   * Maximum number of property ids interned per resource type.  Ids past the
+   * limit, such as user defined configuration keys, get a slot that is not
+   * cached.
+   */
+  static final int MAX_SLOTS = 10000;
+
+  /**
+   * The layouts keyed by resource type.
+   */
+  private static final ConcurrentMap<Resource.Type, PropertyLayout> layouts =
+      new ConcurrentHashMap<Resource.Type, PropertyLayout>();
+
+  /**
+   * The property slots keyed by property id.
+   */
+  private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<String, Slot>();
+
+  /**
+   * The category slots keyed by category.  Their category strings are the
+   * ones shared by the property slots.
+   */
+  private final ConcurrentMap<String, Slot> categories = new ConcurrentHashMap<String, Slot>();
+
+
+  // ----- PropertyLayout ----------------------------------------------------
+
+  /**
+   * Get the layout of the given resource type.
+   *
+   * @param type  the resource type
+   *
+   * @return the layout of the resource type
+   */
+  static PropertyLayout getLayout(Resource.Type type) {
+    PropertyLayout layout = layouts.get(type);
+    if (layout == null) {
+      layout = new PropertyLayout();
+      PropertyLayout existing = layouts.putIfAbsent(type, layout);
+      if (existing != null) {
+        layout = existing;
+      }
+    }
+    return layout;
+  }
+
+  /**
+   * Intern the given property ids, as reported by the resource provider.
+   *
+   * @param propertyIds  the property ids
+   */
+  void register(Collection<String> propertyIds) {
+    for (String propertyId : propertyIds) {
+      getSlot(propertyId);
+    }
+  }
+
+  /**
+   * Get the slot of a property.
+   *
+   * @param propertyId  the property id
+   *
+   * @return the slot of the property
+   */
+  Slot getSlot(String propertyId) {
+    Slot slot = slots.get(propertyId);
+    if (slot == null) {
+      String category = getCategorySlot(PropertyHelper.getPropertyCategory(propertyId)).category;
+      slot = new Slot(propertyId, category, PropertyHelper.getPropertyName(propertyId));
+      if (slots.size() < MAX_SLOTS) {
+        Slot existing = slots.putIfAbsent(propertyId, slot);
+        if (existing != null) {
+          slot = existing;
+        }
+      }
+    }
+    return slot;
+  }
+
+  /**
+   * Get the slot of a property by category and name.
+   *
+   * @param category  the property category; "" for none
+   * @param name      the property name
+   *
+   * @return the slot of the property
+   */
+  Slot getSlot(String category, String name) {
+    String propertyId = PropertyHelper.getPropertyId(category.isEmpty() ? null : category, name);
+    Slot slot = slots.get(propertyId);
+    return slot != null && slot.category.equals(category) && slot.name.equals(name) ?
+        slot : new Slot(propertyId, getCategorySlot(category).category, name);
+  }
+
+  /**
+   * Get the slot marking the presence of a category.
+   *
+   * @param category  the category; null or "" for none
+   *
+   * @return the category slot
+   */
+  Slot getCategorySlot(String category) {
+    String key = category == null ? "" : category;
+    Slot slot = categories.get(key);
+    if (slot == null) {
+      slot = new Slot(key, key, null);
+      if (categories.size() < MAX_SLOTS) {
+        Slot existing = categories.putIfAbsent(key, slot);
+        if (existing != null) {
+          slot = existing;
+        }
+      }
+    }
+    return slot;
+  }
+
+
+  // ----- inner class : Slot ------------------------------------------------
+
+  /**
+   * A property id split into category and name.  Slots are ordered by
+   * category and then by name, a category slot, with a null name, comes
+   * before the properties of its category.
+   */
+  static final class Slot implements Comparable<Slot> {
+    final String id;
+    final String category;
+    final String name;
+
+    Slot(String id, String category, String name) {
+      this.id = id;
+      this.category = category;
+      this.name = name;
+    }
+
+    boolean isCategory() {
+      return name == null;
+    }
+
+    @Override
+    public int compareTo(Slot other) {
+      if (this == other) {
+        return 0;
+      }
+      int result = compareCategory(other.category);
+      if (result != 0 || name == other.name) {
+        return result;
+      }
+      if (name == null) {
+        return -1;
+      }
+      return other.name == null ? 1 : name.compareTo(other.name);
+    }
+
+    int compareCategory(String otherCategory) {
+      return category == otherCategory ? 0 : category.compareTo(otherCategory);
+    }
+
+    @Override
+    public String toString() {
+      return id;
+    }
+  }
+}
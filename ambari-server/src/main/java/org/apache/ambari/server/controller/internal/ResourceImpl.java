@@ -15,30 +15,48 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.apache.ambari.server.controller.internal;
 
+import org.apache.ambari.server.controller.internal.PropertyLayout.Slot;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
 
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Simple resource implementation.
+ * <p/>
+ * Properties are kept in a single array of slot / value pairs sorted by
+ * category and property name, where the slots are the interned property ids
+ * of the resource type.  The array is replaced on every structural change so
+ * that reads never lock.  The properties map is a live view of the array.
  */
 public class ResourceImpl implements Resource {
 
+  private static final Object[] NO_ENTRIES = new Object[0];
+
   /**
    * The resource type.
    */
   private final Type type;
 
   /**
-   * The map of property maps keyed by property category.
+   * The interned property ids of the resource type.
    */
-  private final Map<String, Map<String, Object>> propertiesMap =
-      Collections.synchronizedMap(new TreeMap<String, Map<String, Object>>());
+  private final PropertyLayout layout;
+
+  /**
+   * Slots at even and values at odd indexes, sorted by slot.
+   */
+  private volatile Object[] entries = NO_ENTRIES;
 
   // ----- Constructors ------------------------------------------------------
 
@@ -49,6 +67,7 @@ public class ResourceImpl implements Resource {
    */
   public ResourceImpl(Type type) {
     this.type = type;
+    this.layout = PropertyLayout.getLayout(type);
   }
 
   /**
@@ -68,7 +87,24 @@ public class ResourceImpl implements Resource {
    * @param propertyIds the set of requested property and category ids
    */
   public ResourceImpl(Resource resource, Set<String> propertyIds) {
-    this.type = resource.getType();
+    this(resource.getType());
+
+    if (resource instanceof ResourceImpl && ((ResourceImpl) resource).layout == layout) {
+      // already sorted, copy the requested properties in one pass
+      Object[] source = ((ResourceImpl) resource).entries;
+      Object[] copy = new Object[source.length];
+      int size = 0;
+      for (int i = 0; i < source.length; i += 2) {
+        Slot slot = (Slot) source[i];
+        if (!slot.isCategory() && (propertyIds == null || propertyIds.isEmpty() ||
+            PropertyHelper.containsProperty(propertyIds, slot.id))) {
+          copy[size++] = slot;
+          copy[size++] = source[i + 1];
+        }
+      }
+      entries = size == copy.length ? copy : trim(copy, size);
+      return;
+    }
 
     for (Map.Entry<String, Map<String, Object>> categoryEntry :
         resource.getPropertiesMap().entrySet()) {
@@ -96,38 +132,36 @@ public class ResourceImpl implements Resource {
 
   @Override
   public Map<String, Map<String, Object>> getPropertiesMap() {
-    return propertiesMap;
+    return new PropertiesMap();
   }
 
   @Override
   public void setProperty(String id, Object value) {
-    String categoryKey = getCategoryKey(PropertyHelper.getPropertyCategory(id));
-
-    Map<String, Object> properties = propertiesMap.get(categoryKey);
-    if (properties == null) {
-      properties = Collections.synchronizedMap(new TreeMap<String, Object>());
-      propertiesMap.put(categoryKey, properties);
-    }
-    properties.put(PropertyHelper.getPropertyName(id), value);
+    put(layout.getSlot(id), value);
   }
 
   @Override
   public void addCategory(String id) {
-    String categoryKey = getCategoryKey(id);
-
-    if (!propertiesMap.containsKey(categoryKey)) {
-      propertiesMap.put(categoryKey, new HashMap<String, Object>());
+    Slot categorySlot = layout.getCategorySlot(id);
+
+    synchronized (this) {
+      Object[] current = entries;
+      int index = indexOf(current, categorySlot);
+      if (index >= 0 || (-index - 1 < current.length &&
+          ((Slot) current[-index - 1]).compareCategory(categorySlot.category) == 0)) {
+        // category is already present
+        return;
+      }
+      entries = insert(current, -index - 1, categorySlot, null);
     }
   }
 
   @Override
   public Object getPropertyValue(String id) {
-    String categoryKey = getCategoryKey(PropertyHelper.getPropertyCategory(id));
-
-    Map<String, Object> properties = propertiesMap.get(categoryKey);
+    Object[] current = entries;
+    int index = indexOf(current, layout.getSlot(id));
 
-    return properties == null ?
-        null : properties.get(PropertyHelper.getPropertyName(id));
+    return index < 0 ? null : current[index + 1];
   }
 
 
@@ -139,7 +173,7 @@ public class ResourceImpl implements Resource {
 
     sb.append("Resource : ").append(type).append("\n");
     sb.append("Properties:\n");
-    sb.append(propertiesMap);
+    sb.append(getPropertiesMap());
 
     return sb.toString();
   }
@@ -151,18 +185,350 @@ public class ResourceImpl implements Resource {
 
     ResourceImpl resource = (ResourceImpl) o;
 
-    return type == resource.type &&
-        !(propertiesMap != null ? !propertiesMap.equals(resource.propertiesMap) : resource.propertiesMap != null);
+    if (type != resource.type) {
+      return false;
+    }
+
+    Object[] current = entries;
+    Object[] other = resource.entries;
+    if (current.length != other.length) {
+      return false;
+    }
+    for (int i = 0; i < current.length; i += 2) {
+      if (((Slot) current[i]).compareTo((Slot) other[i]) != 0) {
+        return false;
+      }
+      Object value = current[i + 1];
+      if (value == null ? other[i + 1] != null : !value.equals(other[i + 1])) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public int hashCode() {
-    return 31 * type.hashCode() + (propertiesMap != null ? propertiesMap.hashCode() : 0);
+    return 31 * type.hashCode() + getPropertiesMap().hashCode();
   }
 
   // ----- utility methods ---------------------------------------------------
 
-  private String getCategoryKey(String category) {
-    return category == null ? "" : category;
+  /**
+   * Set the value of the property in the given slot.
+   */
+  private synchronized void put(Slot slot, Object value) {
+    Object[] current = entries;
+    int index = indexOf(current, slot);
+    if (index >= 0) {
+      current[index + 1] = value;
+      // publish the new value to readers of the array
+      entries = current;
+      return;
+    }
+
+    int insertAt = -index - 1;
+    if (insertAt > 0 && ((Slot) current[insertAt - 2]).isCategory() &&
+        ((Slot) current[insertAt - 2]).compareCategory(slot.category) == 0) {
+      // the category is no longer empty, replace its marker
+      Object[] updated = current.clone();
+      updated[insertAt - 2] = slot;
+      updated[insertAt - 1] = value;
+      entries = updated;
+      return;
+    }
+    entries = insert(current, insertAt, slot, value);
+  }
+
+  /**
+   * Remove the given slot, if present.
+   */
+  private synchronized void remove(Slot slot) {
+    Object[] current = entries;
+    int index = indexOf(current, slot);
+    if (index >= 0) {
+      Object[] updated = new Object[current.length - 2];
+      System.arraycopy(current, 0, updated, 0, index);
+      System.arraycopy(current, index + 2, updated, index, current.length - index - 2);
+      entries = updated;
+    }
+  }
+
+  /**
+   * Remove a category along with all of its properties.
+   */
+  private synchronized void removeCategory(String category) {
+    Object[] current = entries;
+    int from = findCategory(current, category);
+    if (from >= 0) {
+      int to = endOfCategory(current, from);
+      Object[] updated = new Object[current.length - (to - from)];
+      System.arraycopy(current, 0, updated, 0, from);
+      System.arraycopy(current, to, updated, from, current.length - to);
+      entries = updated;
+    }
+  }
+
+  /**
+   * Binary search for the given slot.
+   *
+   * @return the index of the slot; or (-(insertion point) - 1)
+   */
+  private static int indexOf(Object[] entries, Slot slot) {
+    int low = 0;
+    int high = entries.length / 2 - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int result = ((Slot) entries[mid * 2]).compareTo(slot);
+      if (result < 0) {
+        low = mid + 1;
+      } else if (result > 0) {
+        high = mid - 1;
+      } else {
+        return mid * 2;
+      }
+    }
+    return -(low * 2) - 1;
+  }
+
+  /**
+   * @return the index of the first entry of the given category; -1 if the category is not present
+   */
+  private int findCategory(Object[] entries, String category) {
+    int index = indexOf(entries, layout.getCategorySlot(category));
+    if (index < 0) {
+      index = -index - 1;
+      if (index >= entries.length || ((Slot) entries[index]).compareCategory(category) != 0) {
+        return -1;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * @return the index past the last entry of the category starting at the given index
+   */
+  private static int endOfCategory(Object[] entries, int from) {
+    String category = ((Slot) entries[from]).category;
+    int to = from + 2;
+    while (to < entries.length && ((Slot) entries[to]).compareCategory(category) == 0) {
+      to += 2;
+    }
+    return to;
+  }
+
+  private static Object[] insert(Object[] entries, int index, Slot slot, Object value) {
+    Object[] updated = new Object[entries.length + 2];
+    System.arraycopy(entries, 0, updated, 0, index);
+    updated[index] = slot;
+    updated[index + 1] = value;
+    System.arraycopy(entries, index, updated, index + 2, entries.length - index);
+    return updated;
+  }
+
+  private static Object[] trim(Object[] entries, int size) {
+    Object[] trimmed = new Object[size];
+    System.arraycopy(entries, 0, trimmed, 0, size);
+    return trimmed;
+  }
+
+
+  // ----- inner class : PropertiesMap ---------------------------------------
+
+  /**
+   * Live view of the properties keyed by category.
+   */
+  private class PropertiesMap extends AbstractMap<String, Map<String, Object>> {
+
+    @Override
+    public Map<String, Object> get(Object key) {
+      return containsKey(key) ? new CategoryMap((String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && findCategory(entries, (String) key) >= 0;
+    }
+
+    @Override
+    public Map<String, Object> remove(Object key) {
+      Map<String, Object> properties = get(key);
+      if (properties != null) {
+        // return a detached copy of the removed properties
+        properties = new TreeMap<String, Object>(properties);
+        removeCategory((String) key);
+      }
+      return properties;
+    }
+
+    @Override
+    public Set<Entry<String, Map<String, Object>>> entrySet() {
+      return new AbstractSet<Entry<String, Map<String, Object>>>() {
+        @Override
+        public Iterator<Entry<String, Map<String, Object>>> iterator() {
+          final List<String> categories = getCategories();
+
+          return new Iterator<Entry<String, Map<String, Object>>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+              return next < categories.size();
+            }
+
+            @Override
+            public Entry<String, Map<String, Object>> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              String category = categories.get(next++);
+              return new SimpleImmutableEntry<String, Map<String, Object>>(
+                  category, new CategoryMap(category));
+            }
+
+            @Override
+            public void remove() {
+              if (next == 0) {
+                throw new IllegalStateException();
+              }
+              removeCategory(categories.get(next - 1));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return getCategories().size();
+        }
+      };
+    }
+
+    private List<String> getCategories() {
+      Object[] current = entries;
+      List<String> categories = new ArrayList<String>();
+      String last = null;
+      for (int i = 0; i < current.length; i += 2) {
+        String category = ((Slot) current[i]).category;
+        if (last == null || !category.equals(last)) {
+          categories.add(category);
+          last = category;
+        }
+      }
+      return categories;
+    }
+  }
+
+
+  // ----- inner class : CategoryMap -----------------------------------------
+
+  /**
+   * Live view of the properties of a category keyed by property name.
+   */
+  private class CategoryMap extends AbstractMap<String, Object> {
+    private final String category;
+
+    private CategoryMap(String category) {
+      this.category = category;
+    }
+
+    @Override
+    public Object get(Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      Object[] current = entries;
+      int index = indexOf(current, layout.getSlot(category, (String) key));
+      return index < 0 ? null : current[index + 1];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && indexOf(entries, layout.getSlot(category, (String) key)) >= 0;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+      Object previous = get(key);
+      ResourceImpl.this.put(layout.getSlot(category, key), value);
+      return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      Object previous = get(key);
+      ResourceImpl.this.remove(layout.getSlot(category, (String) key));
+      return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          final List<Slot> slots = getSlots();
+
+          return new Iterator<Entry<String, Object>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+              return next < slots.size();
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              final Slot slot = slots.get(next++);
+              return new SimpleEntry<String, Object>(slot.name, valueOf(slot)) {
+                @Override
+                public Object setValue(Object value) {
+                  ResourceImpl.this.put(slot, value);
+                  return super.setValue(value);
+                }
+              };
+            }
+
+            @Override
+            public void remove() {
+              if (next == 0) {
+                throw new IllegalStateException();
+              }
+              ResourceImpl.this.remove(slots.get(next - 1));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return getSlots().size();
+        }
+      };
+    }
+
+    private Object valueOf(Slot slot) {
+      Object[] current = entries;
+      int index = indexOf(current, slot);
+      return index < 0 ? null : current[index + 1];
+    }
+
+    private List<Slot> getSlots() {
+      Object[] current = entries;
+      List<Slot> slots = new ArrayList<Slot>();
+      int from = findCategory(current, category);
+      if (from >= 0) {
+        int to = endOfCategory(current, from);
+        for (int i = from; i < to; i += 2) {
+          Slot slot = (Slot) current[i];
+          if (!slot.isCategory()) {
+            slots.add(slot);
+          }
+        }
+      }
+      return slots;
+    }
   }
 }
@@ -20,6 +20,7 @@ package org.apache.ambari.server.controller.metrics;
 import com.google.common.collect.Iterators;
 import org.apache.ambari.server.controller.spi.TemporalInfo;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,12 +41,9 @@ public class MetricsDownsamplingMethodFactory {
   }
 
   private static boolean mustDownsample(TimelineMetric metric) {
-    //Linear search in Map<K, V>, faster than copying the map in a TreeMap and doing ceilingEntry()
-    for (Long time : metric.getMetricValues().keySet()) {
-      if (time > 9999999999l)
-        return true;
-    }
-    return false;
+    // Timestamps are sorted, the last one is the largest
+    TimelineMetricSeries series = metric.getMetricSeries();
+    return !series.isEmpty() && series.lastTimestamp() > 9999999999l;
   }
 }
 
@@ -55,10 +53,11 @@ class MetricNoDownsampling extends MetricsDownsamplingMethod {
   public Number[][] reportMetricData(TimelineMetric metricData,
                                      MetricsDataTransferMethod dataTransferMethod,
                                      TemporalInfo temporalInfo) {
-    Number[][] datapointsArray = new Number[metricData.getMetricValues().size()][2];
+    Map<Long, Double> metricValues = metricData.getMetricValues();
+    Number[][] datapointsArray = new Number[metricValues.size()][2];
     int cnt = 0;
 
-    for (Map.Entry<Long, Double> metricEntry : metricData.getMetricValues().entrySet()) {
+    for (Map.Entry<Long, Double> metricEntry : metricValues.entrySet()) {
       if (isWithinTemporalQueryRange(metricEntry.getKey(), temporalInfo)) {
         datapointsArray[cnt][0] = dataTransferMethod.getData(metricEntry.getValue());
         datapointsArray[cnt][1] = metricEntry.getKey();
@@ -273,7 +273,7 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
           if (!timelineMetrics.getMetrics().isEmpty()) {
             for (TimelineMetric metric : timelineMetrics.getMetrics()) {
               if (metric.getMetricName() != null
-                      && metric.getMetricValues() != null
+                      && metric.getMetricSeries() != null
                       && checkMetricName(patterns, metric.getMetricName())) {
                 String hostnameTmp = metric.getHostName();
                 if (!metricsMap.containsKey(hostnameTmp)) {
@@ -238,7 +238,7 @@ public class AMSReportPropertyProvider extends MetricsReportPropertyProvider {
 
       if (timelineMetrics != null) {
         for (TimelineMetric metric : timelineMetrics.getMetrics()) {
-          if (metric.getMetricName() != null && metric.getMetricValues() != null) {
+          if (metric.getMetricName() != null && metric.getMetricSeries() != null) {
             // Pad zeros or nulls if needed to a clone so we do not cache
             // padded values
             TimelineMetric timelineMetricClone = new TimelineMetric(metric);
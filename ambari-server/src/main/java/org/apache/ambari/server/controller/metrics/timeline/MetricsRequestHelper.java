@@ -102,7 +102,7 @@ public class MetricsRequestHelper {
       if (LOG.isTraceEnabled()) {
         for (TimelineMetric metric : timelineMetrics.getMetrics()) {
           LOG.trace("metric: " + metric.getMetricName() +
-            ", size = " + metric.getMetricValues().size() +
+            ", size = " + metric.getMetricSeries().size() +
             ", host = " + metric.getHostName() +
             ", app = " + metric.getAppId() +
             ", instance = " + metric.getInstanceId() +
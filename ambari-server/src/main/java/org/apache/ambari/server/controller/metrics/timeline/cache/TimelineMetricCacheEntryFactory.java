@@ -220,7 +220,7 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
           TreeMap<Long, Double> sortedMetrics = new TreeMap<Long, Double>(timelineMetric.getMetricValues());
 
           LOG.trace("New metric: " + timelineMetric.getMetricName() +
-            " # " + timelineMetric.getMetricValues().size() + ", startTime = " +
+            " # " + timelineMetric.getMetricSeries().size() + ", startTime = " +
             sortedMetrics.firstKey() + ", endTime = " + sortedMetrics.lastKey());
         }
 
@@ -234,12 +234,12 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
 
         if (existingMetric != null) {
           // Add new ones
-          existingMetric.getMetricValues().putAll(timelineMetric.getMetricValues());
+          existingMetric.addMetricValues(timelineMetric.getMetricSeries());
 
           if (LOG.isTraceEnabled()) {
             TreeMap<Long, Double> sortedMetrics = new TreeMap<Long, Double>(existingMetric.getMetricValues());
             LOG.trace("Merged metric: " + timelineMetric.getMetricName() + ", " +
-              "Final size: " + existingMetric.getMetricValues().size() + ", startTime = " +
+              "Final size: " + existingMetric.getMetricSeries().size() + ", startTime = " +
               sortedMetrics.firstKey() + ", endTime = " + sortedMetrics.lastKey());
           }
         } else {
@@ -264,6 +264,7 @@ public class TimelineMetricCacheEntryFactory implements UpdatingCacheEntryFactor
         // Retain only the values that are within the [requestStartTime, requestedEndTime] window
         existingMetricValues.headMap(requestedStartTime,false).clear();
         existingMetricValues.tailMap(requestedEndTime, false).clear();
+        existingMetric.setMetricValues(existingMetricValues);
       }
     }
   }
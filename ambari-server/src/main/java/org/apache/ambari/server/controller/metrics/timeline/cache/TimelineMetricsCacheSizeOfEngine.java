@@ -26,7 +26,6 @@ import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.Map;
 import java.util.TreeMap;
 
 /**
@@ -126,12 +125,12 @@ public class TimelineMetricsCacheSizeOfEngine implements SizeOfEngine {
         }
         size += timelineMetricPrimitivesApproximation;
 
-        Map<Long, Double> metricValues = metric.getMetricValues();
-        if (metricValues != null && !metricValues.isEmpty()) {
+        int metricValueCount = metric.getMetricSeries().size();
+        if (metricValueCount > 0) {
           // Numeric wrapper: 12 bytes + 8 bytes Data type + 4 bytes alignment = 48 (Long, Double)
           // Tree Map: 12 bytes for header + 20 bytes for 5 object fields : pointers + 1 byte for flag = 40
-         LOG.debug("Size of metric value: " + (sizeOfMapEntry + sizeOfMapEntryOverhead) * metricValues.size());
-          size += (sizeOfMapEntry + sizeOfMapEntryOverhead) * metricValues.size(); // Treemap size is O(1)
+         LOG.debug("Size of metric value: " + (sizeOfMapEntry + sizeOfMapEntryOverhead) * metricValueCount);
+          size += (sizeOfMapEntry + sizeOfMapEntryOverhead) * metricValueCount;
         }
       }
       LOG.debug("Total Size of metric values in cache: " + size);
@@ -31,12 +31,15 @@ import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.ComponentInfo;
 import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.Service;
+import org.apache.ambari.server.state.ServiceComponent;
 import org.apache.ambari.server.state.StackId;
 import org.apache.ambari.server.state.State;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -84,6 +87,12 @@ public class DefaultServiceCalculatedState implements ServiceCalculatedState {
           AmbariMetaInfo ambariMetaInfo = managementControllerProvider.get().getAmbariMetaInfo();
           StackId stackId = cluster.getDesiredStackVersion();
 
+          State countedState = getStateFromHostComponentCounts(cluster, serviceName,
+            ambariMetaInfo, stackId);
+          if (countedState != null) {
+            return countedState;
+          }
+
           ServiceComponentHostRequest request = new ServiceComponentHostRequest(clusterName,
             serviceName, null, null, null);
 
@@ -168,4 +177,86 @@ public class DefaultServiceCalculatedState implements ServiceCalculatedState {
       }
     return State.UNKNOWN;
   }
+
+  /**
+   * Calculates the service state from the live state counts kept by the
+   * service components, following the same rules as {@link #getState}
+   * without visiting every host component. The counts do not tell which
+   * host components are in maintenance, so this is only possible when
+   * neither the service nor a host component of the service, directly or
+   * through its host, is in maintenance.
+   *
+   * @return the service state or {@code null} if maintenance is involved and
+   *         the host components have to be checked one by one.
+   */
+  protected State getStateFromHostComponentCounts(Cluster cluster, String serviceName,
+                                                  AmbariMetaInfo ambariMetaInfo, StackId stackId)
+      throws AmbariException {
+    Service service = cluster.getService(serviceName);
+    if (service.getMaintenanceState() != MaintenanceState.OFF) {
+      return null;
+    }
+
+    Map<String, ServiceComponent> components = service.getServiceComponents();
+    for (ServiceComponent component : components.values()) {
+      if (component.getHostComponentCountInMaintenance() > 0) {
+        return null;
+      }
+    }
+
+    State   masterState = null;
+    State   clientState = null;
+    State   otherState = null;
+
+    boolean hasDisabled  = false;
+    boolean hasMaster    = false;
+    boolean hasOther     = false;
+    boolean hasClient    = false;
+
+    for (ServiceComponent component : components.values()) {
+      ComponentInfo componentInfo;
+      try {
+        componentInfo = ambariMetaInfo.getComponent(stackId.getStackName(),
+          stackId.getStackVersion(), serviceName, component.getName());
+      } catch (ObjectNotFoundException e) {
+        // component doesn't exist, nothing to do
+        continue;
+      }
+
+      for (State state : State.values()) {
+        if (component.getHostComponentCount(state) == 0) {
+          continue;
+        }
+
+        if (state.equals(State.DISABLED)) {
+          hasDisabled = true;
+        }
+
+        if (componentInfo.isMaster()) {
+          hasMaster = true;
+          if (! state.equals(State.STARTED) &&
+            ( masterState == null || state.ordinal() > masterState.ordinal())) {
+            masterState = state;
+          }
+        } else if (componentInfo.isClient()) {
+          hasClient = true;
+          if (!state.equals(State.INSTALLED) &&
+            (clientState == null || state.ordinal() > clientState.ordinal())) {
+            clientState = state;
+          }
+        } else {
+          hasOther = true;
+          if (! state.equals(State.STARTED) &&
+            ( otherState == null || state.ordinal() > otherState.ordinal())) {
+            otherState = state;
+          }
+        }
+      }
+    }
+
+    return hasMaster   ? masterState == null ? State.STARTED : masterState :
+      hasOther    ? otherState == null ? State.STARTED : otherState :
+        hasClient   ? clientState == null ? State.INSTALLED : clientState :
+          hasDisabled ? State.DISABLED : State.UNKNOWN;
+  }
 }
@@ -18,12 +18,21 @@
 package org.apache.ambari.server.events.listeners.alerts;
 
 import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.EagerSingleton;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.events.AggregateAlertRecalculateEvent;
 import org.apache.ambari.server.events.AlertReceivedEvent;
 import org.apache.ambari.server.events.AlertStateChangeEvent;
@@ -47,6 +56,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -62,6 +72,11 @@ import com.google.inject.Singleton;
  * with {@link AlertFirmness#HARD} events as they represent a true change in the
  * state of an alert. Calculations should never be performed on
  * {@link AlertFirmness#SOFT} alerts since they may be false positives.
+ * <p/>
+ * When {@link Configuration#getAlertAggregateEvaluationInterval()} is set,
+ * state changes are collected per aggregate and each aggregate is evaluated
+ * at most once per interval, so that many alerts changing state at once cost
+ * a single evaluation of their aggregate.
  */
 @Singleton
 @EagerSingleton
@@ -75,6 +90,9 @@ public class AlertAggregateListener {
   @Inject
   private AlertsDAO m_alertsDao = null;
 
+  @Inject
+  private Configuration m_configuration;
+
   /**
    * Used for looking cluster name by cluster id
    */
@@ -100,6 +118,24 @@ public class AlertAggregateListener {
   @Inject
   private AggregateDefinitionMapping m_aggregateMapping;
 
+  /**
+   * The names of the alerts whose aggregate needs to be evaluated, by cluster
+   * ID, when aggregates are evaluated once per interval.
+   */
+  private final Map<Long, Set<String>> m_pendingAggregates = new LinkedHashMap<>();
+
+  /**
+   * Guards {@link #m_pendingAggregates} and the creation of
+   * {@link #m_evaluationExecutor}.
+   */
+  private final Object m_pendingLock = new Object();
+
+  /**
+   * Evaluates the pending aggregates once per interval, created with the first
+   * state change of an alert with an aggregate.
+   */
+  private ScheduledExecutorService m_evaluationExecutor;
+
   @Inject
   public AlertAggregateListener(AlertEventPublisher publisher) {
     m_publisher = publisher;
@@ -152,7 +188,7 @@ public class AlertAggregateListener {
 
   /**
    * Calculates the aggregate alert state if there is an aggregate alert for the
-   * specified alert.
+   * specified alert, either right away or with the next pending aggregates.
    * <p/>
    * This method should not be decoratd with {@link AllowConcurrentEvents} since
    * it would need extra locking around {@link #m_alertCache}.
@@ -170,6 +206,91 @@ public class AlertAggregateListener {
       return;
     }
 
+    if (m_configuration.getAlertAggregateEvaluationInterval() > 0) {
+      enqueue(clusterId, alertName);
+      return;
+    }
+
+    evaluate(clusterId, aggregateDefinition);
+  }
+
+  /**
+   * Holds the aggregate of the specified alert until the pending aggregates
+   * are next evaluated.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   * @param alertName
+   *          the name of the alert to use when looking up the aggregate.
+   */
+  private void enqueue(long clusterId, String alertName) {
+    synchronized (m_pendingLock) {
+      Set<String> alertNames = m_pendingAggregates.get(clusterId);
+      if (null == alertNames) {
+        alertNames = new LinkedHashSet<>();
+        m_pendingAggregates.put(clusterId, alertNames);
+      }
+
+      alertNames.add(alertName);
+
+      if (null == m_evaluationExecutor) {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat(
+            "alert-aggregate-evaluation-%d").build();
+
+        long interval = m_configuration.getAlertAggregateEvaluationInterval();
+        m_evaluationExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        m_evaluationExecutor.scheduleWithFixedDelay(new Runnable() {
+          @Override
+          public void run() {
+            flush();
+          }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /**
+   * Evaluates the aggregates of all alerts which changed state since the last
+   * evaluation, once per aggregate.
+   */
+  public void flush() {
+    Map<Long, Set<String>> pending;
+    synchronized (m_pendingLock) {
+      if (m_pendingAggregates.isEmpty()) {
+        return;
+      }
+
+      pending = new HashMap<>(m_pendingAggregates);
+      m_pendingAggregates.clear();
+    }
+
+    for (Map.Entry<Long, Set<String>> entry : pending.entrySet()) {
+      long clusterId = entry.getKey();
+      for (String alertName : entry.getValue()) {
+        try {
+          // the aggregate may have been removed while pending
+          AlertDefinition aggregateDefinition = m_aggregateMapping.getAggregateDefinition(
+              clusterId, alertName);
+
+          if (null != aggregateDefinition) {
+            evaluate(clusterId, aggregateDefinition);
+          }
+        } catch (Exception exception) {
+          LOG.error("Unable to evaluate the aggregate alert of {}", alertName, exception);
+        }
+      }
+    }
+  }
+
+  /**
+   * Calculates the aggregate alert state and publishes it if it changed.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   * @param aggregateDefinition
+   *          the aggregate definition to evaluate.
+   */
+  private void evaluate(long clusterId, AlertDefinition aggregateDefinition) {
     AggregateSource aggregateSource = (AggregateSource) aggregateDefinition.getSource();
 
     AlertSummaryDTO summary = m_alertsDao.findAggregateCounts(clusterId,
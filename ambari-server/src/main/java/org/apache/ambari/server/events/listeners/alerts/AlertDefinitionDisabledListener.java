@@ -20,6 +20,8 @@ package org.apache.ambari.server.events.listeners.alerts;
 import org.apache.ambari.server.EagerSingleton;
 import org.apache.ambari.server.events.AlertDefinitionDisabledEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.events.publishers.OrderedBy;
+import org.apache.ambari.server.events.publishers.OrderingKey;
 import org.apache.ambari.server.orm.dao.AlertsDAO;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
 import org.slf4j.Logger;
@@ -34,6 +36,7 @@ import com.google.inject.Inject;
  * disabling of an alert definition.
  */
 @EagerSingleton
+@OrderedBy(OrderingKey.CLUSTER)
 public class AlertDefinitionDisabledListener {
   /**
    * Logger.
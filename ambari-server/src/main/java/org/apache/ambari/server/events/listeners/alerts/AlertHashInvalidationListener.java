@@ -28,6 +28,8 @@ import org.apache.ambari.server.events.AmbariEvent.AmbariEventType;
 import org.apache.ambari.server.events.ClusterEvent;
 import org.apache.ambari.server.events.ServiceComponentUninstalledEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.events.publishers.OrderedBy;
+import org.apache.ambari.server.events.publishers.OrderingKey;
 import org.apache.ambari.server.state.alert.AlertDefinitionHash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +54,7 @@ import com.google.inject.Singleton;
  */
 @Singleton
 @EagerSingleton
+@OrderedBy(OrderingKey.CLUSTER)
 public class AlertHashInvalidationListener {
   /**
    * Logger.
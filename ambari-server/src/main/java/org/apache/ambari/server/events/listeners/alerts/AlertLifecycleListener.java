@@ -26,6 +26,8 @@ import org.apache.ambari.server.events.AlertDefinitionDeleteEvent;
 import org.apache.ambari.server.events.AlertDefinitionRegistrationEvent;
 import org.apache.ambari.server.events.AlertHashInvalidationEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.events.publishers.OrderedBy;
+import org.apache.ambari.server.events.publishers.OrderingKey;
 import org.apache.ambari.server.orm.dao.AlertsDAO;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
 import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
@@ -49,6 +51,7 @@ import com.google.inject.Singleton;
  */
 @Singleton
 @EagerSingleton
+@OrderedBy(OrderingKey.CLUSTER)
 public class AlertLifecycleListener {
   /**
    * Logger.
@@ -95,6 +98,7 @@ public class AlertLifecycleListener {
    * following tasks:
    * <ul>
    * <li>Registration with {@link AggregateDefinitionMapping}</li>
+   * <li>{@link AlertDefinitionHash} definition index invalidation</li>
    * </ul>
    *
    * @param event
@@ -112,6 +116,8 @@ public class AlertLifecycleListener {
     if (definition.getSource().getType() == SourceType.AGGREGATE) {
       m_aggregateMapping.registerAggregate(event.getClusterId(), definition);
     }
+
+    m_alertDefinitionHash.get().invalidateDefinitions(event.getClusterId());
   }
 
   /**
@@ -119,6 +125,7 @@ public class AlertLifecycleListener {
    * tasks:
    * <ul>
    * <li>Updating definition with {@link AggregateDefinitionMapping}</li>
+   * <li>{@link AlertDefinitionHash} definition index invalidation</li>
    * <li>Updating current alerts with definition label</li>
    * </ul>
    *
@@ -138,6 +145,8 @@ public class AlertLifecycleListener {
       m_aggregateMapping.registerAggregate(event.getClusterId(), definition);
     }
 
+    m_alertDefinitionHash.get().invalidateDefinitions(event.getClusterId());
+
     // update any current alerts
     List<AlertCurrentEntity> currentAlerts = m_alertsDao.findCurrentByDefinitionId(definition.getDefinitionId());
     for (AlertCurrentEntity current : currentAlerts) {
@@ -18,8 +18,15 @@
 package org.apache.ambari.server.events.listeners.alerts;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
 import org.apache.ambari.server.AmbariException;
@@ -33,6 +40,7 @@ import org.apache.ambari.server.events.AlertReceivedEvent;
 import org.apache.ambari.server.events.AlertStateChangeEvent;
 import org.apache.ambari.server.events.InitialAlertEvent;
 import org.apache.ambari.server.events.publishers.AlertEventPublisher;
+import org.apache.ambari.server.metrics.system.impl.AlertMetricsSource;
 import org.apache.ambari.server.orm.RequiresSession;
 import org.apache.ambari.server.orm.dao.AlertDefinitionDAO;
 import org.apache.ambari.server.orm.dao.AlertsDAO;
@@ -52,9 +60,12 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -64,6 +75,11 @@ import com.google.inject.persist.Transactional;
  * The {@link AlertReceivedListener} class handles {@link AlertReceivedEvent}
  * and updates the appropriate DAOs. It may also fire new
  * {@link AlertStateChangeEvent} when an {@link AlertState} change is detected.
+ * <p/>
+ * When {@link Configuration#getAlertCoalescingWindow()} is set, received
+ * alerts are held per cluster/definition/host and applied once per window,
+ * so an alert reported repeatedly in the same state costs a single update and
+ * all alerts of the window are written in a single transaction.
  */
 @Singleton
 @EagerSingleton
@@ -109,6 +125,37 @@ public class AlertReceivedListener {
    */
   private Striped<Lock> creationLocks = Striped.lazyWeakLock(100);
 
+  /**
+   * Alerts received but not applied yet, by cluster/definition/host, when
+   * received alerts are coalesced.
+   */
+  private final Map<AlertKey, List<ReceivedAlert>> m_pendingAlerts = new LinkedHashMap<>();
+
+  /**
+   * Guards {@link #m_pendingAlerts} and the creation of
+   * {@link #m_flushExecutor}.
+   */
+  private final Object m_pendingLock = new Object();
+
+  /**
+   * Applies the pending alerts once per coalescing window, created with the
+   * first alert received.
+   */
+  private ScheduledExecutorService m_flushExecutor;
+
+  private final Counter m_receivedCounter = AlertMetricsSource.getRegistry().counter(
+      "alerts.received");
+
+  private final Counter m_coalescedCounter = AlertMetricsSource.getRegistry().counter(
+      "alerts.coalesced");
+
+  private final Counter m_appliedCounter = AlertMetricsSource.getRegistry().counter(
+      "alerts.applied");
+
+  private final Timer m_flushTimer = AlertMetricsSource.getRegistry().timer("alerts.flush");
+
+  private final Timer m_lagTimer = AlertMetricsSource.getRegistry().timer("alerts.lag");
+
   /**
    * Constructor.
    *
@@ -122,6 +169,8 @@ public class AlertReceivedListener {
 
   /**
    * Adds an alert. Checks for a new state before creating a new history record.
+   * If alerts are coalesced, the alerts are only queued to be applied with the
+   * next flush.
    *
    * @param event
    *          the event to handle.
@@ -134,9 +183,137 @@ public class AlertReceivedListener {
       LOG.debug(event.toString());
     }
 
+    List<Alert> alerts = event.getAlerts();
+    m_receivedCounter.inc(alerts.size());
+
+    if (m_configuration.getAlertCoalescingWindow() > 0) {
+      enqueue(event.getClusterId(), alerts);
+      return;
+    }
+
+    long receivedNanos = System.nanoTime();
+    List<ReceivedAlert> receivedAlerts = new ArrayList<>(alerts.size());
+    for (Alert alert : alerts) {
+      receivedAlerts.add(new ReceivedAlert(event.getClusterId(), alert, receivedNanos));
+    }
+
+    processAlerts(receivedAlerts);
+  }
+
+  /**
+   * Holds the alert for the given cluster/definition/host until the next
+   * flush. An alert in the same state as the pending one replaces it and is
+   * counted as a further occurrence. A {@link AlertState#SKIPPED} alert never
+   * replaces a pending alert of another state since it would only bump the
+   * timestamp.
+   *
+   * @param eventClusterId
+   *          the cluster ID of the event, used if an alert's cluster can't be
+   *          found by name.
+   * @param alerts
+   *          the alerts received.
+   */
+  private void enqueue(Long eventClusterId, List<Alert> alerts) {
+    long receivedNanos = System.nanoTime();
+    int coalesced = 0;
+
+    synchronized (m_pendingLock) {
+      for (Alert alert : alerts) {
+        AlertKey key = new AlertKey(alert.getCluster(), alert.getName(), alert.getHostName());
+        List<ReceivedAlert> pending = m_pendingAlerts.get(key);
+        if (null == pending) {
+          pending = new ArrayList<>(1);
+          pending.add(new ReceivedAlert(eventClusterId, alert, receivedNanos));
+          m_pendingAlerts.put(key, pending);
+          continue;
+        }
+
+        ReceivedAlert last = pending.get(pending.size() - 1);
+        AlertState lastState = last.alert.getState();
+        AlertState alertState = alert.getState();
+
+        if (alertState != lastState && alertState != AlertState.SKIPPED
+            && lastState != AlertState.SKIPPED) {
+          // state changes within the window are all applied, in order
+          pending.add(new ReceivedAlert(eventClusterId, alert, receivedNanos));
+          continue;
+        }
+
+        coalesced++;
+        if (alertState == lastState) {
+          last.coalesce(alert);
+        } else if (lastState == AlertState.SKIPPED) {
+          // a pending SKIPPED alert is always the only one for its key
+          pending.set(0, new ReceivedAlert(eventClusterId, alert, last.receivedNanos));
+        }
+      }
+
+      if (null == m_flushExecutor) {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat(
+            "alert-received-flush-%d").build();
+
+        long window = m_configuration.getAlertCoalescingWindow();
+        m_flushExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        m_flushExecutor.scheduleWithFixedDelay(new Runnable() {
+          @Override
+          public void run() {
+            flush();
+          }
+        }, window, window, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    m_coalescedCounter.inc(coalesced);
+  }
+
+  /**
+   * Applies all pending alerts. Alerts of a cluster/definition/host which
+   * changed state more than once since the last flush are applied in order,
+   * one pass per state change, so that each state gets its own history record.
+   */
+  public void flush() {
+    List<List<ReceivedAlert>> pending;
+    synchronized (m_pendingLock) {
+      if (m_pendingAlerts.isEmpty()) {
+        return;
+      }
+
+      pending = new ArrayList<>(m_pendingAlerts.values());
+      m_pendingAlerts.clear();
+    }
+
+    Timer.Context context = m_flushTimer.time();
+    try {
+      for (int pass = 0; !pending.isEmpty(); pass++) {
+        List<ReceivedAlert> receivedAlerts = new ArrayList<>(pending.size());
+        for (Iterator<List<ReceivedAlert>> iterator = pending.iterator(); iterator.hasNext();) {
+          List<ReceivedAlert> alertsForKey = iterator.next();
+          receivedAlerts.add(alertsForKey.get(pass));
+          if (alertsForKey.size() == pass + 1) {
+            iterator.remove();
+          }
+        }
+
+        processAlerts(receivedAlerts);
+      }
+    } catch (Exception exception) {
+      LOG.error("Unable to apply the received alerts", exception);
+    } finally {
+      context.stop();
+    }
+  }
+
+  /**
+   * Applies the received alerts, merging the current alerts and creating new
+   * history records inside of a single transaction.
+   *
+   * @param receivedAlerts
+   *          the alerts to apply, at most one per cluster/definition/host.
+   */
+  @RequiresSession
+  void processAlerts(List<ReceivedAlert> receivedAlerts) {
     // process the list of alerts inside of a single transaction to prevent too
     // many transactions/commits
-    List<Alert> alerts = event.getAlerts();
 
     // these can be wrapped in their own transaction
     List<AlertCurrentEntity> toMerge = new ArrayList<>();
@@ -144,7 +321,9 @@ public class AlertReceivedListener {
 
     List<AlertEvent> alertEvents = new ArrayList<>(20);
 
-    for (Alert alert : alerts) {
+    for (ReceivedAlert receivedAlert : receivedAlerts) {
+      Alert alert = receivedAlert.alert;
+
       // jobs that were running when a service/component/host was changed
       // which invalidate the alert should not be reported
       if (!isValid(alert)) {
@@ -155,7 +334,7 @@ public class AlertReceivedListener {
       Long clusterId = getClusterIdByName(clusterName);
       if (clusterId == null) {
         // check event
-        clusterId = event.getClusterId();
+        clusterId = receivedAlert.eventClusterId;
       }
 
       AlertDefinitionEntity definition = m_definitionDao.findByName(clusterId,
@@ -226,7 +405,8 @@ public class AlertReceivedListener {
           current.setMaintenanceState(maintenanceState);
           current.setAlertHistory(history);
           current.setLatestTimestamp(alert.getTimestamp());
-          current.setOriginalTimestamp(alert.getTimestamp());
+          current.setOriginalTimestamp(receivedAlert.firstTimestamp);
+          current.setOccurrences(receivedAlert.occurrences);
 
           // brand new alert instances being received are always HARD
           current.setFirmness(AlertFirmness.HARD);
@@ -251,7 +431,7 @@ public class AlertReceivedListener {
 
           // ++ the occurrences (should be safe enough since we should ever only
           // be handling unique alert events concurrently
-          long occurrences = current.getOccurrences() + 1;
+          long occurrences = current.getOccurrences() + receivedAlert.occurrences;
           current.setOccurrences(occurrences);
 
           // ensure that if we've met the repeat tolerance and the alert is
@@ -300,7 +480,7 @@ public class AlertReceivedListener {
           oldHistory.getAlertDefinition(), alert);
 
         current.setLatestTimestamp(alert.getTimestamp());
-        current.setOriginalTimestamp(alert.getTimestamp());
+        current.setOriginalTimestamp(receivedAlert.firstTimestamp);
         current.setLatestText(alert.getText());
 
         current.setAlertHistory(history);
@@ -327,6 +507,9 @@ public class AlertReceivedListener {
             break;
         }
 
+        // alerts in the same state coalesced into this one
+        current.setOccurrences(current.getOccurrences() + receivedAlert.occurrences - 1);
+
         // set the firmness of the new alert state based on the state, type,
         // occurrences, and repeat tolerance
         AlertFirmness firmness = calculateFirmnessForStateChange(clusterName, definition,
@@ -346,6 +529,12 @@ public class AlertReceivedListener {
     // transaction
     saveEntities(toMerge, toCreateHistoryAndMerge);
 
+    long now = System.nanoTime();
+    for (ReceivedAlert receivedAlert : receivedAlerts) {
+      m_lagTimer.update(now - receivedAlert.receivedNanos, TimeUnit.NANOSECONDS);
+    }
+    m_appliedCounter.inc(receivedAlerts.size());
+
     // broadcast events
     for (AlertEvent eventToFire : alertEvents) {
       m_alertEventPublisher.publish(eventToFire);
@@ -396,8 +585,20 @@ public class AlertReceivedListener {
       m_alertsDao.merge(entity, m_configuration.isAlertCacheEnabled());
     }
 
+    if (toCreateHistoryAndMerge.isEmpty()) {
+      return;
+    }
+
+    // the new history records are inserted together, ahead of the current
+    // alerts referencing them
+    List<AlertHistoryEntity> histories = new ArrayList<>(toCreateHistoryAndMerge.size());
+    for (AlertCurrentEntity entity : toCreateHistoryAndMerge) {
+      histories.add(entity.getAlertHistory());
+    }
+
+    m_alertsDao.createHistory(histories);
+
     for (AlertCurrentEntity entity : toCreateHistoryAndMerge) {
-      m_alertsDao.create(entity.getAlertHistory());
       m_alertsDao.merge(entity);
 
       if (LOG.isDebugEnabled()) {
@@ -649,4 +850,64 @@ public class AlertReceivedListener {
 
     return repeatTolerance;
   }
+
+  /**
+   * The cluster, definition and host an alert is reported for.
+   */
+  private static final class AlertKey {
+    private final String clusterName;
+    private final String definitionName;
+    private final String hostName;
+
+    private AlertKey(String clusterName, String definitionName, String hostName) {
+      this.clusterName = clusterName;
+      this.definitionName = definitionName;
+      this.hostName = hostName;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) {
+        return true;
+      }
+
+      if (!(object instanceof AlertKey)) {
+        return false;
+      }
+
+      AlertKey that = (AlertKey) object;
+      return Objects.equals(clusterName, that.clusterName)
+          && Objects.equals(definitionName, that.definitionName)
+          && Objects.equals(hostName, that.hostName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(clusterName, definitionName, hostName);
+    }
+  }
+
+  /**
+   * The latest of one or more alerts received in the same state for a
+   * cluster/definition/host.
+   */
+  static final class ReceivedAlert {
+    private final Long eventClusterId;
+    private final long firstTimestamp;
+    private final long receivedNanos;
+    private Alert alert;
+    private int occurrences = 1;
+
+    ReceivedAlert(Long eventClusterId, Alert alert, long receivedNanos) {
+      this.eventClusterId = eventClusterId;
+      this.alert = alert;
+      firstTimestamp = alert.getTimestamp();
+      this.receivedNanos = receivedNanos;
+    }
+
+    private void coalesce(Alert newer) {
+      alert = newer;
+      occurrences++;
+    }
+  }
 }
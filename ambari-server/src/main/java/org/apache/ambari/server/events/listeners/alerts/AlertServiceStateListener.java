@@ -30,6 +30,8 @@ import org.apache.ambari.server.controller.ControllerModule;
 import org.apache.ambari.server.events.ServiceInstalledEvent;
 import org.apache.ambari.server.events.ServiceRemovedEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.events.publishers.OrderedBy;
+import org.apache.ambari.server.events.publishers.OrderingKey;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.dao.AlertDefinitionDAO;
 import org.apache.ambari.server.orm.dao.AlertDispatchDAO;
@@ -56,6 +58,7 @@ import com.google.inject.Singleton;
  */
 @Singleton
 @EagerSingleton
+@OrderedBy(OrderingKey.CLUSTER)
 public class AlertServiceStateListener {
   /**
    * Logger.
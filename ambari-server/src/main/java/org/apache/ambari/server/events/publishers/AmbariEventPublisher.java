@@ -17,34 +17,103 @@
  */
 package org.apache.ambari.server.events.publishers;
 
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.events.AmbariEvent;
+import org.apache.ambari.server.metrics.system.impl.EventMetricsSource;
 
-import com.google.common.eventbus.AsyncEventBus;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 /**
  * The {@link AmbariEventPublisher} is used to publish instances of
- * {@link AmbariEvent} to any {@link Subscribe} methods interested. It uses a
- * single-threaded {@link AsyncEventBus}.
+ * {@link AmbariEvent} to any {@link Subscribe} methods interested.
+ * <p/>
+ * Each registered listener receives events independently of the other
+ * listeners, so that a slow listener only delays its own events. Events are
+ * handled by a listener in the order they were published for the same
+ * {@link OrderingKey} declared by the listener's {@link OrderedBy} annotation,
+ * or in publication order if it has none. A stripe of ordered events hands its
+ * thread to the other stripes after
+ * {@link Configuration#getEventsStripeMaxEvents()} events. The number of
+ * events waiting for
+ * and the time taken until they were handled by each listener are recorded
+ * with {@link EventMetricsSource}.
  */
 @Singleton
 public class AmbariEventPublisher {
 
   /**
-   * A single threaded event bus for processing Ambari events in serial.
+   * The number of threads that handle events for all listeners, which is also
+   * the number of stripes of each listener.
    */
-  private final EventBus m_eventBus;
+  private final int m_threadCount;
 
   /**
-   * Constructor.
+   * The number of events a stripe handles before it is rescheduled behind the
+   * other stripes waiting for a thread.
+   */
+  private final int m_stripeMaxEvents;
+
+  /**
+   * The threads handling events for all listeners.
+   */
+  private final ExecutorService m_executor;
+
+  /**
+   * The dispatchers of the registered listeners.
+   */
+  private final List<ListenerDispatcher> m_dispatchers = new CopyOnWriteArrayList<>();
+
+  /**
+   * A bus that events are posted to on the publishing thread instead of being
+   * dispatched to the registered listeners, or {@code null} for none. Only set
+   * by tests in order to handle events synchronously and serially.
+   */
+  private EventBus m_eventBus;
+
+  /**
+   * Constructor, using the default thread pool size and stripe length.
    */
   public AmbariEventPublisher() {
-    m_eventBus = new AsyncEventBus("ambari-event-bus",
-        Executors.newSingleThreadExecutor());
+    this(Configuration.EVENTS_THREADPOOL_SIZE.getDefaultValue(),
+        Configuration.EVENTS_STRIPE_MAX_EVENTS.getDefaultValue());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          the configuration of the thread pool size and stripe length.
+   */
+  @Inject
+  public AmbariEventPublisher(Configuration configuration) {
+    this(configuration.getEventsThreadPoolSize(), configuration.getEventsStripeMaxEvents());
+  }
+
+  AmbariEventPublisher(int threadCount, int stripeMaxEvents) {
+    // at least one thread, and a stripe handles at least one event per run
+    m_threadCount = Math.max(1, threadCount);
+    m_stripeMaxEvents = Math.max(1, stripeMaxEvents);
+    m_executor = Executors.newFixedThreadPool(m_threadCount,
+        new ThreadFactoryBuilder().setNameFormat("ambari-event-bus-%d").build());
   }
 
   /**
@@ -54,7 +123,14 @@ public class AmbariEventPublisher {
    * @param event
    */
   public void publish(AmbariEvent event) {
-    m_eventBus.post(event);
+    if (null != m_eventBus) {
+      m_eventBus.post(event);
+      return;
+    }
+
+    for (ListenerDispatcher dispatcher : m_dispatchers) {
+      dispatcher.dispatch(event);
+    }
   }
 
   /**
@@ -65,6 +141,157 @@ public class AmbariEventPublisher {
    *          the listener to receive events.
    */
   public void register(Object object) {
-    m_eventBus.register(object);
+    if (null != m_eventBus) {
+      m_eventBus.register(object);
+      return;
+    }
+
+    m_dispatchers.add(new ListenerDispatcher(object));
+  }
+
+  /**
+   * Dispatches the events that a single listener subscribes to on its stripes.
+   * Each stripe handles its events serially on the shared threads; events are
+   * assigned to stripes by their {@link OrderingKey}.
+   */
+  private final class ListenerDispatcher {
+
+    /**
+     * Delivers events to the listener's {@link Subscribe} methods on the
+     * thread handling the stripe.
+     */
+    private final EventBus m_listenerBus;
+
+    /**
+     * The types of events that the listener subscribes to.
+     */
+    private final Set<Class<?>> m_eventTypes = new HashSet<>();
+
+    private final OrderingKey m_orderingKey;
+
+    private final Stripe[] m_stripes = new Stripe[m_threadCount];
+
+    /**
+     * The number of events published to the listener and not yet handled.
+     */
+    private final Counter m_queued;
+
+    /**
+     * The time between publishing an event and the listener having handled it.
+     */
+    private final Timer m_latency;
+
+    private ListenerDispatcher(Object listener) {
+      // Guice subclasses listeners with intercepted methods; their overrides
+      // are not annotated
+      Class<?> listenerClass = listener.getClass();
+      while (listenerClass.getName().contains("$$")) {
+        listenerClass = listenerClass.getSuperclass();
+      }
+
+      String listenerName = listenerClass.getSimpleName();
+
+      m_listenerBus = new EventBus(listenerName);
+      m_listenerBus.register(listener);
+
+      for (Method method : listenerClass.getMethods()) {
+        if (method.isAnnotationPresent(Subscribe.class)
+            && method.getParameterTypes().length == 1) {
+          m_eventTypes.add(method.getParameterTypes()[0]);
+        }
+      }
+
+      OrderedBy orderedBy = listenerClass.getAnnotation(OrderedBy.class);
+      m_orderingKey = null == orderedBy ? OrderingKey.GLOBAL : orderedBy.value();
+
+      for (int i = 0; i < m_stripes.length; i++) {
+        m_stripes[i] = new Stripe();
+      }
+
+      MetricRegistry registry = EventMetricsSource.getRegistry();
+      m_queued = registry.counter(MetricRegistry.name("events", listenerName, "queued"));
+      m_latency = registry.timer(MetricRegistry.name("events", listenerName, "latency"));
+    }
+
+    /**
+     * Queues the event for the listener if it subscribes to it.
+     *
+     * @param event
+     *          the published event.
+     */
+    private void dispatch(final AmbariEvent event) {
+      if (!isSubscribed(event)) {
+        return;
+      }
+
+      Object key = m_orderingKey.getKey(event);
+      int stripe = null == key ? 0 : (key.hashCode() & Integer.MAX_VALUE) % m_stripes.length;
+      final long published = System.nanoTime();
+
+      m_queued.inc();
+      m_stripes[stripe].execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            m_listenerBus.post(event);
+          } finally {
+            m_queued.dec();
+            m_latency.update(System.nanoTime() - published, TimeUnit.NANOSECONDS);
+          }
+        }
+      });
+    }
+
+    private boolean isSubscribed(AmbariEvent event) {
+      for (Class<?> eventType : m_eventTypes) {
+        if (eventType.isInstance(event)) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+
+  /**
+   * Runs its tasks one at a time in the order they were added, using the
+   * shared threads only while it has tasks. After {@link #m_stripeMaxEvents}
+   * tasks it is rescheduled behind the other stripes, so that a listener with
+   * a long queue does not hold a thread the others are waiting for.
+   */
+  private final class Stripe implements Runnable {
+    private final Queue<Runnable> m_tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean m_scheduled = new AtomicBoolean();
+
+    private void execute(Runnable task) {
+      m_tasks.add(task);
+      schedule();
+    }
+
+    private void schedule() {
+      if (m_scheduled.compareAndSet(false, true)) {
+        m_executor.execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        Runnable task;
+        int handled = 0;
+        while (handled < m_stripeMaxEvents && null != (task = m_tasks.poll())) {
+          task.run();
+          handled++;
+        }
+      } finally {
+        m_scheduled.set(false);
+
+        // tasks are left after a full batch, or a task may have been added
+        // after the queue was drained but before this stripe was unscheduled
+        if (!m_tasks.isEmpty()) {
+          schedule();
+        }
+      }
+    }
   }
 }
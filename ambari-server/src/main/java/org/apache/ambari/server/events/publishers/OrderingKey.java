@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import org.apache.ambari.server.events.ActionFinalReportReceivedEvent;
+import org.apache.ambari.server.events.AmbariEvent;
+import org.apache.ambari.server.events.ClusterEvent;
+import org.apache.ambari.server.events.HostAddedEvent;
+import org.apache.ambari.server.events.HostEvent;
+import org.apache.ambari.server.events.ServiceComponentInstalledEvent;
+import org.apache.ambari.server.events.ServiceComponentUninstalledEvent;
+
+/**
+ * The {@link OrderingKey} determines which {@link AmbariEvent}s a listener
+ * annotated with {@link OrderedBy} receives in the order they were published.
+ * Events are only ordered with respect to other events with the same key;
+ * events that have no key are ordered with respect to each other.
+ */
+public enum OrderingKey {
+
+  /**
+   * All events are handled in the order they were published.
+   */
+  GLOBAL {
+    @Override
+    Object getKey(AmbariEvent event) {
+      return null;
+    }
+  },
+
+  /**
+   * Events of the same cluster are handled in the order they were published.
+   */
+  CLUSTER {
+    @Override
+    Object getKey(AmbariEvent event) {
+      if (event instanceof ClusterEvent) {
+        return ((ClusterEvent) event).getClusterId();
+      }
+
+      if (event instanceof ActionFinalReportReceivedEvent) {
+        return ((ActionFinalReportReceivedEvent) event).getClusterId();
+      }
+
+      return null;
+    }
+  },
+
+  /**
+   * Events of the same host are handled in the order they were published.
+   */
+  HOST {
+    @Override
+    Object getKey(AmbariEvent event) {
+      if (event instanceof HostEvent) {
+        return ((HostEvent) event).getHostName();
+      }
+
+      if (event instanceof HostAddedEvent) {
+        return ((HostAddedEvent) event).getHostName();
+      }
+
+      if (event instanceof ServiceComponentInstalledEvent) {
+        return ((ServiceComponentInstalledEvent) event).getHostName();
+      }
+
+      if (event instanceof ServiceComponentUninstalledEvent) {
+        return ((ServiceComponentUninstalledEvent) event).getHostName();
+      }
+
+      return null;
+    }
+  };
+
+  /**
+   * @param event
+   *          the published event.
+   * @return the key that the event is ordered by, or {@code null} if none.
+   */
+  abstract Object getKey(AmbariEvent event);
+}
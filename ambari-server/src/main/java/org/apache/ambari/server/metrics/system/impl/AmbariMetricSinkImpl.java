@@ -161,7 +161,7 @@ public class AmbariMetricSinkImpl extends AbstractTimelineMetricsSink implements
       timelineMetric.setAppId(component);
       timelineMetric.setStartTime(currentTimeMillis);
       timelineMetric.setType(ClassUtils.getShortCanonicalName(attributeValue, "Number"));
-      timelineMetric.getMetricValues().put(currentTimeMillis, attributeValue.doubleValue());
+      timelineMetric.addMetricValue(currentTimeMillis, attributeValue.doubleValue());
       return timelineMetric;
   }
 }
@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.metrics.system.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the counters and timers that Ambari Server records in a
+ * {@link MetricRegistry}. Timers are reported as count, mean and 95th
+ * percentile in milliseconds.
+ */
+public abstract class RegistryMetricsSource extends AbstractMetricsSource {
+  private static final Logger LOG = LoggerFactory.getLogger(RegistryMetricsSource.class);
+  private final MetricRegistry registry;
+
+  /**
+   * @param registry the registry the metrics of the source are recorded in
+   */
+  protected RegistryMetricsSource(MetricRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void run() {
+    this.sink.publish(getMetrics());
+    LOG.debug("Published metrics of {} to sink", getClass().getSimpleName());
+  }
+
+  /**
+   * @return counters of the registry and count, mean and 95th percentile of
+   * its timers
+   */
+  @Override
+  public Map<String, Number> getMetrics() {
+    Map<String, Number> map = new HashMap<>();
+    for (Map.Entry<String, Counter> entry : registry.getCounters().entrySet()) {
+      map.put(entry.getKey(), entry.getValue().getCount());
+    }
+    for (Map.Entry<String, Timer> entry : registry.getTimers().entrySet()) {
+      String name = entry.getKey();
+      Timer timer = entry.getValue();
+      Snapshot snapshot = timer.getSnapshot();
+      map.put(name + ".count", timer.getCount());
+      map.put(name + ".mean_ms", toMillis(snapshot.getMean()));
+      map.put(name + ".p95_ms", toMillis(snapshot.get95thPercentile()));
+    }
+    return map;
+  }
+
+  private static double toMillis(double nanos) {
+    return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
@@ -18,6 +18,7 @@
 package org.apache.ambari.server.orm.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
@@ -25,7 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 
@@ -35,8 +36,6 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Order;
 import javax.persistence.metamodel.SingularAttribute;
 
-import org.apache.ambari.annotations.Experimental;
-import org.apache.ambari.annotations.ExperimentalFeature;
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.api.query.JpaPredicateVisitor;
 import org.apache.ambari.server.api.query.JpaSortBuilder;
@@ -51,6 +50,7 @@ import org.apache.ambari.server.events.publishers.AlertEventPublisher;
 import org.apache.ambari.server.orm.RequiresSession;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
 import org.apache.ambari.server.orm.entities.AlertCurrentEntity_;
+import org.apache.ambari.server.orm.entities.AlertDefinitionEntity;
 import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
 import org.apache.ambari.server.orm.entities.AlertHistoryEntity_;
 import org.apache.ambari.server.orm.entities.AlertNoticeEntity;
@@ -80,10 +80,11 @@ import com.google.inject.persist.Transactional;
  * not immediately persisted to JPA. Instead, they are kept in a cache and
  * periodically flushed. This means that many queries will need to swap in the
  * cached {@link AlertCurrentEntity} with that returned from the EclipseLink JPA
- * entity manager.
+ * entity manager. Only the alerts updated in the cache since the last flush
+ * are written, in a single transaction. Alert summaries are then served from
+ * counts kept in memory instead of being aggregated from the database.
  */
 @Singleton
-@Experimental(feature = ExperimentalFeature.ALERT_CACHING)
 public class AlertsDAO implements Cleanable {
   /**
    * Logger.
@@ -110,6 +111,14 @@ public class AlertsDAO implements Cleanable {
       + "SUM(CASE WHEN alert.maintenanceState != :maintenanceStateOff THEN 1 ELSE 0 END)) "
       + "FROM AlertCurrentEntity alert JOIN alert.alertHistory history WHERE history.clusterId = :clusterId GROUP BY history.hostName";
 
+  /**
+   * JPQL for getting what the current alerts of a cluster are counted by in
+   * {@link CurrentAlertCounts}.
+   */
+  private static final String CURRENT_ALERT_COUNTED_FIELDS_SQL = "SELECT alert.alertId, "
+      + "history.alertDefinition.definitionName, history.serviceName, history.hostName, history.alertState, alert.maintenanceState "
+      + "FROM AlertCurrentEntity alert JOIN alert.alertHistory history WHERE history.clusterId = :clusterId";
+
   /**
    * JPA entity manager
    */
@@ -150,6 +159,20 @@ public class AlertsDAO implements Cleanable {
    */
   private LoadingCache<AlertCacheKey, AlertCurrentEntity> m_currentAlertCache = null;
 
+  /**
+   * The alerts updated only in the cache since the last flush. Unlike the
+   * cache, entries are never evicted, they are removed once written by
+   * {@link #flushCachedEntitiesToJPA()}.
+   */
+  private final ConcurrentMap<AlertCacheKey, AlertCurrentEntity> m_dirtyAlerts = new ConcurrentHashMap<>();
+
+  /**
+   * The number of current alerts by state for each cluster, if caching is
+   * enabled. Loaded from the database on the first summary requested for a
+   * cluster and again after each flush.
+   */
+  private final ConcurrentMap<Long, CurrentAlertCounts> m_currentAlertCounts = new ConcurrentHashMap<>();
+
   /**
    * Batch size to query the DB and use the results in an IN clause.
    */
@@ -177,6 +200,12 @@ public class AlertsDAO implements Cleanable {
             public AlertCurrentEntity load(AlertCacheKey key) throws Exception {
               LOG.debug("Cache miss for alert key {}, fetching from JPA", key);
 
+              // evicted before it could be written
+              AlertCurrentEntity dirtyEntity = m_dirtyAlerts.get(key);
+              if (null != dirtyEntity) {
+                return dirtyEntity;
+              }
+
               final AlertCurrentEntity alertCurrentEntity;
 
               long clusterId = key.getClusterId();
@@ -530,6 +559,10 @@ public class AlertsDAO implements Cleanable {
    */
   @RequiresSession
   public AlertSummaryDTO findCurrentCounts(long clusterId, String serviceName, String hostName) {
+    if (m_configuration.isAlertCacheEnabled() && (null == serviceName || null == hostName)) {
+      return getCurrentAlertCounts(clusterId).getSummary(serviceName, hostName);
+    }
+
     String sql = String.format(ALERT_COUNT_SQL_TEMPLATE,
       AlertSummaryDTO.class.getName());
 
@@ -574,6 +607,10 @@ public class AlertsDAO implements Cleanable {
    */
   @RequiresSession
   public Map<String, AlertSummaryDTO> findCurrentPerHostCounts(long clusterId) {
+    if (m_configuration.isAlertCacheEnabled()) {
+      return getCurrentAlertCounts(clusterId).getPerHostSummaries();
+    }
+
     String sql = String.format(ALERT_COUNT_PER_HOST_SQL_TEMPLATE, HostAlertSummaryDTO.class.getName());
 
     StringBuilder sb = new StringBuilder(sql);
@@ -607,6 +644,10 @@ public class AlertsDAO implements Cleanable {
    */
   @RequiresSession
   public AlertHostSummaryDTO findCurrentHostCounts(long clusterId) {
+    if (m_configuration.isAlertCacheEnabled()) {
+      return getCurrentAlertCounts(clusterId).getHostSummary();
+    }
+
     String sql = String.format(ALERT_COUNT_PER_HOST_SQL_TEMPLATE, HostAlertSummaryDTO.class.getName());
 
     StringBuilder sb = new StringBuilder(sql);
@@ -742,6 +783,8 @@ public class AlertsDAO implements Cleanable {
    */
   @Transactional
   public void removeByDefinitionId(long definitionId) {
+    beforeBulkRemoval();
+
     EntityManager entityManager = m_entityManagerProvider.get();
     TypedQuery<AlertCurrentEntity> currentQuery = entityManager.createNamedQuery(
         "AlertCurrentEntity.removeByDefinitionId", AlertCurrentEntity.class);
@@ -761,6 +804,7 @@ public class AlertsDAO implements Cleanable {
     // back from the DB
     if (m_configuration.isAlertCacheEnabled()) {
       m_currentAlertCache.invalidateAll();
+      m_currentAlertCounts.clear();
     }
   }
 
@@ -772,6 +816,8 @@ public class AlertsDAO implements Cleanable {
    */
   @Transactional
   public int removeCurrentByHistoryId(long historyId) {
+    beforeBulkRemoval();
+
     TypedQuery<AlertCurrentEntity> query = m_entityManagerProvider.get().createNamedQuery(
       "AlertCurrentEntity.removeByHistoryId", AlertCurrentEntity.class);
 
@@ -782,6 +828,7 @@ public class AlertsDAO implements Cleanable {
     // back from the DB
     if (m_configuration.isAlertCacheEnabled()) {
       m_currentAlertCache.invalidateAll();
+      m_currentAlertCounts.clear();
     }
 
     return rowsRemoved;
@@ -967,6 +1014,21 @@ public class AlertsDAO implements Cleanable {
     m_entityManagerProvider.get().persist(alert);
   }
 
+  /**
+   * Persists new alerts in a single transaction so that their inserts are
+   * written as one JDBC batch.
+   *
+   * @param alerts
+   *          the alerts to persist (not {@code null}).
+   */
+  @Transactional
+  public void createHistory(Collection<AlertHistoryEntity> alerts) {
+    EntityManager entityManager = m_entityManagerProvider.get();
+    for (AlertHistoryEntity alert : alerts) {
+      entityManager.persist(alert);
+    }
+  }
+
   /**
    * Refresh the state of the alert from the database.
    *
@@ -1013,6 +1075,7 @@ public class AlertsDAO implements Cleanable {
   @Transactional
   public void create(AlertCurrentEntity alert) {
     m_entityManagerProvider.get().persist(alert);
+    countAlert(alert);
   }
 
   /**
@@ -1042,8 +1105,10 @@ public class AlertsDAO implements Cleanable {
     if( m_configuration.isAlertCacheEnabled() ){
       AlertCacheKey key = AlertCacheKey.build(alert);
       m_currentAlertCache.put(key, alert);
+      m_dirtyAlerts.remove(key);
     }
 
+    countAlert(alert);
     return alert;
   }
 
@@ -1074,6 +1139,7 @@ public class AlertsDAO implements Cleanable {
       } else {
         // update cache and return alert; no database work
         m_currentAlertCache.put(key, alert);
+        m_dirtyAlerts.put(key, alert);
         return alert;
       }
     }
@@ -1089,17 +1155,36 @@ public class AlertsDAO implements Cleanable {
    */
   @Transactional
   public void remove(AlertCurrentEntity alert) {
-    m_entityManagerProvider.get().remove(merge(alert));
+    alert = merge(alert);
+    m_entityManagerProvider.get().remove(alert);
+
+    if (m_configuration.isAlertCacheEnabled()) {
+      AlertCacheKey key = AlertCacheKey.build(alert);
+      m_currentAlertCache.invalidate(key);
+      m_dirtyAlerts.remove(key);
+
+      Long clusterId = alert.getAlertHistory().getClusterId();
+      CurrentAlertCounts counts = null != clusterId ? m_currentAlertCounts.get(clusterId) : null;
+      if (null != counts && null != alert.getAlertId()) {
+        counts.remove(alert.getAlertId());
+      }
+    }
   }
 
   /**
-   * Finds the aggregate counts for an alert name, across all hosts.
+   * Finds the aggregate counts for an alert name, across all hosts. If
+   * {@link Configuration#isAlertCacheEnabled()} is {@code true}, the counts are
+   * kept in memory instead of being aggregated in the database.
    * @param clusterId the cluster id
    * @param alertName the name of the alert to find the aggregate
    * @return the summary data
    */
   @RequiresSession
   public AlertSummaryDTO findAggregateCounts(long clusterId, String alertName) {
+    if (m_configuration.isAlertCacheEnabled()) {
+      return getCurrentAlertCounts(clusterId).getDefinitionSummary(alertName);
+    }
+
     String sql = String.format(ALERT_COUNT_SQL_TEMPLATE,
         AlertSummaryDTO.class.getName());
 
@@ -1171,8 +1256,14 @@ public class AlertsDAO implements Cleanable {
   }
 
   /**
-   * Writes all cached {@link AlertCurrentEntity} instances to the database and
-   * clears the cache.
+   * Writes the {@link AlertCurrentEntity} instances updated only in the cache
+   * to the database. They are merged in a single transaction so that their
+   * updates are written as one JDBC batch. The cache itself is kept since its
+   * entries are now the same as the database.
+   * <p/>
+   * The in-memory alert counts are dropped as well so that they are reloaded
+   * from the database, which limits how long they can be off if a transaction
+   * which had updated them was rolled back.
    */
   @Transactional
   public void flushCachedEntitiesToJPA() {
@@ -1181,18 +1272,85 @@ public class AlertsDAO implements Cleanable {
       return;
     }
 
-    // capture for logging purposes
-    long cachedEntityCount = m_currentAlertCache.size();
+    EntityManager entityManager = m_entityManagerProvider.get();
+    int flushedEntityCount = 0;
+
+    for (Entry<AlertCacheKey, AlertCurrentEntity> entry : m_dirtyAlerts.entrySet()) {
+      // an alert updated again from here on is written by the next flush
+      if (m_dirtyAlerts.remove(entry.getKey(), entry.getValue())) {
+        entityManager.merge(entry.getValue());
+        flushedEntityCount++;
+      }
+    }
+
+    m_currentAlertCounts.clear();
+
+    LOG.info("Flushed {} of {} cached alerts to the database", flushedEntityCount,
+        m_currentAlertCache.size());
+  }
+
+  /**
+   * Writes the alerts updated only in the cache before current alerts are
+   * removed by a JPQL statement, otherwise the next flush would write the
+   * removed alerts back. The alert counts are reloaded afterwards.
+   */
+  private void beforeBulkRemoval() {
+    if (m_configuration.isAlertCacheEnabled()) {
+      flushCachedEntitiesToJPA();
+    }
+  }
+
+  /**
+   * Gets the counts of the current alerts of a cluster, loading them from the
+   * database if needed. This method should only be invoked if
+   * {@link Configuration#isAlertCacheEnabled()} is {@code true}.
+   *
+   * @param clusterId
+   *          the cluster id
+   * @return the alert counts of the cluster (never {@code null}).
+   */
+  private CurrentAlertCounts getCurrentAlertCounts(long clusterId) {
+    CurrentAlertCounts counts = m_currentAlertCounts.get(clusterId);
+    if (null != counts) {
+      return counts;
+    }
+
+    TypedQuery<Object[]> query = m_entityManagerProvider.get().createQuery(
+        CURRENT_ALERT_COUNTED_FIELDS_SQL, Object[].class);
+
+    query.setParameter("clusterId", Long.valueOf(clusterId));
+
+    counts = new CurrentAlertCounts();
+    for (Object[] fields : m_daoUtils.selectList(query)) {
+      counts.put((Long) fields[0], (String) fields[1], (String) fields[2],
+          (String) fields[3], (AlertState) fields[4], (MaintenanceState) fields[5]);
+    }
+
+    CurrentAlertCounts existing = m_currentAlertCounts.putIfAbsent(clusterId, counts);
+    return null != existing ? existing : counts;
+  }
 
-    ConcurrentMap<AlertCacheKey, AlertCurrentEntity> map = m_currentAlertCache.asMap();
-    Set<Entry<AlertCacheKey, AlertCurrentEntity>> entries = map.entrySet();
-    for (Entry<AlertCacheKey, AlertCurrentEntity> entry : entries) {
-      merge(entry.getValue());
+  /**
+   * Updates the counts of the alert's cluster, if loaded, after the alert was
+   * created or merged.
+   *
+   * @param alert
+   *          the current alert (not {@code null}).
+   */
+  private void countAlert(AlertCurrentEntity alert) {
+    AlertHistoryEntity history = alert.getAlertHistory();
+    if (null == history || null == history.getClusterId() || null == alert.getAlertId()) {
+      return;
     }
 
-    m_currentAlertCache.invalidateAll();
+    CurrentAlertCounts counts = m_currentAlertCounts.get(history.getClusterId());
+    if (null != counts) {
+      AlertDefinitionEntity definition = history.getAlertDefinition();
+      String definitionName = null != definition ? definition.getDefinitionName() : null;
 
-    LOG.info("Flushed {} cached alerts to the database", cachedEntityCount);
+      counts.put(alert.getAlertId(), definitionName, history.getServiceName(),
+          history.getHostName(), history.getAlertState(), alert.getMaintenanceState());
+    }
   }
 
   /**
@@ -1525,6 +1683,8 @@ public class AlertsDAO implements Cleanable {
   @Transactional
   private int cleanAlertCurrentsForClusterBeforeDate(long clusterId, long beforeDateMillis) {
     LOG.info("Deleting AlertCurrent entities before date " + new Date(beforeDateMillis));
+    beforeBulkRemoval();
+
     EntityManager entityManager = m_entityManagerProvider.get();
     List<Integer> ids = findAllAlertHistoryIdsBeforeDate(clusterId, beforeDateMillis);
     int affectedRows = 0;
@@ -1541,6 +1701,11 @@ public class AlertsDAO implements Cleanable {
       }
     }
 
+    if (m_configuration.isAlertCacheEnabled()) {
+      m_currentAlertCache.invalidateAll();
+      m_currentAlertCounts.clear();
+    }
+
     return affectedRows;
   }
 
@@ -0,0 +1,290 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.orm.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.ambari.server.state.AlertState;
+import org.apache.ambari.server.state.MaintenanceState;
+
+/**
+ * The {@link CurrentAlertCounts} class keeps the number of current alerts of a
+ * cluster by state, for the whole cluster, per definition, per service and per
+ * host. It is
+ * updated as current alerts are created, merged and removed so that alert
+ * summaries and aggregate alert counts can be returned without aggregating the
+ * current alerts in the database. Alerts in maintenance mode are counted as such instead of by
+ * their state, the same as {@link AlertSummaryDTO}.
+ */
+final class CurrentAlertCounts {
+
+  private static final int OK = 0;
+  private static final int WARNING = 1;
+  private static final int CRITICAL = 2;
+  private static final int UNKNOWN = 3;
+  private static final int MAINTENANCE = 4;
+
+  /**
+   * The number of alerts counted, including those in no bucket.
+   */
+  private static final int TOTAL = 5;
+
+  /**
+   * The definition, service, host and bucket each current alert is counted in,
+   * by alert ID.
+   */
+  private final Map<Long, CountedAlert> m_alerts = new HashMap<>();
+
+  private final int[] m_clusterCounts = new int[TOTAL + 1];
+
+  private final Map<String, int[]> m_definitionCounts = new HashMap<>();
+
+  private final Map<String, int[]> m_serviceCounts = new HashMap<>();
+
+  /**
+   * Counts by host name, alerts not bound to a host are counted under
+   * {@code null}.
+   */
+  private final Map<String, int[]> m_hostCounts = new HashMap<>();
+
+  /**
+   * Counts the current alert, replacing what was counted for it before.
+   *
+   * @param alertId
+   *          the ID of the current alert.
+   * @param definitionName
+   *          the name of the alert's definition.
+   * @param serviceName
+   *          the service of the alert's history.
+   * @param hostName
+   *          the host of the alert's history, or {@code null} for none.
+   * @param alertState
+   *          the state of the alert's history.
+   * @param maintenanceState
+   *          the maintenance state of the current alert.
+   */
+  synchronized void put(long alertId, String definitionName, String serviceName,
+      String hostName, AlertState alertState, MaintenanceState maintenanceState) {
+    CountedAlert counted = new CountedAlert(definitionName, serviceName, hostName,
+        getBucket(alertState, maintenanceState));
+
+    CountedAlert previous = m_alerts.put(alertId, counted);
+    if (counted.equals(previous)) {
+      return;
+    }
+
+    if (null != previous) {
+      count(previous, -1);
+    }
+
+    count(counted, 1);
+  }
+
+  /**
+   * Stops counting the current alert.
+   *
+   * @param alertId
+   *          the ID of the current alert.
+   */
+  synchronized void remove(long alertId) {
+    CountedAlert previous = m_alerts.remove(alertId);
+    if (null != previous) {
+      count(previous, -1);
+    }
+  }
+
+  /**
+   * @param serviceName
+   *          the service to count alerts of, or {@code null} for all.
+   * @param hostName
+   *          the host to count alerts of, or {@code null} for all. Only one of
+   *          service and host may be given.
+   * @return the summary of the current alerts.
+   */
+  synchronized AlertSummaryDTO getSummary(String serviceName, String hostName) {
+    int[] counts = m_clusterCounts;
+    if (null != serviceName) {
+      counts = m_serviceCounts.get(serviceName);
+    } else if (null != hostName) {
+      counts = m_hostCounts.get(hostName);
+    }
+
+    return toSummary(counts);
+  }
+
+  /**
+   * @param definitionName
+   *          the name of the definition to count alerts of.
+   * @return the summary of the current alerts of the definition across all
+   *         hosts.
+   */
+  synchronized AlertSummaryDTO getDefinitionSummary(String definitionName) {
+    return toSummary(m_definitionCounts.get(definitionName));
+  }
+
+  /**
+   * @return the summary of the current alerts of each host, alerts not bound
+   *         to a host are summarized under {@code null}.
+   */
+  synchronized Map<String, AlertSummaryDTO> getPerHostSummaries() {
+    Map<String, AlertSummaryDTO> summaries = new HashMap<>();
+    for (Map.Entry<String, int[]> entry : m_hostCounts.entrySet()) {
+      int[] counts = entry.getValue();
+      summaries.put(entry.getKey(), new HostAlertSummaryDTO(entry.getKey(), counts[OK],
+          counts[WARNING], counts[CRITICAL], counts[UNKNOWN], counts[MAINTENANCE]));
+    }
+
+    return summaries;
+  }
+
+  /**
+   * @return the number of hosts by the most critical state of their alerts.
+   */
+  synchronized AlertHostSummaryDTO getHostSummary() {
+    int okCount = 0;
+    int warningCount = 0;
+    int criticalCount = 0;
+    int unknownCount = 0;
+
+    for (Map.Entry<String, int[]> entry : m_hostCounts.entrySet()) {
+      if (null == entry.getKey()) {
+        continue;
+      }
+
+      int[] counts = entry.getValue();
+      if (counts[CRITICAL] > 0) {
+        criticalCount++;
+      } else if (counts[WARNING] > 0) {
+        warningCount++;
+      } else if (counts[UNKNOWN] > 0) {
+        unknownCount++;
+      } else {
+        okCount++;
+      }
+    }
+
+    return new AlertHostSummaryDTO(okCount, unknownCount, warningCount, criticalCount);
+  }
+
+  private void count(CountedAlert alert, int delta) {
+    count(m_clusterCounts, alert.bucket, delta);
+    count(m_definitionCounts, alert.definitionName, alert.bucket, delta);
+    count(m_serviceCounts, alert.serviceName, alert.bucket, delta);
+    count(m_hostCounts, alert.hostName, alert.bucket, delta);
+  }
+
+  private static void count(Map<String, int[]> countsByName, String name, int bucket,
+      int delta) {
+    int[] counts = countsByName.get(name);
+    if (null == counts) {
+      counts = new int[TOTAL + 1];
+      countsByName.put(name, counts);
+    }
+
+    count(counts, bucket, delta);
+
+    // no longer returned by the aggregate queries either
+    if (counts[TOTAL] == 0) {
+      countsByName.remove(name);
+    }
+  }
+
+  private static void count(int[] counts, int bucket, int delta) {
+    if (bucket >= 0) {
+      counts[bucket] += delta;
+    }
+
+    counts[TOTAL] += delta;
+  }
+
+  private static AlertSummaryDTO toSummary(int[] counts) {
+    if (null == counts) {
+      return new AlertSummaryDTO(0, 0, 0, 0, 0);
+    }
+
+    return new AlertSummaryDTO(counts[OK], counts[WARNING], counts[CRITICAL],
+        counts[UNKNOWN], counts[MAINTENANCE]);
+  }
+
+  /**
+   * @return the bucket the alert is counted in, or {@code -1} for none.
+   */
+  private static int getBucket(AlertState alertState, MaintenanceState maintenanceState) {
+    if (null != maintenanceState && maintenanceState != MaintenanceState.OFF) {
+      return MAINTENANCE;
+    }
+
+    if (null == alertState) {
+      return -1;
+    }
+
+    switch (alertState) {
+      case OK:
+        return OK;
+      case WARNING:
+        return WARNING;
+      case CRITICAL:
+        return CRITICAL;
+      case UNKNOWN:
+        return UNKNOWN;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Where a current alert is counted.
+   */
+  private static final class CountedAlert {
+    private final String definitionName;
+    private final String serviceName;
+    private final String hostName;
+    private final int bucket;
+
+    private CountedAlert(String definitionName, String serviceName, String hostName,
+        int bucket) {
+      this.definitionName = definitionName;
+      this.serviceName = serviceName;
+      this.hostName = hostName;
+      this.bucket = bucket;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) {
+        return true;
+      }
+
+      if (!(object instanceof CountedAlert)) {
+        return false;
+      }
+
+      CountedAlert that = (CountedAlert) object;
+      return bucket == that.bucket && Objects.equals(definitionName, that.definitionName)
+          && Objects.equals(serviceName, that.serviceName)
+          && Objects.equals(hostName, that.hostName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(definitionName, serviceName, hostName, bucket);
+    }
+  }
+}
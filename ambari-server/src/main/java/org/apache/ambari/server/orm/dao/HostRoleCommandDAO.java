@@ -650,9 +650,13 @@ public class HostRoleCommandDAO {
   public List<HostRoleCommandEntity> mergeAll(Collection<HostRoleCommandEntity> entities) {
     Set<Long> requestsToInvalidate = new LinkedHashSet<>();
     List<HostRoleCommandEntity> managedList = new ArrayList<HostRoleCommandEntity>(entities.size());
+    EntityManager entityManager = entityManagerProvider.get();
     for (HostRoleCommandEntity entity : entities) {
-      EntityManager entityManager = entityManagerProvider.get();
-      entity = entityManager.merge(entity);
+      // entities loaded in the current transaction are written at commit,
+      // merging them again would only walk their relationships
+      if (!entityManager.contains(entity)) {
+        entity = entityManager.merge(entity);
+      }
       managedList.add(entity);
 
       Long requestId = entity.getRequestId();
@@ -1281,6 +1281,58 @@ public class ConfigHelper {
     }
   }
 
+  /**
+   * Removes properties that are marked as hidden for the specified component,
+   * like {@link #processHiddenAttribute(Map, Map, String, boolean)}, without
+   * modifying the given configurations: the configuration types which have
+   * hidden properties are copied. The configurations may be shared by several
+   * commands.
+   * @param configurations cluster configurations
+   * @param attributes configuration attributes
+   * @param componentName component name
+   * @param configDownload indicates if config must be downloaded
+   * @return the configurations without the hidden properties, the given
+   *         configurations if none of their properties is hidden
+   */
+  public static Map<String, Map<String, String>> filterHiddenAttribute(Map<String, Map<String, String>> configurations,
+                                                                      Map<String, Map<String, Map<String, String>>> attributes,
+                                                                      String componentName, boolean configDownload) {
+    if (configurations == null || attributes == null || componentName == null) {
+      return configurations;
+    }
+
+    Map<String, Map<String, String>> filtered = configurations;
+    for (Map.Entry<String, Map<String, String>> confEntry : configurations.entrySet()) {
+      Map<String, Map<String, String>> configAttributes = attributes.get(confEntry.getKey());
+      Map<String, String> hiddenProperties = configAttributes == null ? null : configAttributes.get("hidden");
+      if (hiddenProperties == null) {
+        continue;
+      }
+
+      Map<String, String> confProperties = confEntry.getValue();
+      Map<String, String> filteredProperties = confProperties;
+      for (Map.Entry<String, String> hiddenEntry : hiddenProperties.entrySet()) {
+        String propertyName = hiddenEntry.getKey();
+        String components = hiddenEntry.getValue();
+        if ((configDownload ? components.contains("CONFIG_DOWNLOAD") : components.contains(componentName))
+            && confProperties.containsKey(propertyName)) {
+          if (filteredProperties == confProperties) {
+            filteredProperties = new HashMap<String, String>(confProperties);
+          }
+          filteredProperties.remove(propertyName);
+        }
+      }
+
+      if (filteredProperties != confProperties) {
+        if (filtered == configurations) {
+          filtered = new TreeMap<String, Map<String, String>>(configurations);
+        }
+        filtered.put(confEntry.getKey(), filteredProperties);
+      }
+    }
+    return filtered;
+  }
+
   /**
    * Merge one attribute map to another.
    * @param attributes original map
@@ -76,6 +76,59 @@ public interface ServiceComponent {
   void addServiceComponentHost(ServiceComponentHost hostComponent)
       throws AmbariException ;
 
+  /**
+   * Recounts a host component of this component under its current live
+   * state. Host components call this whenever their state changes.
+   *
+   * @param hostComponent
+   *          the host component whose state changed (not {@code null}).
+   */
+  void updateHostComponentStateCount(ServiceComponentHost hostComponent);
+
+  /**
+   * Gets the number of host components of this component in the given live
+   * state without visiting the host components.
+   *
+   * @param state
+   *          the live state (not {@code null}).
+   * @return the number of host components in that state.
+   */
+  int getHostComponentCount(State state);
+
+  /**
+   * Records the maintenance state of a host component of this component.
+   * Host components call this whenever their maintenance state is set.
+   *
+   * @param hostComponent
+   *          the host component (not {@code null}).
+   * @param maintenanceState
+   *          the new maintenance state of the host component.
+   */
+  void updateHostComponentMaintenanceState(ServiceComponentHost hostComponent,
+      MaintenanceState maintenanceState);
+
+  /**
+   * Records the maintenance state of the host of a host component of this
+   * component. Hosts call this for each of their host components in the
+   * cluster whenever their maintenance state is set.
+   *
+   * @param hostComponent
+   *          the host component (not {@code null}).
+   * @param maintenanceState
+   *          the new maintenance state of the host in the cluster.
+   */
+  void updateHostMaintenanceState(ServiceComponentHost hostComponent,
+      MaintenanceState maintenanceState);
+
+  /**
+   * Gets the number of host components of this component which are in
+   * maintenance themselves or run on a host in maintenance, maintenance
+   * implied from the service is not included.
+   *
+   * @return the number of host components in maintenance.
+   */
+  int getHostComponentCountInMaintenance();
+
   ServiceComponentResponse convertToResponse();
 
   void debugDump(StringBuilder sb);
@@ -18,9 +18,12 @@
 
 package org.apache.ambari.server.state;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -77,6 +80,31 @@ public class ServiceComponentImpl implements ServiceComponent {
 
   private final ConcurrentMap<String, ServiceComponentHost> hostComponents = new ConcurrentHashMap<String, ServiceComponentHost>();
 
+  /**
+   * Number of host components per live state, indexed by
+   * {@link State#ordinal()}. Host components report their state changes, so
+   * the counts never require a pass over {@link #hostComponents}.
+   */
+  private final int[] hostComponentStateCounts = new int[State.values().length];
+
+  /**
+   * [ HostName -> State the host component is counted under ], guarded by
+   * {@link #hostComponentStateCounts} together with the counts.
+   */
+  private final Map<String, State> countedHostComponentStates = new HashMap<String, State>();
+
+  /**
+   * Host names of the host components which are in maintenance themselves,
+   * guarded by {@link #hostComponentStateCounts}.
+   */
+  private final Set<String> hostComponentsInMaintenance = new HashSet<String>();
+
+  /**
+   * Host names of the host components whose host is in maintenance, guarded
+   * by {@link #hostComponentStateCounts}.
+   */
+  private final Set<String> hostsInMaintenance = new HashSet<String>();
+
   /**
    * The ID of the persisted {@link ServiceComponentDesiredStateEntity}.
    */
@@ -173,9 +201,15 @@ public class ServiceComponentImpl implements ServiceComponent {
 
       HostComponentDesiredStateEntity hostComponentDesiredStateEntity = hostComponentDesiredStateDAO.findByPK(pk);
       try {
-        hostComponents.put(hostComponentStateEntity.getHostName(),
-          serviceComponentHostFactory.createExisting(this,
-            hostComponentStateEntity, hostComponentDesiredStateEntity));
+        ServiceComponentHost hostComponent = serviceComponentHostFactory.createExisting(this,
+            hostComponentStateEntity, hostComponentDesiredStateEntity);
+        hostComponents.put(hostComponentStateEntity.getHostName(), hostComponent);
+        updateHostComponentStateCount(hostComponent);
+        if (hostComponentDesiredStateEntity != null) {
+          updateHostComponentMaintenanceState(hostComponent,
+              hostComponentDesiredStateEntity.getMaintenanceState());
+        }
+        updateHostMaintenanceState(hostComponent);
       } catch(ProvisionException ex) {
         StackId currentStackId = service.getCluster().getCurrentStackVersion();
         LOG.error(String.format("Can not get host component info: stackName=%s, stackVersion=%s, serviceName=%s, componentName=%s, hostname=%s",
@@ -301,6 +335,8 @@ public class ServiceComponentImpl implements ServiceComponent {
       ClusterImpl clusterImpl = (ClusterImpl) service.getCluster();
       clusterImpl.addServiceComponentHost(hostComponent);
       hostComponents.put(hostComponent.getHostName(), hostComponent);
+      updateHostComponentStateCount(hostComponent);
+      updateHostMaintenanceState(hostComponent);
     } finally {
       readWriteLock.writeLock().unlock();
     }
@@ -524,6 +560,12 @@ public class ServiceComponentImpl implements ServiceComponent {
       }
 
       hostComponents.clear();
+      synchronized (hostComponentStateCounts) {
+        Arrays.fill(hostComponentStateCounts, 0);
+        countedHostComponentStates.clear();
+        hostComponentsInMaintenance.clear();
+        hostsInMaintenance.clear();
+      }
     } finally {
       readWriteLock.writeLock().unlock();
     }
@@ -547,6 +589,14 @@ public class ServiceComponentImpl implements ServiceComponent {
       }
       sch.delete();
       hostComponents.remove(hostname);
+      synchronized (hostComponentStateCounts) {
+        State countedState = countedHostComponentStates.remove(hostname);
+        if (countedState != null) {
+          hostComponentStateCounts[countedState.ordinal()]--;
+        }
+        hostComponentsInMaintenance.remove(hostname);
+        hostsInMaintenance.remove(hostname);
+      }
 
     } finally {
       readWriteLock.writeLock().unlock();
@@ -571,24 +621,103 @@ public class ServiceComponentImpl implements ServiceComponent {
   }
 
 
-  private int getSCHCountByState(State state) {
-    int count = 0;
-    for (ServiceComponentHost sch : hostComponents.values()) {
-      if (sch.getState() == state) {
-        count++;
+  @Override
+  public void updateHostComponentStateCount(ServiceComponentHost hostComponent) {
+    String hostName = hostComponent.getHostName();
+    synchronized (hostComponentStateCounts) {
+      // ignore host components which are not (or no longer) part of this
+      // component, they are counted when added
+      if (hostComponents.get(hostName) != hostComponent) {
+        return;
+      }
+
+      // the current state is read rather than passed in, so concurrent
+      // updates for the same host component always settle on its last state
+      State state = hostComponent.getState();
+      State countedState = countedHostComponentStates.put(hostName, state);
+      if (countedState != null) {
+        hostComponentStateCounts[countedState.ordinal()]--;
+      }
+      hostComponentStateCounts[state.ordinal()]++;
+    }
+  }
+
+  @Override
+  public int getHostComponentCount(State state) {
+    synchronized (hostComponentStateCounts) {
+      return hostComponentStateCounts[state.ordinal()];
+    }
+  }
+
+  @Override
+  public void updateHostComponentMaintenanceState(ServiceComponentHost hostComponent,
+      MaintenanceState maintenanceState) {
+    String hostName = hostComponent.getHostName();
+    synchronized (hostComponentStateCounts) {
+      if (hostComponents.get(hostName) != hostComponent) {
+        return;
+      }
+
+      if (MaintenanceState.ON == maintenanceState) {
+        hostComponentsInMaintenance.add(hostName);
+      } else {
+        hostComponentsInMaintenance.remove(hostName);
+      }
+    }
+  }
+
+  @Override
+  public void updateHostMaintenanceState(ServiceComponentHost hostComponent,
+      MaintenanceState maintenanceState) {
+    String hostName = hostComponent.getHostName();
+    synchronized (hostComponentStateCounts) {
+      if (hostComponents.get(hostName) != hostComponent) {
+        return;
+      }
+
+      if (MaintenanceState.ON == maintenanceState) {
+        hostsInMaintenance.add(hostName);
+      } else {
+        hostsInMaintenance.remove(hostName);
       }
     }
-    return count;
+  }
+
+  /**
+   * Records the current maintenance state of the host of a host component
+   * which was just loaded or added.
+   */
+  private void updateHostMaintenanceState(ServiceComponentHost hostComponent) {
+    Host host = hostComponent.getHost();
+    if (host != null) {
+      updateHostMaintenanceState(hostComponent,
+          host.getMaintenanceState(hostComponent.getClusterId()));
+    }
+  }
+
+  @Override
+  public int getHostComponentCountInMaintenance() {
+    synchronized (hostComponentStateCounts) {
+      if (hostsInMaintenance.isEmpty()) {
+        return hostComponentsInMaintenance.size();
+      }
+
+      Set<String> inMaintenance = new HashSet<String>(hostComponentsInMaintenance);
+      inMaintenance.addAll(hostsInMaintenance);
+      return inMaintenance.size();
+    }
   }
 
   private Map <String, Integer> getServiceComponentStateCount() {
     Map <String, Integer> serviceComponentStateCountMap = new HashMap <String, Integer>();
-    serviceComponentStateCountMap.put("startedCount", getSCHCountByState(State.STARTED));
-    serviceComponentStateCountMap.put("installedCount", getSCHCountByState(State.INSTALLED));
-    serviceComponentStateCountMap.put("installFailedCount", getSCHCountByState(State.INSTALL_FAILED));
-    serviceComponentStateCountMap.put("initCount", getSCHCountByState(State.INIT));
-    serviceComponentStateCountMap.put("unknownCount", getSCHCountByState(State.UNKNOWN));
-    serviceComponentStateCountMap.put("totalCount", hostComponents.size());
+    synchronized (hostComponentStateCounts) {
+      serviceComponentStateCountMap.put("startedCount", getHostComponentCount(State.STARTED));
+      serviceComponentStateCountMap.put("installedCount", getHostComponentCount(State.INSTALLED));
+      serviceComponentStateCountMap.put("installFailedCount", getHostComponentCount(State.INSTALL_FAILED));
+      serviceComponentStateCountMap.put("initCount", getHostComponentCount(State.INIT));
+      serviceComponentStateCountMap.put("unknownCount", getHostComponentCount(State.UNKNOWN));
+      serviceComponentStateCountMap.put("totalCount", countedHostComponentStates.size());
+    }
     return serviceComponentStateCountMap;
   }
 }
@@ -123,6 +123,23 @@ public class AlertDefinitionHash {
   private ConcurrentMap<String, ConcurrentMap<String, String>> m_hashes =
       new ConcurrentHashMap<String, ConcurrentMap<String, String>>();
 
+  /**
+   * The hashes of the last {@link AlertDefinitionCommand} given to each host
+   * for any cluster. The key is the hostname and the value is a map between
+   * cluster name and hash. Used to skip sending a command to a host whose
+   * definitions have not changed since.
+   */
+  private ConcurrentMap<String, ConcurrentMap<String, String>> m_sentHashes =
+      new ConcurrentHashMap<String, ConcurrentMap<String, String>>();
+
+  /**
+   * The alert definitions of each cluster indexed by what they are scheduled
+   * on, by cluster ID. An index is built from the database on first use and
+   * dropped whenever the definitions of its cluster change.
+   */
+  private final ConcurrentMap<Long, DefinitionIndex> m_definitionIndexes =
+      new ConcurrentHashMap<Long, DefinitionIndex>();
+
   /**
    * Gets a unique hash value reprssenting all of the alert definitions that
    * should be scheduled to run on a given host.
@@ -140,16 +157,10 @@ public class AlertDefinitionHash {
    * @return the unique hash or {@value #NULL_MD5_HASH} if none.
    */
   public String getHash(String clusterName, String hostName) {
-    ConcurrentMap<String, String> clusterMapping = m_hashes.get(hostName);
-    if (null == clusterMapping) {
-      clusterMapping = new ConcurrentHashMap<String, String>();
-      ConcurrentMap<String, String> temp = m_hashes.putIfAbsent(hostName, clusterMapping);
-      if (temp != null) {
-        clusterMapping = temp;
-      }
-    }
+    ConcurrentMap<String, String> clusterMapping = getClusterMapping(m_hashes,
+        hostName);
 
-    String hash = clusterMapping.get(hostName);
+    String hash = clusterMapping.get(clusterName);
     if (null != hash) {
       return hash;
     }
@@ -165,6 +176,32 @@ public class AlertDefinitionHash {
    */
   public void invalidateAll() {
     m_hashes.clear();
+    m_sentHashes.clear();
+    invalidateDefinitions();
+  }
+
+  /**
+   * Drops the indexed alert definitions of every cluster so that they are
+   * read again from the database.
+   */
+  public void invalidateDefinitions() {
+    synchronized (m_definitionIndexes) {
+      m_definitionIndexes.clear();
+    }
+  }
+
+  /**
+   * Drops the indexed alert definitions of the specified cluster so that they
+   * are read again from the database. This must be called whenever a
+   * definition of the cluster is created, updated or removed.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   */
+  public void invalidateDefinitions(long clusterId) {
+    synchronized (m_definitionIndexes) {
+      m_definitionIndexes.remove(clusterId);
+    }
   }
 
   /**
@@ -215,6 +252,22 @@ public class AlertDefinitionHash {
     return clusterMapping.containsKey(clusterName);
   }
 
+  /**
+   * Records the hash of the alert definitions that were given to the host
+   * outside of {@link #enqueueAgentCommands(long, Collection)}, such as during
+   * registration, so that the host is not sent the same definitions again.
+   *
+   * @param clusterName
+   *          the cluster name (not {@code null}).
+   * @param hostName
+   *          the host name (not {@code null}).
+   * @param hash
+   *          the hash of the definitions the host was given.
+   */
+  public void setSentHash(String clusterName, String hostName, String hash) {
+    getClusterMapping(m_sentHashes, hostName).put(clusterName, hash);
+  }
+
   /**
    * Gets the alert definitions for the specified host. This will include the
    * following types of alert definitions:
@@ -321,6 +374,9 @@ public class AlertDefinitionHash {
       LOG.error("Unable to lookup cluster with ID {}", clusterId, exception);
     }
 
+    // the definition changed, so the cluster's index is out of date
+    invalidateDefinitions(clusterId);
+
     if (null == cluster) {
       return Collections.emptySet();
     }
@@ -391,24 +447,6 @@ public class AlertDefinitionHash {
       return Collections.emptySet();
     }
 
-    // find all hosts that have the matching service and component
-    for (String hostName : hosts.keySet()) {
-      List<ServiceComponentHost> hostComponents = cluster.getServiceComponentHosts(hostName);
-      if (null == hostComponents || hostComponents.size() == 0) {
-        continue;
-      }
-
-      // if a host has a matching service/component, invalidate it
-      for (ServiceComponentHost component : hostComponents) {
-        String serviceName = component.getServiceName();
-        String componentName = component.getServiceComponentName();
-        if (serviceName.equals(definitionServiceName)
-            && componentName.equals(definitionComponentName)) {
-          affectedHosts.add(hostName);
-        }
-      }
-    }
-
     // get the service that this alert definition is associated with
     Map<String, Service> services = cluster.getServices();
     Service service = services.get(definitionServiceName);
@@ -419,16 +457,19 @@ public class AlertDefinitionHash {
       return affectedHosts;
     }
 
-    // get all master components of the definition's service; any hosts that
-    // run the master should be invalidated as well
+    // any hosts that run the definition's component and any hosts that run a
+    // master of the definition's service should be invalidated
     Map<String, ServiceComponent> components = service.getServiceComponents();
     if (null != components) {
       for (Entry<String, ServiceComponent> component : components.entrySet()) {
-        if (component.getValue().isMasterComponent()) {
+        if (component.getKey().equals(definitionComponentName)
+            || component.getValue().isMasterComponent()) {
           Map<String, ServiceComponentHost> componentHosts = component.getValue().getServiceComponentHosts();
           if (null != componentHosts) {
             for (String componentHost : componentHosts.keySet()) {
-              affectedHosts.add(componentHost);
+              if (hosts.containsKey(componentHost)) {
+                affectedHosts.add(componentHost);
+              }
             }
           }
         }
@@ -505,7 +546,9 @@ public class AlertDefinitionHash {
    * <p/>
    * This method is typically called after
    * {@link #invalidateHosts(AlertDefinitionEntity)} has caused a cache
-   * invalidation of the alert definition hash.
+   * invalidation of the alert definition hash. Hosts which were already given
+   * definitions with the same hash are skipped since there is nothing for
+   * them to reschedule.
    *
    * @param clusterName
    *          the name of the cluster (not {@code null}).
@@ -530,6 +573,16 @@ public class AlertDefinitionHash {
 
         String hash = getHash(clusterName, hostName);
 
+        ConcurrentMap<String, String> sentHashes = getClusterMapping(
+            m_sentHashes, hostName);
+
+        if (hash.equals(sentHashes.get(clusterName))) {
+          LOG.debug("Alert definitions for {} on {} are unchanged", hostName,
+              clusterName);
+
+          continue;
+        }
+
         AlertDefinitionCommand command = new AlertDefinitionCommand(
             clusterName, hostName, hash, definitions);
 
@@ -552,6 +605,7 @@ public class AlertDefinitionHash {
             AgentCommandType.ALERT_EXECUTION_COMMAND);
 
         m_actionQueue.enqueue(hostName, command);
+        sentHashes.put(clusterName, hash);
       }
     } finally {
       m_actionQueueLock.unlock();
@@ -640,46 +694,46 @@ public class AlertDefinitionHash {
         return Collections.emptySet();
       }
 
-      long clusterId = cluster.getClusterId();
+      DefinitionIndex index = getDefinitionIndex(cluster.getClusterId());
 
       // services and components
       List<ServiceComponentHost> serviceComponents = cluster.getServiceComponentHosts(hostName);
-      if (null == serviceComponents || !serviceComponents.isEmpty()) {
+      if (null != serviceComponents && !serviceComponents.isEmpty()) {
         for (ServiceComponentHost serviceComponent : serviceComponents) {
           String serviceName = serviceComponent.getServiceName();
           String componentName = serviceComponent.getServiceComponentName();
 
           // add all alerts for this service/component pair
-          definitions.addAll(m_definitionDao.findByServiceComponent(clusterId,
-              serviceName, componentName));
+          List<AlertDefinitionEntity> componentDefinitions = index.m_componentDefinitions.get(
+              serviceName + "/" + componentName);
+
+          if (null != componentDefinitions) {
+            definitions.addAll(componentDefinitions);
+          }
         }
 
-        // for every service, get the master components and see if the host
-        // is a master
-        Set<String> services = new HashSet<String>();
-        for (Entry<String, Service> entry : cluster.getServices().entrySet()) {
-          Service service = entry.getValue();
-          Map<String, ServiceComponent> components = service.getServiceComponents();
-          for (Entry<String, ServiceComponent> component : components.entrySet()) {
-            if (component.getValue().isMasterComponent()) {
-              Map<String, ServiceComponentHost> hosts = component.getValue().getServiceComponentHosts();
+        // for every service with service scoped alerts, see if the host is a
+        // master of that service
+        Map<String, Service> services = cluster.getServices();
+        for (Entry<String, List<AlertDefinitionEntity>> entry : index.m_masterDefinitions.entrySet()) {
+          Service service = services.get(entry.getKey());
+          if (null == service) {
+            continue;
+          }
 
-              if (hosts.containsKey(hostName)) {
-                services.add(service.getName());
-              }
+          Map<String, ServiceComponent> components = service.getServiceComponents();
+          for (ServiceComponent component : components.values()) {
+            if (component.isMasterComponent()
+                && component.getServiceComponentHosts().containsKey(hostName)) {
+              definitions.addAll(entry.getValue());
+              break;
             }
           }
         }
-
-        // add all service scoped alerts
-        if (services.size() > 0) {
-          definitions.addAll(m_definitionDao.findByServiceMaster(clusterId,
-              services));
-        }
       }
 
       // add any alerts not bound to a service (host level alerts)
-      definitions.addAll(m_definitionDao.findAgentScoped(clusterId));
+      definitions.addAll(index.m_agentDefinitions);
     }
     catch (ClusterNotFoundException clusterNotFound) {
       LOG.warn("Unable to get alert definitions for the missing cluster {}",
@@ -693,4 +747,116 @@ public class AlertDefinitionHash {
 
     return definitions;
   }
+
+  /**
+   * Gets the indexed alert definitions of the specified cluster, reading them
+   * from the database if they are not indexed yet.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   * @return the index of the cluster's definitions (never {@code null}).
+   */
+  private DefinitionIndex getDefinitionIndex(long clusterId) {
+    DefinitionIndex index = m_definitionIndexes.get(clusterId);
+    if (null != index) {
+      return index;
+    }
+
+    // built while holding the lock so that an invalidation can't be lost to
+    // an index built from definitions read before it
+    synchronized (m_definitionIndexes) {
+      index = m_definitionIndexes.get(clusterId);
+      if (null == index) {
+        index = new DefinitionIndex(m_definitionDao.findAll(clusterId));
+        m_definitionIndexes.put(clusterId, index);
+      }
+
+      return index;
+    }
+  }
+
+  /**
+   * Gets the mapping between cluster name and hash for the specified host,
+   * creating it if needed.
+   *
+   * @param hashes
+   *          the hashes of all hosts.
+   * @param hostName
+   *          the host name (not {@code null}).
+   * @return the hashes of the host by cluster name (never {@code null}).
+   */
+  private static ConcurrentMap<String, String> getClusterMapping(
+      ConcurrentMap<String, ConcurrentMap<String, String>> hashes, String hostName) {
+    ConcurrentMap<String, String> clusterMapping = hashes.get(hostName);
+    if (null == clusterMapping) {
+      clusterMapping = new ConcurrentHashMap<String, String>();
+      ConcurrentMap<String, String> temp = hashes.putIfAbsent(hostName, clusterMapping);
+      if (temp != null) {
+        clusterMapping = temp;
+      }
+    }
+
+    return clusterMapping;
+  }
+
+  /**
+   * The alert definitions of a cluster indexed the same way that
+   * {@link AlertDefinitionDAO#findByServiceComponent(long, String, String)},
+   * {@link AlertDefinitionDAO#findByServiceMaster(long, Set)} and
+   * {@link AlertDefinitionDAO#findAgentScoped(long)} look them up.
+   */
+  private static final class DefinitionIndex {
+    /**
+     * Definitions bound to a component, keyed by service and component name.
+     */
+    private final Map<String, List<AlertDefinitionEntity>> m_componentDefinitions =
+        new HashMap<String, List<AlertDefinitionEntity>>();
+
+    /**
+     * Service scoped definitions without a component, by service name. These
+     * are run on the hosts that are a master of the service.
+     */
+    private final Map<String, List<AlertDefinitionEntity>> m_masterDefinitions =
+        new HashMap<String, List<AlertDefinitionEntity>>();
+
+    /**
+     * Definitions run by every agent.
+     */
+    private final List<AlertDefinitionEntity> m_agentDefinitions =
+        new ArrayList<AlertDefinitionEntity>();
+
+    private DefinitionIndex(List<AlertDefinitionEntity> definitions) {
+      String ambariServiceName = Services.AMBARI.name();
+      String agentComponentName = Components.AMBARI_AGENT.name();
+
+      for (AlertDefinitionEntity definition : definitions) {
+        String serviceName = definition.getServiceName();
+        String componentName = definition.getComponentName();
+
+        if (null != serviceName && null != componentName) {
+          add(m_componentDefinitions, serviceName + "/" + componentName,
+              definition);
+
+          if (ambariServiceName.equals(serviceName)
+              && agentComponentName.equals(componentName)) {
+            m_agentDefinitions.add(definition);
+          }
+        } else if (null != serviceName && null == componentName
+            && definition.getScope() == Scope.SERVICE) {
+          add(m_masterDefinitions, serviceName, definition);
+        }
+      }
+    }
+
+    private static void add(Map<String, List<AlertDefinitionEntity>> index,
+        String key, AlertDefinitionEntity definition) {
+      List<AlertDefinitionEntity> definitions = index.get(key);
+      if (null == definitions) {
+        definitions = new ArrayList<AlertDefinitionEntity>();
+        index.put(key, definitions);
+      }
+
+      definitions.add(definition);
+    }
+  }
 }
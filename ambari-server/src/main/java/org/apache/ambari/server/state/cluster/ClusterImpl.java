@@ -182,6 +182,15 @@ public class ClusterImpl implements Cluster {
    */
   private final ConcurrentMap<String, ConcurrentMap<String, Config>> allConfigs = new ConcurrentHashMap<>();
 
+  /**
+   * Cluster level desired configurations, built from the config mappings on
+   * first read and discarded by every writer of the mappings while it holds
+   * the write lock of {@link #clusterGlobalLock}. Readers use the snapshot
+   * without locking, so they do not wait for long running config writes and
+   * never see a half applied change.
+   */
+  private volatile List<DesiredConfigMapping> desiredConfigsSnapshot;
+
   /**
    * [ ServiceName -> [ ServiceComponentName -> [ HostName -> [ ... ] ] ] ]
    */
@@ -1843,50 +1852,39 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Map<String, Config> getConfigsByType(String configType) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)) {
-        return null;
-      }
-
-      return Collections.unmodifiableMap(allConfigs.get(configType));
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    // allConfigs is concurrent, there is no need to wait for config writers
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (configs == null) {
+      return null;
     }
+
+    return Collections.unmodifiableMap(configs);
   }
 
   @Override
   public Config getConfig(String configType, String versionTag) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)
-          || !allConfigs.get(configType).containsKey(versionTag)) {
-        return null;
-      }
-      return allConfigs.get(configType).get(versionTag);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (configs == null) {
+      return null;
     }
+
+    return configs.get(versionTag);
   }
 
   @Override
   public Config getConfigByVersion(String configType, Long configVersion) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)) {
-        return null;
-      }
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (configs == null) {
+      return null;
+    }
 
-      for (Map.Entry<String, Config> entry : allConfigs.get(configType).entrySet()) {
-        if (entry.getValue().getVersion().equals(configVersion)) {
-          return entry.getValue();
-        }
+    for (Config config : configs.values()) {
+      if (config.getVersion().equals(configVersion)) {
+        return config;
       }
-
-      return null;
-    } finally {
-      clusterGlobalLock.readLock().unlock();
     }
+
+    return null;
   }
 
   @Override
@@ -1895,6 +1893,8 @@ public class ClusterImpl implements Cluster {
       throw new IllegalArgumentException("Config type cannot be empty");
     }
 
+    // readers do not lock, but the write lock keeps a concurrent
+    // cacheConfigurations() from swapping out the map this config goes to
     clusterGlobalLock.writeLock().lock();
     try {
       if (!allConfigs.containsKey(config.getType())) {
@@ -1909,18 +1909,11 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Collection<Config> getAllConfigs() {
-    clusterGlobalLock.readLock().lock();
-    try {
-      List<Config> list = new ArrayList<Config>();
-      for (Entry<String, ConcurrentMap<String, Config>> entry : allConfigs.entrySet()) {
-        for (Config config : entry.getValue().values()) {
-          list.add(config);
-        }
-      }
-      return Collections.unmodifiableList(list);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    List<Config> list = new ArrayList<Config>();
+    for (ConcurrentMap<String, Config> configs : allConfigs.values()) {
+      list.addAll(configs.values());
     }
+    return Collections.unmodifiableList(list);
   }
 
   @Override
@@ -1961,6 +1954,7 @@ public class ClusterImpl implements Cluster {
     try {
       ClusterEntity clusterEntity = getClusterEntity();
       clusterDAO.refresh(clusterEntity);
+      desiredConfigsSnapshot = null;
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -2028,6 +2022,9 @@ public class ClusterImpl implements Cluster {
 
     service.delete();
 
+    // deleting a service deselects its config mappings
+    desiredConfigsSnapshot = null;
+
     serviceComponentHosts.remove(serviceName);
 
     for (List<ServiceComponentHost> serviceComponents: serviceComponentHostsByHost.values()){
@@ -2067,6 +2064,7 @@ public class ClusterImpl implements Cluster {
       deleteAllServices();
       removeEntities();
       allConfigs.clear();
+      desiredConfigsSnapshot = null;
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -2121,6 +2119,7 @@ public class ClusterImpl implements Cluster {
 
       return serviceConfigVersionResponse;
     } finally {
+      desiredConfigsSnapshot = null;
       clusterGlobalLock.writeLock().unlock();
     }
   }
@@ -2156,80 +2155,124 @@ public class ClusterImpl implements Cluster {
    * @return a map of type-to-configuration information.
    */
   private Map<String, Set<DesiredConfig>> getDesiredConfigs(boolean allVersions) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      Map<String, Set<DesiredConfig>> map = new HashMap<>();
-      Collection<String> types = new HashSet<>();
-      Collection<ClusterConfigMappingEntity> entities = getClusterEntity().getConfigMappingEntities();
-
-      for (ClusterConfigMappingEntity e : entities) {
-        if (allVersions || e.isSelected() > 0) {
-          DesiredConfig c = new DesiredConfig();
-          c.setServiceName(null);
-          c.setTag(e.getTag());
-          c.setUser(e.getUser());
-          if(!allConfigs.containsKey(e.getType())) {
-            LOG.error("Config inconsistency exists:" +
-                " unknown configType=" + e.getType());
-            continue;
-          }
-
-          Map<String, Config> configMap = allConfigs.get(e.getType());
-          if(!configMap.containsKey(e.getTag())) {
-            LOG.debug("Config inconsistency exists for typeName=" +
-                    e.getType() +
-                    ", unknown versionTag=" + e.getTag());
-            continue;
-          }
-
-          Config config = configMap.get(e.getTag());
-          c.setVersion(config.getVersion());
+    Map<String, Set<DesiredConfig>> map = new HashMap<>();
+    Collection<String> types = new HashSet<>();
+
+    for (DesiredConfigMapping mapping : getDesiredConfigMappings()) {
+      if (allVersions || mapping.selected) {
+        Map<String, Config> configMap = allConfigs.get(mapping.type);
+        if (configMap == null) {
+          LOG.error("Config inconsistency exists:" +
+              " unknown configType=" + mapping.type);
+          continue;
+        }
 
-          Set<DesiredConfig> configs = map.get(e.getType());
-          if (configs == null) {
-            configs = new HashSet<>();
-          }
+        Config config = configMap.get(mapping.tag);
+        if (config == null) {
+          LOG.debug("Config inconsistency exists for typeName=" +
+                  mapping.type +
+                  ", unknown versionTag=" + mapping.tag);
+          continue;
+        }
 
-          configs.add(c);
+        DesiredConfig c = new DesiredConfig();
+        c.setServiceName(null);
+        c.setTag(mapping.tag);
+        c.setUser(mapping.user);
+        c.setVersion(config.getVersion());
 
-          map.put(e.getType(), configs);
-          types.add(e.getType());
+        Set<DesiredConfig> configs = map.get(mapping.type);
+        if (configs == null) {
+          configs = new HashSet<>();
+          map.put(mapping.type, configs);
         }
-      }
 
-      // TODO AMBARI-10679, need efficient caching from hostId to hostName...
-      Map<Long, String> hostIdToName = new HashMap<Long, String>();
+        configs.add(c);
+        types.add(mapping.type);
+      }
+    }
 
-      if (!map.isEmpty()) {
-        Map<String, List<HostConfigMapping>> hostMappingsByType =
-          hostConfigMappingDAO.findSelectedHostsByTypes(clusterId, types);
+    // TODO AMBARI-10679, need efficient caching from hostId to hostName...
+    Map<Long, String> hostIdToName = new HashMap<Long, String>();
 
-        for (Entry<String, Set<DesiredConfig>> entry : map.entrySet()) {
-          List<DesiredConfig.HostOverride> hostOverrides = new ArrayList<DesiredConfig.HostOverride>();
-          for (HostConfigMapping mappingEntity : hostMappingsByType.get(entry.getKey())) {
+    // host overrides are written by the hosts, they are always read through
+    if (!map.isEmpty()) {
+      Map<String, List<HostConfigMapping>> hostMappingsByType =
+        hostConfigMappingDAO.findSelectedHostsByTypes(clusterId, types);
 
-            if (!hostIdToName.containsKey(mappingEntity.getHostId())) {
-              HostEntity hostEntity = hostDAO.findById(mappingEntity.getHostId());
-              hostIdToName.put(mappingEntity.getHostId(), hostEntity.getHostName());
-            }
+      for (Entry<String, Set<DesiredConfig>> entry : map.entrySet()) {
+        List<DesiredConfig.HostOverride> hostOverrides = new ArrayList<DesiredConfig.HostOverride>();
+        for (HostConfigMapping mappingEntity : hostMappingsByType.get(entry.getKey())) {
 
-            hostOverrides.add(new DesiredConfig.HostOverride(
-                hostIdToName.get(mappingEntity.getHostId()), mappingEntity.getVersion()));
+          if (!hostIdToName.containsKey(mappingEntity.getHostId())) {
+            HostEntity hostEntity = hostDAO.findById(mappingEntity.getHostId());
+            hostIdToName.put(mappingEntity.getHostId(), hostEntity.getHostName());
           }
 
-          for (DesiredConfig c: entry.getValue()) {
-            c.setHostOverrides(hostOverrides);
-          }
+          hostOverrides.add(new DesiredConfig.HostOverride(
+              hostIdToName.get(mappingEntity.getHostId()), mappingEntity.getVersion()));
+        }
+
+        for (DesiredConfig c: entry.getValue()) {
+          c.setHostOverrides(hostOverrides);
         }
       }
+    }
 
-      return map;
+    return map;
+  }
+
+  /**
+   * Gets the cluster config mappings from {@link #desiredConfigsSnapshot},
+   * loading them under the read lock if a writer has discarded it. The read
+   * lock keeps a load from running alongside a writer, so a snapshot never
+   * outlives the change that discarded it.
+   *
+   * @return the config mappings of the cluster, never {@code null}.
+   */
+  private List<DesiredConfigMapping> getDesiredConfigMappings() {
+    List<DesiredConfigMapping> snapshot = desiredConfigsSnapshot;
+    if (snapshot != null) {
+      return snapshot;
+    }
+
+    clusterGlobalLock.readLock().lock();
+    try {
+      snapshot = desiredConfigsSnapshot;
+      if (snapshot == null) {
+        Collection<ClusterConfigMappingEntity> entities = getClusterEntity().getConfigMappingEntities();
+        List<DesiredConfigMapping> mappings = new ArrayList<>(entities.size());
+        for (ClusterConfigMappingEntity e : entities) {
+          mappings.add(new DesiredConfigMapping(e));
+        }
+
+        snapshot = Collections.unmodifiableList(mappings);
+        desiredConfigsSnapshot = snapshot;
+      }
+
+      return snapshot;
     } finally {
       clusterGlobalLock.readLock().unlock();
     }
   }
 
+  /**
+   * Immutable copy of a {@link ClusterConfigMappingEntity}, the entities
+   * themselves are changed in place by the config writers.
+   */
+  private static final class DesiredConfigMapping {
+    private final String type;
+    private final String tag;
+    private final String user;
+    private final boolean selected;
 
+    private DesiredConfigMapping(ClusterConfigMappingEntity entity) {
+      type = entity.getType();
+      tag = entity.getTag();
+      user = entity.getUser();
+      selected = entity.isSelected() > 0;
+    }
+  }
 
   @Override
   public ServiceConfigVersionResponse createServiceConfigVersion(
@@ -2339,6 +2382,7 @@ public class ClusterImpl implements Cluster {
           serviceName, version, user, note);
       return serviceConfigVersionResponse;
     } finally {
+      desiredConfigsSnapshot = null;
       clusterGlobalLock.writeLock().unlock();
     }
   }
@@ -3134,6 +3178,7 @@ public class ClusterImpl implements Cluster {
 
       cacheConfigurations();
     } finally {
+      desiredConfigsSnapshot = null;
       clusterGlobalLock.writeLock().unlock();
     }
 
@@ -3273,31 +3318,36 @@ public class ClusterImpl implements Cluster {
       removeAllConfigsForStack(stackId);
       cacheConfigurations();
     } finally {
+      desiredConfigsSnapshot = null;
       clusterGlobalLock.writeLock().unlock();
     }
   }
 
   /**
    * Caches all of the {@link ClusterConfigEntity}s in {@link #allConfigs}.
+   * Config readers do not lock, so the new configs are loaded aside and
+   * swapped in per type instead of clearing the map first.
    */
   private void cacheConfigurations() {
     clusterGlobalLock.writeLock().lock();
     try {
       ClusterEntity clusterEntity = getClusterEntity();
-      allConfigs.clear();
+      Map<String, ConcurrentMap<String, Config>> loadedConfigs = new HashMap<>();
 
-      if (!clusterEntity.getClusterConfigEntities().isEmpty()) {
-        for (ClusterConfigEntity entity : clusterEntity.getClusterConfigEntities()) {
-
-          if (!allConfigs.containsKey(entity.getType())) {
-            allConfigs.put(entity.getType(), new ConcurrentHashMap<String, Config>());
-          }
+      for (ClusterConfigEntity entity : clusterEntity.getClusterConfigEntities()) {
+        ConcurrentMap<String, Config> configs = loadedConfigs.get(entity.getType());
+        if (configs == null) {
+          configs = new ConcurrentHashMap<String, Config>();
+          loadedConfigs.put(entity.getType(), configs);
+        }
 
-          Config config = configFactory.createExisting(this, entity);
+        Config config = configFactory.createExisting(this, entity);
 
-          allConfigs.get(entity.getType()).put(entity.getTag(), config);
-        }
+        configs.put(entity.getTag(), config);
       }
+
+      allConfigs.putAll(loadedConfigs);
+      allConfigs.keySet().retainAll(loadedConfigs.keySet());
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -64,6 +64,7 @@ import org.apache.ambari.server.state.HostHealthStatus;
 import org.apache.ambari.server.state.HostHealthStatus.HealthStatus;
 import org.apache.ambari.server.state.HostState;
 import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.ServiceComponentHost;
 import org.apache.ambari.server.state.StackId;
 import org.apache.ambari.server.state.configgroup.ConfigGroup;
 import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
@@ -1123,6 +1124,18 @@ public class HostImpl implements Host {
       MaintenanceModeEvent event = new MaintenanceModeEvent(state, this);
       eventPublisher.publish(event);
     }
+
+    // components count their host components in maintenance
+    try {
+      Cluster cluster = clusters.getClusterById(clusterId);
+      for (ServiceComponentHost hostComponent : cluster.getServiceComponentHosts(getHostName())) {
+        cluster.getService(hostComponent.getServiceName()).getServiceComponent(
+            hostComponent.getServiceComponentName()).updateHostMaintenanceState(hostComponent, state);
+      }
+    } catch (AmbariException e) {
+      LOG.warn("Unable to update the maintenance state of the host components, hostName="
+          + getHostName() + ", clusterId=" + clusterId, e);
+    }
   }
 
   @Override
@@ -19,8 +19,6 @@ package org.apache.ambari.server.state.services;
 
 import java.util.concurrent.TimeUnit;
 
-import org.apache.ambari.annotations.Experimental;
-import org.apache.ambari.annotations.ExperimentalFeature;
 import org.apache.ambari.server.AmbariService;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.orm.dao.AlertsDAO;
@@ -37,7 +35,6 @@ import com.google.inject.Inject;
  * {@link Configuration#getAlertCacheFlushInterval()}.
  */
 @AmbariService
-@Experimental(feature = ExperimentalFeature.ALERT_CACHING)
 public class CachedAlertFlushService extends AbstractScheduledService {
 
   /**
@@ -866,6 +866,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   @Override
   public void setState(State state) {
     stateMachine.setCurrentState(state);
+    serviceComponent.updateHostComponentStateCount(this);
     HostComponentStateEntity stateEntity = getStateEntity();
     if (stateEntity != null) {
       stateEntity.setCurrentState(state);
@@ -1011,6 +1012,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
         HostComponentStateEntity stateEntity = getStateEntity();
         stateEntity.setCurrentState(stateMachine.getCurrentState());
         stateEntity = hostComponentStateDAO.merge(stateEntity);
+        serviceComponent.updateHostComponentStateCount(this);
         // TODO Audit logs
       } catch (InvalidStateTransitionException e) {
         LOG.error("Can't handle ServiceComponentHostEvent event at"
@@ -1462,6 +1464,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     if (desiredStateEntity != null) {
       desiredStateEntity.setMaintenanceState(state);
       hostComponentDesiredStateDAO.merge(desiredStateEntity);
+      serviceComponent.updateHostComponentMaintenanceState(this, state);
 
       // broadcast the maintenance mode change
       MaintenanceModeEvent event = new MaintenanceModeEvent(state, this);
@@ -37,9 +37,10 @@ import com.google.inject.Injector;
 
 /**
  * The {@link EventBusSynchronizer} is used to replace the {@link AsyncEventBus}
- * used by Guava with a synchronous, serial {@link EventBus} instance. This
- * enables testing that relies on testing the outcome of asynchronous events by
- * executing the events on the current thread serially.
+ * used by Guava, or the per-listener dispatch of {@link AmbariEventPublisher},
+ * with a synchronous, serial {@link EventBus} instance. This enables testing
+ * that relies on testing the outcome of asynchronous events by executing the
+ * events on the current thread serially.
  */
 public class EventBusSynchronizer {
 
@@ -743,7 +743,10 @@ class HDP206StackAdvisor(DefaultStackAdvisor):
 
     putAmsEnvProperty("metrics_collector_heapsize", collector_heapsize)
 
-    putAmsSiteProperty("timeline.metrics.cache.size", max(100, int(log(total_sinks_count)) * 100))
+    # Ingest cache grows with the number of sinks, up to a quarter of the collector heap
+    collector_heapsize_mb = to_number(configurations["ams-env"]["properties"]["metrics_collector_heapsize"]) or collector_heapsize
+    cache_capacity_bytes = max(1, int(log(total_sinks_count))) * 64 * 1024 * 1024
+    putAmsSiteProperty("timeline.metrics.cache.capacity.bytes", min(cache_capacity_bytes, collector_heapsize_mb * 1024 * 1024 // 4))
     putAmsSiteProperty("timeline.metrics.cache.commit.interval", min(10, max(12 - int(log(total_sinks_count)), 2)))
 
     # blockCache = 0.3, memstore = 0.35, phoenix-server = 0.15, phoenix-client = 0.25
@@ -236,6 +236,14 @@ public class ExecutionCommandWrapperTest {
 
     Assert.assertEquals(serviceSiteKeys.size(), serviceSiteConfig.size());
 
+    // a command with the same configuration tags shares the expanded configurations
+    ExecutionCommandWrapper otherWrapper = new ExecutionCommandWrapper(json);
+    injector.injectMembers(otherWrapper);
+
+    ExecutionCommand otherCommand = otherWrapper.getExecutionCommand();
+    Assert.assertNotNull(processedExecutionCommand.getConfigurationsHash());
+    Assert.assertEquals(processedExecutionCommand.getConfigurationsHash(), otherCommand.getConfigurationsHash());
+    Assert.assertSame(processedExecutionCommand.getConfigurations(), otherCommand.getConfigurations());
   }
 
   @Test
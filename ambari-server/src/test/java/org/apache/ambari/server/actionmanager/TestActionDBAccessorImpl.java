@@ -449,6 +449,51 @@ public class TestActionDBAccessorImpl {
 
   }
 
+  @Test
+  public void testUpdateHostRoleStates() throws Exception {
+    populateActionDB(db, hostName, requestId, stageId);
+
+    long masterTaskId = hostRoleCommandDAO.findByHostRole(hostName, requestId, stageId,
+        Role.HBASE_MASTER.toString()).get(0).getTaskId();
+    long regionServerTaskId = hostRoleCommandDAO.findByHostRole(hostName, requestId, stageId,
+        Role.HBASE_REGIONSERVER.toString()).get(0).getTaskId();
+
+    List<CommandReport> reports = new ArrayList<CommandReport>();
+    reports.add(createCommandReport(masterTaskId, Role.HBASE_MASTER, HostRoleStatus.COMPLETED, 0));
+    reports.add(createCommandReport(regionServerTaskId, Role.HBASE_REGIONSERVER,
+        HostRoleStatus.IN_PROGRESS, 777));
+    db.updateHostRoleStates(reports);
+
+    HostRoleCommand master = db.getTask(masterTaskId);
+    assertEquals(HostRoleStatus.COMPLETED, master.getStatus());
+    assertTrue(master.getEndTime() != -1);
+
+    HostRoleCommand regionServer = db.getTask(regionServerTaskId);
+    assertEquals(HostRoleStatus.IN_PROGRESS, regionServer.getStatus());
+    assertEquals(777, regionServer.getExitCode());
+
+    // completed tasks are cached, a later report must not be hidden by the cache
+    assertEquals(HostRoleStatus.COMPLETED,
+        db.getTasks(Collections.singletonList(masterTaskId)).get(0).getStatus());
+    db.updateHostRoleStates(Collections.singletonList(
+        createCommandReport(masterTaskId, Role.HBASE_MASTER, HostRoleStatus.FAILED, 1)));
+    assertEquals(HostRoleStatus.FAILED,
+        db.getTasks(Collections.singletonList(masterTaskId)).get(0).getStatus());
+  }
+
+  private CommandReport createCommandReport(long taskId, Role role, HostRoleStatus status,
+      int exitCode) {
+    CommandReport report = new CommandReport();
+    report.setTaskId(taskId);
+    report.setActionId(StageUtils.getActionId(requestId, stageId));
+    report.setRole(role.toString());
+    report.setStatus(status.toString());
+    report.setStdErr("");
+    report.setStdOut("");
+    report.setExitCode(exitCode);
+    return report;
+  }
+
   @Test
   public void testGetRequestsByStatus() throws AmbariException {
     List<Long> requestIds = new ArrayList<Long>();
@@ -267,6 +267,83 @@ public class TestActionScheduler {
     return null;
   }
 
+  /**
+   * Verifies that with incremental stage processing enabled the scheduler
+   * only reads the stages in progress again once a command finished.
+   */
+  @Test
+  public void testIncrementalStageProcessing() throws Exception {
+    ActionQueue aq = new ActionQueue();
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.INCREMENTAL_STAGE_PROCESSING.getKey(), "true");
+    Configuration conf = new Configuration(properties);
+    Clusters fsm = mock(Clusters.class);
+    Cluster oneClusterMock = mock(Cluster.class);
+    Service serviceObj = mock(Service.class);
+    ServiceComponent scomp = mock(ServiceComponent.class);
+    ServiceComponentHost sch = mock(ServiceComponentHost.class);
+    UnitOfWork unitOfWork = mock(UnitOfWork.class);
+    when(fsm.getCluster(anyString())).thenReturn(oneClusterMock);
+    when(fsm.getClusterById(anyLong())).thenReturn(oneClusterMock);
+    when(oneClusterMock.getService(anyString())).thenReturn(serviceObj);
+    when(oneClusterMock.getClusterId()).thenReturn(Long.valueOf(1L));
+    when(serviceObj.getServiceComponent(anyString())).thenReturn(scomp);
+    when(scomp.getServiceComponentHost(anyString())).thenReturn(sch);
+    when(serviceObj.getCluster()).thenReturn(oneClusterMock);
+
+    Host host = mock(Host.class);
+    HashMap<String, ServiceComponentHost> hosts =
+            new HashMap<String, ServiceComponentHost>();
+    hosts.put(hostname, sch);
+    when(scomp.getServiceComponentHosts()).thenReturn(hosts);
+
+    when(fsm.getHost(anyString())).thenReturn(host);
+    when(host.getState()).thenReturn(HostState.HEALTHY);
+    when(host.getHostName()).thenReturn(hostname);
+
+    ActionDBAccessor db = mock(ActionDBAccessorImpl.class);
+    List<Stage> stages = new ArrayList<Stage>();
+    Stage s = StageUtils.getATestStage(1, 977, hostname, CLUSTER_HOST_INFO,
+      "{\"host_param\":\"param_value\"}", "{\"stage_param\":\"param_value\"}");
+    stages.add(s);
+
+    when(db.getCommandsInProgressCount()).thenReturn(stages.size());
+    when(db.getStagesInProgress()).thenReturn(stages);
+
+    RequestEntity request = mock(RequestEntity.class);
+    when(request.isExclusive()).thenReturn(false);
+    when(db.getRequestEntity(anyLong())).thenReturn(request);
+
+    // large action timeout, so that the command does not time out
+    ActionScheduler scheduler = new ActionScheduler(100, 100000, db, aq, fsm,
+        10000, new HostsMap((String) null), unitOfWork, null, conf, entityManagerProviderMock, null, null);
+    scheduler.setTaskTimeoutAdjustment(false);
+
+    scheduler.doWork();
+    assertEquals(1, aq.dequeueAll(hostname).size());
+
+    // nothing changed, the stages in progress are not read again
+    scheduler.doWork();
+    scheduler.doWork();
+    verify(db, times(1)).getStagesInProgress();
+    verify(db, times(1)).getRequestEntity(anyLong());
+
+    // a report of a queued command is not a change
+    CommandReport report = new CommandReport();
+    report.setStatus(HostRoleStatus.IN_PROGRESS.toString());
+    scheduler.commandReportsReceived(Collections.singletonList(report));
+    scheduler.doWork();
+    verify(db, times(1)).getStagesInProgress();
+
+    s.setHostRoleStatus(hostname, "NAMENODE", HostRoleStatus.COMPLETED);
+    report.setStatus(HostRoleStatus.COMPLETED.toString());
+    scheduler.commandReportsReceived(Collections.singletonList(report));
+    scheduler.doWork();
+    verify(db, times(2)).getStagesInProgress();
+    verify(db, times(1)).getRequestEntity(anyLong());
+    assertEquals(0, aq.size(hostname));
+  }
+
   /**
    * Test whether scheduler times out an action
    */
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ConfigurationSnapshotCache}.
+ */
+public class ConfigurationSnapshotCacheTest {
+
+  @Test
+  public void testIntern() {
+    ConfigurationSnapshotCache cache = new ConfigurationSnapshotCache();
+
+    Map<String, Map<String, String>> configurations = new HashMap<String, Map<String, String>>();
+    configurations.put("core-site", new HashMap<String, String>());
+    configurations.get("core-site").put("fs.defaultFS", "hdfs://c6401:8020");
+    configurations.get("core-site").put("hadoop.tmp.dir", "/tmp");
+
+    Map<String, Map<String, String>> sameConfigurations = new TreeMap<String, Map<String, String>>();
+    sameConfigurations.put("core-site", new TreeMap<String, String>(configurations.get("core-site")));
+
+    ConfigurationSnapshot snapshot = cache.intern(configurations, null);
+    assertSame(snapshot, cache.intern(sameConfigurations, null));
+    assertSame(snapshot, cache.getSnapshot(snapshot.getHash()));
+    assertEquals(configurations, snapshot.getConfigurations());
+
+    sameConfigurations.get("core-site").put("hadoop.tmp.dir", "/var/tmp");
+    assertNotSame(snapshot, cache.intern(sameConfigurations, null));
+    assertNotSame(snapshot, cache.intern(configurations,
+        new HashMap<String, Map<String, Map<String, String>>>()));
+
+    assertNull(cache.getSnapshot("unknown"));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSnapshotIsUnmodifiable() {
+    ConfigurationSnapshotCache cache = new ConfigurationSnapshotCache();
+
+    Map<String, Map<String, String>> configurations = new HashMap<String, Map<String, String>>();
+    configurations.put("core-site", new HashMap<String, String>());
+
+    cache.intern(configurations, null).getConfigurations().get("core-site").put("a", "b");
+  }
+
+  @Test
+  public void testShare() {
+    ConfigurationSnapshotCache cache = new ConfigurationSnapshotCache();
+
+    Map<String, Map<String, String>> configurations = new HashMap<String, Map<String, String>>();
+    configurations.put("core-site", new HashMap<String, String>());
+    configurations.get("core-site").put("fs.defaultFS", "hdfs://c6401:8020");
+
+    ExecutionCommand command = new ExecutionCommand();
+    command.setRole("DATANODE");
+    command.setConfigurations(configurations);
+
+    ConfigurationSnapshot snapshot = cache.share(command);
+    assertSame(snapshot.getConfigurations(), command.getConfigurations());
+    assertEquals(snapshot.getHash(), command.getConfigurationsHash());
+    assertSame(snapshot, cache.share(command));
+
+    ExecutionCommand reference = command.copyWithConfigurationsReference();
+    assertNull(reference.getConfigurations());
+    assertNull(reference.getConfigurationAttributes());
+    assertEquals(snapshot.getHash(), reference.getConfigurationsHash());
+    assertEquals("DATANODE", reference.getRole());
+    assertSame(snapshot.getConfigurations(), command.getConfigurations());
+
+    ExecutionCommand withoutConfigurations = new ExecutionCommand();
+    assertNull(cache.share(withoutConfigurations));
+    assertNull(withoutConfigurations.getConfigurationsHash());
+  }
+}
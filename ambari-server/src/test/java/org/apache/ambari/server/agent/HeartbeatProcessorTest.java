@@ -59,6 +59,7 @@ import org.apache.ambari.server.actionmanager.StageFactory;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.audit.AuditLogger;
 import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metrics.system.impl.HeartbeatMetricsSource;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
 import org.apache.ambari.server.orm.dao.HostDAO;
@@ -1228,6 +1229,43 @@ public class HeartbeatProcessorTest {
     handler.getHeartbeatProcessor().processHeartbeat(hb);
   }
 
+  /**
+   * Tests that heartbeats are counted in the queue size until processed and
+   * that processing time is recorded per stage.
+   *
+   * @throws Exception
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testHeartbeatProcessingMetrics() throws Exception {
+    ActionManager am = actionManagerTestHelper.getMockActionManager();
+    expect(am.getTasks(anyObject(List.class))).andReturn(
+        new ArrayList<HostRoleCommand>()).anyTimes();
+    replay(am);
+
+    heartbeatTestHelper.getDummyCluster();
+    HeartBeatHandler handler = new HeartBeatHandler(clusters, new ActionQueue(), am, injector);
+    HeartbeatProcessor heartbeatProcessor = handler.getHeartbeatProcessor();
+    HeartbeatMetricsSource metricsSource = new HeartbeatMetricsSource();
+
+    HeartBeat hb = new HeartBeat();
+    hb.setResponseId(0);
+    hb.setNodeStatus(new HostStatus(HostStatus.Status.HEALTHY, DummyHostStatus));
+    hb.setHostname(DummyHostname1);
+
+    long queued = metricsSource.getMetrics().get("heartbeat.queue.size").longValue();
+    heartbeatProcessor.addHeartbeat(hb);
+    assertEquals(queued + 1, metricsSource.getMetrics().get("heartbeat.queue.size").longValue());
+
+    long processed = metricsSource.getMetrics().get("heartbeat.processing.count").longValue();
+    heartbeatProcessor.processHeartbeat(hb);
+
+    Map<String, Number> metrics = metricsSource.getMetrics();
+    assertEquals(processed + 1, metrics.get("heartbeat.processing.count").longValue());
+    assertEquals(processed + 1, metrics.get("heartbeat.processing.command_reports.count").longValue());
+    assertTrue(metrics.containsKey("heartbeat.processing.status_reports.p95_ms"));
+  }
+
 
   @Test
   public void testInstallPackagesWithVersion() throws Exception {
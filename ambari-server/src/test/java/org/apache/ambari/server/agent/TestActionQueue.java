@@ -377,4 +377,43 @@ public class TestActionQueue {
     assertEquals(4, queue.size(c6401));
     assertEquals(3, queue.size(c6402));
   }
+
+  /**
+   * Tests that a listener waiting for commands is notified once, only for
+   * commands which are not status commands.
+   */
+  @Test
+  public void testCommandsListener() {
+    ActionQueue queue = new ActionQueue();
+    String c6401 = "c6401.ambari.apache.org";
+    final List<String> notified = new ArrayList<String>();
+    ActionQueue.CommandsListener listener = new ActionQueue.CommandsListener() {
+      @Override
+      public void onCommandsQueued(String hostname) {
+        notified.add(hostname);
+      }
+    };
+
+    queue.setCommandsListener(c6401, listener);
+    queue.enqueue(c6401, new StatusCommand());
+    assertTrue(notified.isEmpty());
+    assertFalse(queue.hasPendingCommands(c6401));
+
+    queue.enqueue("c6402.ambari.apache.org", new ExecutionCommand());
+    assertTrue(notified.isEmpty());
+
+    queue.enqueue(c6401, new ExecutionCommand());
+    assertEquals(1, notified.size());
+    assertTrue(queue.hasPendingCommands(c6401));
+
+    // listeners are notified once
+    queue.enqueue(c6401, new ExecutionCommand());
+    assertEquals(1, notified.size());
+
+    // removed listeners are not notified
+    queue.setCommandsListener(c6401, listener);
+    queue.removeCommandsListener(c6401, listener);
+    queue.enqueue(c6401, new ExecutionCommand());
+    assertEquals(1, notified.size());
+  }
 }
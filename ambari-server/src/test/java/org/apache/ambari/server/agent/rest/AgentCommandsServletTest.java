@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent.rest;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.ambari.server.agent.ActionQueue;
+import org.apache.ambari.server.agent.ExecutionCommand;
+import org.apache.ambari.server.agent.StatusCommand;
+import org.apache.ambari.server.configuration.Configuration;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.easymock.EasyMockSupport;
+import org.easymock.IAnswer;
+import org.eclipse.jetty.continuation.Continuation;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+
+/**
+ * Tests the {@link AgentCommandsServlet}.
+ */
+public class AgentCommandsServletTest extends EasyMockSupport {
+
+  private static final String HOSTNAME = "c6401.ambari.apache.org";
+  private static final String LISTENER_ATTRIBUTE = AgentCommandsServlet.class.getName() + ".listener";
+
+  private Injector m_injector;
+  private ActionQueue m_actionQueue;
+
+  /**
+   * @throws Exception
+   */
+  @Before
+  public void setup() throws Exception {
+    m_actionQueue = new ActionQueue();
+    m_injector = Guice.createInjector(new MockModule());
+  }
+
+  /**
+   * Tests that a waiting request is resumed when a command is queued for its
+   * host and that the agent is then told that commands are pending.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCommandDelivered() throws Exception {
+    Continuation continuation = createStrictMock(Continuation.class);
+    continuation.setTimeout(30000L);
+    EasyMock.expectLastCall().once();
+    continuation.suspend();
+    EasyMock.expectLastCall().once();
+    continuation.resume();
+    EasyMock.expectLastCall().once();
+
+    StringWriter body = new StringWriter();
+    HttpServletRequest request = createRequest(continuation);
+    HttpServletResponse response = createResponse(body);
+
+    replayAll();
+
+    AgentCommandsServlet servlet = m_injector.getInstance(AgentCommandsServlet.class);
+
+    // suspended while nothing is queued
+    servlet.doGet(request, response);
+    Assert.assertEquals("", body.toString());
+
+    // status commands do not resume the request
+    m_actionQueue.enqueue(HOSTNAME, new StatusCommand());
+    m_actionQueue.enqueue(HOSTNAME, new ExecutionCommand());
+
+    // dispatched again once resumed
+    servlet.doGet(request, response);
+    Assert.assertEquals("{\"hasPendingCommands\":true}", body.toString());
+
+    verifyAll();
+  }
+
+  /**
+   * Tests that a waiting request expires with no commands when nothing is
+   * queued for its host and that its listener is removed.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRequestTimesOut() throws Exception {
+    Continuation continuation = createStrictMock(Continuation.class);
+    continuation.setTimeout(30000L);
+    EasyMock.expectLastCall().once();
+    continuation.suspend();
+    EasyMock.expectLastCall().once();
+
+    StringWriter body = new StringWriter();
+    HttpServletRequest request = createRequest(continuation);
+    HttpServletResponse response = createResponse(body);
+
+    replayAll();
+
+    AgentCommandsServlet servlet = m_injector.getInstance(AgentCommandsServlet.class);
+    servlet.doGet(request, response);
+    Assert.assertEquals("", body.toString());
+
+    // dispatched again once expired
+    servlet.doGet(request, response);
+    Assert.assertEquals("{\"hasPendingCommands\":false}", body.toString());
+
+    // the expired request is not resumed
+    m_actionQueue.enqueue(HOSTNAME, new ExecutionCommand());
+
+    verifyAll();
+  }
+
+  /**
+   * Tests that requests are not suspended when agents may not wait for
+   * commands.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testPushDisabled() throws Exception {
+    Configuration configuration = m_injector.getInstance(Configuration.class);
+    EasyMock.expect(configuration.isAgentCommandPushEnabled()).andReturn(false).anyTimes();
+
+    HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(request.getPathInfo()).andReturn("/" + HOSTNAME).anyTimes();
+
+    HttpServletResponse response = createStrictMock(HttpServletResponse.class);
+    response.sendError(HttpServletResponse.SC_NOT_FOUND);
+    EasyMock.expectLastCall().once();
+
+    replayAll();
+
+    m_injector.getInstance(AgentCommandsServlet.class).doGet(request, response);
+
+    verifyAll();
+  }
+
+  /**
+   * Creates a request for the commands of {@link #HOSTNAME} which is
+   * dispatched twice, the second time with the listener set by the first.
+   */
+  private HttpServletRequest createRequest(Continuation continuation) {
+    Configuration configuration = m_injector.getInstance(Configuration.class);
+    EasyMock.expect(configuration.isAgentCommandPushEnabled()).andReturn(true).anyTimes();
+    EasyMock.expect(configuration.getAgentCommandPushTimeout()).andReturn(30000L).anyTimes();
+
+    final Capture<Object> listener = EasyMock.newCapture();
+    HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(request.getPathInfo()).andReturn("/" + HOSTNAME).anyTimes();
+    EasyMock.expect(request.getAttribute(Continuation.ATTRIBUTE)).andReturn(continuation).anyTimes();
+    request.setAttribute(EasyMock.eq(LISTENER_ATTRIBUTE), EasyMock.capture(listener));
+    EasyMock.expectLastCall().once();
+    EasyMock.expect(request.getAttribute(LISTENER_ATTRIBUTE)).andReturn(null).once().andAnswer(
+        new IAnswer<Object>() {
+          @Override
+          public Object answer() throws Throwable {
+            return listener.getValue();
+          }
+        }).once();
+    return request;
+  }
+
+  /**
+   * Creates a response which is only written to on the second dispatch.
+   */
+  private HttpServletResponse createResponse(StringWriter body) throws Exception {
+    HttpServletResponse response = createStrictMock(HttpServletResponse.class);
+    response.setContentType("application/json");
+    EasyMock.expectLastCall().once();
+    EasyMock.expect(response.getWriter()).andReturn(new PrintWriter(body, true)).once();
+    return response;
+  }
+
+  /**
+   *
+   */
+  private class MockModule implements Module {
+    /**
+    *
+    */
+    @Override
+    public void configure(Binder binder) {
+      binder.bind(ActionQueue.class).toInstance(m_actionQueue);
+      binder.bind(Configuration.class).toInstance(createNiceMock(Configuration.class));
+    }
+  }
+}
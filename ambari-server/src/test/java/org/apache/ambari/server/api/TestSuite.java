@@ -53,6 +53,7 @@ import org.apache.ambari.server.api.services.ServiceServiceTest;
 import org.apache.ambari.server.api.services.parsers.BodyParseExceptionTest;
 import org.apache.ambari.server.api.services.parsers.JsonRequestBodyParserTest;
 import org.apache.ambari.server.api.services.serializers.JsonSerializerTest;
+import org.apache.ambari.server.api.services.serializers.StreamingJsonSerializerTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
@@ -61,7 +62,8 @@ import org.junit.runners.Suite;
     ComponentServiceTest.class, HostComponentServiceTest.class, ReadHandlerTest.class, QueryImplTest.class,
     JsonRequestBodyParserTest.class, CreateHandlerTest.class, UpdateHandlerTest.class, DeleteHandlerTest.class,
     PersistenceManagerImplTest.class, GetRequestTest.class, PutRequestTest.class, PostRequestTest.class,
-    DeleteRequestTest.class, QueryPostRequestTest.class, JsonSerializerTest.class, QueryCreateHandlerTest.class,
+    DeleteRequestTest.class, QueryPostRequestTest.class, JsonSerializerTest.class, StreamingJsonSerializerTest.class,
+    QueryCreateHandlerTest.class,
     InOperatorTest.class,AndOperatorTest.class, OrOperatorTest.class, EqualsOperatorTest.class,
     GreaterEqualsOperatorTest.class, GreaterOperatorTest.class, LessEqualsOperatorTest.class,
     LessEqualsOperatorTest.class, NotEqualsOperatorTest.class, NotOperatorTest.class, RequestBodyTest.class,
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.api.services.serializers;
+
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.ResultImpl;
+import org.apache.ambari.server.api.services.ResultStatus;
+import org.apache.ambari.server.api.util.TreeNode;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.junit.Test;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * StreamingJsonSerializer unit tests
+ */
+public class StreamingJsonSerializerTest {
+
+  @Test
+  public void testSerialize() throws Exception {
+    Resource resource = createMock(Resource.class);
+
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> tree = result.getResultTree();
+    TreeNode<Resource> resourcesNode = tree.addChild(null, "items");
+    resourcesNode.setProperty("count", "2");
+    TreeNode<Resource> child = resourcesNode.addChild(resource, "resource1");
+    child.setProperty("href", "this is an href");
+    resourcesNode.addChild(resource, "resource2");
+
+    // resource properties
+    Map<String, Object> mapRootProps = new LinkedHashMap<String, Object>();
+    mapRootProps.put("prop2", "value2");
+    mapRootProps.put("prop1", "value1");
+
+    Map<String, Object> mapCategoryProps = new LinkedHashMap<String, Object>();
+    mapCategoryProps.put("catProp1", "catValue1");
+    mapCategoryProps.put("catProp2", "catValue2");
+
+    Map<String, Map<String, Object>> propertyMap = new LinkedHashMap<String, Map<String, Object>>();
+
+    propertyMap.put(null, mapRootProps);
+    propertyMap.put("category/subCategory", mapCategoryProps);
+
+    //expectations
+    expect(resource.getPropertiesMap()).andReturn(propertyMap).anyTimes();
+    expect(resource.getType()).andReturn(Resource.Type.Cluster).anyTimes();
+
+    replay(resource);
+
+    //execute test
+    Object o = new StreamingJsonSerializer().serialize(result);
+    assertTrue(o instanceof StreamingOutput);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) o).write(out);
+
+    // the item count is written once, restore it for the buffered serializer
+    resourcesNode.setProperty("count", "2");
+    String expected = new JsonSerializer().serialize(result).toString();
+
+    assertEquals(expected, out.toString("UTF-8"));
+    assertTrue(expected.contains("\"itemTotal\" : \"2\""));
+
+    verify(resource);
+  }
+
+  @Test
+  public void testSerializeError() throws Exception {
+    Result result = new ResultImpl(new ResultStatus(ResultStatus.STATUS.NOT_FOUND, "Not found"));
+
+    Object o = new StreamingJsonSerializer().serialize(result);
+
+    String expected = "{\n" +
+        "  \"status\" : 404,\n" +
+        "  \"message\" : \"Not found\"\n" +
+        "}";
+    assertEquals(expected, o.toString().replace("\r", ""));
+  }
+}
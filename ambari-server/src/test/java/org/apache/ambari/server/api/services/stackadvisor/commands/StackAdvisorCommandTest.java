@@ -39,7 +39,15 @@ import java.util.Map;
 
 import javax.ws.rs.WebApplicationException;
 
+import org.apache.ambari.server.api.query.Query;
+import org.apache.ambari.server.api.query.render.Renderer;
+import org.apache.ambari.server.api.resources.ResourceDefinition;
+import org.apache.ambari.server.api.resources.ResourceInstance;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.api.services.BaseService;
+import org.apache.ambari.server.api.services.Request;
+import org.apache.ambari.server.api.services.ResultImpl;
+import org.apache.ambari.server.api.services.ResultPostProcessor;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorException;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequest;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequest.StackAdvisorRequestBuilder;
@@ -47,9 +55,14 @@ import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRequestExc
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorResponse;
 import org.apache.ambari.server.api.services.stackadvisor.StackAdvisorRunner;
 import org.apache.ambari.server.api.services.stackadvisor.commands.StackAdvisorCommand.StackAdvisorData;
+import org.apache.ambari.server.api.util.TreeNode;
+import org.apache.ambari.server.audit.request.RequestAuditLogger;
+import org.apache.ambari.server.controller.internal.ResourceImpl;
+import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.commons.io.FileUtils;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ArrayNode;
 import org.codehaus.jackson.node.ObjectNode;
 import org.junit.After;
@@ -265,6 +278,84 @@ public class StackAdvisorCommandTest {
     assertEquals(0, stackVersions.size());
   }
 
+  @Test
+  public void testGetHostsInformation() throws Exception {
+    Resource host = new ResourceImpl(Resource.Type.Host);
+    host.setProperty("Hosts/host_name", "host1");
+    StackAdvisorCommand<TestResource> cmd = createCommandReturning(host, "host1");
+
+    StackAdvisorRequest request = StackAdvisorRequestBuilder.forStack("stackName", "stackVersion")
+        .forHosts(Arrays.asList("host1")).build();
+
+    String hostsJSON = cmd.getHostsInformation(request);
+
+    JsonNode root = new ObjectMapper().readTree(hostsJSON);
+    assertEquals("host1", root.get("items").get(0).get("Hosts").get("host_name").getTextValue());
+  }
+
+  @Test(expected = StackAdvisorException.class)
+  public void testGetHostsInformation_unregisteredHost() throws Exception {
+    Resource host = new ResourceImpl(Resource.Type.Host);
+    host.setProperty("Hosts/host_name", "host1");
+    StackAdvisorCommand<TestResource> cmd = createCommandReturning(host, "host1");
+
+    StackAdvisorRequest request = StackAdvisorRequestBuilder.forStack("stackName", "stackVersion")
+        .forHosts(Arrays.asList("host1", "host2")).build();
+
+    cmd.getHostsInformation(request);
+  }
+
+  @Test
+  public void testGetServicesInformation() throws Exception {
+    Resource service = new ResourceImpl(Resource.Type.StackService);
+    service.setProperty("StackServices/service_name", "HDFS");
+    StackAdvisorCommand<TestResource> cmd = createCommandReturning(service, "HDFS");
+
+    StackAdvisorRequest request = StackAdvisorRequestBuilder.forStack("stackName", "stackVersion")
+        .forServices(Arrays.asList("HDFS")).build();
+
+    String servicesJSON = cmd.getServicesInformation(request);
+
+    JsonNode root = new ObjectMapper().readTree(servicesJSON);
+    assertEquals("HDFS", root.get("items").get(0).get("StackServices").get("service_name").getTextValue());
+  }
+
+  /**
+   * Create a command whose internal API requests go through the regular
+   * BaseService request handling and serializers, with only the query
+   * result of the resource mocked.
+   */
+  @SuppressWarnings("unchecked")
+  private StackAdvisorCommand<TestResource> createCommandReturning(Resource resource, String name)
+      throws Exception {
+    BaseService.init(mock(RequestAuditLogger.class));
+
+    ResultImpl result = new ResultImpl(true);
+    TreeNode<Resource> items = result.getResultTree().addChild(null, "items");
+    items.addChild(resource, name);
+
+    Query query = mock(Query.class);
+    when(query.execute()).thenReturn(result);
+
+    Renderer renderer = mock(Renderer.class);
+    when(renderer.getResultPostProcessor(any(Request.class))).thenReturn(mock(ResultPostProcessor.class));
+
+    ResourceDefinition resourceDefinition = mock(ResourceDefinition.class);
+    when(resourceDefinition.getRenderer(anyString())).thenReturn(renderer);
+
+    final ResourceInstance resourceInstance = mock(ResourceInstance.class);
+    when(resourceInstance.getQuery()).thenReturn(query);
+    when(resourceInstance.getResourceDefinition()).thenReturn(resourceDefinition);
+
+    return new TestStackAdvisorCommand(temp.newFolder("recommendationDir"), "1w", "echo", 0,
+        mock(StackAdvisorRunner.class), mock(AmbariMetaInfo.class)) {
+      @Override
+      protected ResourceInstance createResource(Resource.Type type, Map<Resource.Type, String> mapIds) {
+        return resourceInstance;
+      }
+    };
+  }
+
   class TestStackAdvisorCommand extends StackAdvisorCommand<TestResource> {
     public TestStackAdvisorCommand(File recommendationsDir, String recommendationsArtifactsLifetime, String stackAdvisorScript,
         int requestId, StackAdvisorRunner saRunner, AmbariMetaInfo metaInfo) {
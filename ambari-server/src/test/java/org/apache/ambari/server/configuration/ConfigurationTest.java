@@ -593,17 +593,33 @@ public class ConfigurationTest {
     final Properties ambariProperties = new Properties();
     final Configuration configuration = new Configuration(ambariProperties);
 
-    Assert.assertFalse(configuration.isAlertCacheEnabled());
+    Assert.assertTrue(configuration.isAlertCacheEnabled());
 
-    ambariProperties.setProperty(Configuration.ALERTS_CACHE_ENABLED.getKey(), Boolean.TRUE.toString());
+    ambariProperties.setProperty(Configuration.ALERTS_CACHE_ENABLED.getKey(), Boolean.FALSE.toString());
     ambariProperties.setProperty(Configuration.ALERTS_CACHE_FLUSH_INTERVAL.getKey(), "60");
     ambariProperties.setProperty(Configuration.ALERTS_CACHE_SIZE.getKey(), "1000");
 
-    Assert.assertTrue(configuration.isAlertCacheEnabled());
+    Assert.assertFalse(configuration.isAlertCacheEnabled());
     Assert.assertEquals(60, configuration.getAlertCacheFlushInterval());
     Assert.assertEquals(1000, configuration.getAlertCacheSize());
   }
 
+  @Test
+  public void testAgentCommandPush() throws Exception {
+    final Properties ambariProperties = new Properties();
+    final Configuration configuration = new Configuration(ambariProperties);
+
+    Assert.assertFalse(configuration.isAgentCommandPushEnabled());
+    Assert.assertEquals("false",
+        configuration.getAgentConfigsMap().get(Configuration.AGENT_COMMAND_PUSH_ENABLED.getKey()));
+
+    ambariProperties.setProperty(Configuration.AGENT_COMMAND_PUSH_ENABLED.getKey(), Boolean.TRUE.toString());
+    ambariProperties.setProperty(Configuration.AGENT_COMMAND_PUSH_TIMEOUT.getKey(), "45");
+
+    Assert.assertTrue(configuration.isAgentCommandPushEnabled());
+    Assert.assertEquals(45000L, configuration.getAgentCommandPushTimeout());
+  }
+
   @Test
   public void testPropertyProviderThreadPoolSizes() throws Exception {
     final Properties ambariProperties = new Properties();
@@ -23,6 +23,7 @@ import org.apache.ambari.server.controller.utilities.PropertyHelper;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.junit.Test;
 
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -161,6 +162,61 @@ public class ResourceImplTest {
     }
   }
 
+  @Test
+  public void testGetPropertiesMapWriteThrough() {
+    Resource resource = new ResourceImpl(Resource.Type.Cluster);
+
+    String p1 = PropertyHelper.getPropertyId("c1", "p1");
+    String p2 = PropertyHelper.getPropertyId("c1", "p2");
+    String p3 = PropertyHelper.getPropertyId("c2", "p3");
+
+    resource.setProperty(p1, "foo");
+    resource.setProperty(p2, null);
+    resource.setProperty(p3, 1);
+
+    Map<String, Map<String, Object>> map = resource.getPropertiesMap();
+    Assert.assertTrue(map.get("c1").containsKey("p2"));
+    Assert.assertNull(map.get("c1").get("p2"));
+
+    // changes to the map are visible on the resource
+    Iterator<String> iterator = map.get("c1").keySet().iterator();
+    iterator.next();
+    iterator.remove();
+    Assert.assertNull(resource.getPropertyValue(p1));
+    Assert.assertEquals(1, map.get("c1").size());
+
+    map.get("c2").put("p4", "bar");
+    Assert.assertEquals("bar", resource.getPropertyValue(PropertyHelper.getPropertyId("c2", "p4")));
+
+    map.remove("c2");
+    Assert.assertNull(resource.getPropertyValue(p3));
+    Assert.assertEquals(1, map.size());
+
+    // changes to the resource are visible in the map
+    resource.setProperty(p1, "baz");
+    Assert.assertEquals("baz", map.get("c1").get("p1"));
+  }
+
+  @Test
+  public void testAddCategoryWithProperties() {
+    Resource resource1 = new ResourceImpl(Resource.Type.Cluster);
+    Resource resource2 = new ResourceImpl(Resource.Type.Cluster);
+
+    String p1 = PropertyHelper.getPropertyId("c1", "p1");
+
+    resource1.addCategory("c1");
+    Assert.assertTrue(resource1.getPropertiesMap().get("c1").isEmpty());
+
+    resource1.setProperty(p1, "foo");
+    resource1.addCategory("c1");
+    resource2.setProperty(p1, "foo");
+
+    Assert.assertEquals(1, resource1.getPropertiesMap().get("c1").size());
+    Assert.assertEquals(resource2, resource1);
+    Assert.assertEquals(resource2.hashCode(), resource1.hashCode());
+    Assert.assertEquals(resource2.toString(), resource1.toString());
+  }
+
   @Test
   public void testEquals() {
     Resource resource1 = new ResourceImpl(Resource.Type.Cluster);
@@ -24,10 +24,12 @@ import java.util.Map;
 
 import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.HostState;
+import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.ServiceComponent;
 import org.apache.ambari.server.state.ServiceComponentHost;
 import org.apache.ambari.server.state.State;
 import org.junit.Assert;
+import org.junit.Test;
 
 public final class DefaultServiceCalculatedStateTest extends GeneralServiceCalculatedStateTest {
 
@@ -83,4 +85,22 @@ public final class DefaultServiceCalculatedStateTest extends GeneralServiceCalcu
     Assert.assertEquals(State.INSTALLED, state);
   }
 
+  @Test
+  public void testServiceState_HostInMaintenance() throws Exception {
+    updateServiceState(State.STARTED);
+
+    // a stopped server on a host in maintenance does not stop the service
+    clusters.getHost(hosts[0]).setMaintenanceState(cluster.getClusterId(), MaintenanceState.ON);
+    service.getServiceComponent("ZOOKEEPER_SERVER").getServiceComponentHost(hosts[0])
+      .setState(State.INSTALLED);
+
+    State state = serviceCalculatedState.getState(clusterName, getServiceName());
+    Assert.assertEquals(State.STARTED, state);
+
+    clusters.getHost(hosts[0]).setMaintenanceState(cluster.getClusterId(), MaintenanceState.OFF);
+
+    state = serviceCalculatedState.getState(clusterName, getServiceName());
+    Assert.assertEquals(State.INSTALLED, state);
+  }
+
 }
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.events.AmbariEvent.AmbariEventType;
+import org.apache.ambari.server.events.ClusterEvent;
+import org.junit.Test;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Tests {@link AmbariEventPublisher}.
+ */
+public class AmbariEventPublisherTest {
+
+  /**
+   * Tests that events of the same cluster are handled in the order they were
+   * published.
+   */
+  @Test
+  public void testOrderedByCluster() throws Exception {
+    AmbariEventPublisher publisher = new AmbariEventPublisher();
+    ClusterListener listener = new ClusterListener(200);
+    publisher.register(listener);
+
+    for (int i = 0; i < 100; i++) {
+      publisher.publish(new SequencedEvent(1L, i));
+      publisher.publish(new SequencedEvent(2L, i));
+    }
+
+    assertTrue(listener.m_latch.await(10, TimeUnit.SECONDS));
+    assertEquals(100, listener.m_cluster1Events.size());
+    assertEquals(100, listener.m_cluster2Events.size());
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, listener.m_cluster1Events.get(i).intValue());
+      assertEquals(i, listener.m_cluster2Events.get(i).intValue());
+    }
+  }
+
+  /**
+   * Tests that a listener which has not handled its event yet does not delay
+   * the events of other listeners.
+   */
+  @Test
+  public void testBlockedListener() throws Exception {
+    AmbariEventPublisher publisher = new AmbariEventPublisher();
+    BlockedListener blocked = new BlockedListener();
+    ClusterListener listener = new ClusterListener(1);
+    publisher.register(blocked);
+    publisher.register(listener);
+
+    publisher.publish(new SequencedEvent(1L, 0));
+
+    assertTrue(listener.m_latch.await(10, TimeUnit.SECONDS));
+    blocked.m_latch.countDown();
+  }
+
+  /**
+   * Tests that a stripe hands its thread to the other stripes after handling
+   * its maximum number of events in a row.
+   */
+  @Test
+  public void testStripeYieldsThread() throws Exception {
+    AmbariEventPublisher publisher = new AmbariEventPublisher(1, 1);
+    List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+    RecordingListener first = new RecordingListener("first", handled, true);
+    RecordingListener second = new RecordingListener("second", handled, false);
+    publisher.register(first);
+    publisher.register(second);
+
+    // both stripes have events queued while the only thread is busy
+    publisher.publish(new SequencedEvent(1L, 0));
+    assertTrue(first.m_started.await(10, TimeUnit.SECONDS));
+    publisher.publish(new SequencedEvent(1L, 1));
+    publisher.publish(new SequencedEvent(1L, 2));
+    first.m_release.countDown();
+
+    assertTrue(second.m_latch.await(10, TimeUnit.SECONDS));
+    assertTrue(first.m_latch.await(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("first0", "second0", "first1", "second1", "first2", "second2"),
+        handled);
+  }
+
+  /**
+   * Records the order of the events of each cluster.
+   */
+  @OrderedBy(OrderingKey.CLUSTER)
+  private static class ClusterListener {
+    private final List<Integer> m_cluster1Events = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Integer> m_cluster2Events = Collections.synchronizedList(new ArrayList<Integer>());
+    private final CountDownLatch m_latch;
+
+    private ClusterListener(int count) {
+      m_latch = new CountDownLatch(count);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onEvent(SequencedEvent event) {
+      List<Integer> events = event.getClusterId() == 1L ? m_cluster1Events : m_cluster2Events;
+      events.add(event.m_sequence);
+      m_latch.countDown();
+    }
+  }
+
+  /**
+   * An event numbered in the order it was published for its cluster.
+   */
+  private static class SequencedEvent extends ClusterEvent {
+    private final int m_sequence;
+
+    private SequencedEvent(long clusterId, int sequence) {
+      super(AmbariEventType.CLUSTER_RENAME, clusterId);
+      m_sequence = sequence;
+    }
+  }
+
+  /**
+   * Records the events it handles, optionally waiting to be released after
+   * the first one.
+   */
+  private static class RecordingListener {
+    private final String m_name;
+    private final List<String> m_handled;
+    private final boolean m_waitOnFirst;
+    private final CountDownLatch m_started = new CountDownLatch(1);
+    private final CountDownLatch m_release = new CountDownLatch(1);
+    private final CountDownLatch m_latch = new CountDownLatch(3);
+
+    private RecordingListener(String name, List<String> handled, boolean waitOnFirst) {
+      m_name = name;
+      m_handled = handled;
+      m_waitOnFirst = waitOnFirst;
+    }
+
+    @Subscribe
+    public void onEvent(SequencedEvent event) throws InterruptedException {
+      m_handled.add(m_name + event.m_sequence);
+      if (m_waitOnFirst && event.m_sequence == 0) {
+        m_started.countDown();
+        m_release.await(10, TimeUnit.SECONDS);
+      }
+      m_latch.countDown();
+    }
+  }
+
+  /**
+   * Does not return from handling an event until released.
+   */
+  private static class BlockedListener {
+    private final CountDownLatch m_latch = new CountDownLatch(1);
+
+    @Subscribe
+    public void onEvent(ClusterEvent event) throws InterruptedException {
+      m_latch.await(10, TimeUnit.SECONDS);
+    }
+  }
+}
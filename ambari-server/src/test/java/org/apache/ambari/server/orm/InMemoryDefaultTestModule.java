@@ -116,6 +116,16 @@ public class InMemoryDefaultTestModule extends AbstractModule {
       properties.setProperty(Configuration.SHARED_RESOURCES_DIR.getKey(), sharedResourcesDir);
     }
 
+    // tests expect received alerts to be applied right away
+    if (!properties.containsKey(Configuration.ALERTS_RECEIVED_COALESCING_WINDOW.getKey())) {
+      properties.setProperty(Configuration.ALERTS_RECEIVED_COALESCING_WINDOW.getKey(), "0");
+    }
+
+    // tests expect aggregate alerts to be evaluated right away
+    if (!properties.containsKey(Configuration.ALERTS_AGGREGATE_EVALUATION_INTERVAL.getKey())) {
+      properties.setProperty(Configuration.ALERTS_AGGREGATE_EVALUATION_INTERVAL.getKey(), "0");
+    }
+
     try {
       install(Modules.override(new BeanDefinitionsCachingTestControllerModule(properties)).with(new AbstractModule() {
         @Override
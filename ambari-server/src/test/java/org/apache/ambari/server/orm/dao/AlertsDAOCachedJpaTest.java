@@ -0,0 +1,231 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.orm.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.orm.OrmTestHelper;
+import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
+import org.apache.ambari.server.orm.entities.AlertDefinitionEntity;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.apache.ambari.server.state.AlertState;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.alert.Scope;
+import org.apache.ambari.server.state.alert.SourceType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+import com.google.inject.persist.UnitOfWork;
+
+/**
+ * Tests {@link AlertsDAO} against the database with the current alert cache
+ * enabled.
+ */
+public class AlertsDAOCachedJpaTest {
+
+  private static final String HOSTNAME = "c6401.ambari.apache.org";
+
+  private Injector m_injector;
+  private Cluster m_cluster;
+  private AlertsDAO m_dao;
+  private AlertDefinitionEntity m_definition;
+
+  /**
+   *
+   */
+  @Before
+  public void setup() throws Exception {
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(Configuration.ALERTS_CACHE_ENABLED.getKey(), "true");
+    m_injector = Guice.createInjector(module);
+    m_injector.getInstance(GuiceJpaInitializer.class);
+    m_injector.getInstance(UnitOfWork.class).begin();
+
+    OrmTestHelper helper = m_injector.getInstance(OrmTestHelper.class);
+    Clusters clusters = m_injector.getInstance(Clusters.class);
+    m_dao = m_injector.getInstance(AlertsDAO.class);
+
+    m_cluster = clusters.getClusterById(helper.createCluster());
+    helper.initializeClusterWithStack(m_cluster);
+    helper.addHost(clusters, m_cluster, HOSTNAME);
+
+    m_definition = new AlertDefinitionEntity();
+    m_definition.setDefinitionName("cached_alert");
+    m_definition.setServiceName("YARN");
+    m_definition.setComponentName("NODEMANAGER");
+    m_definition.setClusterId(m_cluster.getClusterId());
+    m_definition.setHash(UUID.randomUUID().toString());
+    m_definition.setScheduleInterval(Integer.valueOf(60));
+    m_definition.setScope(Scope.HOST);
+    m_definition.setSource("{\"type\" : \"SCRIPT\"}");
+    m_definition.setSourceType(SourceType.SCRIPT);
+    m_injector.getInstance(AlertDefinitionDAO.class).create(m_definition);
+  }
+
+  /**
+   *
+   */
+  @After
+  public void teardown() {
+    m_injector.getInstance(UnitOfWork.class).end();
+    m_injector.getInstance(PersistService.class).stop();
+    m_injector = null;
+  }
+
+  /**
+   * Tests that a created alert is found and counted.
+   */
+  @Test
+  public void testCreate() throws Exception {
+    AlertCurrentEntity current = createCurrent(AlertState.OK);
+
+    assertEquals(1, m_dao.findCurrent().size());
+    assertEquals(current.getAlertId(), m_dao.findCurrentByHostAndName(
+        m_cluster.getClusterId(), HOSTNAME, m_definition.getDefinitionName()).getAlertId());
+
+    AlertSummaryDTO summary = m_dao.findCurrentCounts(m_cluster.getClusterId(), null, null);
+    assertEquals(1, summary.getOkCount());
+    assertEquals(0, summary.getCriticalCount());
+  }
+
+  /**
+   * Tests that an alert merged only into the cache is served from it and is
+   * written to the database by the next flush.
+   */
+  @Test
+  public void testMergeCacheOnlyIsFlushed() throws Exception {
+    AlertCurrentEntity current = createCurrent(AlertState.OK);
+    getEntityManager().clear();
+
+    current.setLatestText("updated");
+    m_dao.merge(current, true);
+
+    AlertCurrentEntity cached = m_dao.findCurrentByHostAndName(m_cluster.getClusterId(),
+        HOSTNAME, m_definition.getDefinitionName());
+    assertEquals("updated", cached.getLatestText());
+    assertEquals("updated", m_dao.findCurrent().get(0).getLatestText());
+
+    // not in the database until flushed
+    assertNull(m_dao.findCurrentById(current.getAlertId()).getLatestText());
+
+    m_dao.flushCachedEntitiesToJPA();
+    getEntityManager().clear();
+
+    assertEquals("updated", m_dao.findCurrentById(current.getAlertId()).getLatestText());
+  }
+
+  /**
+   * Tests that an alert removed while updated only in the cache is not
+   * written back by the next flush.
+   */
+  @Test
+  public void testRemoveCacheOnlyIsNotFlushed() throws Exception {
+    AlertCurrentEntity current = createCurrent(AlertState.OK);
+    Long alertId = current.getAlertId();
+    getEntityManager().clear();
+
+    current.setLatestText("updated");
+    m_dao.merge(current, true);
+    m_dao.remove(current);
+
+    assertNull(m_dao.findCurrentByHostAndName(m_cluster.getClusterId(), HOSTNAME,
+        m_definition.getDefinitionName()));
+    assertEquals(0, m_dao.findCurrentCounts(m_cluster.getClusterId(), null, null).getOkCount());
+
+    m_dao.flushCachedEntitiesToJPA();
+    getEntityManager().clear();
+
+    assertNull(m_dao.findCurrentById(alertId));
+    assertEquals(0, m_dao.findCurrent().size());
+    assertEquals(0, m_dao.findCurrentCounts(m_cluster.getClusterId(), null, null).getOkCount());
+  }
+
+  /**
+   * Tests that merging an alert with a new state updates the counts.
+   */
+  @Test
+  public void testMergeUpdatesCounts() throws Exception {
+    AlertCurrentEntity current = createCurrent(AlertState.OK);
+
+    AlertSummaryDTO summary = m_dao.findCurrentCounts(m_cluster.getClusterId(), null, null);
+    assertEquals(1, summary.getOkCount());
+    assertEquals(0, summary.getCriticalCount());
+
+    current.setAlertHistory(createHistory(AlertState.CRITICAL));
+    m_dao.merge(current);
+
+    summary = m_dao.findCurrentCounts(m_cluster.getClusterId(), null, null);
+    assertEquals(0, summary.getOkCount());
+    assertEquals(1, summary.getCriticalCount());
+    assertEquals(1, m_dao.findAggregateCounts(m_cluster.getClusterId(),
+        m_definition.getDefinitionName()).getCriticalCount());
+
+    // the same counts once reloaded from the database
+    m_dao.flushCachedEntitiesToJPA();
+    summary = m_dao.findCurrentCounts(m_cluster.getClusterId(), null, null);
+    assertEquals(0, summary.getOkCount());
+    assertEquals(1, summary.getCriticalCount());
+  }
+
+  private AlertCurrentEntity createCurrent(AlertState state) {
+    AlertCurrentEntity current = new AlertCurrentEntity();
+    current.setAlertHistory(createHistory(state));
+    current.setLatestTimestamp(System.currentTimeMillis());
+    current.setOriginalTimestamp(System.currentTimeMillis());
+    current.setMaintenanceState(MaintenanceState.OFF);
+    m_dao.create(current);
+
+    assertNotNull(current.getAlertId());
+    return current;
+  }
+
+  private AlertHistoryEntity createHistory(AlertState state) {
+    AlertHistoryEntity history = new AlertHistoryEntity();
+    history.setServiceName(m_definition.getServiceName());
+    history.setComponentName(m_definition.getComponentName());
+    history.setClusterId(m_cluster.getClusterId());
+    history.setAlertDefinition(m_definition);
+    history.setAlertLabel(m_definition.getDefinitionName());
+    history.setAlertText(m_definition.getDefinitionName());
+    history.setAlertTimestamp(System.currentTimeMillis());
+    history.setHostName(HOSTNAME);
+    history.setAlertState(state);
+    m_dao.create(history);
+    return history;
+  }
+
+  private EntityManager getEntityManager() {
+    return m_injector.getProvider(EntityManager.class).get();
+  }
+}
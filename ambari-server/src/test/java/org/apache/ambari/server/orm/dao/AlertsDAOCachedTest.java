@@ -193,6 +193,37 @@ public class AlertsDAOCachedTest {
     EasyMock.verify(definition, history, entityManager, daoUtils);
   }
 
+  /**
+   * Tests that a flush only writes the alerts updated in the cache since the
+   * last flush.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testFlushWritesDirtyAlertsOnce() throws Exception {
+    EntityManager entityManager = m_injector.getInstance(EntityManager.class);
+
+    AlertHistoryEntity history = EasyMock.createNiceMock(AlertHistoryEntity.class);
+    AlertDefinitionEntity definition = EasyMock.createNiceMock(AlertDefinitionEntity.class);
+    mock(definition, history);
+
+    AlertCurrentEntity memoryCurrent = new AlertCurrentEntity();
+    memoryCurrent.setAlertHistory(history);
+    memoryCurrent.setOriginalTimestamp(1L);
+    memoryCurrent.setLatestTimestamp(3L);
+
+    // only the cache-only update is written, and only by the first flush
+    EasyMock.expect(entityManager.merge(memoryCurrent)).andReturn(memoryCurrent).once();
+    EasyMock.replay(entityManager);
+
+    AlertsDAO alertsDAO = m_injector.getInstance(AlertsDAO.class);
+    alertsDAO.merge(memoryCurrent, true);
+    alertsDAO.flushCachedEntitiesToJPA();
+    alertsDAO.flushCachedEntitiesToJPA();
+
+    EasyMock.verify(entityManager);
+  }
+
   @SuppressWarnings("unchecked")
   private void testFindUsesCache(CachedAlertTestArea testArea) throws Exception {
     EntityManager entityManager = m_injector.getInstance(EntityManager.class);
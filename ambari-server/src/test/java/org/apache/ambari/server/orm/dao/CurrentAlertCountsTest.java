@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.orm.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.ambari.server.state.AlertState;
+import org.apache.ambari.server.state.MaintenanceState;
+import org.junit.Test;
+
+/**
+ * Tests {@link CurrentAlertCounts}.
+ */
+public class CurrentAlertCountsTest {
+
+  @Test
+  public void testCountsFollowAlertChanges() throws Exception {
+    CurrentAlertCounts counts = new CurrentAlertCounts();
+    counts.put(1L, "datanode_process", "HDFS", "h1", AlertState.OK, MaintenanceState.OFF);
+    counts.put(2L, "datanode_process", "HDFS", "h1", AlertState.OK, MaintenanceState.OFF);
+    counts.put(3L, "nodemanager_process", "YARN", "h2", AlertState.OK, MaintenanceState.OFF);
+    counts.put(4L, "nodemanager_process", "YARN", null, AlertState.OK, MaintenanceState.OFF);
+
+    AlertSummaryDTO summary = counts.getSummary(null, null);
+    assertEquals(4, summary.getOkCount());
+
+    // a state change moves the alert between buckets
+    counts.put(2L, "datanode_process", "HDFS", "h1", AlertState.CRITICAL, MaintenanceState.OFF);
+    counts.put(3L, "nodemanager_process", "YARN", "h2", AlertState.WARNING, MaintenanceState.OFF);
+
+    summary = counts.getSummary(null, null);
+    assertEquals(2, summary.getOkCount());
+    assertEquals(1, summary.getWarningCount());
+    assertEquals(1, summary.getCriticalCount());
+
+    summary = counts.getSummary("HDFS", null);
+    assertEquals(1, summary.getOkCount());
+    assertEquals(1, summary.getCriticalCount());
+
+    summary = counts.getSummary(null, "h2");
+    assertEquals(0, summary.getOkCount());
+    assertEquals(1, summary.getWarningCount());
+
+    AlertHostSummaryDTO hostSummary = counts.getHostSummary();
+    assertEquals(1, hostSummary.getCriticalCount());
+    assertEquals(1, hostSummary.getWarningCount());
+    assertEquals(0, hostSummary.getOkCount());
+
+    // alerts in maintenance mode are counted as such, not by state
+    counts.put(2L, "datanode_process", "HDFS", "h1", AlertState.CRITICAL, MaintenanceState.ON);
+    summary = counts.getSummary(null, null);
+    assertEquals(0, summary.getCriticalCount());
+    assertEquals(1, summary.getMaintenanceCount());
+
+    hostSummary = counts.getHostSummary();
+    assertEquals(0, hostSummary.getCriticalCount());
+    assertEquals(1, hostSummary.getOkCount());
+
+    // hosts without alerts are no longer summarized
+    counts.remove(3L);
+    Map<String, AlertSummaryDTO> perHost = counts.getPerHostSummaries();
+    assertTrue(perHost.containsKey("h1"));
+    assertTrue(perHost.containsKey(null));
+    assertFalse(perHost.containsKey("h2"));
+    assertEquals(0, counts.getSummary("foo", null).getOkCount());
+  }
+
+  @Test
+  public void testDefinitionCounts() throws Exception {
+    CurrentAlertCounts counts = new CurrentAlertCounts();
+    counts.put(1L, "datanode_process", "HDFS", "h1", AlertState.OK, MaintenanceState.OFF);
+    counts.put(2L, "datanode_process", "HDFS", "h2", AlertState.CRITICAL, MaintenanceState.OFF);
+    counts.put(3L, "datanode_process", "HDFS", "h3", AlertState.CRITICAL, MaintenanceState.ON);
+    counts.put(4L, "namenode_process", "HDFS", "h1", AlertState.CRITICAL, MaintenanceState.OFF);
+
+    AlertSummaryDTO summary = counts.getDefinitionSummary("datanode_process");
+    assertEquals(1, summary.getOkCount());
+    assertEquals(1, summary.getCriticalCount());
+    assertEquals(1, summary.getMaintenanceCount());
+
+    // a recovered alert moves out of the critical count
+    counts.put(2L, "datanode_process", "HDFS", "h2", AlertState.OK, MaintenanceState.OFF);
+    summary = counts.getDefinitionSummary("datanode_process");
+    assertEquals(2, summary.getOkCount());
+    assertEquals(0, summary.getCriticalCount());
+
+    counts.remove(4L);
+    assertEquals(0, counts.getDefinitionSummary("namenode_process").getCriticalCount());
+  }
+}
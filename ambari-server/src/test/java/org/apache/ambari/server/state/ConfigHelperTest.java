@@ -306,6 +306,30 @@ public class ConfigHelperTest {
       Assert.assertEquals(expectedConfig_hiveServer1, originalConfig_hiveServer1);
     }
 
+    @Test
+    public void testFilterHiddenAttribute() throws Exception {
+      StackInfo stackInfo = metaInfo.getStack("HDP", "2.0.5");
+      Map<String, Map<String, Map<String, String>>> configAttributes = new HashMap<String, Map<String, Map<String, String>>>();
+      configAttributes.put("hive-site", stackInfo.getDefaultConfigAttributesForConfigType("hive-site"));
+
+      Map<String, Map<String, String>> config = createHiveConfig();
+      Map<String, Map<String, String>> expectedConfig_hiveClient = new HashMap<String, Map<String, String>>() {{
+        put("hive-site", new HashMap<String, String>() {{
+          put("javax.jdo.option.ConnectionDriverName", "oracle");
+          put("hive.metastore.warehouse.dir", "/tmp");
+        }});
+      }};
+
+      // the given configurations are left untouched
+      Assert.assertEquals(expectedConfig_hiveClient,
+          ConfigHelper.filterHiddenAttribute(config, configAttributes, "HIVE_CLIENT", false));
+      Assert.assertEquals(createHiveConfig(), config);
+
+      // nothing hidden, nothing copied
+      Assert.assertSame(config,
+          ConfigHelper.filterHiddenAttribute(config, configAttributes, "HIVE_SERVER", false));
+    }
+
     private Map<String, Map<String, String>> createHiveConfig() {
       return new HashMap<String, Map<String, String>>() {{
         put("hive-site", new HashMap<String, String>() {{
@@ -318,6 +318,58 @@ public class ServiceComponentTest {
     Assert.assertFalse(sb.toString().isEmpty());
   }
 
+  @Test
+  public void testHostComponentStateCounts() throws AmbariException {
+    String componentName = "NAMENODE";
+    ServiceComponent component = serviceComponentFactory.createNew(service,
+        componentName);
+    service.addServiceComponent(component);
+
+    addHostToCluster("h1", service.getCluster().getClusterName());
+    addHostToCluster("h2", service.getCluster().getClusterName());
+    addHostToCluster("h3", service.getCluster().getClusterName());
+
+    ServiceComponentHost sch1 = component.addServiceComponentHost("h1");
+    ServiceComponentHost sch2 = component.addServiceComponentHost("h2");
+    ServiceComponentHost sch3 = component.addServiceComponentHost("h3");
+    Assert.assertEquals(3, component.getHostComponentCount(State.INIT));
+
+    sch1.setState(State.STARTED);
+    sch2.setState(State.STARTED);
+    sch3.setState(State.INSTALLED);
+    Assert.assertEquals(0, component.getHostComponentCount(State.INIT));
+    Assert.assertEquals(2, component.getHostComponentCount(State.STARTED));
+    Assert.assertEquals(1, component.getHostComponentCount(State.INSTALLED));
+
+    sch2.setState(State.INSTALLED);
+    Assert.assertEquals(1, component.getHostComponentCount(State.STARTED));
+    Assert.assertEquals(2, component.getHostComponentCount(State.INSTALLED));
+
+    sch1.setMaintenanceState(MaintenanceState.ON);
+    Assert.assertEquals(1, component.getHostComponentCountInMaintenance());
+    sch1.setMaintenanceState(MaintenanceState.OFF);
+    Assert.assertEquals(0, component.getHostComponentCountInMaintenance());
+
+    // host maintenance counts once per host component
+    Host host1 = clusters.getHost("h1");
+    host1.setMaintenanceState(cluster.getClusterId(), MaintenanceState.ON);
+    Assert.assertEquals(1, component.getHostComponentCountInMaintenance());
+    sch1.setMaintenanceState(MaintenanceState.ON);
+    Assert.assertEquals(1, component.getHostComponentCountInMaintenance());
+    sch1.setMaintenanceState(MaintenanceState.OFF);
+    Assert.assertEquals(1, component.getHostComponentCountInMaintenance());
+    host1.setMaintenanceState(cluster.getClusterId(), MaintenanceState.OFF);
+    Assert.assertEquals(0, component.getHostComponentCountInMaintenance());
+
+    component.deleteServiceComponentHosts("h3");
+    Assert.assertEquals(1, component.getHostComponentCount(State.INSTALLED));
+
+    ServiceComponentResponse r = component.convertToResponse();
+    Assert.assertEquals(2, r.getServiceComponentStateCount().get("totalCount").intValue());
+    Assert.assertEquals(1, r.getServiceComponentStateCount().get("startedCount").intValue());
+    Assert.assertEquals(1, r.getServiceComponentStateCount().get("installedCount").intValue());
+  }
+
   @Test
   public void testCanBeRemoved() throws Exception {
     String componentName = "NAMENODE";
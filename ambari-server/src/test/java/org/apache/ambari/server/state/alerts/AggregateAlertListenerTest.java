@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.state.alerts;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.events.AlertReceivedEvent;
 import org.apache.ambari.server.events.AlertStateChangeEvent;
 import org.apache.ambari.server.events.MockEventListener;
@@ -141,6 +142,53 @@ public class AggregateAlertListenerTest {
     Assert.assertEquals(2, m_listener.getAlertEventReceivedCount(AlertReceivedEvent.class));
   }
 
+  /**
+   * Tests that the {@link AlertAggregateListener} evaluates an aggregate once
+   * for all the state changes collected during the evaluation interval.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAggregateEvaluatedOncePerInterval() throws Exception {
+    m_injector.getInstance(Configuration.class).setProperty(
+        Configuration.ALERTS_AGGREGATE_EVALUATION_INTERVAL.getKey(), "600000");
+
+    AlertDefinition aggregateDefinition = getAggregateAlertDefinition();
+    AlertCurrentEntity currentEntityMock = EasyMock.createNiceMock(AlertCurrentEntity.class);
+
+    EasyMock.expect(
+        m_aggregateMapping.getAggregateDefinition(EasyMock.anyLong(), EasyMock.eq("mock-alert"))).andReturn(
+        aggregateDefinition).atLeastOnce();
+
+    AlertSummaryDTO summaryDTO = new AlertSummaryDTO(0, 0, 5, 0, 0);
+    EasyMock.expect(
+        m_alertsDao.findAggregateCounts(EasyMock.anyLong(), EasyMock.eq("mock-aggregate-alert"))).andReturn(
+        summaryDTO).once();
+
+    EasyMock.replay(m_alertsDao, m_aggregateMapping, currentEntityMock);
+
+    Alert alert = new Alert("mock-alert", null, null, null, null, null);
+    AlertAggregateListener aggregateListener = m_injector.getInstance(AlertAggregateListener.class);
+    AlertStateChangeEvent event = new AlertStateChangeEvent(0, alert, currentEntityMock, null,
+        AlertFirmness.HARD);
+
+    // several alerts of the aggregate change state during the interval
+    for (int i = 0; i < 5; i++) {
+      aggregateListener.onAlertStateChangeEvent(event);
+    }
+
+    Assert.assertEquals(0, m_listener.getAlertEventReceivedCount(AlertReceivedEvent.class));
+
+    aggregateListener.flush();
+    Assert.assertEquals(1, m_listener.getAlertEventReceivedCount(AlertReceivedEvent.class));
+
+    // nothing pending
+    aggregateListener.flush();
+    Assert.assertEquals(1, m_listener.getAlertEventReceivedCount(AlertReceivedEvent.class));
+
+    EasyMock.verify(m_alertsDao);
+  }
+
   /**
    * Tests that the {@link AlertAggregateListener} disregards
    * {@link AlertFirmness#SOFT} alerts.
@@ -80,6 +80,7 @@ public class AlertDefinitionHashTest extends TestCase {
   private static final String HOSTNAME = "c6401.ambari.apache.org";
 
   private List<AlertDefinitionEntity> m_agentDefinitions;
+  private List<AlertDefinitionEntity> m_definitions;
   private AlertDefinitionEntity m_hdfsService;
   AlertDefinitionEntity m_hdfsHost;
   private ConfigHelper m_configHelper;
@@ -187,20 +188,15 @@ public class AlertDefinitionHashTest extends TestCase {
     agentScoped.setScope(Scope.HOST);
     agentScoped.setScheduleInterval(1);
 
-    EasyMock.expect(
-        m_mockDao.findByServiceMaster(EasyMock.anyInt(),
-            (Set<String>) EasyMock.anyObject())).andReturn(
-        Collections.singletonList(m_hdfsService)).anyTimes();
-
-    EasyMock.expect(
-        m_mockDao.findByServiceComponent(EasyMock.anyInt(),
-            EasyMock.anyObject(String.class), EasyMock.anyObject(String.class))).andReturn(
-        Collections.singletonList(m_hdfsHost)).anyTimes();
-
     m_agentDefinitions = new ArrayList<AlertDefinitionEntity>();
     m_agentDefinitions.add(agentScoped);
-    EasyMock.expect(m_mockDao.findAgentScoped(EasyMock.anyInt())).andReturn(
-        m_agentDefinitions).anyTimes();
+
+    m_definitions = new ArrayList<AlertDefinitionEntity>();
+    m_definitions.add(m_hdfsService);
+    m_definitions.add(m_hdfsHost);
+    m_definitions.add(agentScoped);
+    EasyMock.expect(m_mockDao.findAll(EasyMock.anyLong())).andReturn(
+        m_definitions).anyTimes();
 
     EasyMock.replay(m_mockClusters, m_mockCluster, m_mockDao);
     m_hash = m_injector.getInstance(AlertDefinitionHash.class);
@@ -269,6 +265,7 @@ public class AlertDefinitionHashTest extends TestCase {
     agentScoped.setScheduleInterval(1);
 
     m_agentDefinitions.add(agentScoped);
+    m_definitions.add(agentScoped);
 
     newHash = m_hash.getHash(CLUSTERNAME, HOSTNAME);
     assertNotSame(hash, newHash);
@@ -314,6 +311,32 @@ public class AlertDefinitionHashTest extends TestCase {
     assertTrue(invalidatedHosts.contains(HOSTNAME));
   }
 
+  /**
+   * Tests that the definitions are read once per cluster and read again after
+   * {@link AlertDefinitionHash#invalidateHosts(AlertDefinitionEntity)}.
+   */
+  @Test
+  public void testDefinitionIndexInvalidation() {
+    assertEquals(3, m_hash.getAlertDefinitions(CLUSTERNAME, HOSTNAME).size());
+
+    AlertDefinitionEntity agentScoped = new AlertDefinitionEntity();
+    agentScoped.setDefinitionId(4L);
+    agentScoped.setClusterId(1L);
+    agentScoped.setHash(UUID.randomUUID().toString());
+    agentScoped.setServiceName("AMBARI");
+    agentScoped.setComponentName("AMBARI_AGENT");
+    agentScoped.setScope(Scope.HOST);
+    agentScoped.setScheduleInterval(1);
+    m_definitions.add(agentScoped);
+
+    // still indexed
+    assertEquals(3, m_hash.getAlertDefinitions(CLUSTERNAME, HOSTNAME).size());
+
+    Set<String> invalidatedHosts = m_hash.invalidateHosts(agentScoped);
+    assertTrue(invalidatedHosts.contains(HOSTNAME));
+    assertEquals(4, m_hash.getAlertDefinitions(CLUSTERNAME, HOSTNAME).size());
+  }
+
   /**
    *
    */
@@ -403,6 +426,38 @@ public class AlertDefinitionHashTest extends TestCase {
     assertEquals(1, actionQueue.size("anotherHost"));
   }
 
+  /**
+   * Tests that hosts are only sent definitions when their hash changes.
+   */
+  @Test
+  public void testUnchangedHashNotEnqueued() throws Exception {
+    ActionQueue actionQueue = m_injector.getInstance(ActionQueue.class);
+    Set<String> hosts = Collections.singleton(HOSTNAME);
+
+    m_hash.enqueueAgentCommands(1L, hosts);
+    assertEquals(1, actionQueue.dequeueAll(HOSTNAME).size());
+
+    // nothing changed
+    m_hash.invalidate(HOSTNAME);
+    m_hash.enqueueAgentCommands(1L, hosts);
+    assertEquals(0, actionQueue.size(HOSTNAME));
+
+    // a new definition for the host
+    AlertDefinitionEntity agentScoped = new AlertDefinitionEntity();
+    agentScoped.setDefinitionId(4L);
+    agentScoped.setClusterId(1L);
+    agentScoped.setHash(UUID.randomUUID().toString());
+    agentScoped.setServiceName("AMBARI");
+    agentScoped.setComponentName("AMBARI_AGENT");
+    agentScoped.setScope(Scope.HOST);
+    agentScoped.setScheduleInterval(1);
+    m_definitions.add(agentScoped);
+
+    m_hash.invalidateHosts(agentScoped);
+    m_hash.enqueueAgentCommands(1L, hosts);
+    assertEquals(1, actionQueue.size(HOSTNAME));
+  }
+
   /**
    *
    */
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.RootServiceResponseFactory.Components;
 import org.apache.ambari.server.controller.RootServiceResponseFactory.Services;
 import org.apache.ambari.server.events.AlertReceivedEvent;
@@ -934,4 +935,62 @@ public class AlertReceivedListenerTest {
 
     assertEquals(1, m_dao.findCurrent().size());
   }
+
+  /**
+   * Tests that alerts received within the coalescing window are applied on
+   * flush, with repeated alerts in the same state counted as occurrences and
+   * each state change recorded in history.
+   */
+  @Test
+  public void testCoalescedAlertEvents() throws Exception {
+    m_injector.getInstance(Configuration.class).setProperty(
+        Configuration.ALERTS_RECEIVED_COALESCING_WINDOW.getKey(), "600000");
+
+    String definitionName = ALERT_DEFINITION + "1";
+    AlertReceivedListener listener = m_injector.getInstance(AlertReceivedListener.class);
+
+    for (long timestamp = 1L; timestamp <= 3L; timestamp++) {
+      Alert alert = new Alert(definitionName, null, "HDFS", null, HOST1, AlertState.OK);
+      alert.setCluster(m_cluster.getClusterName());
+      alert.setLabel(ALERT_LABEL);
+      alert.setText("HDFS is OK");
+      alert.setTimestamp(timestamp);
+      listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(), alert));
+    }
+
+    // nothing is written until the pending alerts are flushed
+    assertEquals(0, m_dao.findCurrent().size());
+
+    listener.flush();
+
+    List<AlertCurrentEntity> allCurrent = m_dao.findCurrent();
+    assertEquals(1, allCurrent.size());
+    assertEquals(3, (long) allCurrent.get(0).getOccurrences());
+    assertEquals(1L, (long) allCurrent.get(0).getOriginalTimestamp());
+    assertEquals(3L, (long) allCurrent.get(0).getLatestTimestamp());
+    assertEquals(1, m_dao.findAll().size());
+
+    // OK -> CRITICAL -> CRITICAL -> SKIPPED -> OK within one window
+    AlertState[] states = { AlertState.CRITICAL, AlertState.CRITICAL, AlertState.SKIPPED,
+        AlertState.OK };
+
+    long timestamp = 4L;
+    for (AlertState state : states) {
+      Alert alert = new Alert(definitionName, null, "HDFS", null, HOST1, state);
+      alert.setCluster(m_cluster.getClusterName());
+      alert.setLabel(ALERT_LABEL);
+      alert.setText("HDFS is " + state);
+      alert.setTimestamp(timestamp++);
+      listener.onAlertEvent(new AlertReceivedEvent(m_cluster.getClusterId(), alert));
+    }
+
+    listener.flush();
+
+    allCurrent = m_dao.findCurrent();
+    assertEquals(1, allCurrent.size());
+    assertEquals(AlertState.OK, allCurrent.get(0).getAlertHistory().getAlertState());
+    assertEquals(1, (long) allCurrent.get(0).getOccurrences());
+    assertEquals(7L, (long) allCurrent.get(0).getLatestTimestamp());
+    assertEquals(3, m_dao.findAll().size());
+  }
 }
@@ -22,6 +22,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -43,6 +44,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import javax.persistence.EntityManager;
 import javax.persistence.RollbackException;
@@ -1053,6 +1061,108 @@ public class ClusterTest {
     Assert.assertEquals("Expect one host-level override", 1, dc.getHostOverrides().size());
   }
 
+  /**
+   * Tests that configuration reads are served while a writer holds the
+   * cluster lock and that the desired configs change once the writer is done.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testConfigReadsDoNotWaitForWriters() throws Exception {
+    createDefaultCluster();
+
+    final Config config1 = configFactory.createNew(c1, "global",
+        new HashMap<String, String>() {{ put("a", "b"); }}, new HashMap<String, Map<String,String>>());
+    config1.setTag("version1");
+
+    Config config2 = configFactory.createNew(c1, "global",
+        new HashMap<String, String>() {{ put("x", "y"); }}, new HashMap<String, Map<String,String>>());
+    config2.setTag("version2");
+
+    c1.addConfig(config1);
+    c1.addConfig(config2);
+    c1.addDesiredConfig("_test1", Collections.singleton(config1));
+    assertEquals("version1", c1.getDesiredConfigs().get("global").getTag());
+
+    Field field = ClusterImpl.class.getDeclaredField("clusterGlobalLock");
+    field.setAccessible(true);
+    ReadWriteLock clusterGlobalLock = (ReadWriteLock) field.get(c1);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    clusterGlobalLock.writeLock().lock();
+    try {
+      Future<String> future = executor.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          assertEquals(config1, c1.getConfig("global", "version1"));
+          assertEquals(2, c1.getConfigsByType("global").size());
+          assertEquals(2, c1.getAllConfigs().size());
+          return c1.getDesiredConfigs().get("global").getTag();
+        }
+      });
+
+      assertEquals("version1", future.get(10, TimeUnit.SECONDS));
+    } finally {
+      clusterGlobalLock.writeLock().unlock();
+      executor.shutdownNow();
+    }
+
+    c1.addDesiredConfig("_test2", Collections.singleton(config2));
+
+    DesiredConfig desiredConfig = c1.getDesiredConfigs().get("global");
+    assertEquals("version2", desiredConfig.getTag());
+    assertEquals("_test2", desiredConfig.getUser());
+    assertEquals(2, c1.getAllDesiredConfigVersions().get("global").size());
+  }
+
+  /**
+   * Tests that adding a config waits for a writer holding the cluster lock,
+   * so that a concurrent reload of the configs cannot lose it.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAddConfigWaitsForWriters() throws Exception {
+    createDefaultCluster();
+
+    final Config config1 = configFactory.createNew(c1, "global",
+        new HashMap<String, String>() {{ put("a", "b"); }}, new HashMap<String, Map<String,String>>());
+    config1.setTag("version1");
+
+    Field field = ClusterImpl.class.getDeclaredField("clusterGlobalLock");
+    field.setAccessible(true);
+    ReadWriteLock clusterGlobalLock = (ReadWriteLock) field.get(c1);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> future;
+      clusterGlobalLock.writeLock().lock();
+      try {
+        future = executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            c1.addConfig(config1);
+          }
+        });
+
+        try {
+          future.get(1, TimeUnit.SECONDS);
+          fail("The config was added while the cluster lock was held");
+        } catch (TimeoutException expected) {
+        }
+        assertNull(c1.getConfig("global", "version1"));
+      } finally {
+        clusterGlobalLock.writeLock().unlock();
+      }
+
+      future.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(config1, c1.getConfig("global", "version1"));
+  }
+
   @Test
   public void testConvertToResponse() throws Exception {
     createDefaultCluster();
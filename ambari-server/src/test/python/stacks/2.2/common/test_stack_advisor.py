@@ -2295,7 +2295,7 @@ class TestHDP22StackAdvisor(TestCase):
           "timeline.metrics.service.handler.thread.count": "20",
           'timeline.metrics.service.webapp.address': '0.0.0.0:6188',
           'timeline.metrics.service.watcher.disabled': 'false',
-          'timeline.metrics.cache.size': '100',
+          'timeline.metrics.cache.capacity.bytes': '67108864',
           'timeline.metrics.cache.commit.interval': '10'
         }
       }
@@ -2333,7 +2333,7 @@ class TestHDP22StackAdvisor(TestCase):
       }
     ]
 
-    expected["ams-site"]['properties']['timeline.metrics.cache.size'] = '500'
+    expected["ams-site"]['properties']['timeline.metrics.cache.capacity.bytes'] = '134217728'
     expected["ams-site"]['properties']['timeline.metrics.cache.commit.interval'] = '7'
     expected["ams-hbase-env"]['properties']['hbase_master_heapsize'] = '1408'
     expected["ams-hbase-env"]['properties']['hbase_master_xmn_size'] = '320'
@@ -2406,7 +2406,7 @@ class TestHDP22StackAdvisor(TestCase):
     expected["ams-site"]['properties']['timeline.metrics.host.aggregate.splitpoints'] = 'master.Server.numDeadRegionServers'
     expected["ams-site"]['properties']['timeline.metrics.cluster.aggregate.splitpoints'] = 'master.Server.numDeadRegionServers'
 
-    expected["ams-site"]['properties']['timeline.metrics.cache.size'] = '500'
+    expected["ams-site"]['properties']['timeline.metrics.cache.capacity.bytes'] = '167772160'
     expected["ams-site"]['properties']['timeline.metrics.cache.commit.interval'] = '7'
     expected["ams-hbase-env"]['properties']['hbase_master_heapsize'] = '2432'
     expected["ams-hbase-env"]['properties']['hbase_master_xmn_size'] = '512'
@@ -2526,9 +2526,16 @@ class TestHDP22StackAdvisor(TestCase):
     ]
 
     self.stackAdvisor.recommendAmsConfigurations(configurations, clusterData, services, hosts)
-    self.assertEquals(configurations["ams-site"]['properties']['timeline.metrics.cache.size'], '700')
+    self.assertEquals(configurations["ams-site"]['properties']['timeline.metrics.cache.capacity.bytes'], '469762048')
     self.assertEquals(configurations["ams-site"]['properties']['timeline.metrics.cache.commit.interval'], '5')
 
+    # Cache capacity is capped by the collector heap set by the user
+    services["configurations"]["ams-env"] = {"properties": {"metrics_collector_heapsize": "1024"}}
+    services["changed-configurations"] = [{"type": "ams-env", "name": "metrics_collector_heapsize"}]
+    self.stackAdvisor.recommendAmsConfigurations(configurations, clusterData, services, hosts)
+    self.assertEquals(configurations["ams-env"]['properties']['metrics_collector_heapsize'], '1024')
+    self.assertEquals(configurations["ams-site"]['properties']['timeline.metrics.cache.capacity.bytes'], '268435456')
+
   def test_recommendHbaseConfigurations(self):
     servicesList = ["HBASE"]
     configurations = {}